@@ -8,42 +8,52 @@ import org.apache.commons.lang.StringUtils;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.*;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.PriorityQueue;
 
+/**
+ * Writes text with its offset items wrapped in spans. The text is read once from start to end and written as it is
+ * read so memory does not grow with the size of the text. A term mention which starts before the end of an earlier
+ * term mention is not highlighted.
+ */
 public class EntityHighlighter {
+    private static final int TEXT_BUFFER_SIZE = 8 * 1024;
+
     public String getHighlightedText(String text, Iterable<TermMentionModel> termMentions) {
         List<OffsetItem> offsetItems = convertTermMentionsToOffsetItems(termMentions);
         return getHighlightedText(text, 0, offsetItems);
     }
 
-    // TODO: change to use an InputStream?
+    public void writeHighlightedText(Reader text, Iterable<TermMentionModel> termMentions, Writer out) throws IOException {
+        List<OffsetItem> offsetItems = convertTermMentionsToOffsetItems(termMentions);
+        writeHighlightedText(text, 0, offsetItems, out);
+    }
+
     public static String getHighlightedText(String text, int textStartOffset, List<OffsetItem> offsetItems) throws JSONException {
-        text = text.replaceAll("<", "&lt;").replaceAll("<", "&gt;");
+        StringWriter result = new StringWriter();
+        try {
+            writeHighlightedText(new StringReader(text), textStartOffset, offsetItems, result);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return result.toString();
+    }
 
+    public static void writeHighlightedText(Reader text, int textStartOffset, List<OffsetItem> offsetItems, Writer out) throws IOException {
         Collections.sort(offsetItems);
-        StringBuilder result = new StringBuilder();
-        PriorityQueue<Integer> endOffsets = new PriorityQueue<Integer>();
-        int lastStart = textStartOffset;
-        for (int i = 0; i < offsetItems.size(); i++) {
-            OffsetItem offsetItem = offsetItems.get(i);
-
-            boolean overlapsPreviousItem = false;
+        TextCopier textCopier = new TextCopier(text, textStartOffset, out);
+        PriorityQueue<Long> endOffsets = new PriorityQueue<Long>();
+        long termMentionsEnd = Long.MIN_VALUE;
+        for (OffsetItem offsetItem : offsetItems) {
             if (offsetItem instanceof TermMentionOffsetItem) {
-                for (int j = 0; j < i; j++) {
-                    OffsetItem compareItem = offsetItems.get(j);
-                    if (compareItem instanceof TermMentionOffsetItem && (compareItem.getEnd() >= offsetItem.getEnd()
-                            || compareItem.getEnd() > offsetItem.getStart())) {
-                        overlapsPreviousItem = true;
-                        offsetItems.remove(i--);
-                        break;
-                    }
+                // items are sorted by start so an overlap can only be with the furthest end seen so far
+                if (termMentionsEnd > offsetItem.getStart() || termMentionsEnd >= offsetItem.getEnd()) {
+                    continue;
                 }
-            }
-            if (overlapsPreviousItem) {
-                continue;
+                termMentionsEnd = Math.max(termMentionsEnd, offsetItem.getEnd());
             }
             if (offsetItem.getStart() < textStartOffset || offsetItem.getEnd() < textStartOffset) {
                 continue;
@@ -53,41 +63,38 @@ public class EntityHighlighter {
             }
 
             while (endOffsets.size() > 0 && endOffsets.peek() <= offsetItem.getStart()) {
-                int end = endOffsets.poll();
-                result.append(text.substring(lastStart - textStartOffset, end - textStartOffset));
-                result.append("</span>");
-                lastStart = end;
-            }
-            result.append(text.substring(lastStart - textStartOffset, (int) (offsetItem.getStart() - textStartOffset)));
-
-            JSONObject infoJson = offsetItem.getInfoJson();
-
-            result.append("<span");
-            result.append(" class=\"");
-            result.append(StringUtils.join(offsetItem.getCssClasses(), " "));
-            result.append("\"");
-            if (offsetItem.getTitle() != null) {
-                result.append(" title=\"");
-                result.append(StringEscapeUtils.escapeHtml(offsetItem.getTitle()));
-                result.append("\"");
+                textCopier.copyTo(endOffsets.poll());
+                out.write("</span>");
             }
-            result.append(" data-info=\"");
-            result.append(StringEscapeUtils.escapeHtml(infoJson.toString()));
-            result.append("\"");
-            result.append(">");
-            endOffsets.add((int) offsetItem.getEnd());
-            lastStart = (int) offsetItem.getStart();
+            textCopier.copyTo(offsetItem.getStart());
+            writeStartSpan(offsetItem, out);
+            endOffsets.add(offsetItem.getEnd());
         }
 
         while (endOffsets.size() > 0) {
-            int end = endOffsets.poll();
-            result.append(text.substring(lastStart - textStartOffset, end - textStartOffset));
-            result.append("</span>");
-            lastStart = end;
+            textCopier.copyTo(endOffsets.poll());
+            out.write("</span>");
         }
-        result.append(text.substring(lastStart - textStartOffset));
+        textCopier.copyTo(Long.MAX_VALUE);
+        out.flush();
+    }
 
-        return result.toString();
+    private static void writeStartSpan(OffsetItem offsetItem, Writer out) throws IOException {
+        JSONObject infoJson = offsetItem.getInfoJson();
+
+        out.write("<span");
+        out.write(" class=\"");
+        out.write(StringUtils.join(offsetItem.getCssClasses(), " "));
+        out.write("\"");
+        if (offsetItem.getTitle() != null) {
+            out.write(" title=\"");
+            out.write(StringEscapeUtils.escapeHtml(offsetItem.getTitle()));
+            out.write("\"");
+        }
+        out.write(" data-info=\"");
+        out.write(StringEscapeUtils.escapeHtml(infoJson.toString()));
+        out.write("\"");
+        out.write(">");
     }
 
     public List<OffsetItem> convertTermMentionsToOffsetItems(Iterable<TermMentionModel> termMentions) {
@@ -97,4 +104,53 @@ public class EntityHighlighter {
         }
         return termMetadataOffsetItems;
     }
+
+    /**
+     * Copies the text to the output up to a given offset, escaping angle brackets as it goes.
+     */
+    private static class TextCopier {
+        private final Reader text;
+        private final Writer out;
+        private final char[] buffer = new char[TEXT_BUFFER_SIZE];
+        private int bufferOffset;
+        private int bufferLength;
+        private long offset;
+
+        public TextCopier(Reader text, long startOffset, Writer out) {
+            this.text = text;
+            this.offset = startOffset;
+            this.out = out;
+        }
+
+        public void copyTo(long endOffset) throws IOException {
+            while (offset < endOffset) {
+                if (bufferOffset == bufferLength) {
+                    bufferLength = text.read(buffer, 0, buffer.length);
+                    bufferOffset = 0;
+                    if (bufferLength <= 0) {
+                        bufferLength = 0;
+                        return;
+                    }
+                }
+                int len = (int) Math.min(endOffset - offset, bufferLength - bufferOffset);
+                write(bufferOffset, len);
+                bufferOffset += len;
+                offset += len;
+            }
+        }
+
+        private void write(int start, int len) throws IOException {
+            int runStart = start;
+            int end = start + len;
+            for (int i = start; i < end; i++) {
+                char c = buffer[i];
+                if (c == '<' || c == '>') {
+                    out.write(buffer, runStart, i - runStart);
+                    out.write(c == '<' ? "&lt;" : "&gt;");
+                    runStart = i + 1;
+                }
+            }
+            out.write(buffer, runStart, end - runStart);
+        }
+    }
 }
@@ -4,6 +4,8 @@ import com.google.inject.Inject;
 import io.lumify.core.bootstrap.InjectHelper;
 import io.lumify.core.model.properties.LumifyProperties;
 import io.lumify.core.model.properties.RawLumifyProperties;
+import io.lumify.core.model.workQueue.BroadcastMode;
+import io.lumify.core.model.workQueue.GraphPropertyQueueBatch;
 import io.lumify.core.model.workQueue.WorkQueueRepository;
 import io.lumify.core.model.workspace.Workspace;
 import io.lumify.core.model.workspace.WorkspaceRepository;
@@ -52,6 +54,7 @@ public class FileImport {
         int totalFileCount = files.length;
         int fileCount = 0;
         int importedFileCount = 0;
+        GraphPropertyQueueBatch queueBatch = this.workQueueRepository.createGraphPropertyQueueBatch(BroadcastMode.MERGED);
         try {
             for (File f : files) {
                 if (f.getName().startsWith(".") || f.length() == 0) {
@@ -63,7 +66,7 @@ public class FileImport {
 
                 LOGGER.debug("Importing file (%d/%d): %s", fileCount + 1, totalFileCount, f.getAbsolutePath());
                 try {
-                    Vertex vertex = importFile(f, queueDuplicates, visibilitySource, workspace, user, authorizations);
+                    Vertex vertex = importFile(f, queueDuplicates, visibilitySource, workspace, user, authorizations, queueBatch);
                     results.add(vertex);
                     importedFileCount++;
                 } catch (Exception ex) {
@@ -73,6 +76,7 @@ public class FileImport {
             }
         } finally {
             graph.flush();
+            queueBatch.flush();
         }
 
         LOGGER.debug(String.format("Imported %d, skipped %d files from %s", importedFileCount, fileCount - importedFileCount, dataDir));
@@ -89,6 +93,10 @@ public class FileImport {
     }
 
     public Vertex importFile(File f, boolean queueDuplicates, String visibilitySource, Workspace workspace, User user, Authorizations authorizations) throws Exception {
+        return importFile(f, queueDuplicates, visibilitySource, workspace, user, authorizations, null);
+    }
+
+    private Vertex importFile(File f, boolean queueDuplicates, String visibilitySource, Workspace workspace, User user, Authorizations authorizations, GraphPropertyQueueBatch queueBatch) throws Exception {
         ensureInitialized();
 
         String hash = calculateFileHash(f);
@@ -97,7 +105,7 @@ public class FileImport {
         if (vertex != null) {
             LOGGER.warn("vertex already exists with hash %s", hash);
             if (queueDuplicates) {
-                pushOnQueue(vertex);
+                pushOnQueue(vertex, queueBatch);
             }
             return vertex;
         }
@@ -140,7 +148,7 @@ public class FileImport {
             }
 
             LOGGER.debug("File %s imported. vertex id: %s", f.getAbsolutePath(), vertex.getId().toString());
-            pushOnQueue(vertex);
+            pushOnQueue(vertex, queueBatch);
             return vertex;
         } finally {
             fileInputStream.close();
@@ -159,9 +167,13 @@ public class FileImport {
         }
     }
 
-    private void pushOnQueue(Vertex vertex) {
+    private void pushOnQueue(Vertex vertex, GraphPropertyQueueBatch queueBatch) {
         LOGGER.debug("pushing %s on to %s queue", vertex.getId().toString(), WorkQueueRepository.GRAPH_PROPERTY_QUEUE_NAME);
-        this.workQueueRepository.pushGraphPropertyQueue(vertex, MULTI_VALUE_KEY, RawLumifyProperties.RAW.getKey());
+        if (queueBatch == null) {
+            this.workQueueRepository.pushGraphPropertyQueue(vertex, MULTI_VALUE_KEY, RawLumifyProperties.RAW.getKey());
+        } else {
+            queueBatch.push(vertex, MULTI_VALUE_KEY, RawLumifyProperties.RAW.getKey());
+        }
     }
 
     private Vertex findExistingVertexWithHash(String hash, Authorizations authorizations) {
@@ -0,0 +1,557 @@
+package io.lumify.core.ingest;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import io.lumify.core.config.Configuration;
+import io.lumify.core.exception.LumifyException;
+import io.lumify.core.model.properties.LumifyProperties;
+import io.lumify.core.model.properties.RawLumifyProperties;
+import io.lumify.core.util.LumifyLogger;
+import io.lumify.core.util.LumifyLoggerFactory;
+import io.lumify.core.util.RowKeyHelper;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.securegraph.Element;
+import org.securegraph.Property;
+
+import java.io.*;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Keeps local copies of raw artifacts keyed by the SHA-256 row key computed by {@link FileImport} so processing the
+ * same artifact again on this node does not read it from storage. Files are spread over
+ * <code>localArtifactCache.directories</code> (a comma separated list, ideally one per disk) and the least recently
+ * used files are deleted once the cache grows past <code>localArtifactCache.maxMegabytes</code>. Files which are
+ * acquired are never deleted until they are released.
+ * <p/>
+ * The directories may be shared by several processes on the node, e.g. the web server and the Storm workers. Each
+ * process only knows the files it added or found on disk, so a file acquired by one process is held with a shared
+ * file lock and a file is only evicted while its evicting process holds an exclusive lock on it. Work files are
+ * created in a temp directory of each process, and the process holds a lock on a lock file next to it while it runs.
+ * The temp directories of processes which were killed are deleted when a cache starts, once their lock is free or, if
+ * they have no lock file, once they haven't been modified for a day. The work files of this process count against
+ * <code>localArtifactCache.maxMegabytes</code> too.
+ */
+@Singleton
+public class LocalArtifactCache {
+    private static final LumifyLogger LOGGER = LumifyLoggerFactory.getLogger(LocalArtifactCache.class);
+    public static final String CONFIGURATION_PREFIX = "localArtifactCache";
+    public static final String DIRECTORIES = CONFIGURATION_PREFIX + ".directories";
+    public static final String MAX_MEGABYTES = CONFIGURATION_PREFIX + ".maxMegabytes";
+    public static final int DEFAULT_MAX_MEGABYTES = 10 * 1024;
+    private static final String TEMP_DIRECTORY_NAME = "tmp";
+    private static final String LOCK_FILE_SUFFIX = ".lock";
+    private static final long UNLOCKED_TEMP_DIRECTORY_MAX_AGE_MILLIS = 24 * 60 * 60 * 1000L;
+    private static final long EVICT_INTERVAL_BYTES = 8 * 1024 * 1024;
+    private static final int SHARD_DIRECTORY_NAME_LENGTH = 2;
+    private static final Map<File, SharedLock> SHARED_LOCKS = new HashMap<File, SharedLock>();
+    private final File[] directories;
+    private final long maxBytes;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+    private final AtomicInteger nextTempDirectory = new AtomicInteger();
+    private final String processTempDirectoryName = UUID.randomUUID().toString();
+    private final List<SharedLock> tempDirectoryLocks = new ArrayList<SharedLock>();
+    private long totalBytes;
+
+    @Inject
+    public LocalArtifactCache(Configuration configuration) {
+        String defaultDirectory = new File(System.getProperty("java.io.tmpdir"), "lumify-artifact-cache").getAbsolutePath();
+        String[] directoryNames = configuration.get(DIRECTORIES, defaultDirectory).split(",");
+        this.directories = new File[directoryNames.length];
+        for (int i = 0; i < directoryNames.length; i++) {
+            this.directories[i] = new File(directoryNames[i].trim());
+        }
+        int maxMegabytes = configuration.getInt(MAX_MEGABYTES, DEFAULT_MAX_MEGABYTES);
+        checkArgument(maxMegabytes >= 0, MAX_MEGABYTES + " must not be negative");
+        this.maxBytes = maxMegabytes * 1024L * 1024L;
+        for (File directory : this.directories) {
+            lockProcessTempDirectory(directory);
+            deleteStaleTempDirectories(directory);
+            loadDirectory(directory);
+        }
+        LOGGER.info("local artifact cache holds %d files (%d bytes) in %s", entries.size(), totalBytes, Arrays.toString(this.directories));
+        Runtime.getRuntime().addShutdownHook(new Thread() {
+            @Override
+            public void run() {
+                deleteTempFiles();
+            }
+        });
+    }
+
+    /**
+     * @return the cache key for the property or null if the property's value is not identified by the element's
+     * row key hash.
+     */
+    public static String getCacheKey(Element element, Property property) {
+        if (property == null || !RawLumifyProperties.RAW.getKey().equals(property.getName())) {
+            return null;
+        }
+        String rowKey = LumifyProperties.ROW_KEY.getPropertyValue(element);
+        if (rowKey == null) {
+            return null;
+        }
+        String hash = rowKey.substring(rowKey.lastIndexOf(RowKeyHelper.MINOR_FIELD_SEPARATOR) + 1);
+        if (hash.length() <= SHARD_DIRECTORY_NAME_LENGTH || !isValidCacheKey(hash)) {
+            return null;
+        }
+        return hash;
+    }
+
+    private static boolean isValidCacheKey(String key) {
+        for (int i = 0; i < key.length(); i++) {
+            if (Character.digit(key.charAt(i), 16) == -1) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the cached file, which must be passed to {@link #release(String)} when done, or null if it is not cached.
+     */
+    public synchronized File acquire(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            File file = getFile(key);
+            if (!file.exists()) {
+                return null;
+            }
+            entry = new Entry(file, file.length());
+            entries.put(key, entry);
+            totalBytes += entry.length;
+        }
+        if (entry.references == 0 && !lockShared(entry.file)) {
+            LOGGER.debug("cached file %s was deleted", entry.file.getAbsolutePath());
+            remove(key, entry);
+            return null;
+        }
+        entry.references++;
+        return entry.file;
+    }
+
+    /**
+     * Returns the cached file or copies the input stream into the cache if it is not cached. The stream is always
+     * closed. The file must be passed to {@link #release(String)} when done.
+     */
+    public File acquire(String key, InputStream in) throws IOException {
+        try {
+            File file = acquire(key);
+            if (file != null) {
+                return file;
+            }
+            File tempFile = createTempFile(getDirectory(key), "artifact", null);
+            try {
+                OutputStream out = new FileOutputStream(tempFile);
+                try {
+                    copyAndEvict(in, out);
+                } finally {
+                    out.close();
+                }
+                return addAndAcquire(key, tempFile);
+            } finally {
+                if (tempFile.exists() && !tempFile.delete()) {
+                    LOGGER.warn("Could not delete temp file %s", tempFile.getAbsolutePath());
+                }
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Moves the file into the cache unless the key is already cached, in which case the file is left alone.
+     */
+    public void add(String key, File file) throws IOException {
+        if (acquire(key) == null) {
+            File tempFile = createTempFile(getDirectory(key), "artifact", null);
+            try {
+                if (!file.renameTo(tempFile)) {
+                    FileUtils.copyFile(file, tempFile);
+                }
+                addAndAcquire(key, tempFile);
+            } finally {
+                if (tempFile.exists() && !tempFile.delete()) {
+                    LOGGER.warn("Could not delete temp file %s", tempFile.getAbsolutePath());
+                }
+            }
+        }
+        release(key);
+    }
+
+    /**
+     * Evicts while a large file is copied, since the temp file counts against the size of the cache as it grows.
+     */
+    private void copyAndEvict(InputStream in, OutputStream out) throws IOException {
+        byte[] buffer = new byte[64 * 1024];
+        long bytesSinceEvict = 0;
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+            bytesSinceEvict += read;
+            if (bytesSinceEvict >= EVICT_INTERVAL_BYTES) {
+                synchronized (this) {
+                    evict();
+                }
+                bytesSinceEvict = 0;
+            }
+        }
+    }
+
+    private synchronized File addAndAcquire(String key, File tempFile) throws IOException {
+        File existingFile = acquire(key);
+        if (existingFile != null) {
+            return existingFile;
+        }
+        File file = getFile(key);
+        if (!file.getParentFile().exists() && !file.getParentFile().mkdirs()) {
+            throw new IOException("Could not create directory " + file.getParentFile().getAbsolutePath());
+        }
+        if (!tempFile.renameTo(file)) {
+            throw new IOException("Could not move " + tempFile.getAbsolutePath() + " to " + file.getAbsolutePath());
+        }
+        if (!lockShared(file)) {
+            throw new IOException("Cached file " + file.getAbsolutePath() + " was deleted while it was added");
+        }
+        Entry entry = new Entry(file, file.length());
+        entry.references++;
+        entries.put(key, entry);
+        totalBytes += entry.length;
+        evict();
+        return file;
+    }
+
+    public synchronized void release(String key) {
+        Entry entry = entries.get(key);
+        if (entry != null && entry.references > 0) {
+            entry.references--;
+            if (entry.references == 0) {
+                unlockShared(entry.file);
+            }
+        }
+        evict();
+    }
+
+    /**
+     * Creates a temp file on one of the cache directories, rotating through them so work files are spread over
+     * the same disks as the cache.
+     */
+    public File createTempFile(String prefix, String suffix) throws IOException {
+        return createTempFile(getNextTempDirectory(), prefix, suffix);
+    }
+
+    public File createTempDir() throws IOException {
+        File tempDir = createTempFile(getNextTempDirectory(), "dir", null);
+        if (!tempDir.delete() || !tempDir.mkdir()) {
+            throw new IOException("Could not create temp directory " + tempDir.getAbsolutePath());
+        }
+        return tempDir;
+    }
+
+    private File createTempFile(File directory, String prefix, String suffix) throws IOException {
+        File tempDirectory = getProcessTempDirectory(directory);
+        if (!tempDirectory.exists() && !tempDirectory.mkdirs()) {
+            throw new IOException("Could not create directory " + tempDirectory.getAbsolutePath());
+        }
+        return File.createTempFile(prefix, suffix, tempDirectory);
+    }
+
+    File getProcessTempDirectory(File directory) {
+        return new File(new File(directory, TEMP_DIRECTORY_NAME), processTempDirectoryName);
+    }
+
+    private static File getLockFile(File tempDirectory) {
+        return new File(tempDirectory.getParentFile(), tempDirectory.getName() + LOCK_FILE_SUFFIX);
+    }
+
+    private File getNextTempDirectory() {
+        return directories[(nextTempDirectory.getAndIncrement() & Integer.MAX_VALUE) % directories.length];
+    }
+
+    private File getDirectory(String key) {
+        return directories[(key.hashCode() & Integer.MAX_VALUE) % directories.length];
+    }
+
+    private File getFile(String key) {
+        return new File(new File(getDirectory(key), key.substring(0, SHARD_DIRECTORY_NAME_LENGTH)), key);
+    }
+
+    private void evict() {
+        if (totalBytes == 0) {
+            return;
+        }
+        long allowedBytes = maxBytes - getTempBytes();
+        if (totalBytes <= allowedBytes) {
+            return;
+        }
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (totalBytes > allowedBytes && it.hasNext()) {
+            Entry entry = it.next().getValue();
+            if (entry.references > 0 || !deleteUnlessLocked(entry.file)) {
+                continue;
+            }
+            LOGGER.debug("evicted %s (%d bytes)", entry.file.getAbsolutePath(), entry.length);
+            totalBytes -= entry.length;
+            it.remove();
+        }
+    }
+
+    private void remove(String key, Entry entry) {
+        entries.remove(key);
+        totalBytes -= entry.length;
+    }
+
+    /**
+     * @return the bytes of the work files of this process.
+     */
+    private long getTempBytes() {
+        long tempBytes = 0;
+        for (File directory : directories) {
+            File tempDirectory = getProcessTempDirectory(directory);
+            try {
+                if (tempDirectory.exists()) {
+                    tempBytes += FileUtils.sizeOfDirectory(tempDirectory);
+                }
+            } catch (IllegalArgumentException ex) {
+                // deleted while it was measured
+            }
+        }
+        return tempBytes;
+    }
+
+    /**
+     * Deletes the temp directories of this process and releases their locks when the process exits. Temp files of
+     * other processes sharing the cache directories are left alone.
+     */
+    public void deleteTempFiles() {
+        for (File directory : directories) {
+            try {
+                FileUtils.deleteDirectory(getProcessTempDirectory(directory));
+            } catch (IOException ex) {
+                LOGGER.warn("Could not delete temp directory in %s", directory.getAbsolutePath(), ex);
+            }
+        }
+        synchronized (tempDirectoryLocks) {
+            for (SharedLock tempDirectoryLock : tempDirectoryLocks) {
+                tempDirectoryLock.close();
+            }
+            tempDirectoryLocks.clear();
+        }
+        for (File directory : directories) {
+            FileUtils.deleteQuietly(getLockFile(getProcessTempDirectory(directory)));
+        }
+    }
+
+    /**
+     * Holds an exclusive lock on the lock file of the temp directory of this process until it exits, so other
+     * processes know the directory is in use.
+     */
+    private void lockProcessTempDirectory(File directory) {
+        File lockFile = getLockFile(getProcessTempDirectory(directory));
+        if (!lockFile.getParentFile().exists() && !lockFile.getParentFile().mkdirs()) {
+            LOGGER.warn("Could not create directory %s", lockFile.getParentFile().getAbsolutePath());
+            return;
+        }
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(lockFile, "rw");
+            synchronized (tempDirectoryLocks) {
+                tempDirectoryLocks.add(new SharedLock(raf, raf.getChannel().lock()));
+            }
+        } catch (IOException ex) {
+            IOUtils.closeQuietly(raf);
+            LOGGER.warn("Could not lock %s", lockFile.getAbsolutePath(), ex);
+        }
+    }
+
+    /**
+     * Deletes the temp directories left by processes which were killed before they could delete them.
+     */
+    private void deleteStaleTempDirectories(File directory) {
+        File[] tempFiles = new File(directory, TEMP_DIRECTORY_NAME).listFiles();
+        if (tempFiles == null) {
+            return;
+        }
+        for (File tempFile : tempFiles) {
+            if (tempFile.getName().startsWith(processTempDirectoryName)) {
+                continue;
+            }
+            if (tempFile.isDirectory()) {
+                File lockFile = getLockFile(tempFile);
+                boolean stale = lockFile.exists()
+                        ? deleteUnlessLocked(lockFile)
+                        : System.currentTimeMillis() - tempFile.lastModified() > UNLOCKED_TEMP_DIRECTORY_MAX_AGE_MILLIS;
+                if (stale) {
+                    LOGGER.info("deleting temp directory %s left by a process which is gone", tempFile.getAbsolutePath());
+                    FileUtils.deleteQuietly(tempFile);
+                }
+            } else if (tempFile.getName().endsWith(LOCK_FILE_SUFFIX)) {
+                String tempDirectoryName = tempFile.getName().substring(0, tempFile.getName().length() - LOCK_FILE_SUFFIX.length());
+                if (!new File(tempFile.getParentFile(), tempDirectoryName).exists()) {
+                    deleteUnlessLocked(tempFile);
+                }
+            }
+        }
+    }
+
+    /**
+     * Takes a shared lock on the file for this process. Locks are held by the JVM, so acquisitions of the same file
+     * by several caches of one JVM share one lock.
+     *
+     * @return false if the file no longer exists.
+     */
+    private static boolean lockShared(File file) {
+        synchronized (SHARED_LOCKS) {
+            SharedLock sharedLock = SHARED_LOCKS.get(file);
+            if (sharedLock == null) {
+                RandomAccessFile raf;
+                try {
+                    raf = new RandomAccessFile(file, "r");
+                } catch (FileNotFoundException ex) {
+                    return false;
+                }
+                try {
+                    sharedLock = new SharedLock(raf, raf.getChannel().lock(0, Long.MAX_VALUE, true));
+                } catch (IOException ex) {
+                    IOUtils.closeQuietly(raf);
+                    throw new LumifyException("Could not lock " + file.getAbsolutePath(), ex);
+                }
+                // the file may have been evicted by another process between opening and locking it
+                if (!file.exists()) {
+                    sharedLock.close();
+                    return false;
+                }
+                SHARED_LOCKS.put(file, sharedLock);
+            }
+            sharedLock.references++;
+            return true;
+        }
+    }
+
+    private static void unlockShared(File file) {
+        synchronized (SHARED_LOCKS) {
+            SharedLock sharedLock = SHARED_LOCKS.get(file);
+            if (sharedLock != null && --sharedLock.references == 0) {
+                SHARED_LOCKS.remove(file);
+                sharedLock.close();
+            }
+        }
+    }
+
+    /**
+     * Deletes the file if no process holds a lock on it.
+     *
+     * @return true if the file was deleted or is already gone.
+     */
+    private static boolean deleteUnlessLocked(File file) {
+        synchronized (SHARED_LOCKS) {
+            if (SHARED_LOCKS.containsKey(file)) {
+                return false;
+            }
+            if (!file.exists()) {
+                return true;
+            }
+            RandomAccessFile raf;
+            try {
+                raf = new RandomAccessFile(file, "rw");
+            } catch (FileNotFoundException ex) {
+                return !file.exists();
+            }
+            try {
+                FileLock lock;
+                try {
+                    lock = raf.getChannel().tryLock();
+                } catch (OverlappingFileLockException ex) {
+                    lock = null;
+                }
+                if (lock == null) {
+                    return false;
+                }
+                try {
+                    if (!file.delete() && file.exists()) {
+                        LOGGER.warn("Could not delete cached file %s", file.getAbsolutePath());
+                        return false;
+                    }
+                    return true;
+                } finally {
+                    lock.release();
+                }
+            } catch (IOException ex) {
+                LOGGER.warn("Could not lock cached file %s", file.getAbsolutePath(), ex);
+                return false;
+            } finally {
+                IOUtils.closeQuietly(raf);
+            }
+        }
+    }
+
+    private void loadDirectory(File directory) {
+        File[] shardDirectories = directory.listFiles();
+        if (shardDirectories == null) {
+            return;
+        }
+        List<File> files = new ArrayList<File>();
+        for (File shardDirectory : shardDirectories) {
+            if (shardDirectory.getName().equals(TEMP_DIRECTORY_NAME)) {
+                continue;
+            }
+            File[] shardFiles = shardDirectory.listFiles();
+            if (shardFiles != null) {
+                files.addAll(Arrays.asList(shardFiles));
+            }
+        }
+        Collections.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File f1, File f2) {
+                long m1 = f1.lastModified();
+                long m2 = f2.lastModified();
+                return m1 < m2 ? -1 : (m1 == m2 ? 0 : 1);
+            }
+        });
+        for (File file : files) {
+            String key = file.getName();
+            if (!isValidCacheKey(key) || !getFile(key).equals(file)) {
+                continue;
+            }
+            Entry entry = new Entry(file, file.length());
+            entries.put(key, entry);
+            totalBytes += entry.length;
+        }
+        evict();
+    }
+
+    private static class SharedLock {
+        private final RandomAccessFile file;
+        private final FileLock lock;
+        private int references;
+
+        public SharedLock(RandomAccessFile file, FileLock lock) {
+            this.file = file;
+            this.lock = lock;
+        }
+
+        public void close() {
+            try {
+                lock.release();
+            } catch (IOException ex) {
+                LOGGER.warn("Could not release lock", ex);
+            }
+            IOUtils.closeQuietly(file);
+        }
+    }
+
+    private static class Entry {
+        private final File file;
+        private final long length;
+        private int references;
+
+        public Entry(File file, long length) {
+            this.file = file;
+            this.length = length;
+        }
+    }
+}
@@ -1,6 +1,5 @@
 package io.lumify.core.ingest.graphProperty;
 
-import com.altamiracorp.bigtable.model.FlushFlag;
 import io.lumify.core.config.Configuration;
 import io.lumify.core.exception.LumifyException;
 import io.lumify.core.ingest.term.extraction.TermExtractionResult;
@@ -23,22 +22,20 @@ import io.lumify.core.user.User;
 import io.lumify.core.util.LumifyLogger;
 import io.lumify.core.util.LumifyLoggerFactory;
 import org.securegraph.*;
+import org.securegraph.query.Compare;
 import org.securegraph.mutation.ElementMutation;
 import org.securegraph.mutation.ExistingElementMutation;
 import com.google.inject.Inject;
 import org.json.JSONObject;
 
 import java.io.InputStream;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 
-import static io.lumify.core.util.CollectionUtil.trySingle;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 public abstract class GraphPropertyWorker {
     private static final LumifyLogger LOGGER = LumifyLoggerFactory.getLogger(GraphPropertyWorker.class);
+    private static final int EXISTING_VERTEX_QUERY_BATCH_SIZE = 100;
     private Graph graph;
     private WorkQueueRepository workQueueRepository;
     private OntologyRepository ontologyRepository;
@@ -126,42 +123,72 @@ public abstract class GraphPropertyWorker {
         saveRelationships(termExtractionResult.getRelationships(), termMentionsResults);
     }
 
+    /**
+     * Mentions are indexed by their offsets and the existing out edges of each source vertex are read once, so
+     * saving relationships costs one edge read per distinct source vertex instead of a scan and a read per
+     * relationship.
+     */
     private void saveRelationships(List<TermRelationship> relationships, List<TermMentionWithGraphVertex> termMentionsWithGraphVertices) {
+        if (relationships.size() == 0) {
+            return;
+        }
+        Map<Offsets, TermMentionWithGraphVertex> termMentionsByOffsets = indexTermMentionsByOffsets(termMentionsWithGraphVertices);
+        Map<Object, Set<String>> existingEdgeKeysBySourceVertexId = new HashMap<Object, Set<String>>();
         for (TermRelationship relationship : relationships) {
-            TermMentionWithGraphVertex sourceTermMentionsWithGraphVertex = findTermMentionWithGraphVertex(termMentionsWithGraphVertices, relationship.getSourceTermMention());
+            TermMentionWithGraphVertex sourceTermMentionsWithGraphVertex = termMentionsByOffsets.get(getOffsetsKey(relationship.getSourceTermMention()));
             checkNotNull(sourceTermMentionsWithGraphVertex, "source was not found for " + relationship.getSourceTermMention());
             checkNotNull(sourceTermMentionsWithGraphVertex.getVertex(), "source vertex was not found for " + relationship.getSourceTermMention());
-            TermMentionWithGraphVertex destTermMentionsWithGraphVertex = findTermMentionWithGraphVertex(termMentionsWithGraphVertices, relationship.getDestTermMention());
+            TermMentionWithGraphVertex destTermMentionsWithGraphVertex = termMentionsByOffsets.get(getOffsetsKey(relationship.getDestTermMention()));
             checkNotNull(destTermMentionsWithGraphVertex, "dest was not found for " + relationship.getDestTermMention());
             checkNotNull(destTermMentionsWithGraphVertex.getVertex(), "dest vertex was not found for " + relationship.getDestTermMention());
+            Vertex sourceVertex = sourceTermMentionsWithGraphVertex.getVertex();
+            Vertex destVertex = destTermMentionsWithGraphVertex.getVertex();
             String label = relationship.getLabel();
 
-            // TODO: a better way to check if the same edge exists instead of looking it up every time?
-            Edge edge = trySingle(sourceTermMentionsWithGraphVertex.getVertex().getEdges(destTermMentionsWithGraphVertex.getVertex(), Direction.OUT, label, getAuthorizations()));
-            if (edge == null) {
-                graph.addEdge(
-                        sourceTermMentionsWithGraphVertex.getVertex(),
-                        destTermMentionsWithGraphVertex.getVertex(),
-                        label,
-                        relationship.getVisibility(),
-                        getAuthorizations()
-                );
+            Set<String> existingEdgeKeys = existingEdgeKeysBySourceVertexId.get(sourceVertex.getId());
+            if (existingEdgeKeys == null) {
+                existingEdgeKeys = new HashSet<String>();
+                for (Edge edge : sourceVertex.getEdges(Direction.OUT, getAuthorizations())) {
+                    existingEdgeKeys.add(getEdgeKey(edge.getVertexId(Direction.IN), edge.getLabel()));
+                }
+                existingEdgeKeysBySourceVertexId.put(sourceVertex.getId(), existingEdgeKeys);
+            }
+            if (existingEdgeKeys.add(getEdgeKey(destVertex.getId(), label))) {
+                graph.addEdge(sourceVertex, destVertex, label, relationship.getVisibility(), getAuthorizations());
             }
         }
         graph.flush();
     }
 
-    private TermMentionWithGraphVertex findTermMentionWithGraphVertex(List<TermMentionWithGraphVertex> termMentionsWithGraphVertices, TermMention termMention) {
+    private Map<Offsets, TermMentionWithGraphVertex> indexTermMentionsByOffsets(List<TermMentionWithGraphVertex> termMentionsWithGraphVertices) {
+        Map<Offsets, TermMentionWithGraphVertex> termMentionsByOffsets = new HashMap<Offsets, TermMentionWithGraphVertex>();
         for (TermMentionWithGraphVertex termMentionsWithGraphVertex : termMentionsWithGraphVertices) {
-            if (termMentionsWithGraphVertex.getTermMention().getRowKey().getStartOffset() == termMention.getStart()
-                    && termMentionsWithGraphVertex.getTermMention().getRowKey().getEndOffset() == termMention.getEnd()
-                    && termMentionsWithGraphVertex.getVertex() != null) {
-                return termMentionsWithGraphVertex;
+            if (termMentionsWithGraphVertex.getVertex() == null) {
+                continue;
+            }
+            TermMentionRowKey rowKey = termMentionsWithGraphVertex.getTermMention().getRowKey();
+            Offsets key = new Offsets(rowKey.getStartOffset(), rowKey.getEndOffset());
+            if (!termMentionsByOffsets.containsKey(key)) {
+                termMentionsByOffsets.put(key, termMentionsWithGraphVertex);
             }
         }
-        return null;
+        return termMentionsByOffsets;
     }
 
+    private static Offsets getOffsetsKey(TermMention termMention) {
+        return new Offsets(termMention.getStart(), termMention.getEnd());
+    }
+
+    private static String getEdgeKey(Object destVertexId, String label) {
+        return destVertexId + "\u001f" + label;
+    }
+
+    /**
+     * Term mentions which resolve to the same entity (the same id, or the same title and concept when using existing
+     * vertices) are saved as a single vertex mutation. Existing vertices are looked up together after one flush of
+     * the graph and the artifact's existing entity edges are read once, so the number of round trips grows with the
+     * number of unique entities rather than the number of mentions.
+     */
     protected List<TermMentionWithGraphVertex> saveTermMentions(Vertex artifactGraphVertex, Iterable<TermMention> termMentions) {
         for (TermMentionFilter termMentionFilter : this.workerPrepareData.getTermMentionFilters()) {
             try {
@@ -171,63 +198,202 @@ public abstract class GraphPropertyWorker {
             }
         }
 
-        List<TermMentionWithGraphVertex> results = new ArrayList<TermMentionWithGraphVertex>();
+        Map<String, Concept> conceptsByIri = new HashMap<String, Concept>();
+        Map<String, ResolvedEntity> resolvedEntities = new LinkedHashMap<String, ResolvedEntity>();
+        List<TermMention> savedTermMentions = new ArrayList<TermMention>();
+        List<TermMentionModel> termMentionModels = new ArrayList<TermMentionModel>();
+        List<ResolvedEntity> termMentionEntities = new ArrayList<ResolvedEntity>();
         for (TermMention termMention : termMentions) {
-            results.add(saveTermMention(artifactGraphVertex, termMention));
+            LOGGER.debug("Saving term mention '%s':%s:%s (%d:%d)", termMention.getSign(), termMention.getOntologyClassUri(), termMention.getPropertyKey(), termMention.getStart(), termMention.getEnd());
+            Concept concept = getConcept(conceptsByIri, termMention.getOntologyClassUri());
+            if (concept == null) {
+                LOGGER.error("Could not find ontology graph vertex '%s'", termMention.getOntologyClassUri());
+                continue;
+            }
+            savedTermMentions.add(termMention);
+            termMentionModels.add(createTermMentionModel(artifactGraphVertex, termMention, concept));
+            termMentionEntities.add(termMention.isResolved() ? addToResolvedEntity(resolvedEntities, termMention, concept) : null);
+        }
+
+        findExistingVertices(resolvedEntities.values());
+        Map<Object, Edge> existingEdgesByVertexId = getRawHasEntityEdgesByVertexId(artifactGraphVertex);
+        for (ResolvedEntity resolvedEntity : resolvedEntities.values()) {
+            saveResolvedEntity(artifactGraphVertex, resolvedEntity, existingEdgesByVertexId);
+        }
+
+        List<TermMentionWithGraphVertex> results = new ArrayList<TermMentionWithGraphVertex>(termMentionModels.size());
+        for (int i = 0; i < termMentionModels.size(); i++) {
+            TermMentionModel termMentionModel = termMentionModels.get(i);
+            ResolvedEntity resolvedEntity = termMentionEntities.get(i);
+            Vertex vertex = null;
+            if (resolvedEntity != null) {
+                vertex = resolvedEntity.vertex;
+                Visibility visibility = savedTermMentions.get(i).getVisibility();
+                termMentionModel.getMetadata()
+                        .setVertexId(vertex.getId().toString(), visibility)
+                        .setEdgeId(resolvedEntity.edge.getId().toString(), visibility);
+            }
+            results.add(new TermMentionWithGraphVertex(termMentionModel, vertex));
+        }
+        getTermMentionRepository().saveMany(termMentionModels);
+        if (termMentionModels.size() > 0) {
+            // rendered highlighted text is cached by the web app until the text is reported as updated
+            getTermMentionRepository().flush();
+            graph.flush();
+            getWorkQueueRepository().pushTextUpdated(artifactGraphVertex.getId().toString());
         }
         return results;
     }
 
-    private TermMentionWithGraphVertex saveTermMention(Vertex artifactGraphVertex, TermMention termMention) {
-        LOGGER.debug("Saving term mention '%s':%s:%s (%d:%d)", termMention.getSign(), termMention.getOntologyClassUri(), termMention.getPropertyKey(), termMention.getStart(), termMention.getEnd());
-        Vertex vertex = null;
+    private Concept getConcept(Map<String, Concept> conceptsByIri, String iri) {
+        if (conceptsByIri.containsKey(iri)) {
+            return conceptsByIri.get(iri);
+        }
+        Concept concept = ontologyRepository.getConceptByIRI(iri);
+        conceptsByIri.put(iri, concept);
+        return concept;
+    }
+
+    private TermMentionModel createTermMentionModel(Vertex artifactGraphVertex, TermMention termMention, Concept concept) {
         TermMentionModel termMentionModel = new TermMentionModel(new TermMentionRowKey(artifactGraphVertex.getId().toString(), termMention.getPropertyKey(), termMention.getStart(), termMention.getEnd()));
         termMentionModel.getMetadata().setSign(termMention.getSign(), termMention.getVisibility());
         termMentionModel.getMetadata().setOntologyClassUri(termMention.getOntologyClassUri(), termMention.getVisibility());
         if (termMention.getProcess() != null && !termMention.getProcess().equals("")) {
             termMentionModel.getMetadata().setAnalyticProcess(termMention.getProcess(), termMention.getVisibility());
         }
+        termMentionModel.getMetadata().setConceptGraphVertexId(concept.getTitle(), termMention.getVisibility());
+        return termMentionModel;
+    }
 
-        Concept concept = ontologyRepository.getConceptByIRI(termMention.getOntologyClassUri());
-        if (concept == null) {
-            LOGGER.error("Could not find ontology graph vertex '%s'", termMention.getOntologyClassUri());
-            return null;
+    private ResolvedEntity addToResolvedEntity(Map<String, ResolvedEntity> resolvedEntities, TermMention termMention, Concept concept) {
+        String key;
+        if (termMention.getId() != null) {
+            key = "id\u001f" + termMention.getId();
+        } else if (termMention.getUseExisting()) {
+            key = "title\u001f" + concept.getTitle() + "\u001f" + termMention.getSign();
+        } else {
+            key = "new\u001f" + resolvedEntities.size();
         }
-        termMentionModel.getMetadata().setConceptGraphVertexId(concept.getTitle(), termMention.getVisibility());
+        ResolvedEntity resolvedEntity = resolvedEntities.get(key);
+        if (resolvedEntity == null) {
+            resolvedEntity = new ResolvedEntity(concept, termMention);
+            resolvedEntities.put(key, resolvedEntity);
+        }
+        resolvedEntity.termMentions.add(termMention);
+        return resolvedEntity;
+    }
+
+    private void findExistingVertices(Collection<ResolvedEntity> resolvedEntities) {
+        List<Object> ids = new ArrayList<Object>();
+        Map<String, Map<String, List<ResolvedEntity>>> byConceptAndTitle = new HashMap<String, Map<String, List<ResolvedEntity>>>();
+        for (ResolvedEntity resolvedEntity : resolvedEntities) {
+            if (!resolvedEntity.useExisting) {
+                continue;
+            }
+            if (resolvedEntity.id != null) {
+                ids.add(resolvedEntity.id);
+                continue;
+            }
+            Map<String, List<ResolvedEntity>> byTitle = byConceptAndTitle.get(resolvedEntity.concept.getTitle());
+            if (byTitle == null) {
+                byTitle = new HashMap<String, List<ResolvedEntity>>();
+                byConceptAndTitle.put(resolvedEntity.concept.getTitle(), byTitle);
+            }
+            List<ResolvedEntity> titleEntities = byTitle.get(resolvedEntity.title);
+            if (titleEntities == null) {
+                titleEntities = new ArrayList<ResolvedEntity>();
+                byTitle.put(resolvedEntity.title, titleEntities);
+            }
+            titleEntities.add(resolvedEntity);
+        }
+        if (ids.size() == 0 && byConceptAndTitle.size() == 0) {
+            return;
+        }
+
+        graph.flush(); // make sure previously saved term mentions have made it into the graph
 
-        if (termMention.isResolved()) {
-            String title = termMention.getSign();
-            ElementMutation<Vertex> vertexElementMutation;
-            if (termMention.getUseExisting()) {
-                graph.flush(); // make sure the previous term mentions have made it into the graph
-                if (termMention.getId() != null) {
-                    vertex = graph.getVertex(termMention.getId(), getAuthorizations());
-                } else {
-                    vertex = trySingle(graph.query(getAuthorizations())
-                            .has(LumifyProperties.TITLE.getKey(), title)
-                            .has(OntologyLumifyProperties.CONCEPT_TYPE.getKey(), concept.getTitle())
-                            .vertices());
+        if (ids.size() > 0) {
+            Map<Object, Vertex> verticesById = new HashMap<Object, Vertex>();
+            for (Vertex vertex : graph.getVertices(ids, getAuthorizations())) {
+                verticesById.put(vertex.getId(), vertex);
+            }
+            for (ResolvedEntity resolvedEntity : resolvedEntities) {
+                if (resolvedEntity.useExisting && resolvedEntity.id != null) {
+                    resolvedEntity.vertex = verticesById.get(resolvedEntity.id);
                 }
             }
-            JSONObject visibilityJson = new JSONObject();
-            visibilityJson.put(VisibilityTranslator.JSON_SOURCE, termMention.getVisibility().toString());
+        }
 
-            Map<String, Object> metadata = new HashMap<String, Object>();
-            LumifyVisibilityProperties.VISIBILITY_JSON_PROPERTY.setMetadata(metadata, visibilityJson);
+        for (Map.Entry<String, Map<String, List<ResolvedEntity>>> conceptEntry : byConceptAndTitle.entrySet()) {
+            List<String> titles = new ArrayList<String>(conceptEntry.getValue().keySet());
+            for (int i = 0; i < titles.size(); i += EXISTING_VERTEX_QUERY_BATCH_SIZE) {
+                List<String> batchTitles = titles.subList(i, Math.min(titles.size(), i + EXISTING_VERTEX_QUERY_BATCH_SIZE));
+                findExistingVerticesByTitle(conceptEntry.getKey(), batchTitles, conceptEntry.getValue());
+            }
+        }
+    }
 
-            if (vertex == null) {
-                if (termMention.getId() != null) {
-                    vertexElementMutation = graph.prepareVertex(termMention.getId(), termMention.getVisibility(), getAuthorizations());
-                } else {
-                    vertexElementMutation = graph.prepareVertex(termMention.getVisibility(), getAuthorizations());
+    /**
+     * A title which matches more than one vertex is treated as not found, the same as looking up a single title.
+     */
+    private void findExistingVerticesByTitle(String conceptType, List<String> titles, Map<String, List<ResolvedEntity>> entitiesByTitle) {
+        Iterable<Vertex> vertices = graph.query(getAuthorizations())
+                .has(LumifyProperties.TITLE.getKey(), Compare.IN, titles.toArray(new String[titles.size()]))
+                .has(OntologyLumifyProperties.CONCEPT_TYPE.getKey(), conceptType)
+                .vertices();
+        Set<String> batchTitles = new HashSet<String>(titles);
+        Map<String, Vertex> verticesByTitle = new HashMap<String, Vertex>();
+        Set<String> ambiguousTitles = new HashSet<String>();
+        for (Vertex vertex : vertices) {
+            for (String title : LumifyProperties.TITLE.getPropertyValues(vertex)) {
+                if (!batchTitles.contains(title)) {
+                    continue;
                 }
-                LumifyProperties.TITLE.setProperty(vertexElementMutation, title, metadata, termMention.getVisibility());
-                OntologyLumifyProperties.CONCEPT_TYPE.setProperty(vertexElementMutation, concept.getTitle(), metadata, termMention.getVisibility());
+                Vertex existingVertex = verticesByTitle.get(title);
+                if (existingVertex != null && !existingVertex.getId().equals(vertex.getId())) {
+                    ambiguousTitles.add(title);
+                }
+                verticesByTitle.put(title, vertex);
+            }
+        }
+        for (Map.Entry<String, Vertex> vertexEntry : verticesByTitle.entrySet()) {
+            if (ambiguousTitles.contains(vertexEntry.getKey())) {
+                continue;
+            }
+            for (ResolvedEntity resolvedEntity : entitiesByTitle.get(vertexEntry.getKey())) {
+                resolvedEntity.vertex = vertexEntry.getValue();
+            }
+        }
+    }
+
+    private Map<Object, Edge> getRawHasEntityEdgesByVertexId(Vertex artifactGraphVertex) {
+        Map<Object, Edge> edgesByVertexId = new HashMap<Object, Edge>();
+        for (Edge edge : artifactGraphVertex.getEdges(Direction.OUT, LabelName.RAW_HAS_ENTITY.toString(), getAuthorizations())) {
+            edgesByVertexId.put(edge.getVertexId(Direction.IN), edge);
+        }
+        return edgesByVertexId;
+    }
+
+    private void saveResolvedEntity(Vertex artifactGraphVertex, ResolvedEntity resolvedEntity, Map<Object, Edge> existingEdgesByVertexId) {
+        TermMention firstTermMention = resolvedEntity.termMentions.get(0);
+        Vertex vertex = resolvedEntity.vertex;
+        ElementMutation<Vertex> vertexElementMutation;
+        if (vertex == null) {
+            if (resolvedEntity.id != null) {
+                vertexElementMutation = graph.prepareVertex(resolvedEntity.id, firstTermMention.getVisibility(), getAuthorizations());
             } else {
-                vertexElementMutation = vertex.prepareMutation();
+                vertexElementMutation = graph.prepareVertex(firstTermMention.getVisibility(), getAuthorizations());
             }
+            Map<String, Object> metadata = createTermMentionPropertyMetadata(firstTermMention);
+            LumifyProperties.TITLE.setProperty(vertexElementMutation, resolvedEntity.title, metadata, firstTermMention.getVisibility());
+            OntologyLumifyProperties.CONCEPT_TYPE.setProperty(vertexElementMutation, resolvedEntity.concept.getTitle(), metadata, firstTermMention.getVisibility());
+        } else {
+            vertexElementMutation = vertex.prepareMutation();
+        }
 
+        for (TermMention termMention : resolvedEntity.termMentions) {
             if (termMention.getPropertyValue() != null) {
+                Map<String, Object> metadata = createTermMentionPropertyMetadata(termMention);
                 Map<String, Object> properties = termMention.getPropertyValue();
                 for (String key : properties.keySet()) {
                     // TODO should we wrap these properties in secure graph Text classes?
@@ -236,29 +402,84 @@ public abstract class GraphPropertyWorker {
                     vertexElementMutation.setProperty(key, properties.get(key), metadata, termMention.getVisibility());
                 }
             }
+        }
 
-            if (!(vertexElementMutation instanceof ExistingElementMutation)) {
-                vertex = vertexElementMutation.save();
-                auditRepository.auditVertexElementMutation(AuditAction.UPDATE, vertexElementMutation, vertex, termMention.getProcess(), getUser(), termMention.getVisibility());
-            } else {
-                auditRepository.auditVertexElementMutation(AuditAction.UPDATE, vertexElementMutation, vertex, termMention.getProcess(), getUser(), termMention.getVisibility());
-                vertex = vertexElementMutation.save();
-            }
+        if (!(vertexElementMutation instanceof ExistingElementMutation)) {
+            vertex = vertexElementMutation.save();
+            auditRepository.auditVertexElementMutation(AuditAction.UPDATE, vertexElementMutation, vertex, firstTermMention.getProcess(), getUser(), firstTermMention.getVisibility());
+        } else {
+            auditRepository.auditVertexElementMutation(AuditAction.UPDATE, vertexElementMutation, vertex, firstTermMention.getProcess(), getUser(), firstTermMention.getVisibility());
+            vertex = vertexElementMutation.save();
+        }
+
+        Edge edge = existingEdgesByVertexId.get(vertex.getId());
+        if (edge == null) {
+            edge = graph.addEdge(artifactGraphVertex, vertex, LabelName.RAW_HAS_ENTITY.toString(), firstTermMention.getVisibility(), getAuthorizations());
+            auditRepository.auditRelationship(AuditAction.CREATE, artifactGraphVertex, vertex, edge, firstTermMention.getProcess(), "", getUser(), firstTermMention.getVisibility());
+            existingEdgesByVertexId.put(vertex.getId(), edge);
+        }
+
+        resolvedEntity.vertex = vertex;
+        resolvedEntity.edge = edge;
+    }
+
+    private Map<String, Object> createTermMentionPropertyMetadata(TermMention termMention) {
+        JSONObject visibilityJson = new JSONObject();
+        visibilityJson.put(VisibilityTranslator.JSON_SOURCE, termMention.getVisibility().toString());
+
+        Map<String, Object> metadata = new HashMap<String, Object>();
+        LumifyVisibilityProperties.VISIBILITY_JSON_PROPERTY.setMetadata(metadata, visibilityJson);
+        return metadata;
+    }
+
+    /**
+     * The start and end offsets of a term mention.
+     */
+    private static class Offsets {
+        private final long start;
+        private final long end;
+
+        public Offsets(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
 
-            // TODO: a better way to check if the same edge exists instead of looking it up every time?
-            Edge edge = trySingle(artifactGraphVertex.getEdges(vertex, Direction.OUT, LabelName.RAW_HAS_ENTITY.toString(), getAuthorizations()));
-            if (edge == null) {
-                edge = graph.addEdge(artifactGraphVertex, vertex, LabelName.RAW_HAS_ENTITY.toString(), termMention.getVisibility(), getAuthorizations());
-                auditRepository.auditRelationship(AuditAction.CREATE, artifactGraphVertex, vertex, edge, termMention.getProcess(), "", getUser(), termMention.getVisibility());
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
             }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Offsets offsets = (Offsets) o;
+            return start == offsets.start && end == offsets.end;
+        }
 
-            termMentionModel.getMetadata()
-                    .setVertexId(vertex.getId().toString(), termMention.getVisibility())
-                    .setEdgeId(edge.getId().toString(), termMention.getVisibility());
+        @Override
+        public int hashCode() {
+            return 31 * (int) (start ^ (start >>> 32)) + (int) (end ^ (end >>> 32));
         }
+    }
 
-        getTermMentionRepository().save(termMentionModel, FlushFlag.NO_FLUSH);
-        return new TermMentionWithGraphVertex(termMentionModel, vertex);
+    /**
+     * The term mentions in a document which resolve to the same graph vertex.
+     */
+    private static class ResolvedEntity {
+        private final Concept concept;
+        private final String title;
+        private final Object id;
+        private final boolean useExisting;
+        private final List<TermMention> termMentions = new ArrayList<TermMention>();
+        private Vertex vertex;
+        private Edge edge;
+
+        public ResolvedEntity(Concept concept, TermMention termMention) {
+            this.concept = concept;
+            this.title = termMention.getSign();
+            this.id = termMention.getId();
+            this.useExisting = termMention.getUseExisting();
+        }
     }
 
     public static class TermMentionWithGraphVertex {
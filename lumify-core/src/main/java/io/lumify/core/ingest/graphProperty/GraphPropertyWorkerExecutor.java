@@ -0,0 +1,31 @@
+package io.lumify.core.ingest.graphProperty;
+
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.Future;
+
+/**
+ * Runs the interested {@link GraphPropertyWorker}s for a single graph property. All workers for one property
+ * must be allowed to run at the same time since they may be reading from the same
+ * {@link io.lumify.core.util.RingBufferTeeInputStream}. The implementation is chosen with the
+ * {@link #CONFIGURATION_PREFIX} configuration property and is created through the injector so a
+ * <code>@Singleton</code> implementation is shared by every bolt in the JVM.
+ */
+public abstract class GraphPropertyWorkerExecutor {
+    public static final String CONFIGURATION_PREFIX = "graphProperty.executor";
+
+    /**
+     * @param workerWrappers the workers to run
+     * @param ins            the input stream for each worker, in the same order as the workers. Entries may be null.
+     * @param data           the work data shared by the workers
+     * @return a future for each worker, in the same order as the workers
+     */
+    public abstract List<Future<GraphPropertyThreadedWrapper.WorkResult>> submit(
+            List<GraphPropertyThreadedWrapper> workerWrappers,
+            List<InputStream> ins,
+            GraphPropertyWorkData data) throws InterruptedException;
+
+    public void shutdown() {
+
+    }
+}
@@ -0,0 +1,142 @@
+package io.lumify.core.ingest.graphProperty;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import io.lumify.core.config.Configuration;
+import io.lumify.core.util.LumifyLogger;
+import io.lumify.core.util.LumifyLoggerFactory;
+
+import java.io.InputStream;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Runs workers on a pool of threads shared by all bolts in the JVM. Threads are created on demand and exit after
+ * being idle so idle workers do not hold a thread.
+ * <p/>
+ * The number of workers running at once is bounded by <code>graphProperty.executor.maxThreads</code> and can be
+ * bounded per worker class with <code>graphProperty.executor.maxConcurrent.[worker class name]</code>. Permits for
+ * all of a property's workers are acquired before any of them start, in a fixed order, so two properties can never
+ * each hold part of what the other needs.
+ */
+@Singleton
+public class ThreadPoolGraphPropertyWorkerExecutor extends GraphPropertyWorkerExecutor {
+    private static final LumifyLogger LOGGER = LumifyLoggerFactory.getLogger(ThreadPoolGraphPropertyWorkerExecutor.class);
+    public static final String MAX_THREADS = CONFIGURATION_PREFIX + ".maxThreads";
+    public static final String MAX_CONCURRENT_PREFIX = CONFIGURATION_PREFIX + ".maxConcurrent";
+    public static final int DEFAULT_MAX_THREADS = 64;
+    private static final long IDLE_THREAD_TIMEOUT_SECONDS = 60;
+    private final int maxThreads;
+    private final Semaphore threadPermits;
+    private final Map<String, Semaphore> workerPermits = new HashMap<String, Semaphore>();
+    private final ExecutorService executorService;
+
+    @Inject
+    public ThreadPoolGraphPropertyWorkerExecutor(Configuration configuration) {
+        this.maxThreads = configuration.getInt(MAX_THREADS, DEFAULT_MAX_THREADS);
+        checkArgument(this.maxThreads > 0, MAX_THREADS + " must be greater than 0");
+        this.threadPermits = new Semaphore(this.maxThreads, true);
+        for (Map.Entry<String, String> maxConcurrent : configuration.getSubset(MAX_CONCURRENT_PREFIX).entrySet()) {
+            int permits = Integer.parseInt(maxConcurrent.getValue());
+            checkArgument(permits > 0, MAX_CONCURRENT_PREFIX + "." + maxConcurrent.getKey() + " must be greater than 0");
+            this.workerPermits.put(maxConcurrent.getKey(), new Semaphore(permits, true));
+        }
+        this.executorService = new ThreadPoolExecutor(
+                0, Integer.MAX_VALUE,
+                IDLE_THREAD_TIMEOUT_SECONDS, TimeUnit.SECONDS,
+                new SynchronousQueue<Runnable>(),
+                new WorkerThreadFactory());
+    }
+
+    @Override
+    public List<Future<GraphPropertyThreadedWrapper.WorkResult>> submit(
+            List<GraphPropertyThreadedWrapper> workerWrappers,
+            List<InputStream> ins,
+            final GraphPropertyWorkData data) throws InterruptedException {
+        checkArgument(workerWrappers.size() == ins.size(), "expected one input stream per worker");
+
+        int threadPermitCount = Math.min(workerWrappers.size(), this.maxThreads);
+        if (threadPermitCount < workerWrappers.size()) {
+            LOGGER.warn("%d workers requested but %s is %d. Running all of them anyway.", workerWrappers.size(), MAX_THREADS, this.maxThreads);
+        }
+        this.threadPermits.acquire(threadPermitCount);
+        List<Semaphore> acquiredWorkerPermits = new ArrayList<Semaphore>();
+        try {
+            for (Semaphore workerPermit : getWorkerPermitsInAcquireOrder(workerWrappers)) {
+                workerPermit.acquire();
+                acquiredWorkerPermits.add(workerPermit);
+            }
+        } catch (InterruptedException ex) {
+            release(acquiredWorkerPermits);
+            this.threadPermits.release(threadPermitCount);
+            throw ex;
+        }
+
+        List<Future<GraphPropertyThreadedWrapper.WorkResult>> results = new ArrayList<Future<GraphPropertyThreadedWrapper.WorkResult>>(workerWrappers.size());
+        for (int i = 0; i < workerWrappers.size(); i++) {
+            final GraphPropertyThreadedWrapper workerWrapper = workerWrappers.get(i);
+            final InputStream in = ins.get(i);
+            final boolean holdsThreadPermit = i < threadPermitCount;
+            final Semaphore workerPermit = this.workerPermits.get(workerWrapper.getWorker().getClass().getName());
+            results.add(this.executorService.submit(new Callable<GraphPropertyThreadedWrapper.WorkResult>() {
+                @Override
+                public GraphPropertyThreadedWrapper.WorkResult call() throws Exception {
+                    try {
+                        return workerWrapper.run(in, data);
+                    } finally {
+                        if (workerPermit != null) {
+                            workerPermit.release();
+                        }
+                        if (holdsThreadPermit) {
+                            threadPermits.release();
+                        }
+                    }
+                }
+            }));
+        }
+        return results;
+    }
+
+    private List<Semaphore> getWorkerPermitsInAcquireOrder(List<GraphPropertyThreadedWrapper> workerWrappers) {
+        List<String> workerClassNames = new ArrayList<String>();
+        for (GraphPropertyThreadedWrapper workerWrapper : workerWrappers) {
+            workerClassNames.add(workerWrapper.getWorker().getClass().getName());
+        }
+        Collections.sort(workerClassNames);
+
+        List<Semaphore> results = new ArrayList<Semaphore>();
+        for (String workerClassName : workerClassNames) {
+            Semaphore workerPermit = this.workerPermits.get(workerClassName);
+            if (workerPermit != null) {
+                results.add(workerPermit);
+            }
+        }
+        return results;
+    }
+
+    private static void release(List<Semaphore> semaphores) {
+        for (Semaphore semaphore : semaphores) {
+            semaphore.release();
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        this.executorService.shutdown();
+    }
+
+    private static class WorkerThreadFactory implements ThreadFactory {
+        private final AtomicInteger threadNumber = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable);
+            thread.setName("graphPropertyWorker-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package io.lumify.core.model.ontology;
+
+import java.util.*;
+
+/**
+ * An immutable index of the concept hierarchy built from one read of the ontology. Repositories build a new
+ * instance when the ontology changes and swap it in, so lookups never read the ontology graph.
+ */
+public class ConceptHierarchy {
+    private final Map<String, Concept> conceptsByIRI;
+    private final Map<String, List<String>> childIRIsByIRI;
+    private final Map<String, List<String>> descendantIRIsByIRI;
+    private final Map<String, List<String>> ancestorIRIsByIRI;
+
+    public ConceptHierarchy(Iterable<Concept> concepts) {
+        Map<String, Concept> conceptsByIRI = new HashMap<String, Concept>();
+        for (Concept concept : concepts) {
+            conceptsByIRI.put(concept.getTitle(), concept);
+        }
+
+        Map<String, List<String>> childIRIsByIRI = new HashMap<String, List<String>>();
+        for (Concept concept : conceptsByIRI.values()) {
+            String parentIRI = concept.getParentConceptIRI();
+            if (parentIRI == null || !conceptsByIRI.containsKey(parentIRI)) {
+                continue;
+            }
+            List<String> childIRIs = childIRIsByIRI.get(parentIRI);
+            if (childIRIs == null) {
+                childIRIs = new ArrayList<String>();
+                childIRIsByIRI.put(parentIRI, childIRIs);
+            }
+            childIRIs.add(concept.getTitle());
+        }
+
+        Map<String, List<String>> descendantIRIsByIRI = new HashMap<String, List<String>>();
+        Map<String, List<String>> ancestorIRIsByIRI = new HashMap<String, List<String>>();
+        for (String conceptIRI : conceptsByIRI.keySet()) {
+            descendantIRIsByIRI.put(conceptIRI, Collections.unmodifiableList(findConceptAndDescendantIRIs(conceptIRI, childIRIsByIRI)));
+            ancestorIRIsByIRI.put(conceptIRI, Collections.unmodifiableList(findAncestorIRIs(conceptIRI, conceptsByIRI)));
+        }
+        for (Map.Entry<String, List<String>> childIRIs : childIRIsByIRI.entrySet()) {
+            childIRIs.setValue(Collections.unmodifiableList(childIRIs.getValue()));
+        }
+
+        this.conceptsByIRI = conceptsByIRI;
+        this.childIRIsByIRI = childIRIsByIRI;
+        this.descendantIRIsByIRI = descendantIRIsByIRI;
+        this.ancestorIRIsByIRI = ancestorIRIsByIRI;
+    }
+
+    private static List<String> findConceptAndDescendantIRIs(String conceptIRI, Map<String, List<String>> childIRIsByIRI) {
+        List<String> results = new ArrayList<String>();
+        Set<String> seen = new HashSet<String>();
+        LinkedList<String> queue = new LinkedList<String>();
+        queue.add(conceptIRI);
+        while (queue.size() > 0) {
+            String iri = queue.removeFirst();
+            if (!seen.add(iri)) {
+                continue;
+            }
+            results.add(iri);
+            List<String> childIRIs = childIRIsByIRI.get(iri);
+            if (childIRIs != null) {
+                queue.addAll(childIRIs);
+            }
+        }
+        return results;
+    }
+
+    private static List<String> findAncestorIRIs(String conceptIRI, Map<String, Concept> conceptsByIRI) {
+        List<String> results = new ArrayList<String>();
+        Set<String> seen = new HashSet<String>();
+        seen.add(conceptIRI);
+        String parentIRI = conceptsByIRI.get(conceptIRI).getParentConceptIRI();
+        while (parentIRI != null && conceptsByIRI.containsKey(parentIRI) && seen.add(parentIRI)) {
+            results.add(parentIRI);
+            parentIRI = conceptsByIRI.get(parentIRI).getParentConceptIRI();
+        }
+        return results;
+    }
+
+    public Concept getConcept(String conceptIRI) {
+        return conceptsByIRI.get(conceptIRI);
+    }
+
+    public Concept getParentConcept(Concept concept) {
+        Concept indexedConcept = getConcept(concept.getTitle());
+        if (indexedConcept == null || indexedConcept.getParentConceptIRI() == null) {
+            return null;
+        }
+        return getConcept(indexedConcept.getParentConceptIRI());
+    }
+
+    public List<String> getChildIRIs(String conceptIRI) {
+        List<String> childIRIs = childIRIsByIRI.get(conceptIRI);
+        return childIRIs == null ? Collections.<String>emptyList() : childIRIs;
+    }
+
+    /**
+     * @return the concept followed by all of its descendants, or an empty list if the concept is not known.
+     */
+    public List<String> getConceptAndDescendantIRIs(String conceptIRI) {
+        List<String> iris = descendantIRIsByIRI.get(conceptIRI);
+        return iris == null ? Collections.<String>emptyList() : iris;
+    }
+
+    /**
+     * @return the ancestors of the concept starting with its parent.
+     */
+    public List<String> getAncestorIRIs(String conceptIRI) {
+        List<String> iris = ancestorIRIsByIRI.get(conceptIRI);
+        return iris == null ? Collections.<String>emptyList() : iris;
+    }
+
+    public List<Concept> getConcepts(List<String> conceptIRIs) {
+        List<Concept> concepts = new ArrayList<Concept>(conceptIRIs.size());
+        for (String conceptIRI : conceptIRIs) {
+            concepts.add(conceptsByIRI.get(conceptIRI));
+        }
+        return concepts;
+    }
+}
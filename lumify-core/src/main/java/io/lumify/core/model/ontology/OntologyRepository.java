@@ -45,6 +45,8 @@ public interface OntologyRepository {
 
     List<Concept> getAllLeafNodesByConcept(Concept concept);
 
+    ConceptHierarchy getConceptHierarchy();
+
     Concept getOrCreateConcept(Concept parent, String conceptIRI, String displayName);
 
     Relationship getOrCreateRelationshipType(Concept from, Concept to, String relationshipIRI, String displayName);
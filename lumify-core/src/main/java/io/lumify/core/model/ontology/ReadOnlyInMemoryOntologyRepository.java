@@ -12,7 +12,6 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.securegraph.util.ConvertingIterable;
-import org.semanticweb.owlapi.apibinding.OWLManager;
 import org.semanticweb.owlapi.io.OWLOntologyDocumentSource;
 import org.semanticweb.owlapi.io.ReaderDocumentSource;
 import org.semanticweb.owlapi.model.*;
@@ -34,6 +33,7 @@ public class ReadOnlyInMemoryOntologyRepository extends OntologyRepositoryBase {
     private Cache<String, byte[]> fileCache = CacheBuilder.newBuilder()
             .build();
     private OWLOntologyLoaderConfiguration owlConfig;
+    private volatile ConceptHierarchy conceptHierarchy;
 
     public void init(Configuration config) throws Exception {
         Map<String, String> ontologies = config.getSubset(Configuration.ONTOLOGY_REPOSITORY_OWL);
@@ -229,13 +229,7 @@ public class ReadOnlyInMemoryOntologyRepository extends OntologyRepositoryBase {
 
     @Override
     public Concept getParentConcept(Concept concept) {
-        ConcurrentMap<String, InMemoryConcept> conceptConcurrentMap = conceptsCache.asMap();
-        for (String key : conceptConcurrentMap.keySet()) {
-            if (key.equals(concept.getParentConceptIRI())) {
-                return conceptConcurrentMap.get(key);
-            }
-        }
-        return null;
+        return getConceptHierarchy().getParentConcept(concept);
     }
 
     @Override
@@ -251,41 +245,27 @@ public class ReadOnlyInMemoryOntologyRepository extends OntologyRepositoryBase {
 
     @Override
     public List<Concept> getConceptAndChildrenByIRI(String conceptIRI) {
+        ConceptHierarchy hierarchy = getConceptHierarchy();
         List<Concept> concepts = new ArrayList<Concept>();
-        concepts.add(conceptsCache.asMap().get(conceptIRI));
-        OWLOntologyManager m = OWLManager.createOWLOntologyManager();
-        try {
-            List<OWLOntology> owlOntologyList = loadOntologyFiles(m, owlConfig, null);
-            OWLClass owlClass = m.getOWLDataFactory().getOWLClass(IRI.create(conceptIRI));
-            for (OWLClassExpression child : owlClass.getSubClasses(new HashSet<OWLOntology>(owlOntologyList))) {
-                InMemoryConcept inMemoryConcept = conceptsCache.asMap().get(child.asOWLClass().getIRI().toString());
-                concepts.add(inMemoryConcept);
-            }
-        } catch (Exception e) {
-            throw new LumifyException("could not load ontology files");
-        }
-
-
+        concepts.add(hierarchy.getConcept(conceptIRI));
+        concepts.addAll(hierarchy.getConcepts(hierarchy.getChildIRIs(conceptIRI)));
         return concepts;
     }
 
     @Override
     public List<Concept> getAllLeafNodesByConcept(Concept concept) {
-        List<Concept> concepts = new ArrayList<Concept>();
-        OWLOntologyManager m = OWLManager.createOWLOntologyManager();
+        ConceptHierarchy hierarchy = getConceptHierarchy();
+        return hierarchy.getConcepts(hierarchy.getConceptAndDescendantIRIs(concept.getTitle()));
+    }
 
-        try {
-            List<OWLOntology> owlOntologyList = loadOntologyFiles(m, owlConfig, null);
-            OWLClass owlClass = m.getOWLDataFactory().getOWLClass(IRI.create(((InMemoryConcept) concept).getConceptIRI()));
-            for (OWLClassExpression child : owlClass.getSubClasses(new HashSet<OWLOntology>(owlOntologyList))) {
-                InMemoryConcept inMemoryConcept = conceptsCache.asMap().get(child.asOWLClass().getIRI().toString());
-                concepts.add(inMemoryConcept);
-            }
-        } catch (Exception e) {
-            throw new LumifyException("could not load ontology files");
+    @Override
+    public ConceptHierarchy getConceptHierarchy() {
+        ConceptHierarchy hierarchy = conceptHierarchy;
+        if (hierarchy == null) {
+            hierarchy = new ConceptHierarchy(getConcepts());
+            conceptHierarchy = hierarchy;
         }
-
-        return concepts;
+        return hierarchy;
     }
 
     @Override
@@ -307,6 +287,7 @@ public class ReadOnlyInMemoryOntologyRepository extends OntologyRepositoryBase {
         concept.setTitle(conceptIRI);
         concept.setDisplayName(displayName);
         conceptsCache.put(conceptIRI, concept);
+        conceptHierarchy = null;
 
         return concept;
     }
@@ -0,0 +1,128 @@
+package io.lumify.core.model.workQueue;
+
+import io.lumify.core.util.LumifyLogger;
+import io.lumify.core.util.LumifyLoggerFactory;
+import org.json.JSONObject;
+import org.securegraph.Element;
+
+import java.util.*;
+
+/**
+ * Holds broadcasts for a short window and merges those about the same element, so a burst of changes to one
+ * element, e.g. while a document is ingested, is sent as one message. Property changes of an element are merged
+ * into one list of changed property keys and names and the message is built from the latest element when the window
+ * ends. Other messages keyed by element replace the pending message with the same key. A window of zero or less
+ * broadcasts everything as it is added.
+ */
+public abstract class BroadcastCoalescer {
+    private static final LumifyLogger LOGGER = LumifyLoggerFactory.getLogger(BroadcastCoalescer.class);
+    private final long windowMillis;
+    private final Map<String, Pending> pending = new LinkedHashMap<String, Pending>();
+    private Timer timer;
+    private boolean flushScheduled;
+
+    public BroadcastCoalescer(long windowMillis) {
+        this.windowMillis = windowMillis;
+    }
+
+    public void addPropertyChanges(Element element, List<GraphPropertyQueueItem> items) {
+        if (windowMillis <= 0) {
+            broadcast(createPropertyChangeJson(element, items));
+            return;
+        }
+        String key = "propertiesChange:" + element.getId();
+        synchronized (pending) {
+            Pending p = pending.get(key);
+            if (p == null) {
+                p = new Pending();
+                pending.put(key, p);
+            }
+            p.element = element;
+            for (GraphPropertyQueueItem item : items) {
+                p.addItem(element, item);
+            }
+            scheduleFlush();
+        }
+    }
+
+    /**
+     * @param key messages added with the same key within the window are sent once, the last one added.
+     */
+    public void add(String key, JSONObject json) {
+        if (windowMillis <= 0) {
+            broadcast(json);
+            return;
+        }
+        synchronized (pending) {
+            Pending p = pending.remove(key);
+            if (p == null) {
+                p = new Pending();
+            }
+            p.json = json;
+            pending.put(key, p);
+            scheduleFlush();
+        }
+    }
+
+    public void flush() {
+        List<Pending> toSend;
+        synchronized (pending) {
+            toSend = new ArrayList<Pending>(pending.values());
+            pending.clear();
+            flushScheduled = false;
+        }
+        for (Pending p : toSend) {
+            try {
+                if (p.json != null) {
+                    broadcast(p.json);
+                } else {
+                    broadcast(createPropertyChangeJson(p.element, new ArrayList<GraphPropertyQueueItem>(p.items.values())));
+                }
+            } catch (Exception ex) {
+                LOGGER.error("Could not broadcast coalesced change", ex);
+            }
+        }
+    }
+
+    public void shutdown() {
+        synchronized (pending) {
+            if (timer != null) {
+                timer.cancel();
+                timer = null;
+            }
+        }
+        flush();
+    }
+
+    private void scheduleFlush() {
+        if (flushScheduled) {
+            return;
+        }
+        if (timer == null) {
+            timer = new Timer("broadcast-coalescer", true);
+        }
+        timer.schedule(new TimerTask() {
+            @Override
+            public void run() {
+                flush();
+            }
+        }, windowMillis);
+        flushScheduled = true;
+    }
+
+    protected abstract JSONObject createPropertyChangeJson(Element element, List<GraphPropertyQueueItem> items);
+
+    protected abstract void broadcast(JSONObject json);
+
+    private static class Pending {
+        private Element element;
+        private final Map<String, GraphPropertyQueueItem> items = new LinkedHashMap<String, GraphPropertyQueueItem>();
+        private JSONObject json;
+
+        public void addItem(Element element, GraphPropertyQueueItem item) {
+            String itemKey = item.getPropertyKey() + "\u001f" + item.getPropertyName();
+            items.remove(itemKey);
+            items.put(itemKey, new GraphPropertyQueueItem(element, item.getPropertyKey(), item.getPropertyName()));
+        }
+    }
+}
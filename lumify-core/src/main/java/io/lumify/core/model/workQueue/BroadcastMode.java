@@ -0,0 +1,21 @@
+package io.lumify.core.model.workQueue;
+
+/**
+ * Controls how a {@link GraphPropertyQueueBatch} tells the UI about the pushed property changes.
+ */
+public enum BroadcastMode {
+    /**
+     * Do not broadcast the property changes.
+     */
+    NONE,
+
+    /**
+     * Broadcast one message per pushed property, the same as {@link WorkQueueRepository#pushGraphPropertyQueue}.
+     */
+    EACH,
+
+    /**
+     * Broadcast one message per element listing all of that element's pushed properties.
+     */
+    MERGED
+}
@@ -0,0 +1,49 @@
+package io.lumify.core.model.workQueue;
+
+import org.securegraph.Element;
+import org.securegraph.Property;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collects graph property queue pushes and sends them to the queue in groups. Each group costs one graph flush
+ * and one publish call to the queue regardless of its size. Call {@link #flush()} when done to send the remainder.
+ */
+public class GraphPropertyQueueBatch {
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+    private final WorkQueueRepository workQueueRepository;
+    private final BroadcastMode broadcastMode;
+    private final int batchSize;
+    private final List<GraphPropertyQueueItem> items;
+
+    public GraphPropertyQueueBatch(WorkQueueRepository workQueueRepository, BroadcastMode broadcastMode, int batchSize) {
+        this.workQueueRepository = workQueueRepository;
+        this.broadcastMode = broadcastMode;
+        this.batchSize = batchSize;
+        this.items = new ArrayList<GraphPropertyQueueItem>(batchSize);
+    }
+
+    public void push(Element element, Property property) {
+        push(element, property.getKey(), property.getName());
+    }
+
+    public void push(Element element, String propertyKey, String propertyName) {
+        items.add(new GraphPropertyQueueItem(element, propertyKey, propertyName));
+        if (items.size() >= batchSize) {
+            flush();
+        }
+    }
+
+    public void pushElement(Element element) {
+        push(element, null, null);
+    }
+
+    public void flush() {
+        if (items.size() == 0) {
+            return;
+        }
+        workQueueRepository.pushGraphPropertyQueue(items, broadcastMode);
+        items.clear();
+    }
+}
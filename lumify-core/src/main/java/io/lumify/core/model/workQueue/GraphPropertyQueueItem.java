@@ -0,0 +1,27 @@
+package io.lumify.core.model.workQueue;
+
+import org.securegraph.Element;
+
+public class GraphPropertyQueueItem {
+    private final Element element;
+    private final String propertyKey;
+    private final String propertyName;
+
+    public GraphPropertyQueueItem(Element element, String propertyKey, String propertyName) {
+        this.element = element;
+        this.propertyKey = propertyKey;
+        this.propertyName = propertyName;
+    }
+
+    public Element getElement() {
+        return element;
+    }
+
+    public String getPropertyKey() {
+        return propertyKey;
+    }
+
+    public String getPropertyName() {
+        return propertyName;
+    }
+}
@@ -38,7 +38,7 @@ public class NoOpWorkQueueRepository extends WorkQueueRepository {
     }
 
     @Override
-    public void subscribeToBroadcastMessages(BroadcastConsumer broadcastConsumer) {
+    protected void subscribeToBroadcastQueue(BroadcastConsumer broadcastConsumer) {
 
     }
 }
@@ -14,18 +14,45 @@ import org.json.JSONArray;
 import org.json.JSONObject;
 import org.securegraph.*;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
 public abstract class WorkQueueRepository {
     protected static final LumifyLogger LOGGER = LumifyLoggerFactory.getLogger(WorkQueueRepository.class);
     public static final String GRAPH_PROPERTY_QUEUE_NAME = "graphProperty";
+    public static final String BROADCAST_COALESCE_MILLIS = Configuration.WORK_QUEUE_REPOSITORY + ".broadcastCoalesceMillis";
+    public static final int DEFAULT_BROADCAST_COALESCE_MILLIS = 250;
     private final Graph graph;
+    private final List<ElementChangeListener> elementChangeListeners = new CopyOnWriteArrayList<ElementChangeListener>();
+    private final List<BroadcastConsumer> broadcastConsumers = new CopyOnWriteArrayList<BroadcastConsumer>();
+    private boolean subscribedToBroadcastQueue;
+    private boolean listeningForElementChanges;
+    private BroadcastCoalescer broadcastCoalescer;
 
     @Inject
     protected WorkQueueRepository(Graph graph) {
         this.graph = graph;
+        this.broadcastCoalescer = createBroadcastCoalescer(DEFAULT_BROADCAST_COALESCE_MILLIS);
+    }
+
+    private BroadcastCoalescer createBroadcastCoalescer(long windowMillis) {
+        return new BroadcastCoalescer(windowMillis) {
+            @Override
+            protected JSONObject createPropertyChangeJson(Element element, List<GraphPropertyQueueItem> items) {
+                return createBroadcastPropertyChangeJson(element, items);
+            }
+
+            @Override
+            protected void broadcast(JSONObject json) {
+                broadcastJson(json);
+            }
+        };
     }
 
     public void pushGraphPropertyQueue(final Element element, final Property property) {
@@ -35,6 +62,49 @@ public abstract class WorkQueueRepository {
     public void pushGraphPropertyQueue(final Element element, String propertyKey, final String propertyName) {
         getGraph().flush();
         checkNotNull(element);
+        JSONObject data = createGraphPropertyQueueJson(element, propertyKey, propertyName);
+        pushOnQueue(GRAPH_PROPERTY_QUEUE_NAME, FlushFlag.DEFAULT, data);
+        fireElementChanged(element);
+
+        broadcastPropertyChange(element, propertyKey, propertyName);
+    }
+
+    public GraphPropertyQueueBatch createGraphPropertyQueueBatch(BroadcastMode broadcastMode) {
+        return new GraphPropertyQueueBatch(this, broadcastMode, GraphPropertyQueueBatch.DEFAULT_BATCH_SIZE);
+    }
+
+    public void pushGraphPropertyQueue(List<GraphPropertyQueueItem> items, BroadcastMode broadcastMode) {
+        if (items.size() == 0) {
+            return;
+        }
+        getGraph().flush();
+        List<JSONObject> messages = new ArrayList<JSONObject>(items.size());
+        for (GraphPropertyQueueItem item : items) {
+            checkNotNull(item.getElement());
+            messages.add(createGraphPropertyQueueJson(item.getElement(), item.getPropertyKey(), item.getPropertyName()));
+        }
+        pushOnQueue(GRAPH_PROPERTY_QUEUE_NAME, FlushFlag.DEFAULT, messages);
+        for (GraphPropertyQueueItem item : items) {
+            fireElementChanged(item.getElement());
+        }
+
+        switch (broadcastMode) {
+            case NONE:
+                break;
+            case EACH:
+                for (GraphPropertyQueueItem item : items) {
+                    broadcastPropertyChange(item.getElement(), item.getPropertyKey(), item.getPropertyName());
+                }
+                break;
+            case MERGED:
+                broadcastMergedPropertyChanges(items);
+                break;
+            default:
+                throw new LumifyException("Unhandled broadcast mode: " + broadcastMode);
+        }
+    }
+
+    private JSONObject createGraphPropertyQueueJson(Element element, String propertyKey, String propertyName) {
         JSONObject data = new JSONObject();
         if (element instanceof Vertex) {
             data.put("graphVertexId", element.getId());
@@ -45,9 +115,7 @@ public abstract class WorkQueueRepository {
         }
         data.put("propertyKey", propertyKey);
         data.put("propertyName", propertyName);
-        pushOnQueue(GRAPH_PROPERTY_QUEUE_NAME, FlushFlag.DEFAULT, data);
-
-        broadcastPropertyChange(element, propertyKey, propertyName);
+        return data;
     }
 
     public void pushElement(Element element) {
@@ -55,6 +123,9 @@ public abstract class WorkQueueRepository {
     }
 
     public void pushEdgeDeletion(Edge edge) {
+        if (edge != null) {
+            fireEdgeChanged(edge.getId(), edge.getVertexId(Direction.OUT), edge.getVertexId(Direction.IN));
+        }
         broadcastEdgeDeletion(edge);
     }
 
@@ -62,6 +133,8 @@ public abstract class WorkQueueRepository {
         JSONObject dataJson = new JSONObject();
         if (edge != null) {
             dataJson.put("edgeId", edge.getId());
+            dataJson.put("sourceVertexId", edge.getVertexId(Direction.OUT));
+            dataJson.put("destVertexId", edge.getVertexId(Direction.IN));
         }
 
         JSONObject json = new JSONObject();
@@ -75,6 +148,9 @@ public abstract class WorkQueueRepository {
     }
 
     public void pushTextUpdated(String vertexId) {
+        if (vertexId != null) {
+            fireVertexChanged(vertexId);
+        }
         broadcastTextUpdated(vertexId);
     }
 
@@ -87,7 +163,7 @@ public abstract class WorkQueueRepository {
         JSONObject json = new JSONObject();
         json.put("type", "textUpdated");
         json.put("data", dataJson);
-        broadcastJson(json);
+        broadcastCoalescer.add("textUpdated:" + vertexId, json);
     }
 
     protected void broadcastDetectedObjectChange(JSONObject artifactVertexWithDetectedObjects) {
@@ -99,6 +175,37 @@ public abstract class WorkQueueRepository {
         JSONObject json = new JSONObject();
         json.put("type", "detectedObjectChange");
         json.put("data", dataJson);
+        JSONObject artifactVertexJson = dataJson.optJSONObject("artifactVertex");
+        if (artifactVertexJson != null && artifactVertexJson.has("id")) {
+            broadcastCoalescer.add("detectedObjectChange:" + artifactVertexJson.get("id"), json);
+        } else {
+            broadcastJson(json);
+        }
+    }
+
+    /**
+     * @param failures the changes which could not be applied once the job is done, or null while it runs.
+     */
+    public void pushWorkspaceChangesProgress(String jobId, String workspaceId, String action, int processed, int total, JSONArray failures) {
+        broadcastWorkspaceChangesProgress(jobId, workspaceId, action, processed, total, failures);
+    }
+
+    protected void broadcastWorkspaceChangesProgress(String jobId, String workspaceId, String action, int processed, int total, JSONArray failures) {
+        JSONObject dataJson = new JSONObject();
+        dataJson.put("jobId", jobId);
+        dataJson.put("workspaceId", workspaceId);
+        dataJson.put("action", action);
+        dataJson.put("processed", processed);
+        dataJson.put("total", total);
+        dataJson.put("done", failures != null);
+        if (failures != null) {
+            dataJson.put("failures", failures);
+        }
+
+        JSONObject json = new JSONObject();
+        json.put("type", "workspaceChangesProgress");
+        json.put("permissions", new JSONObject().put("workspaces", new JSONArray().put(workspaceId)));
+        json.put("data", dataJson);
         broadcastJson(json);
     }
 
@@ -129,35 +236,83 @@ public abstract class WorkQueueRepository {
     }
 
     protected void broadcastPropertyChange(Element element, String propertyKey, String propertyName) {
+        List<GraphPropertyQueueItem> items = new ArrayList<GraphPropertyQueueItem>();
+        items.add(new GraphPropertyQueueItem(element, propertyKey, propertyName));
+        broadcastCoalescer.addPropertyChanges(element, items);
+    }
+
+    private void broadcastMergedPropertyChanges(List<GraphPropertyQueueItem> items) {
+        Map<Object, List<GraphPropertyQueueItem>> itemsByElementId = new LinkedHashMap<Object, List<GraphPropertyQueueItem>>();
+        Map<Object, Element> elementsById = new HashMap<Object, Element>();
+        for (GraphPropertyQueueItem item : items) {
+            Object elementId = item.getElement().getId();
+            List<GraphPropertyQueueItem> elementItems = itemsByElementId.get(elementId);
+            if (elementItems == null) {
+                elementItems = new ArrayList<GraphPropertyQueueItem>();
+                itemsByElementId.put(elementId, elementItems);
+            }
+            elementItems.add(item);
+            elementsById.put(elementId, item.getElement());
+        }
+        for (Map.Entry<Object, List<GraphPropertyQueueItem>> entry : itemsByElementId.entrySet()) {
+            broadcastCoalescer.addPropertyChanges(elementsById.get(entry.getKey()), entry.getValue());
+        }
+    }
+
+    private JSONObject createBroadcastPropertyChangeJson(Element element, List<GraphPropertyQueueItem> items) {
         try {
-            JSONObject json;
             if (element instanceof Vertex) {
-                json = getBroadcastPropertyChangeJson((Vertex) element, propertyKey, propertyName);
+                return getBroadcastPropertyChangeJson((Vertex) element, items);
             } else if (element instanceof Edge) {
-                json = getBroadcastPropertyChangeJson((Edge) element, propertyKey, propertyName);
+                return getBroadcastPropertyChangeJson((Edge) element, items);
             } else {
                 throw new LumifyException("Unexpected element type: " + element.getClass().getName());
             }
-            broadcastJson(json);
         } catch (Exception ex) {
             throw new LumifyException("Could not broadcast property change", ex);
         }
     }
 
+    /**
+     * Serializes only the changed properties of the element, unless a whole element was pushed. The message is
+     * then marked <code>partial</code> and the client replaces the properties named in <code>properties</code>.
+     */
+    private static JSONObject toJsonChangedProperties(Element element, List<GraphPropertyQueueItem> items, JSONObject dataJson) {
+        for (GraphPropertyQueueItem item : items) {
+            if (item.getPropertyName() == null) {
+                return JsonSerializer.toJson(element, null);
+            }
+        }
+        List<Property> changedProperties = new ArrayList<Property>();
+        for (Property property : element.getProperties()) {
+            for (GraphPropertyQueueItem item : items) {
+                if (item.getPropertyName().equals(property.getName())
+                        && (item.getPropertyKey() == null || item.getPropertyKey().equals(property.getKey()))) {
+                    changedProperties.add(property);
+                    break;
+                }
+            }
+        }
+        dataJson.put("partial", true);
+        return JsonSerializer.toJson(element, changedProperties, null);
+    }
+
     protected abstract void broadcastJson(JSONObject json);
 
-    protected JSONObject getBroadcastPropertyChangeJson(Vertex graphVertex, String propertyKey, String propertyName) {
+    protected JSONObject getBroadcastPropertyChangeJson(Vertex graphVertex, List<GraphPropertyQueueItem> items) {
         JSONObject dataJson = new JSONObject();
 
-        JSONObject vertexJson = JsonSerializer.toJson(graphVertex, null);
+        JSONObject vertexJson = toJsonChangedProperties(graphVertex, items, dataJson);
         dataJson.put("vertex", vertexJson);
 
-        JSONObject propertyJson = new JSONObject();
-        propertyJson.put("graphVertexId", graphVertex.getId());
-        propertyJson.put("propertyKey", propertyKey);
-        propertyJson.put("propertyName", propertyName);
         JSONArray propertiesJson = new JSONArray();
-        propertiesJson.put(propertyJson);
+        for (GraphPropertyQueueItem item : items) {
+            JSONObject propertyJson = new JSONObject();
+            propertyJson.put("graphVertexId", graphVertex.getId());
+            propertyJson.put("propertyKey", item.getPropertyKey());
+            propertyJson.put("propertyName", item.getPropertyName());
+            propertiesJson.put(propertyJson);
+        }
 
         dataJson.put("properties", propertiesJson);
 
@@ -167,18 +322,20 @@ public abstract class WorkQueueRepository {
         return json;
     }
 
-    protected JSONObject getBroadcastPropertyChangeJson(Edge edge, String propertyKey, String propertyName) {
+    protected JSONObject getBroadcastPropertyChangeJson(Edge edge, List<GraphPropertyQueueItem> items) {
         JSONObject dataJson = new JSONObject();
 
-        JSONObject vertexJson = JsonSerializer.toJson(edge, null);
+        JSONObject vertexJson = toJsonChangedProperties(edge, items, dataJson);
         dataJson.put("edge", vertexJson);
 
-        JSONObject propertyJson = new JSONObject();
-        propertyJson.put("graphEdgeId", edge.getId());
-        propertyJson.put("propertyKey", propertyKey);
-        propertyJson.put("propertyName", propertyName);
         JSONArray propertiesJson = new JSONArray();
-        propertiesJson.put(propertyJson);
+        for (GraphPropertyQueueItem item : items) {
+            JSONObject propertyJson = new JSONObject();
+            propertyJson.put("graphEdgeId", edge.getId());
+            propertyJson.put("propertyKey", item.getPropertyKey());
+            propertyJson.put("propertyName", item.getPropertyName());
+            propertiesJson.put(propertyJson);
+        }
 
         dataJson.put("properties", propertiesJson);
 
@@ -190,8 +347,22 @@ public abstract class WorkQueueRepository {
 
     public abstract void pushOnQueue(String queueName, FlushFlag flushFlag, JSONObject json);
 
-    public void init(Map map) {
+    /**
+     * Pushes a group of messages on to a queue. Implementations should override this to publish the group
+     * with fewer round trips than pushing each message on its own.
+     */
+    public void pushOnQueue(String queueName, FlushFlag flushFlag, List<JSONObject> jsons) {
+        for (JSONObject json : jsons) {
+            pushOnQueue(queueName, flushFlag, json);
+        }
+    }
 
+    public void init(Map map) {
+        Object coalesceMillis = map.get(BROADCAST_COALESCE_MILLIS);
+        if (coalesceMillis != null) {
+            broadcastCoalescer.shutdown();
+            broadcastCoalescer = createBroadcastCoalescer(Long.parseLong(coalesceMillis.toString()));
+        }
     }
 
     // TODO this is pretty awful but returning backtype.storm.topology.IRichSpout causes a dependency hell problem because it requires storm jar
@@ -206,13 +377,113 @@ public abstract class WorkQueueRepository {
         return graph;
     }
 
-    public abstract void subscribeToBroadcastMessages(BroadcastConsumer broadcastConsumer);
+    /**
+     * All consumers share one subscription to the broadcast queue, which is opened when the first consumer is added.
+     */
+    public void subscribeToBroadcastMessages(BroadcastConsumer broadcastConsumer) {
+        broadcastConsumers.add(broadcastConsumer);
+        synchronized (broadcastConsumers) {
+            if (subscribedToBroadcastQueue) {
+                return;
+            }
+            subscribedToBroadcastQueue = true;
+        }
+        subscribeToBroadcastQueue(new BroadcastConsumer() {
+            @Override
+            public void broadcastReceived(JSONObject json) {
+                for (BroadcastConsumer consumer : broadcastConsumers) {
+                    try {
+                        consumer.broadcastReceived(json);
+                    } catch (Exception ex) {
+                        LOGGER.error("problem in broadcast consumer", ex);
+                    }
+                }
+            }
+        });
+    }
 
-    public void shutdown() {
+    protected abstract void subscribeToBroadcastQueue(BroadcastConsumer broadcastConsumer);
+
+    /**
+     * Listeners are told about the elements pushed by this process as they are pushed, before any broadcast of the
+     * change is delivered, and about the elements named in <code>propertiesChange</code>, <code>textUpdated</code>
+     * and <code>edgeDeletion</code> broadcasts from any process.
+     */
+    public void addElementChangeListener(ElementChangeListener elementChangeListener) {
+        elementChangeListeners.add(elementChangeListener);
+        synchronized (elementChangeListeners) {
+            if (listeningForElementChanges) {
+                return;
+            }
+            listeningForElementChanges = true;
+        }
+        subscribeToBroadcastMessages(new BroadcastConsumer() {
+            @Override
+            public void broadcastReceived(JSONObject json) {
+                fireElementChanges(json);
+            }
+        });
+    }
+
+    private void fireElementChanges(JSONObject json) {
+        String type = json.optString("type");
+        JSONObject data = json.optJSONObject("data");
+        if (data == null) {
+            return;
+        }
+        if ("propertiesChange".equals(type)) {
+            JSONObject edgeJson = data.optJSONObject("edge");
+            JSONObject vertexJson = data.optJSONObject("vertex");
+            if (edgeJson != null && edgeJson.opt("id") != null) {
+                fireEdgeChanged(edgeJson.get("id"), edgeJson.opt("sourceVertexId"), edgeJson.opt("destVertexId"));
+            } else if (vertexJson != null && vertexJson.opt("id") != null) {
+                fireVertexChanged(vertexJson.get("id"));
+            }
+        } else if ("textUpdated".equals(type) && data.opt("graphVertexId") != null) {
+            fireVertexChanged(data.get("graphVertexId"));
+        } else if ("edgeDeletion".equals(type) && data.opt("edgeId") != null) {
+            fireEdgeChanged(data.get("edgeId"), data.opt("sourceVertexId"), data.opt("destVertexId"));
+        }
+    }
+
+    private void fireElementChanged(Element element) {
+        if (element instanceof Edge) {
+            Edge edge = (Edge) element;
+            fireEdgeChanged(edge.getId(), edge.getVertexId(Direction.OUT), edge.getVertexId(Direction.IN));
+        } else {
+            fireVertexChanged(element.getId());
+        }
+    }
+
+    private void fireVertexChanged(Object vertexId) {
+        for (ElementChangeListener elementChangeListener : elementChangeListeners) {
+            elementChangeListener.vertexChanged(vertexId);
+        }
+    }
+
+    private void fireEdgeChanged(Object edgeId, Object outVertexId, Object inVertexId) {
+        for (ElementChangeListener elementChangeListener : elementChangeListeners) {
+            elementChangeListener.edgeChanged(edgeId, outVertexId, inVertexId);
+        }
+    }
 
+    public void shutdown() {
+        broadcastCoalescer.shutdown();
     }
 
     public static abstract class BroadcastConsumer {
         public abstract void broadcastReceived(JSONObject json);
     }
+
+    public static abstract class ElementChangeListener {
+        public void vertexChanged(Object vertexId) {
+        }
+
+        /**
+         * @param outVertexId the vertex the edge goes out of, or null if the broadcast didn't name it.
+         * @param inVertexId  the vertex the edge goes into, or null if the broadcast didn't name it.
+         */
+        public void edgeChanged(Object edgeId, Object outVertexId, Object inVertexId) {
+        }
+    }
 }
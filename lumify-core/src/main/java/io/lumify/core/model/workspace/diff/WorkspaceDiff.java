@@ -1,50 +1,120 @@
 package io.lumify.core.model.workspace.diff;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import io.lumify.core.config.Configuration;
 import io.lumify.core.model.user.UserRepository;
+import io.lumify.core.model.workQueue.WorkQueueRepository;
 import io.lumify.core.model.workspace.Workspace;
 import io.lumify.core.model.workspace.WorkspaceEntity;
 import io.lumify.core.model.workspace.WorkspaceRepository;
 import io.lumify.core.user.User;
 import io.lumify.core.util.GraphUtil;
+import io.lumify.core.util.VertexNeighborhood;
 import org.securegraph.*;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
 
 import static org.securegraph.util.IterableUtils.toList;
+import static org.securegraph.util.IterableUtils.toSet;
 
+/**
+ * Finds the sandboxed changes of a workspace. The diff items of each entity and edge are kept per workspace and only
+ * the elements which were added to the workspace or changed since the last diff are read and diffed again. The edge
+ * ids of each entity are kept too, so only the edges which are new to the entities or changed are read. Changes are
+ * learned from the element changes reported by the work queue, and a created or deleted edge marks both of its
+ * vertices changed so their edge ids are read again. All elements are diffed again every
+ * <code>workspaceDiff.rebuildSeconds</code> or after {@link #invalidate(String)}.
+ */
+@Singleton
 public class WorkspaceDiff {
+    public static final String REBUILD_SECONDS = "workspaceDiff.rebuildSeconds";
+    public static final int DEFAULT_REBUILD_SECONDS = 300;
+    private static final char KEY_SEP = '\u001f';
     private final Graph graph;
     private final UserRepository userRepository;
+    private final long rebuildMillis;
+    private final Cache<String, WorkspaceDiffs> workspaceDiffsCache = CacheBuilder.newBuilder()
+            .maximumSize(1000)
+            .expireAfterAccess(1, TimeUnit.HOURS)
+            .build();
 
     @Inject
     public WorkspaceDiff(
             final Graph graph,
-            final UserRepository userRepository) {
+            final UserRepository userRepository,
+            final WorkQueueRepository workQueueRepository,
+            final Configuration configuration) {
         this.graph = graph;
         this.userRepository = userRepository;
+        this.rebuildMillis = configuration.getInt(REBUILD_SECONDS, DEFAULT_REBUILD_SECONDS) * 1000L;
+        workQueueRepository.addElementChangeListener(new WorkQueueRepository.ElementChangeListener() {
+            @Override
+            public void vertexChanged(Object vertexId) {
+                markElementChanged(vertexId);
+            }
+
+            @Override
+            public void edgeChanged(Object edgeId, Object outVertexId, Object inVertexId) {
+                markElementChanged(edgeId);
+                markElementChanged(outVertexId);
+                markElementChanged(inVertexId);
+            }
+        });
     }
 
-    public List<DiffItem> diff(Workspace workspace, List<WorkspaceEntity> workspaceEntities, List<Edge> workspaceEdges, User user) {
+    /**
+     * @return the diff items of the entities of a workspace and of the edges of those entities.
+     */
+    public List<DiffItem> diff(Workspace workspace, List<WorkspaceEntity> workspaceEntities, User user) {
         Authorizations authorizations = userRepository.getAuthorizations(user, WorkspaceRepository.VISIBILITY_STRING, workspace.getId());
+        WorkspaceDiffs workspaceDiffs = getWorkspaceDiffs(workspace.getId(), authorizations);
+        synchronized (workspaceDiffs) {
+            return workspaceDiffs.diff(workspace, workspaceEntities, authorizations);
+        }
+    }
 
-        List<DiffItem> result = new ArrayList<DiffItem>();
-        for (WorkspaceEntity workspaceEntity : workspaceEntities) {
-            List<DiffItem> entityDiffs = diffWorkspaceEntity(workspace, workspaceEntity, authorizations);
-            if (entityDiffs != null) {
-                result.addAll(entityDiffs);
-            }
+    public List<DiffItem> diffWorkspaceEntity(Workspace workspace, WorkspaceEntity workspaceEntity, Authorizations authorizations) {
+        Vertex entityVertex = this.graph.getVertex(workspaceEntity.getEntityVertexId(), authorizations);
+
+        // vertex can be null if the user doesn't have access to the entity
+        if (entityVertex == null) {
+            return null;
         }
+        return diffVertex(workspace, entityVertex, workspaceEntity.isVisible());
+    }
 
-        for (Edge workspaceEdge : workspaceEdges) {
-            List<DiffItem> entityDiffs = diffEdge(workspace, workspaceEdge);
-            if (entityDiffs != null) {
-                result.addAll(entityDiffs);
+    /**
+     * Forgets the diffs of a workspace, e.g. after its changes were published or undone.
+     */
+    public void invalidate(String workspaceId) {
+        String keyPrefix = workspaceId + KEY_SEP;
+        for (String key : workspaceDiffsCache.asMap().keySet()) {
+            if (key.startsWith(keyPrefix)) {
+                workspaceDiffsCache.invalidate(key);
             }
         }
+    }
 
-        return result;
+    private void markElementChanged(Object elementId) {
+        for (WorkspaceDiffs workspaceDiffs : workspaceDiffsCache.asMap().values()) {
+            workspaceDiffs.markElementChanged(elementId);
+        }
+    }
+
+    private WorkspaceDiffs getWorkspaceDiffs(String workspaceId, Authorizations authorizations) {
+        String key = workspaceId + KEY_SEP + GraphUtil.getAuthorizationsKey(authorizations);
+        synchronized (workspaceDiffsCache) {
+            WorkspaceDiffs workspaceDiffs = workspaceDiffsCache.getIfPresent(key);
+            if (workspaceDiffs == null) {
+                workspaceDiffs = new WorkspaceDiffs();
+                workspaceDiffsCache.put(key, workspaceDiffs);
+            }
+            return workspaceDiffs;
+        }
     }
 
     private List<DiffItem> diffEdge(Workspace workspace, Edge edge) {
@@ -60,19 +130,12 @@ public class WorkspaceDiff {
         return result;
     }
 
-    public List<DiffItem> diffWorkspaceEntity(Workspace workspace, WorkspaceEntity workspaceEntity, Authorizations authorizations) {
+    private List<DiffItem> diffVertex(Workspace workspace, Vertex entityVertex, boolean visible) {
         List<DiffItem> result = new ArrayList<DiffItem>();
 
-        Vertex entityVertex = this.graph.getVertex(workspaceEntity.getEntityVertexId(), authorizations);
-
-        // vertex can be null if the user doesn't have access to the entity
-        if (entityVertex == null) {
-            return null;
-        }
-
         SandboxStatus sandboxStatus = GraphUtil.getSandboxStatus(entityVertex, workspace.getId());
         if (sandboxStatus != SandboxStatus.PUBLIC) {
-            result.add(new VertexDiffItem(entityVertex, sandboxStatus, workspaceEntity.isVisible()));
+            result.add(new VertexDiffItem(entityVertex, sandboxStatus, visible));
         }
 
         diffProperties(workspace, entityVertex, result);
@@ -103,4 +166,124 @@ public class WorkspaceDiff {
         }
         return null;
     }
+
+    private class WorkspaceDiffs {
+        private Map<Object, ElementDiffs> vertexDiffs = new HashMap<Object, ElementDiffs>();
+        private Map<Object, Set<Object>> edgeIdsByVertexId = new HashMap<Object, Set<Object>>();
+        private Map<Object, ElementDiffs> edgeDiffs = new HashMap<Object, ElementDiffs>();
+        private List<DiffItem> diffItems;
+        private final Set<Object> changedElementIds = new HashSet<Object>();
+        private long diffTime;
+
+        public void markElementChanged(Object elementId) {
+            synchronized (changedElementIds) {
+                changedElementIds.add(elementId);
+            }
+        }
+
+        /**
+         * Reads the entities which were added to the workspace or changed and the edges which are new to the entities
+         * or changed. When nothing changed the diff items of the last diff are returned.
+         */
+        public List<DiffItem> diff(Workspace workspace, List<WorkspaceEntity> workspaceEntities, Authorizations authorizations) {
+            Set<Object> changedIds;
+            synchronized (changedElementIds) {
+                changedIds = new HashSet<Object>(changedElementIds);
+                changedElementIds.clear();
+            }
+            long now = System.currentTimeMillis();
+            if (now - diffTime > rebuildMillis) {
+                vertexDiffs.clear();
+                edgeIdsByVertexId.clear();
+                edgeDiffs.clear();
+                diffItems = null;
+                diffTime = now;
+            }
+
+            Set<Object> entityVertexIds = new HashSet<Object>();
+            Set<Object> vertexIdsToRead = new LinkedHashSet<Object>();
+            for (WorkspaceEntity workspaceEntity : workspaceEntities) {
+                Object vertexId = workspaceEntity.getEntityVertexId();
+                entityVertexIds.add(vertexId);
+                ElementDiffs cached = vertexDiffs.get(vertexId);
+                if (cached == null || cached.visible != workspaceEntity.isVisible() || changedIds.contains(vertexId)) {
+                    vertexIdsToRead.add(vertexId);
+                }
+            }
+            if (diffItems != null && vertexIdsToRead.size() == 0 && entityVertexIds.size() == vertexDiffs.size()
+                    && Collections.disjoint(changedIds, edgeDiffs.keySet())) {
+                return diffItems;
+            }
+            Map<Object, Vertex> vertices = VertexNeighborhood.getVertices(graph, new ArrayList<Object>(vertexIdsToRead), authorizations);
+
+            Map<Object, ElementDiffs> newVertexDiffs = new HashMap<Object, ElementDiffs>();
+            Map<Object, Set<Object>> newEdgeIdsByVertexId = new HashMap<Object, Set<Object>>();
+            List<DiffItem> result = new ArrayList<DiffItem>();
+            for (WorkspaceEntity workspaceEntity : workspaceEntities) {
+                Object vertexId = workspaceEntity.getEntityVertexId();
+                ElementDiffs elementDiffs = vertexDiffs.get(vertexId);
+                Set<Object> edgeIds = edgeIdsByVertexId.get(vertexId);
+                if (vertexIdsToRead.contains(vertexId)) {
+                    Vertex vertex = vertices.get(vertexId);
+
+                    // vertex can be null if the user doesn't have access to the entity
+                    if (vertex == null) {
+                        elementDiffs = new ElementDiffs(new ArrayList<DiffItem>(), workspaceEntity.isVisible());
+                        edgeIds = new HashSet<Object>();
+                    } else {
+                        elementDiffs = new ElementDiffs(diffVertex(workspace, vertex, workspaceEntity.isVisible()), workspaceEntity.isVisible());
+                        edgeIds = toSet(vertex.getEdgeIds(Direction.BOTH, authorizations));
+                    }
+                }
+                newVertexDiffs.put(vertexId, elementDiffs);
+                newEdgeIdsByVertexId.put(vertexId, edgeIds);
+                result.addAll(elementDiffs.diffItems);
+            }
+
+            Set<Object> edgeIds = new LinkedHashSet<Object>();
+            for (Set<Object> vertexEdgeIds : newEdgeIdsByVertexId.values()) {
+                edgeIds.addAll(vertexEdgeIds);
+            }
+            List<Object> edgeIdsToRead = new ArrayList<Object>();
+            for (Object edgeId : edgeIds) {
+                if (!edgeDiffs.containsKey(edgeId) || changedIds.contains(edgeId)) {
+                    edgeIdsToRead.add(edgeId);
+                }
+            }
+            Map<Object, Edge> edges = new HashMap<Object, Edge>();
+            if (edgeIdsToRead.size() > 0) {
+                for (Edge edge : graph.getEdges(edgeIdsToRead, authorizations)) {
+                    edges.put(edge.getId(), edge);
+                }
+            }
+
+            Map<Object, ElementDiffs> newEdgeDiffs = new HashMap<Object, ElementDiffs>();
+            for (Object edgeId : edgeIds) {
+                ElementDiffs elementDiffs = edgeDiffs.get(edgeId);
+                if (edges.containsKey(edgeId)) {
+                    elementDiffs = new ElementDiffs(diffEdge(workspace, edges.get(edgeId)), true);
+                } else if (elementDiffs == null || changedIds.contains(edgeId)) {
+                    elementDiffs = new ElementDiffs(new ArrayList<DiffItem>(), true);
+                }
+                newEdgeDiffs.put(edgeId, elementDiffs);
+                result.addAll(elementDiffs.diffItems);
+            }
+
+            this.vertexDiffs = newVertexDiffs;
+            this.edgeIdsByVertexId = newEdgeIdsByVertexId;
+            this.edgeDiffs = newEdgeDiffs;
+            this.diffItems = Collections.unmodifiableList(result);
+            return this.diffItems;
+        }
+    }
+
+    private static class ElementDiffs {
+        private final List<DiffItem> diffItems;
+        private final boolean visible;
+
+        public ElementDiffs(List<DiffItem> diffItems, boolean visible) {
+            this.diffItems = diffItems;
+            this.visible = visible;
+        }
+    }
 }
@@ -0,0 +1,79 @@
+package io.lumify.core.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Reads from a {@link ByteBuffer} between its position and limit. Pass a {@link ByteBuffer#duplicate()} of a
+ * shared buffer (for example a read-only {@link java.nio.MappedByteBuffer}) to give each reader its own position
+ * without copying the data.
+ */
+public class ByteBufferInputStream extends InputStream {
+    private final ByteBuffer buffer;
+    private boolean closed;
+
+    public ByteBufferInputStream(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (closed || !buffer.hasRemaining()) {
+            return -1;
+        }
+        return buffer.get() & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (len == 0) {
+            return 0;
+        }
+        if (closed || !buffer.hasRemaining()) {
+            return -1;
+        }
+        int readLen = Math.min(len, buffer.remaining());
+        buffer.get(b, off, readLen);
+        return readLen;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        if (closed || n <= 0) {
+            return 0;
+        }
+        int skipLen = (int) Math.min(n, buffer.remaining());
+        buffer.position(buffer.position() + skipLen);
+        return skipLen;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return closed ? 0 : buffer.remaining();
+    }
+
+    @Override
+    public boolean markSupported() {
+        return true;
+    }
+
+    @Override
+    public synchronized void mark(int readLimit) {
+        buffer.mark();
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        buffer.reset();
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        super.close();
+    }
+}
@@ -0,0 +1,121 @@
+package io.lumify.core.util;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Groups points by the geohash cell they fall in and keeps the count and centroid of each cell, so the cost of
+ * drawing a dense area depends on the number of cells rather than the number of points. The geohash precision is
+ * chosen so a cell is about a quarter of a map tile wide at the given zoom level.
+ */
+public class GeoClusters {
+    private static final char[] BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz".toCharArray();
+    public static final int MAX_PRECISION = 12;
+    private final int precision;
+    private final Map<String, Cluster> clusters = new LinkedHashMap<String, Cluster>();
+
+    public GeoClusters(int zoom) {
+        this.precision = getPrecisionForZoom(zoom);
+    }
+
+    /**
+     * @return the number of geohash characters for which a cell has at least zoom + 2 bits of longitude.
+     */
+    public static int getPrecisionForZoom(int zoom) {
+        int longitudeBits = Math.max(zoom, 0) + 2;
+        int precision = (2 * longitudeBits + 4) / 5;
+        return Math.max(1, Math.min(precision, MAX_PRECISION));
+    }
+
+    public static String geoHash(double latitude, double longitude, int precision) {
+        double minLatitude = -90.0;
+        double maxLatitude = 90.0;
+        double minLongitude = -180.0;
+        double maxLongitude = 180.0;
+        StringBuilder result = new StringBuilder(precision);
+        boolean longitudeBit = true;
+        int bits = 0;
+        int ch = 0;
+        while (result.length() < precision) {
+            if (longitudeBit) {
+                double mid = (minLongitude + maxLongitude) / 2;
+                if (longitude >= mid) {
+                    ch = (ch << 1) | 1;
+                    minLongitude = mid;
+                } else {
+                    ch = ch << 1;
+                    maxLongitude = mid;
+                }
+            } else {
+                double mid = (minLatitude + maxLatitude) / 2;
+                if (latitude >= mid) {
+                    ch = (ch << 1) | 1;
+                    minLatitude = mid;
+                } else {
+                    ch = ch << 1;
+                    maxLatitude = mid;
+                }
+            }
+            longitudeBit = !longitudeBit;
+            if (++bits == 5) {
+                result.append(BASE32[ch]);
+                bits = 0;
+                ch = 0;
+            }
+        }
+        return result.toString();
+    }
+
+    public void add(double latitude, double longitude) {
+        String geoHash = geoHash(latitude, longitude, precision);
+        Cluster cluster = clusters.get(geoHash);
+        if (cluster == null) {
+            cluster = new Cluster(geoHash);
+            clusters.put(geoHash, cluster);
+        }
+        cluster.add(latitude, longitude);
+    }
+
+    public int getPrecision() {
+        return precision;
+    }
+
+    public List<Cluster> getClusters() {
+        return new ArrayList<Cluster>(clusters.values());
+    }
+
+    public static class Cluster {
+        private final String geoHash;
+        private int count;
+        private double latitudeSum;
+        private double longitudeSum;
+
+        public Cluster(String geoHash) {
+            this.geoHash = geoHash;
+        }
+
+        private void add(double latitude, double longitude) {
+            count++;
+            latitudeSum += latitude;
+            longitudeSum += longitude;
+        }
+
+        public String getGeoHash() {
+            return geoHash;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public double getLatitude() {
+            return latitudeSum / count;
+        }
+
+        public double getLongitude() {
+            return longitudeSum / count;
+        }
+    }
+}
@@ -14,14 +14,22 @@ import org.securegraph.*;
 import org.securegraph.mutation.ElementMutation;
 import org.securegraph.mutation.ExistingElementMutation;
 
-import java.util.Date;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 
 public class GraphUtil {
     public static SandboxStatus getSandboxStatus(Element element, String workspaceId) {
-        JSONObject visibilityJson = LumifyVisibilityProperties.VISIBILITY_JSON_PROPERTY.getPropertyValue(element);
+        Object visibilityJsonString = element == null ? null : element.getPropertyValue(LumifyVisibilityProperties.VISIBILITY_JSON_PROPERTY.getKey());
+        return getSandboxStatusFromVisibilityJsonString(visibilityJsonString, workspaceId);
+    }
+
+    /**
+     * The visibility json is only parsed when it mentions the workspace, every other element is public to it.
+     */
+    private static SandboxStatus getSandboxStatusFromVisibilityJsonString(Object visibilityJsonString, String workspaceId) {
+        if (visibilityJsonString == null || workspaceId == null || !visibilityJsonString.toString().contains(workspaceId)) {
+            return SandboxStatus.PUBLIC;
+        }
+        JSONObject visibilityJson = LumifyVisibilityProperties.VISIBILITY_JSON_PROPERTY.unwrap(visibilityJsonString);
         return getPropertySandboxStatusFromVisibilityJsonString(visibilityJson, workspaceId);
     }
 
@@ -41,31 +49,34 @@ public class GraphUtil {
 
     public static SandboxStatus[] getPropertySandboxStatuses(List<Property> properties, String workspaceId) {
         SandboxStatus[] sandboxStatuses = new SandboxStatus[properties.size()];
+        Set<String> publicPropertyNames = new HashSet<String>();
         for (int i = 0; i < properties.size(); i++) {
             Property property = properties.get(i);
-            JSONObject visibilityJson = LumifyVisibilityProperties.VISIBILITY_JSON_PROPERTY.getMetadataValue(property.getMetadata());
-            sandboxStatuses[i] = getPropertySandboxStatusFromVisibilityJsonString(visibilityJson, workspaceId);
+            Object visibilityJsonString = property.getMetadata().get(LumifyVisibilityProperties.VISIBILITY_JSON_PROPERTY.getKey());
+            sandboxStatuses[i] = getSandboxStatusFromVisibilityJsonString(visibilityJsonString, workspaceId);
+            if (sandboxStatuses[i] == SandboxStatus.PUBLIC) {
+                publicPropertyNames.add(property.getName());
+            }
         }
 
         for (int i = 0; i < properties.size(); i++) {
-            Property property = properties.get(i);
-            if (sandboxStatuses[i] != SandboxStatus.PRIVATE) {
-                continue;
-            }
-            for (int j = 0; j < properties.size(); j++) {
-                Property p = properties.get(j);
-                if (i == j || !property.getName().equals(p.getName())) {
-                    continue;
-                }
-                if (sandboxStatuses[j] == SandboxStatus.PUBLIC) {
-                    sandboxStatuses[i] = SandboxStatus.PUBLIC_CHANGED;
-                }
+            if (sandboxStatuses[i] == SandboxStatus.PRIVATE && publicPropertyNames.contains(properties.get(i).getName())) {
+                sandboxStatuses[i] = SandboxStatus.PUBLIC_CHANGED;
             }
         }
 
         return sandboxStatuses;
     }
 
+    /**
+     * @return the authorizations in sorted order, to key cached results which depend on what a user can see.
+     */
+    public static String getAuthorizationsKey(Authorizations authorizations) {
+        String[] auths = authorizations.getAuthorizations() == null ? new String[0] : authorizations.getAuthorizations().clone();
+        Arrays.sort(auths);
+        return Arrays.toString(auths);
+    }
+
     public static class VisibilityAndElementMutation<T extends Element> {
         public final ElementMutation<T> elementMutation;
         public final LumifyVisibility visibility;
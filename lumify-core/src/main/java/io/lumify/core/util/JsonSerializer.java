@@ -11,6 +11,7 @@ import org.apache.commons.io.IOUtils;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
+import org.json.JSONWriter;
 import org.securegraph.*;
 import org.securegraph.property.StreamingPropertyValue;
 import org.securegraph.type.GeoPoint;
@@ -23,6 +24,10 @@ import java.util.List;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static org.securegraph.util.IterableUtils.toList;
 
+/**
+ * Converts elements and properties to JSON. Streaming property values are never read unless the merged video
+ * transcript is asked for, so serializing many elements does not read any property payloads.
+ */
 public class JsonSerializer {
     private static final LumifyLogger LOGGER = LumifyLoggerFactory.getLogger(JsonSerializer.class);
 
@@ -34,6 +39,17 @@ public class JsonSerializer {
         return result;
     }
 
+    /**
+     * Writes the elements as a JSON array, converting one element at a time.
+     */
+    public static void writeJson(JSONWriter out, Iterable<? extends Element> elements, String workspaceId) {
+        out.array();
+        for (Element element : elements) {
+            out.value(toJson(element, workspaceId));
+        }
+        out.endArray();
+    }
+
     public static JSONObject toJson(Element element, String workspaceId) {
         checkNotNull(element, "element cannot be null");
         if (element instanceof Vertex) {
@@ -45,9 +61,29 @@ public class JsonSerializer {
         throw new RuntimeException("Unexpected element type: " + element.getClass().getName());
     }
 
+    /**
+     * Serializes the element with only the given properties, e.g. the properties which changed.
+     */
+    public static JSONObject toJson(Element element, Iterable<Property> properties, String workspaceId) {
+        checkNotNull(element, "element cannot be null");
+        JSONObject json = toJsonElement(element, properties, workspaceId, false);
+        if (element instanceof Edge) {
+            addEdgeVertexIds(json, (Edge) element);
+        }
+        return json;
+    }
+
     public static JSONObject toJsonVertex(Vertex vertex, String workspaceId) {
+        return toJsonVertex(vertex, workspaceId, false);
+    }
+
+    /**
+     * @param includeVideoTranscript read the video transcript and frame text properties and add their merged
+     *                               transcript to the properties.
+     */
+    public static JSONObject toJsonVertex(Vertex vertex, String workspaceId, boolean includeVideoTranscript) {
         try {
-            return toJsonElement(vertex, workspaceId);
+            return toJsonElement(vertex, workspaceId, includeVideoTranscript);
         } catch (JSONException e) {
             throw new RuntimeException(e);
         }
@@ -56,19 +92,31 @@ public class JsonSerializer {
     public static JSONObject toJsonEdge(Edge edge, String workspaceId) {
         try {
             JSONObject json = toJsonElement(edge, workspaceId);
-            json.put("label", edge.getLabel());
-            json.put("sourceVertexId", edge.getVertexId(Direction.OUT));
-            json.put("destVertexId", edge.getVertexId(Direction.IN));
+            addEdgeVertexIds(json, edge);
             return json;
         } catch (JSONException e) {
             throw new RuntimeException(e);
         }
     }
 
+    private static void addEdgeVertexIds(JSONObject json, Edge edge) {
+        json.put("label", edge.getLabel());
+        json.put("sourceVertexId", edge.getVertexId(Direction.OUT));
+        json.put("destVertexId", edge.getVertexId(Direction.IN));
+    }
+
     public static JSONObject toJsonElement(Element element, String workspaceId) {
+        return toJsonElement(element, workspaceId, false);
+    }
+
+    private static JSONObject toJsonElement(Element element, String workspaceId, boolean includeVideoTranscript) {
+        return toJsonElement(element, element.getProperties(), workspaceId, includeVideoTranscript);
+    }
+
+    private static JSONObject toJsonElement(Element element, Iterable<Property> properties, String workspaceId, boolean includeVideoTranscript) {
         JSONObject json = new JSONObject();
         json.put("id", element.getId());
-        json.put("properties", toJsonProperties(element.getProperties(), workspaceId));
+        json.put("properties", toJsonProperties(properties, workspaceId, includeVideoTranscript));
         json.put("sandboxStatus", GraphUtil.getSandboxStatus(element, workspaceId).toString());
         if (element.getVisibility() != null) {
             json.put(LumifyVisibilityProperties.VISIBILITY_PROPERTY.getKey(), element.getVisibility().toString());
@@ -82,6 +130,10 @@ public class JsonSerializer {
     }
 
     public static JSONArray toJsonProperties(Iterable<Property> properties, String workspaceId) {
+        return toJsonProperties(properties, workspaceId, false);
+    }
+
+    public static JSONArray toJsonProperties(Iterable<Property> properties, String workspaceId, boolean includeVideoTranscript) {
         JSONArray resultsJson = new JSONArray();
         List<Property> propertiesList = toList(properties);
         Collections.sort(propertiesList, new ConfidencePropertyComparator());
@@ -89,7 +141,9 @@ public class JsonSerializer {
         VideoTranscript allVideoTranscripts = new VideoTranscript();
         for (int i = 0; i < propertiesList.size(); i++) {
             Property property = propertiesList.get(i);
-            allVideoTranscripts = mergePropertyIntoTranscript(propertiesList, property, allVideoTranscripts);
+            if (includeVideoTranscript) {
+                allVideoTranscripts = mergePropertyIntoTranscript(propertiesList, property, allVideoTranscripts);
+            }
             JSONObject propertyJson = toJsonProperty(property);
             propertyJson.put("sandboxStatus", sandboxStatuses[i].toString());
             resultsJson.put(propertyJson);
@@ -106,6 +160,9 @@ public class JsonSerializer {
 
     // TODO remove this when the front end supports multiple video transcript properties
     private static VideoTranscript mergePropertyIntoTranscript(List<Property> propertiesList, Property property, VideoTranscript allVideoTranscripts) {
+        if (!isVideoTranscriptProperty(property)) {
+            return allVideoTranscripts;
+        }
         if (property.getValue() instanceof StreamingPropertyValue) {
             try {
                 if (property.getName().equals(MediaLumifyProperties.VIDEO_TRANSCRIPT.getKey())) {
@@ -120,6 +177,15 @@ public class JsonSerializer {
         return allVideoTranscripts;
     }
 
+    private static boolean isVideoTranscriptProperty(Property property) {
+        if (property.getName().equals(MediaLumifyProperties.VIDEO_TRANSCRIPT.getKey())) {
+            return true;
+        }
+        // frame text keys are the only text keys made of three parts, checked here to avoid loading the value
+        return property.getName().equals(RawLumifyProperties.TEXT.getKey())
+                && RowKeyHelper.splitOnMajorFieldSeperator(property.getKey()).length == 3;
+    }
+
     private static void mergeTextPropertyIntoTranscript(List<Property> propertiesList, Property property, VideoTranscript allVideoTranscripts) throws IOException {
         String[] nameParts = RowKeyHelper.splitOnMajorFieldSeperator(property.getKey());
         if (nameParts.length != 3) {
@@ -0,0 +1,246 @@
+package io.lumify.core.util;
+
+import java.util.*;
+
+/**
+ * Finds simple paths of at most a given number of hops between two vertices. Neighbors are read one level at a time
+ * from whichever end of the search has the smaller frontier until the two searches together cover the hops. Paths
+ * are then enumerated in memory over the edges read, only stepping to vertices which can still reach the destination
+ * in the hops left. The search stops early once a path beyond the first <code>maxPaths</code> is found,
+ * <code>maxNeighbors</code> neighbors have been read or the time limit passes, in which case
+ * {@link Result#isComplete()} is false. Neighbors are counted through a {@link Budget} as they are read, so the search
+ * can stop in the middle of a level, e.g. at a vertex with a great many edges.
+ */
+public abstract class PathFinder {
+    private static final int DEADLINE_CHECK_INTERVAL = 1000;
+    private final int maxPaths;
+    private final int maxNeighbors;
+    private final long timeLimitMillis;
+
+    protected PathFinder(int maxPaths, int maxNeighbors, long timeLimitMillis) {
+        this.maxPaths = maxPaths;
+        this.maxNeighbors = maxNeighbors;
+        this.timeLimitMillis = timeLimitMillis;
+    }
+
+    /**
+     * @param budget each neighbor or edge read must be counted with {@link Budget#read()}, and reading must stop once
+     *               it returns false.
+     * @return the neighbor ids of each of the given vertices which were read, leaving out neighbors which may not be
+     * on a path. The source and destination must not be left out.
+     */
+    protected abstract Map<Object, Collection<Object>> getNeighborIds(Collection<Object> vertexIds, Object sourceVertexId, Object destVertexId, Budget budget);
+
+    public Result findPaths(Object sourceVertexId, Object destVertexId, int hops) {
+        Search search = new Search(sourceVertexId, destVertexId, hops, System.currentTimeMillis() + timeLimitMillis);
+        if (sourceVertexId.equals(destVertexId) || hops < 1) {
+            return search.result;
+        }
+        search.readEdges();
+        search.computeDestinationDistances();
+        LinkedHashSet<Object> path = new LinkedHashSet<Object>();
+        path.add(sourceVertexId);
+        search.findPaths(sourceVertexId, hops, path);
+        return search.result;
+    }
+
+    private class Search {
+        private final Object sourceVertexId;
+        private final Object destVertexId;
+        private final int hops;
+        private final long deadline;
+        private final Budget budget;
+        private final Map<Object, Set<Object>> adjacency = new HashMap<Object, Set<Object>>();
+        private final Map<Object, Integer> destDistances = new HashMap<Object, Integer>();
+        private final Result result = new Result();
+        private int steps;
+
+        public Search(Object sourceVertexId, Object destVertexId, int hops, long deadline) {
+            this.sourceVertexId = sourceVertexId;
+            this.destVertexId = destVertexId;
+            this.hops = hops;
+            this.deadline = deadline;
+            this.budget = new Budget(maxNeighbors, deadline);
+        }
+
+        public void readEdges() {
+            Set<Object> sourceSeen = new HashSet<Object>();
+            Set<Object> destSeen = new HashSet<Object>();
+            List<Object> sourceFrontier = new ArrayList<Object>();
+            List<Object> destFrontier = new ArrayList<Object>();
+            sourceSeen.add(sourceVertexId);
+            sourceFrontier.add(sourceVertexId);
+            destSeen.add(destVertexId);
+            destFrontier.add(destVertexId);
+
+            // every edge of a path within the hops has an end inside one of the two searches
+            int radius = 0;
+            while (radius < hops && sourceFrontier.size() > 0 && destFrontier.size() > 0) {
+                boolean expandSource = sourceFrontier.size() <= destFrontier.size();
+                List<Object> frontier = expandSource ? sourceFrontier : destFrontier;
+                Set<Object> seen = expandSource ? sourceSeen : destSeen;
+
+                // the neighbors read before the budget ran out are kept, the paths through them are still real
+                Map<Object, Collection<Object>> neighborIds = getNeighborIds(frontier, sourceVertexId, destVertexId, budget);
+                List<Object> nextFrontier = new ArrayList<Object>();
+                for (Object vertexId : frontier) {
+                    Collection<Object> vertexNeighborIds = neighborIds.get(vertexId);
+                    if (vertexNeighborIds == null) {
+                        continue;
+                    }
+                    for (Object neighborId : vertexNeighborIds) {
+                        addEdge(vertexId, neighborId);
+                        if (seen.add(neighborId)) {
+                            nextFrontier.add(neighborId);
+                        }
+                    }
+                }
+                if (budget.isExhausted()) {
+                    result.complete = false;
+                    return;
+                }
+                if (expandSource) {
+                    sourceFrontier = nextFrontier;
+                } else {
+                    destFrontier = nextFrontier;
+                }
+                radius++;
+            }
+        }
+
+        private void addEdge(Object vertexId1, Object vertexId2) {
+            if (vertexId1.equals(vertexId2)) {
+                return;
+            }
+            getAdjacent(vertexId1).add(vertexId2);
+            getAdjacent(vertexId2).add(vertexId1);
+        }
+
+        private Set<Object> getAdjacent(Object vertexId) {
+            Set<Object> adjacent = adjacency.get(vertexId);
+            if (adjacent == null) {
+                adjacent = new LinkedHashSet<Object>();
+                adjacency.put(vertexId, adjacent);
+            }
+            return adjacent;
+        }
+
+        public void computeDestinationDistances() {
+            List<Object> frontier = new ArrayList<Object>();
+            frontier.add(destVertexId);
+            destDistances.put(destVertexId, 0);
+            for (int distance = 1; distance <= hops && frontier.size() > 0; distance++) {
+                List<Object> nextFrontier = new ArrayList<Object>();
+                for (Object vertexId : frontier) {
+                    Set<Object> adjacent = adjacency.get(vertexId);
+                    if (adjacent == null) {
+                        continue;
+                    }
+                    for (Object adjacentVertexId : adjacent) {
+                        if (!destDistances.containsKey(adjacentVertexId)) {
+                            destDistances.put(adjacentVertexId, distance);
+                            nextFrontier.add(adjacentVertexId);
+                        }
+                    }
+                }
+                frontier = nextFrontier;
+            }
+        }
+
+        /**
+         * @return false once the search should stop.
+         */
+        public boolean findPaths(Object vertexId, int hopsLeft, LinkedHashSet<Object> path) {
+            if (vertexId.equals(destVertexId)) {
+                if (result.paths.size() >= maxPaths) {
+                    // a path beyond the limit exists, so some paths are left out
+                    result.complete = false;
+                    return false;
+                }
+                result.paths.add(new ArrayList<Object>(path));
+                return true;
+            }
+            if (++steps % DEADLINE_CHECK_INTERVAL == 0 && System.currentTimeMillis() > deadline) {
+                result.complete = false;
+                return false;
+            }
+            Set<Object> adjacent = adjacency.get(vertexId);
+            if (adjacent == null) {
+                return true;
+            }
+            for (Object adjacentVertexId : adjacent) {
+                Integer destDistance = destDistances.get(adjacentVertexId);
+                if (destDistance == null || destDistance > hopsLeft - 1 || path.contains(adjacentVertexId)) {
+                    continue;
+                }
+                path.add(adjacentVertexId);
+                boolean keepGoing = findPaths(adjacentVertexId, hopsLeft - 1, path);
+                path.remove(adjacentVertexId);
+                if (!keepGoing) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * The neighbors which may still be read by one search and its deadline.
+     */
+    public static class Budget {
+        private final int maxNeighbors;
+        private final long deadline;
+        private int neighborsRead;
+        private boolean exhausted;
+
+        public Budget(int maxNeighbors, long deadline) {
+            this.maxNeighbors = maxNeighbors;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Counts one neighbor or edge read.
+         *
+         * @return false once the neighbor limit or the deadline is passed, and for every call after that.
+         */
+        public boolean read() {
+            if (exhausted) {
+                return false;
+            }
+            if (neighborsRead >= maxNeighbors
+                    || (neighborsRead % DEADLINE_CHECK_INTERVAL == 0 && System.currentTimeMillis() > deadline)) {
+                exhausted = true;
+                return false;
+            }
+            neighborsRead++;
+            return true;
+        }
+
+        public boolean isExhausted() {
+            return exhausted;
+        }
+
+        public int getNeighborsRead() {
+            return neighborsRead;
+        }
+    }
+
+    public static class Result {
+        private final List<List<Object>> paths = new ArrayList<List<Object>>();
+        private boolean complete = true;
+
+        /**
+         * @return the vertex ids of each path from the source to the destination.
+         */
+        public List<List<Object>> getPaths() {
+            return paths;
+        }
+
+        /**
+         * @return false if a limit stopped the search before all paths were found.
+         */
+        public boolean isComplete() {
+            return complete;
+        }
+    }
+}
@@ -0,0 +1,388 @@
+package io.lumify.core.util;
+
+import io.lumify.core.metrics.PausableTimerContext;
+import io.lumify.core.metrics.PausableTimerContextAware;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A drop in replacement for {@link TeeInputStream} which does not use a shared lock.
+ * <p/>
+ * The thread calling {@link #loopUntilTeesAreClosed()} is the only writer to the ring buffer and publishes how much
+ * it has written through a volatile offset. Each tee is read by a single thread and publishes how far it has read
+ * through its own volatile offset. The writer only overwrites bytes every open tee has read past, so readers copy
+ * straight out of the ring buffer without synchronizing with each other. Threads that cannot make progress park
+ * and are unparked by the thread that unblocks them.
+ * <p/>
+ * The ring buffer can be allocated off heap with {@link #RingBufferTeeInputStream(InputStream, String[], int, boolean)}.
+ * When the source is a {@link FileInputStream} it is read through its channel so a direct buffer is filled without
+ * an intermediate copy.
+ */
+public class RingBufferTeeInputStream {
+    private static final LumifyLogger LOGGER = LumifyLoggerFactory.getLogger(RingBufferTeeInputStream.class);
+    private static final int DEFAULT_BUFFER_SIZE = 1 * 1024 * 1024;
+    private static final long PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    public static final int LOOP_REPORT_INTERVAL = 10 * 1000; // report to the user every 10 seconds that a queue is waiting
+    private final InputStream source;
+    private final ReadableByteChannel sourceChannel;
+    private final ByteBuffer ringBuffer;
+    private final byte[] ringBufferArray;
+    private final int ringBufferSize;
+    private final Tee[] tees;
+    private byte[] transferBuffer; /* used by the writer to fill a direct buffer from a plain input stream */
+    private volatile long writeOffset; /* number of bytes read from the source and published to the tees */
+    private volatile boolean sourceComplete;
+    private volatile IOException sourceException;
+    private volatile Thread waitingWriter;
+
+    public RingBufferTeeInputStream(InputStream source, String[] splitNames) {
+        this(source, splitNames, DEFAULT_BUFFER_SIZE);
+    }
+
+    public RingBufferTeeInputStream(InputStream source, int splits) {
+        this(source, new String[splits], DEFAULT_BUFFER_SIZE);
+    }
+
+    public RingBufferTeeInputStream(InputStream source, int splits, int bufferSize) {
+        this(source, new String[splits], bufferSize);
+    }
+
+    public RingBufferTeeInputStream(InputStream source, String[] splitNames, int bufferSize) {
+        this(source, splitNames, bufferSize, false);
+    }
+
+    public RingBufferTeeInputStream(InputStream source, String[] splitNames, int bufferSize, boolean direct) {
+        this.source = source;
+        this.ringBufferSize = bufferSize;
+        if (direct) {
+            this.ringBuffer = ByteBuffer.allocateDirect(bufferSize);
+            this.ringBufferArray = null;
+        } else {
+            this.ringBufferArray = new byte[bufferSize];
+            this.ringBuffer = ByteBuffer.wrap(this.ringBufferArray);
+        }
+        if (direct && source instanceof FileInputStream) {
+            this.sourceChannel = ((FileInputStream) source).getChannel();
+        } else {
+            this.sourceChannel = null;
+        }
+        tees = new Tee[splitNames.length];
+        for (int i = 0; i < tees.length; i++) {
+            tees[i] = new Tee(splitNames[i]);
+        }
+    }
+
+    public InputStream[] getTees() {
+        return tees;
+    }
+
+    public void close() throws IOException {
+        for (InputStream tee : tees) {
+            tee.close();
+        }
+    }
+
+    public void loopUntilTeesAreClosed() throws Exception {
+        long lastReport = System.currentTimeMillis();
+        while (!areAllTeesClosed()) {
+            if (!loop()) {
+                waitForTees();
+            }
+            if (LOGGER.isDebugEnabled() && System.currentTimeMillis() > lastReport + LOOP_REPORT_INTERVAL) {
+                Tee teeWithLowestOffset = findTeeWithLowestOffset();
+                if (teeWithLowestOffset == null) {
+                    LOGGER.debug("All tees are complete");
+                } else {
+                    LOGGER.debug("Waiting for tee: %s (offset: %d)", teeWithLowestOffset.splitName, teeWithLowestOffset.offset);
+                }
+                lastReport = System.currentTimeMillis();
+            }
+        }
+    }
+
+    /**
+     * Reads from the source into the free part of the ring buffer.
+     *
+     * @return true if data was read or the end of the source was reached
+     */
+    protected boolean loop() throws IOException {
+        if (sourceComplete) {
+            return false;
+        }
+        long currentWriteOffset = writeOffset;
+        long free = ringBufferSize - (currentWriteOffset - findLowestTeeOffset());
+        if (free <= 0) {
+            return false;
+        }
+        int writeIndex = (int) (currentWriteOffset % ringBufferSize);
+        int len = (int) Math.min(free, ringBufferSize - writeIndex);
+        int read;
+        try {
+            read = readSource(writeIndex, len);
+        } catch (IOException ex) {
+            sourceException = ex;
+            sourceComplete = true;
+            unparkTees();
+            throw ex;
+        }
+        if (read == -1) {
+            sourceComplete = true;
+        } else {
+            writeOffset = currentWriteOffset + read;
+        }
+        unparkTees();
+        return true;
+    }
+
+    private int readSource(int writeIndex, int len) throws IOException {
+        if (ringBufferArray != null) {
+            return source.read(ringBufferArray, writeIndex, len);
+        }
+        ByteBuffer target = ringBuffer.duplicate();
+        target.limit(writeIndex + len);
+        target.position(writeIndex);
+        if (sourceChannel != null) {
+            return sourceChannel.read(target);
+        }
+        if (transferBuffer == null) {
+            transferBuffer = new byte[Math.min(ringBufferSize, 64 * 1024)];
+        }
+        int read = source.read(transferBuffer, 0, Math.min(len, transferBuffer.length));
+        if (read > 0) {
+            target.put(transferBuffer, 0, read);
+        }
+        return read;
+    }
+
+    private void waitForTees() throws InterruptedException {
+        waitingWriter = Thread.currentThread();
+        try {
+            if (areAllTeesClosed() || (!sourceComplete && writeOffset - findLowestTeeOffset() < ringBufferSize)) {
+                return;
+            }
+            LockSupport.parkNanos(this, PARK_NANOS);
+            if (Thread.interrupted()) {
+                throw new InterruptedException("Interrupted waiting for tees");
+            }
+        } finally {
+            waitingWriter = null;
+        }
+    }
+
+    private void unparkTees() {
+        for (Tee tee : tees) {
+            Thread waitingReader = tee.waitingReader;
+            if (waitingReader != null) {
+                LockSupport.unpark(waitingReader);
+            }
+        }
+    }
+
+    private void unparkWriter() {
+        Thread writer = waitingWriter;
+        if (writer != null) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    private boolean areAllTeesClosed() {
+        for (Tee tee : tees) {
+            if (!tee.closed) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long findLowestTeeOffset() {
+        long lowestOffset = Long.MAX_VALUE;
+        for (Tee tee : tees) {
+            long offset = tee.offset;
+            if (offset < lowestOffset) {
+                lowestOffset = offset;
+            }
+        }
+        return lowestOffset;
+    }
+
+    private Tee findTeeWithLowestOffset() {
+        Tee teeWithLowestOffset = null;
+        for (Tee tee : tees) {
+            if (!tee.closed && (teeWithLowestOffset == null || tee.offset < teeWithLowestOffset.offset)) {
+                teeWithLowestOffset = tee;
+            }
+        }
+        return teeWithLowestOffset;
+    }
+
+    public int getMaxNonblockingReadLength(int teeIndex) {
+        return tees[teeIndex].available();
+    }
+
+    private class Tee extends InputStream implements PausableTimerContextAware {
+        private final String splitName;
+        private final ByteBuffer readBuffer;
+        private volatile boolean closed;
+        private volatile long offset; /* only written by the reading thread, Long.MAX_VALUE once closed */
+        private volatile Thread waitingReader;
+        private PausableTimerContext pausableTimerContext;
+
+        public Tee(String splitName) {
+            this.splitName = splitName;
+            this.readBuffer = ringBufferArray == null ? ringBuffer.duplicate() : null;
+        }
+
+        @Override
+        public int read() throws IOException {
+            pauseTimer();
+            try {
+                if (waitForData() <= 0) {
+                    return -1;
+                }
+                long currentOffset = offset;
+                int readIndex = (int) (currentOffset % ringBufferSize);
+                int result = ringBufferArray != null ? ringBufferArray[readIndex] : ringBuffer.get(readIndex);
+                advance(currentOffset + 1);
+                return result & 0xff;
+            } finally {
+                resumeTimer();
+            }
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            pauseTimer();
+            try {
+                if (len == 0) {
+                    return closed ? -1 : 0;
+                }
+                int available = waitForData();
+                if (available <= 0) {
+                    return -1;
+                }
+                long currentOffset = offset;
+                int readIndex = (int) (currentOffset % ringBufferSize);
+                int readLen = Math.min(len, available);
+
+                // read from readIndex to end of buffer then wrap to the start of the buffer
+                int partialReadLen = Math.min(ringBufferSize - readIndex, readLen);
+                copy(readIndex, b, off, partialReadLen);
+                if (readLen > partialReadLen) {
+                    copy(0, b, off + partialReadLen, readLen - partialReadLen);
+                }
+
+                advance(currentOffset + readLen);
+                return readLen;
+            } finally {
+                resumeTimer();
+            }
+        }
+
+        private void copy(int readIndex, byte[] b, int off, int len) {
+            if (ringBufferArray != null) {
+                System.arraycopy(ringBufferArray, readIndex, b, off, len);
+            } else {
+                readBuffer.limit(readIndex + len);
+                readBuffer.position(readIndex);
+                readBuffer.get(b, off, len);
+            }
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            if (n <= 0) {
+                return 0;
+            }
+            int available = waitForData();
+            if (available <= 0) {
+                return 0;
+            }
+            long skipLen = Math.min(n, available);
+            advance(offset + skipLen);
+            return skipLen;
+        }
+
+        @Override
+        public int available() {
+            if (closed) {
+                return 0;
+            }
+            return (int) (writeOffset - offset);
+        }
+
+        private void advance(long newOffset) {
+            offset = newOffset;
+            unparkWriter();
+        }
+
+        /**
+         * @return the number of bytes which can be read without blocking or -1 at the end of the stream
+         */
+        private int waitForData() throws IOException {
+            while (true) {
+                if (closed) {
+                    return -1;
+                }
+                boolean complete = sourceComplete;
+                int available = (int) (writeOffset - offset);
+                if (available > 0) {
+                    return available;
+                }
+                if (complete) {
+                    if (sourceException != null) {
+                        throw new IOException("Could not read source", sourceException);
+                    }
+                    return -1;
+                }
+                waitingReader = Thread.currentThread();
+                try {
+                    if (writeOffset - offset > 0 || sourceComplete) {
+                        continue;
+                    }
+                    LockSupport.parkNanos(this, PARK_NANOS);
+                    if (Thread.interrupted()) {
+                        throw new InterruptedIOException("Interrupted waiting for data on tee: " + splitName);
+                    }
+                } finally {
+                    waitingReader = null;
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            LOGGER.debug("Closing tee: " + splitName);
+            try {
+                super.close();
+            } finally {
+                closed = true;
+                offset = Long.MAX_VALUE;
+                unparkWriter();
+            }
+        }
+
+        @Override
+        public void setPausableTimerContext(PausableTimerContext pausableTimerContext) {
+            this.pausableTimerContext = pausableTimerContext;
+        }
+
+        private void resumeTimer() {
+            if (this.pausableTimerContext != null) {
+                this.pausableTimerContext.resume();
+            }
+        }
+
+        private void pauseTimer() {
+            if (this.pausableTimerContext != null) {
+                this.pausableTimerContext.pause();
+            }
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package io.lumify.core.util;
+
+import org.securegraph.*;
+
+import java.util.*;
+
+/**
+ * The id and label of each edge of a vertex with the id of the vertex on the other side, read without loading any of
+ * the other vertices. Get it from {@link VertexNeighborhoodCache} so the edges aren't read on every request, use
+ * {@link VertexSummaryCache} to learn which of the other vertices are visible and their concepts, and
+ * {@link #getVertices(Graph, List, Authorizations)} to load only the other vertices which are needed.
+ */
+public class VertexNeighborhood {
+    public static final int VERTEX_BATCH_SIZE = 100;
+    private final List<EdgeSummary> edgeSummaries = new ArrayList<EdgeSummary>();
+    private final Set<Object> distinctOtherVertexIds = new LinkedHashSet<Object>();
+
+    public VertexNeighborhood(Vertex vertex, Authorizations authorizations) {
+        for (Edge edge : vertex.getEdges(Direction.BOTH, authorizations)) {
+            Object inVertexId = edge.getVertexId(Direction.IN);
+            Object otherVertexId = vertex.getId().equals(inVertexId) ? edge.getVertexId(Direction.OUT) : inVertexId;
+            edgeSummaries.add(new EdgeSummary(edge.getId(), edge.getLabel(), otherVertexId));
+            distinctOtherVertexIds.add(otherVertexId);
+        }
+    }
+
+    public List<EdgeSummary> getEdgeSummaries() {
+        return edgeSummaries;
+    }
+
+    /**
+     * @param visibleOtherVertexIds only the edges to these vertices are counted.
+     * @return the number of edges per label.
+     */
+    public Map<String, Integer> getEdgeLabelCounts(Set<Object> visibleOtherVertexIds) {
+        Map<String, Integer> edgeLabelCounts = new TreeMap<String, Integer>();
+        for (EdgeSummary edgeSummary : edgeSummaries) {
+            if (visibleOtherVertexIds.contains(edgeSummary.getOtherVertexId())) {
+                Integer count = edgeLabelCounts.get(edgeSummary.getLabel());
+                edgeLabelCounts.put(edgeSummary.getLabel(), count == null ? 1 : count + 1);
+            }
+        }
+        return edgeLabelCounts;
+    }
+
+    public List<Object> getDistinctOtherVertexIds() {
+        return new ArrayList<Object>(distinctOtherVertexIds);
+    }
+
+    /**
+     * Loads the vertices in batches of {@link #VERTEX_BATCH_SIZE}. Vertices which are not visible are left out.
+     */
+    public static Map<Object, Vertex> getVertices(Graph graph, List<Object> vertexIds, Authorizations authorizations) {
+        Map<Object, Vertex> results = new HashMap<Object, Vertex>();
+        for (int i = 0; i < vertexIds.size(); i += VERTEX_BATCH_SIZE) {
+            List<Object> batch = vertexIds.subList(i, Math.min(i + VERTEX_BATCH_SIZE, vertexIds.size()));
+            for (Vertex vertex : graph.getVertices(batch, authorizations)) {
+                results.put(vertex.getId(), vertex);
+            }
+        }
+        return results;
+    }
+
+    public static class EdgeSummary {
+        private final Object edgeId;
+        private final String label;
+        private final Object otherVertexId;
+
+        public EdgeSummary(Object edgeId, String label, Object otherVertexId) {
+            this.edgeId = edgeId;
+            this.label = label;
+            this.otherVertexId = otherVertexId;
+        }
+
+        public Object getEdgeId() {
+            return edgeId;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        public Object getOtherVertexId() {
+            return otherVertexId;
+        }
+    }
+}
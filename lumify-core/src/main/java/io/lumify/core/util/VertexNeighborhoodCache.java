@@ -0,0 +1,73 @@
+package io.lumify.core.util;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import io.lumify.core.config.Configuration;
+import io.lumify.core.model.workQueue.WorkQueueRepository;
+import org.securegraph.Authorizations;
+import org.securegraph.Vertex;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@link VertexNeighborhood} of each vertex per authorizations, so the edges of a vertex are read once rather than
+ * on every request for its relationships. A neighborhood is dropped when the work queue reports a change of an edge
+ * of the vertex, and is read again after <code>vertexNeighborhoodCache.expireSeconds</code> to pick up edges created
+ * without being pushed.
+ */
+@Singleton
+public class VertexNeighborhoodCache {
+    public static final String EXPIRE_SECONDS = "vertexNeighborhoodCache.expireSeconds";
+    public static final int DEFAULT_EXPIRE_SECONDS = 60;
+    private final Cache<Object, ConcurrentMap<String, VertexNeighborhood>> neighborhoodsByVertexId;
+
+    @Inject
+    public VertexNeighborhoodCache(WorkQueueRepository workQueueRepository, Configuration configuration) {
+        this.neighborhoodsByVertexId = CacheBuilder.newBuilder()
+                .maximumSize(1000)
+                .expireAfterWrite(configuration.getInt(EXPIRE_SECONDS, DEFAULT_EXPIRE_SECONDS), TimeUnit.SECONDS)
+                .build();
+        workQueueRepository.addElementChangeListener(new WorkQueueRepository.ElementChangeListener() {
+            @Override
+            public void edgeChanged(Object edgeId, Object outVertexId, Object inVertexId) {
+                if (outVertexId != null) {
+                    invalidate(outVertexId);
+                }
+                if (inVertexId != null) {
+                    invalidate(inVertexId);
+                }
+            }
+        });
+    }
+
+    public VertexNeighborhood getNeighborhood(Vertex vertex, Authorizations authorizations) {
+        String authorizationsKey = GraphUtil.getAuthorizationsKey(authorizations);
+        ConcurrentMap<String, VertexNeighborhood> neighborhoods = neighborhoodsByVertexId.getIfPresent(vertex.getId());
+        VertexNeighborhood neighborhood = neighborhoods == null ? null : neighborhoods.get(authorizationsKey);
+        if (neighborhood == null) {
+            neighborhood = new VertexNeighborhood(vertex, authorizations);
+            getNeighborhoods(vertex.getId()).put(authorizationsKey, neighborhood);
+        }
+        return neighborhood;
+    }
+
+    public void invalidate(Object vertexId) {
+        neighborhoodsByVertexId.invalidate(vertexId);
+    }
+
+    private ConcurrentMap<String, VertexNeighborhood> getNeighborhoods(Object vertexId) {
+        ConcurrentMap<String, VertexNeighborhood> neighborhoods = neighborhoodsByVertexId.getIfPresent(vertexId);
+        if (neighborhoods == null) {
+            neighborhoods = new ConcurrentHashMap<String, VertexNeighborhood>();
+            ConcurrentMap<String, VertexNeighborhood> existingNeighborhoods = neighborhoodsByVertexId.asMap().putIfAbsent(vertexId, neighborhoods);
+            if (existingNeighborhoods != null) {
+                neighborhoods = existingNeighborhoods;
+            }
+        }
+        return neighborhoods;
+    }
+}
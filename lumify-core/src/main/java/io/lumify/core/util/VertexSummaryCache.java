@@ -0,0 +1,109 @@
+package io.lumify.core.util;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import io.lumify.core.config.Configuration;
+import io.lumify.core.model.workQueue.WorkQueueRepository;
+import org.securegraph.Authorizations;
+import org.securegraph.Graph;
+import org.securegraph.Vertex;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import static io.lumify.core.model.ontology.OntologyLumifyProperties.CONCEPT_TYPE;
+
+/**
+ * Whether a vertex is visible with some authorizations and its concept type, so the neighbors of a vertex can be
+ * counted and filtered by concept without loading them on every request. Summaries are dropped when the work queue
+ * reports a change of the vertex, and are read again after <code>vertexSummaryCache.expireSeconds</code> to pick up
+ * any other changes.
+ */
+@Singleton
+public class VertexSummaryCache {
+    public static final String EXPIRE_SECONDS = "vertexSummaryCache.expireSeconds";
+    public static final int DEFAULT_EXPIRE_SECONDS = 60;
+    private final Graph graph;
+    private final Cache<Object, ConcurrentMap<String, Summary>> summariesByVertexId;
+
+    @Inject
+    public VertexSummaryCache(Graph graph, WorkQueueRepository workQueueRepository, Configuration configuration) {
+        this.graph = graph;
+        this.summariesByVertexId = CacheBuilder.newBuilder()
+                .maximumSize(100000)
+                .expireAfterWrite(configuration.getInt(EXPIRE_SECONDS, DEFAULT_EXPIRE_SECONDS), TimeUnit.SECONDS)
+                .build();
+        workQueueRepository.addElementChangeListener(new WorkQueueRepository.ElementChangeListener() {
+            @Override
+            public void vertexChanged(Object vertexId) {
+                invalidate(vertexId);
+            }
+        });
+    }
+
+    /**
+     * @return the concept type of each of the vertices which is visible, by vertex id. The vertices which are not
+     * summarized yet are loaded in batches of {@link VertexNeighborhood#VERTEX_BATCH_SIZE}.
+     */
+    public Map<Object, String> getConceptTypes(List<Object> vertexIds, Authorizations authorizations) {
+        String authorizationsKey = GraphUtil.getAuthorizationsKey(authorizations);
+        Map<Object, Summary> summaries = new HashMap<Object, Summary>();
+        List<Object> missingVertexIds = new ArrayList<Object>();
+        for (Object vertexId : vertexIds) {
+            ConcurrentMap<String, Summary> vertexSummaries = summariesByVertexId.getIfPresent(vertexId);
+            Summary summary = vertexSummaries == null ? null : vertexSummaries.get(authorizationsKey);
+            if (summary == null) {
+                missingVertexIds.add(vertexId);
+            } else {
+                summaries.put(vertexId, summary);
+            }
+        }
+
+        Map<Object, Vertex> vertices = VertexNeighborhood.getVertices(graph, missingVertexIds, authorizations);
+        for (Object vertexId : missingVertexIds) {
+            Vertex vertex = vertices.get(vertexId);
+            Summary summary = vertex == null ? new Summary(false, null) : new Summary(true, CONCEPT_TYPE.getPropertyValue(vertex));
+            getVertexSummaries(vertexId).put(authorizationsKey, summary);
+            summaries.put(vertexId, summary);
+        }
+
+        Map<Object, String> results = new LinkedHashMap<Object, String>();
+        for (Object vertexId : vertexIds) {
+            Summary summary = summaries.get(vertexId);
+            if (summary.visible) {
+                results.put(vertexId, summary.conceptType);
+            }
+        }
+        return results;
+    }
+
+    public void invalidate(Object vertexId) {
+        summariesByVertexId.invalidate(vertexId);
+    }
+
+    private ConcurrentMap<String, Summary> getVertexSummaries(Object vertexId) {
+        ConcurrentMap<String, Summary> summaries = summariesByVertexId.getIfPresent(vertexId);
+        if (summaries == null) {
+            summaries = new ConcurrentHashMap<String, Summary>();
+            ConcurrentMap<String, Summary> existingSummaries = summariesByVertexId.asMap().putIfAbsent(vertexId, summaries);
+            if (existingSummaries != null) {
+                summaries = existingSummaries;
+            }
+        }
+        return summaries;
+    }
+
+    private static class Summary {
+        private final boolean visible;
+        private final String conceptType;
+
+        public Summary(boolean visible, String conceptType) {
+            this.visible = visible;
+            this.conceptType = conceptType;
+        }
+    }
+}
@@ -16,6 +16,8 @@ import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 
+import java.io.StringReader;
+import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -128,6 +130,22 @@ public class EntityHighlighterTest {
         );
     }
 
+    @Test
+    public void testWriteHighlightedTextEscapesText() throws Exception {
+        List<OffsetItem> offsetItems = new ArrayList<OffsetItem>();
+        OffsetItem mockEntity = mock(TermMentionOffsetItem.class);
+        when(mockEntity.getStart()).thenReturn(3l);
+        when(mockEntity.getEnd()).thenReturn(4l);
+        when(mockEntity.getCssClasses()).thenReturn(asList(new String[]{"entity"}));
+        when(mockEntity.shouldHighlight()).thenReturn(true);
+        when(mockEntity.getInfoJson()).thenReturn(new JSONObject("{\"data\":\"attribute\"}"));
+        offsetItems.add(mockEntity);
+
+        StringWriter out = new StringWriter();
+        EntityHighlighter.writeHighlightedText(new StringReader("a <b> c"), 0, offsetItems, out);
+        assertEquals("a &lt;<span class=\"entity\" data-info=\"{&quot;data&quot;:&quot;attribute&quot;}\">b</span>&gt; c", out.toString());
+    }
+
     private List<String> asList(String[] strings) {
         List<String> results = new ArrayList<String>();
         for (String s : strings) {
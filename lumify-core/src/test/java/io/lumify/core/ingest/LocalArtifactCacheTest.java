@@ -0,0 +1,167 @@
+package io.lumify.core.ingest;
+
+import io.lumify.core.config.Configuration;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class LocalArtifactCacheTest {
+    private static final int FILE_LENGTH = 400 * 1024;
+    private File directory;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = File.createTempFile("localArtifactCacheTest", "");
+        assertTrue(directory.delete());
+        assertTrue(directory.mkdir());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(directory);
+    }
+
+    @Test
+    public void testAcquireMovesTempFileIntoPlace() throws Exception {
+        LocalArtifactCache cache = createCache();
+        File file = cache.acquire("aa01", createData(1));
+
+        assertEquals(new File(new File(directory, "aa"), "aa01"), file);
+        assertEquals(FILE_LENGTH, file.length());
+        assertEquals(1, FileUtils.readFileToByteArray(file)[0]);
+        String[] tempFiles = cache.getProcessTempDirectory(directory).list();
+        assertEquals(0, tempFiles == null ? 0 : tempFiles.length);
+        cache.release("aa01");
+
+        assertEquals(file, cache.acquire("aa01", createData(2)));
+        assertEquals(1, FileUtils.readFileToByteArray(file)[0]);
+        cache.release("aa01");
+    }
+
+    @Test
+    public void testPinnedFilesAreNotEvicted() throws Exception {
+        LocalArtifactCache cache = createCache();
+        File pinned = cache.acquire("aa01", createData(1));
+        File evicted = cache.acquire("bb02", createData(2));
+        cache.release("bb02");
+        File kept = cache.acquire("cc03", createData(3));
+        cache.release("cc03");
+
+        assertTrue(pinned.exists());
+        assertFalse(evicted.exists());
+        assertTrue(kept.exists());
+        assertNull(cache.acquire("bb02"));
+
+        cache.release("aa01");
+        File added = cache.acquire("dd04", createData(4));
+        cache.release("dd04");
+        assertTrue(added.exists());
+        assertTrue(pinned.exists());
+        assertFalse(kept.exists());
+    }
+
+    @Test
+    public void testFilesPinnedByOtherCacheAreNotEvicted() throws Exception {
+        LocalArtifactCache cache1 = createCache();
+        File pinned = cache1.acquire("aa01", createData(1));
+
+        LocalArtifactCache cache2 = createCache();
+        File evicted = cache2.acquire("bb02", createData(2));
+        cache2.release("bb02");
+        cache2.acquire("cc03", createData(3));
+        cache2.release("cc03");
+
+        assertTrue(pinned.exists());
+        assertFalse(evicted.exists());
+        assertEquals(pinned, cache1.acquire("aa01"));
+        cache1.release("aa01");
+        cache1.release("aa01");
+    }
+
+    @Test
+    public void testFindsFilesAddedByOtherCache() throws Exception {
+        LocalArtifactCache cache1 = createCache();
+        LocalArtifactCache cache2 = createCache();
+        assertNull(cache2.acquire("aa01"));
+
+        File file = cache1.acquire("aa01", createData(1));
+        cache1.release("aa01");
+        assertEquals(file, cache2.acquire("aa01"));
+        cache2.release("aa01");
+    }
+
+    @Test
+    public void testTempFilesOfOtherCachesAreKept() throws Exception {
+        LocalArtifactCache cache1 = createCache();
+        File tempFile = cache1.createTempFile("test", ".tmp");
+
+        LocalArtifactCache cache2 = createCache();
+        cache2.createTempFile("test", ".tmp");
+        cache2.deleteTempFiles();
+        assertTrue(tempFile.exists());
+
+        cache1.deleteTempFiles();
+        assertFalse(tempFile.exists());
+    }
+
+    @Test
+    public void testTempDirectoriesOfKilledProcessesAreDeleted() throws Exception {
+        File tempDirectory = new File(directory, "tmp");
+        File unlocked = createTempDirectory(tempDirectory, "unlocked");
+        assertTrue(new File(tempDirectory, "unlocked.lock").createNewFile());
+        File old = createTempDirectory(tempDirectory, "old");
+        assertTrue(old.setLastModified(System.currentTimeMillis() - 2 * 24 * 60 * 60 * 1000L));
+        File recent = createTempDirectory(tempDirectory, "recent");
+        LocalArtifactCache cache1 = createCache();
+        File live = cache1.createTempFile("test", ".tmp");
+
+        createCache();
+        assertFalse(unlocked.exists());
+        assertFalse(new File(tempDirectory, "unlocked.lock").exists());
+        assertFalse(old.exists());
+        assertTrue(recent.exists());
+        assertTrue(live.exists());
+    }
+
+    @Test
+    public void testTempFilesCountAgainstMaxBytes() throws Exception {
+        LocalArtifactCache cache = createCache();
+        File evicted = cache.acquire("aa01", createData(1));
+        cache.release("aa01");
+        File tempFile = cache.createTempFile("test", ".tmp");
+        FileUtils.writeByteArrayToFile(tempFile, new byte[700 * 1024]);
+
+        File added = cache.acquire("bb02", createData(2));
+        assertFalse(evicted.exists());
+        assertTrue(added.exists());
+        cache.release("bb02");
+    }
+
+    private LocalArtifactCache createCache() {
+        Map<String, String> config = new HashMap<String, String>();
+        config.put(LocalArtifactCache.DIRECTORIES, directory.getAbsolutePath());
+        config.put(LocalArtifactCache.MAX_MEGABYTES, "1");
+        return new LocalArtifactCache(new Configuration(config));
+    }
+
+    private static File createTempDirectory(File tempDirectory, String name) throws Exception {
+        File processTempDirectory = new File(tempDirectory, name);
+        assertTrue(processTempDirectory.mkdirs());
+        FileUtils.writeByteArrayToFile(new File(processTempDirectory, "test.tmp"), new byte[1]);
+        return processTempDirectory;
+    }
+
+    private static ByteArrayInputStream createData(int value) {
+        byte[] data = new byte[FILE_LENGTH];
+        data[0] = (byte) value;
+        return new ByteArrayInputStream(data);
+    }
+}
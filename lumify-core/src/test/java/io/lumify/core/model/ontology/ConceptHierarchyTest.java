@@ -0,0 +1,52 @@
+package io.lumify.core.model.ontology;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+@RunWith(JUnit4.class)
+public class ConceptHierarchyTest {
+    private ConceptHierarchy hierarchy;
+
+    @Before
+    public void setUp() {
+        List<Concept> concepts = new ArrayList<Concept>();
+        concepts.add(createConcept("root", null));
+        concepts.add(createConcept("thing", "root"));
+        concepts.add(createConcept("person", "thing"));
+        concepts.add(createConcept("employee", "person"));
+        concepts.add(createConcept("place", "thing"));
+        hierarchy = new ConceptHierarchy(concepts);
+    }
+
+    @Test
+    public void testDescendants() {
+        assertEquals(Arrays.asList("person", "employee"), hierarchy.getConceptAndDescendantIRIs("person"));
+        assertEquals(5, hierarchy.getConceptAndDescendantIRIs("root").size());
+        assertEquals(Arrays.asList("employee"), hierarchy.getConceptAndDescendantIRIs("employee"));
+        assertEquals(0, hierarchy.getConceptAndDescendantIRIs("unknown").size());
+        assertEquals(2, hierarchy.getChildIRIs("thing").size());
+    }
+
+    @Test
+    public void testAncestors() {
+        assertEquals(Arrays.asList("person", "thing", "root"), hierarchy.getAncestorIRIs("employee"));
+        assertEquals(0, hierarchy.getAncestorIRIs("root").size());
+        assertEquals("thing", hierarchy.getParentConcept(hierarchy.getConcept("place")).getTitle());
+        assertNull(hierarchy.getParentConcept(hierarchy.getConcept("root")));
+    }
+
+    private static Concept createConcept(String iri, String parentIRI) {
+        InMemoryConcept concept = new InMemoryConcept(iri, parentIRI, new ArrayList<OntologyProperty>());
+        concept.setTitle(iri);
+        return concept;
+    }
+}
@@ -0,0 +1,40 @@
+package io.lumify.core.util;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+
+public class ByteBufferInputStreamTest {
+    @Test
+    public void testReads() throws IOException {
+        ByteBuffer shared = ByteBuffer.wrap(new byte[]{1, 2, 3, 4, (byte) 0xff});
+        ByteBufferInputStream in1 = new ByteBufferInputStream(shared.duplicate());
+        ByteBufferInputStream in2 = new ByteBufferInputStream(shared.duplicate());
+
+        byte[] buffer = new byte[3];
+        assertEquals(3, in1.read(buffer));
+        assertEquals(1, buffer[0]);
+        assertEquals(3, buffer[2]);
+        assertEquals(2, in1.available());
+
+        assertEquals(1, in2.read());
+        assertEquals(3, in2.skip(3));
+        assertEquals(0xff, in2.read());
+        assertEquals(-1, in2.read());
+
+        assertEquals(2, in1.read(buffer));
+        assertEquals(4, buffer[0]);
+        assertEquals(-1, in1.read(buffer));
+    }
+
+    @Test
+    public void testClose() throws IOException {
+        ByteBufferInputStream in = new ByteBufferInputStream(ByteBuffer.wrap(new byte[10]));
+        in.close();
+        assertEquals(0, in.available());
+        assertEquals(-1, in.read());
+    }
+}
@@ -0,0 +1,38 @@
+package io.lumify.core.util;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class GeoClustersTest {
+    @Test
+    public void testGeoHash() {
+        assertEquals("ezs42", GeoClusters.geoHash(42.6, -5.6, 5));
+        assertEquals("u4pruydqqvj", GeoClusters.geoHash(57.64911, 10.40744, 11));
+    }
+
+    @Test
+    public void testGetPrecisionForZoom() {
+        assertEquals(1, GeoClusters.getPrecisionForZoom(0));
+        assertEquals(2, GeoClusters.getPrecisionForZoom(3));
+        assertEquals(4, GeoClusters.getPrecisionForZoom(8));
+        assertEquals(GeoClusters.MAX_PRECISION, GeoClusters.getPrecisionForZoom(40));
+    }
+
+    @Test
+    public void testClusters() {
+        GeoClusters geoClusters = new GeoClusters(8);
+        geoClusters.add(38.90, -77.03);
+        geoClusters.add(38.91, -77.04);
+        geoClusters.add(51.50, -0.12);
+
+        List<GeoClusters.Cluster> clusters = geoClusters.getClusters();
+        assertEquals(2, clusters.size());
+        assertEquals(2, clusters.get(0).getCount());
+        assertEquals(38.905, clusters.get(0).getLatitude(), 0.0001);
+        assertEquals(-77.035, clusters.get(0).getLongitude(), 0.0001);
+        assertEquals(1, clusters.get(1).getCount());
+    }
+}
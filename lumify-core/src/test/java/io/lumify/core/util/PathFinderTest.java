@@ -0,0 +1,109 @@
+package io.lumify.core.util;
+
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PathFinderTest {
+    @Test
+    public void testFindPaths() {
+        // a - b - d, a - c - d, b - c, d - e
+        TestPathFinder pathFinder = new TestPathFinder(100, 100, "a:b", "b:d", "a:c", "c:d", "b:c", "d:e");
+
+        PathFinder.Result result = pathFinder.findPaths("a", "d", 1);
+        assertEquals(0, result.getPaths().size());
+
+        result = pathFinder.findPaths("a", "d", 2);
+        assertEquals(2, result.getPaths().size());
+        assertTrue(result.getPaths().contains(Arrays.<Object>asList("a", "b", "d")));
+        assertTrue(result.getPaths().contains(Arrays.<Object>asList("a", "c", "d")));
+        assertTrue(result.isComplete());
+
+        result = pathFinder.findPaths("a", "d", 3);
+        assertEquals(4, result.getPaths().size());
+        assertTrue(result.getPaths().contains(Arrays.<Object>asList("a", "b", "c", "d")));
+        assertTrue(result.getPaths().contains(Arrays.<Object>asList("a", "c", "b", "d")));
+
+        result = pathFinder.findPaths("a", "e", 5);
+        assertEquals(4, result.getPaths().size());
+        assertTrue(result.isComplete());
+    }
+
+    @Test
+    public void testLimits() {
+        TestPathFinder pathFinder = new TestPathFinder(1, 100, "a:b", "b:d", "a:c", "c:d");
+        PathFinder.Result result = pathFinder.findPaths("a", "d", 2);
+        assertEquals(1, result.getPaths().size());
+        assertFalse(result.isComplete());
+
+        pathFinder = new TestPathFinder(2, 100, "a:b", "b:d", "a:c", "c:d");
+        result = pathFinder.findPaths("a", "d", 2);
+        assertEquals(2, result.getPaths().size());
+        assertTrue(result.isComplete());
+
+        pathFinder = new TestPathFinder(100, 1, "a:b", "b:d", "a:c", "c:d");
+        result = pathFinder.findPaths("a", "d", 2);
+        assertFalse(result.isComplete());
+    }
+
+    @Test
+    public void testNeighborLimitStopsInsideALevel() {
+        // a - hub - d, and the hub has many other neighbors
+        List<String> edges = new ArrayList<String>(Arrays.asList("a:hub"));
+        for (int i = 0; i < 1000; i++) {
+            edges.add("hub:n" + i);
+        }
+        edges.add("hub:d");
+        TestPathFinder pathFinder = new TestPathFinder(100, 20, edges.toArray(new String[edges.size()]));
+        PathFinder.Result result = pathFinder.findPaths("a", "d", 3);
+        assertFalse(result.isComplete());
+        assertEquals(20, pathFinder.lastBudget.getNeighborsRead());
+    }
+
+    private static class TestPathFinder extends PathFinder {
+        private final Map<Object, Collection<Object>> neighbors = new HashMap<Object, Collection<Object>>();
+        private Budget lastBudget;
+
+        public TestPathFinder(int maxPaths, int maxNeighbors, String... edges) {
+            super(maxPaths, maxNeighbors, 10000);
+            for (String edge : edges) {
+                String[] vertexIds = edge.split(":");
+                addNeighbor(vertexIds[0], vertexIds[1]);
+                addNeighbor(vertexIds[1], vertexIds[0]);
+            }
+        }
+
+        private void addNeighbor(Object vertexId, Object neighborId) {
+            Collection<Object> vertexNeighbors = neighbors.get(vertexId);
+            if (vertexNeighbors == null) {
+                vertexNeighbors = new ArrayList<Object>();
+                neighbors.put(vertexId, vertexNeighbors);
+            }
+            vertexNeighbors.add(neighborId);
+        }
+
+        @Override
+        protected Map<Object, Collection<Object>> getNeighborIds(Collection<Object> vertexIds, Object sourceVertexId, Object destVertexId, Budget budget) {
+            lastBudget = budget;
+            Map<Object, Collection<Object>> results = new HashMap<Object, Collection<Object>>();
+            for (Object vertexId : vertexIds) {
+                if (!neighbors.containsKey(vertexId)) {
+                    continue;
+                }
+                List<Object> vertexNeighborIds = new ArrayList<Object>();
+                results.put(vertexId, vertexNeighborIds);
+                for (Object neighborId : neighbors.get(vertexId)) {
+                    if (!budget.read()) {
+                        return results;
+                    }
+                    vertexNeighborIds.add(neighborId);
+                }
+            }
+            return results;
+        }
+    }
+}
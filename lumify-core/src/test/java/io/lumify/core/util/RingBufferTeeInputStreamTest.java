@@ -0,0 +1,183 @@
+package io.lumify.core.util;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class RingBufferTeeInputStreamTest {
+    @Test
+    public void testReads() throws Exception {
+        byte[] temp = new byte[100];
+        int readLen;
+        byte[] data = createMockData(10);
+        InputStream source = new ByteArrayInputStream(data);
+        RingBufferTeeInputStream in = new RingBufferTeeInputStream(source, 2);
+        in.loop(); // force a read
+        in.loop(); // force setting source complete
+        InputStream[] tees = in.getTees();
+
+        assertEquals(0, tees[0].read());
+        assertEquals(0, tees[1].read());
+
+        readLen = tees[0].read(temp, 0, 5);
+        assertEquals(5, readLen);
+        assertArrayEquals(Arrays.copyOfRange(data, 1, 6), Arrays.copyOfRange(temp, 0, 5));
+
+        readLen = tees[0].read(temp);
+        assertEquals(4, readLen);
+        assertArrayEquals(Arrays.copyOfRange(data, 6, 10), Arrays.copyOfRange(temp, 0, 4));
+        assertEquals(-1, tees[0].read(temp));
+
+        readLen = tees[1].read(temp);
+        assertEquals(9, readLen);
+        assertArrayEquals(Arrays.copyOfRange(data, 1, 10), Arrays.copyOfRange(temp, 0, 9));
+
+        in.close();
+    }
+
+    @Test
+    public void testReadsWithSmallBufferSize() throws Exception {
+        byte[] temp = new byte[100];
+        int readLen;
+        byte[] data = createMockData(20);
+        InputStream source = new ByteArrayInputStream(data);
+        RingBufferTeeInputStream in = new RingBufferTeeInputStream(source, 2, 10);
+        in.loop(); // force a read
+        InputStream[] tees = in.getTees();
+
+        assertEquals(10, in.getMaxNonblockingReadLength(0));
+        assertEquals(10, in.getMaxNonblockingReadLength(1));
+        assertFalse("buffer is full", in.loop());
+        assertEquals(0, tees[0].read());
+        assertFalse("tees[1] has not read yet", in.loop());
+        assertEquals(9, in.getMaxNonblockingReadLength(0));
+        assertEquals(10, in.getMaxNonblockingReadLength(1));
+
+        assertEquals(0, tees[1].read());
+        assertTrue(in.loop());
+        assertEquals(10, in.getMaxNonblockingReadLength(0));
+        assertEquals(10, in.getMaxNonblockingReadLength(1));
+
+        readLen = tees[0].read(temp, 0, 10);
+        assertEquals(10, readLen);
+        assertArrayEquals(Arrays.copyOfRange(data, 1, 11), Arrays.copyOfRange(temp, 0, 10));
+        assertEquals(0, in.getMaxNonblockingReadLength(0));
+        assertEquals(10, in.getMaxNonblockingReadLength(1));
+
+        readLen = tees[1].read(temp, 0, 10);
+        assertEquals(10, readLen);
+        assertArrayEquals(Arrays.copyOfRange(data, 1, 11), Arrays.copyOfRange(temp, 0, 10));
+        in.loop();
+        assertEquals(9, in.getMaxNonblockingReadLength(0));
+        assertEquals(9, in.getMaxNonblockingReadLength(1));
+
+        in.close();
+    }
+
+    @Test
+    public void testUnsignedSingleByteReads() throws Exception {
+        byte[] data = new byte[]{(byte) 0xff, (byte) 0x80, 0x7f};
+        RingBufferTeeInputStream in = new RingBufferTeeInputStream(new ByteArrayInputStream(data), 1);
+        in.loop();
+        in.loop();
+        InputStream tee = in.getTees()[0];
+        assertEquals(0xff, tee.read());
+        assertEquals(0x80, tee.read());
+        assertEquals(0x7f, tee.read());
+        assertEquals(-1, tee.read());
+        in.close();
+    }
+
+    @Test
+    public void testSkip() throws Exception {
+        byte[] data = createMockData(10);
+        RingBufferTeeInputStream in = new RingBufferTeeInputStream(new ByteArrayInputStream(data), 1);
+        in.loop();
+        InputStream tee = in.getTees()[0];
+        assertEquals(4, tee.skip(4));
+        assertEquals(4, tee.read());
+        in.close();
+    }
+
+    @Test
+    public void testCloseBeforeReadAll() throws Exception {
+        byte[] data = createMockData(4);
+        InputStream source = new ByteArrayInputStream(data);
+        RingBufferTeeInputStream in = new RingBufferTeeInputStream(source, 2, 2);
+        in.loop();
+        InputStream[] tees = in.getTees();
+
+        tees[0].close();
+        in.loop();
+
+        assertEquals(0, tees[1].read());
+        in.loop();
+        assertEquals(1, tees[1].read());
+        in.loop();
+        assertEquals(2, tees[1].read());
+        in.loop();
+        assertEquals(3, tees[1].read());
+        in.loop();
+
+        in.close();
+    }
+
+    @Test
+    public void testAsyncReads() throws Exception {
+        testAsyncReads(false);
+    }
+
+    @Test
+    public void testAsyncReadsDirectBuffer() throws Exception {
+        testAsyncReads(true);
+    }
+
+    private void testAsyncReads(boolean direct) throws Exception {
+        byte[] data = new byte[100000];
+        new Random(1).nextBytes(data);
+        final RingBufferTeeInputStream in = new RingBufferTeeInputStream(new ByteArrayInputStream(data), new String[]{"1", "2", "3"}, 1000, direct);
+        final ByteArrayOutputStream[] results = new ByteArrayOutputStream[3];
+        Thread[] threads = new Thread[3];
+        for (int i = 0; i < threads.length; i++) {
+            final int teeIndex = i;
+            results[i] = new ByteArrayOutputStream();
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        InputStream tee = in.getTees()[teeIndex];
+                        byte[] buffer = new byte[teeIndex * 300 + 1];
+                        int read;
+                        while ((read = tee.read(buffer)) != -1) {
+                            results[teeIndex].write(buffer, 0, read);
+                        }
+                        tee.close();
+                    } catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            });
+            threads[i].start();
+        }
+
+        in.loopUntilTeesAreClosed();
+        for (int i = 0; i < threads.length; i++) {
+            threads[i].join();
+            assertArrayEquals(data, results[i].toByteArray());
+        }
+    }
+
+    private byte[] createMockData(int len) {
+        byte[] data = new byte[len];
+        for (int i = 0; i < len; i++) {
+            data[i] = (byte) i;
+        }
+        return data;
+    }
+}
@@ -16,17 +16,25 @@ import org.securegraph.Graph;
 import com.google.inject.Inject;
 import org.json.JSONObject;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.google.common.base.Preconditions.checkArgument;
 
 public class BigTableWorkQueueRepository extends WorkQueueRepository {
     private static final LumifyLogger LOGGER = LumifyLoggerFactory.getLogger(BigTableWorkQueueRepository.class);
     private final UserRepository userRepository;
     public static final String DEFAULT_TABLE_PREFIX = "atc_accumuloqueue_";
+    public static final String SHARDS_CONFIG_NAME = "shards";
+    public static final int DEFAULT_SHARDS = 1;
     private final ModelSession modelSession;
     private Map<String, QueueItemRepository> queues = new HashMap<String, QueueItemRepository>();
     private String tablePrefix;
+    private int shards = DEFAULT_SHARDS;
+    private final AtomicInteger nextShard = new AtomicInteger();
     private User user;
 
     @Inject
@@ -55,6 +63,16 @@ public class BigTableWorkQueueRepository extends WorkQueueRepository {
         this.tablePrefix = tablePrefix;
     }
 
+    @Configurable(name = SHARDS_CONFIG_NAME, defaultValue = "" + DEFAULT_SHARDS)
+    public void setShards(int shards) {
+        checkArgument(shards > 0, "shards must be greater than 0");
+        this.shards = shards;
+    }
+
+    public static int getShards(Configuration configuration) {
+        return configuration.getInt(Configuration.WORK_QUEUE_REPOSITORY + "." + SHARDS_CONFIG_NAME, DEFAULT_SHARDS);
+    }
+
     @Override
     public Object createSpout(Configuration configuration, String queueName) {
         return new BigtableWorkQueueSpout(configuration, queueName);
@@ -82,7 +100,7 @@ public class BigTableWorkQueueRepository extends WorkQueueRepository {
     }
 
     @Override
-    public void subscribeToBroadcastMessages(BroadcastConsumer broadcastConsumer) {
+    protected void subscribeToBroadcastQueue(BroadcastConsumer broadcastConsumer) {
         LOGGER.error("subscribeToBroadcastMessages not supported");
     }
 
@@ -93,28 +111,51 @@ public class BigTableWorkQueueRepository extends WorkQueueRepository {
 
     @Override
     public void pushOnQueue(String queueName, FlushFlag flushFlag, JSONObject json) {
-        String tableName = getTableName(this.tablePrefix, queueName);
+        QueueItemRepository queue = getQueue(queueName);
 
+        if (LOGGER.isTraceEnabled()) {
+            LOGGER.trace("push on queue %s: %s", queue.getTableName(), json.toString(2));
+        }
+        QueueItem queueItem = createQueueItem(queue.getTableName(), getNextShard(), json);
+        queue.save(queueItem, flushFlag);
+    }
+
+    @Override
+    public void pushOnQueue(String queueName, FlushFlag flushFlag, List<JSONObject> jsons) {
+        QueueItemRepository queue = getQueue(queueName);
+
+        LOGGER.debug("push %d items on queue %s", jsons.size(), queue.getTableName());
+        List<QueueItem> queueItems = new ArrayList<QueueItem>(jsons.size());
+        for (JSONObject json : jsons) {
+            queueItems.add(createQueueItem(queue.getTableName(), getNextShard(), json));
+        }
+        queue.saveMany(queueItems);
+        if (flushFlag == FlushFlag.FLUSH) {
+            queue.flush();
+        }
+    }
+
+    private QueueItemRepository getQueue(String queueName) {
         if (this.user == null) {
             this.user = userRepository.getSystemUser();
         }
 
         QueueItemRepository queue = this.queues.get(queueName);
         if (queue == null) {
+            String tableName = getTableName(this.tablePrefix, queueName);
             this.modelSession.initializeTable(tableName, this.user.getModelUserContext());
             queue = new QueueItemRepository(this.modelSession, tableName);
             this.queues.put(queueName, queue);
         }
+        return queue;
+    }
 
-        if (LOGGER.isTraceEnabled()) {
-            LOGGER.trace("push on queue %s: %s", tableName, json.toString(2));
-        }
-        QueueItem queueItem = createQueueItem(tableName, json);
-        queue.save(queueItem, flushFlag);
+    private int getNextShard() {
+        return (nextShard.getAndIncrement() & Integer.MAX_VALUE) % this.shards;
     }
 
-    public static QueueItem createQueueItem(String queueTableName, JSONObject json, String... extra) {
-        return new QueueItem(queueTableName, json, extra);
+    public static QueueItem createQueueItem(String queueTableName, int shard, JSONObject json, String... extra) {
+        return new QueueItem(queueTableName, shard, json, extra);
     }
 
     public static String getTableName(String tablePrefix, String queueName) {
@@ -24,29 +24,52 @@ import com.codahale.metrics.Counter;
 import com.codahale.metrics.Gauge;
 import com.google.inject.Inject;
 
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.Map;
+import java.util.*;
 
+/**
+ * Emits queue items by scanning the queue table with a cursor per shard. Each spout task owns the shards where
+ * <code>shard % taskCount == taskIndex</code> so several spout tasks can drain the same queue table. A shard's cursor
+ * only goes back to the start of the shard once a scan reaches its end, which picks up rows queued out of order by
+ * other processes without rereading the whole backlog for every tuple.
+ */
 public class BigtableWorkQueueSpout extends BaseRichSpout {
     private static final LumifyLogger LOGGER = LumifyLoggerFactory.getLogger(BigtableWorkQueueSpout.class);
+    public static final String SCAN_BATCH_SIZE_CONFIG_NAME = "scanBatchSize";
+    public static final String ACK_BATCH_SIZE_CONFIG_NAME = "ackBatchSize";
+    public static final String ACK_FLUSH_INTERVAL_CONFIG_NAME = "ackFlushIntervalMs";
+    private static final int DEFAULT_SCAN_BATCH_SIZE = 100;
+    private static final int DEFAULT_ACK_BATCH_SIZE = 100;
+    private static final int DEFAULT_ACK_FLUSH_INTERVAL = 1000;
     private UserRepository userRepository;
     private final String queueName;
     private final String tablePrefix;
+    private final int shards;
+    private final int scanBatchSize;
+    private final int ackBatchSize;
+    private final long ackFlushInterval;
     private ModelSession modelSession;
     private String tableName;
     private User user;
     private QueueItemRepository queueItemRepository;
     private SpoutOutputCollector collector;
-    private Map<String, Boolean> workingSet = new HashMap<String, Boolean>();
+    private Set<String> workingSet = new HashSet<String>();
+    private List<QueueItemRowKey> pendingDeletes = new ArrayList<QueueItemRowKey>();
+    private long lastAckFlushTime;
     private MetricsManager metricsManager;
     private Counter totalProcessedCounter;
     private Counter totalErrorCounter;
+    private List<ShardRange> shardRanges;
+    private int currentShardRange;
+    private int rowsFromCurrentShardRange;
     private Iterator<Row> rows;
 
     public BigtableWorkQueueSpout(Configuration configuration, String queueName) {
         this.queueName = queueName;
         this.tablePrefix = configuration.get(Configuration.WORK_QUEUE_REPOSITORY + ".tableprefix", BigTableWorkQueueRepository.DEFAULT_TABLE_PREFIX);
+        this.shards = BigTableWorkQueueRepository.getShards(configuration);
+        this.scanBatchSize = configuration.getInt(Configuration.WORK_QUEUE_REPOSITORY + "." + SCAN_BATCH_SIZE_CONFIG_NAME, DEFAULT_SCAN_BATCH_SIZE);
+        this.ackBatchSize = configuration.getInt(Configuration.WORK_QUEUE_REPOSITORY + "." + ACK_BATCH_SIZE_CONFIG_NAME, DEFAULT_ACK_BATCH_SIZE);
+        this.ackFlushInterval = configuration.getInt(Configuration.WORK_QUEUE_REPOSITORY + "." + ACK_FLUSH_INTERVAL_CONFIG_NAME, DEFAULT_ACK_FLUSH_INTERVAL);
     }
 
     @Override
@@ -64,21 +87,69 @@ public class BigtableWorkQueueSpout extends BaseRichSpout {
         this.modelSession.initializeTable(this.tableName, user.getModelUserContext());
         this.queueItemRepository = new QueueItemRepository(this.modelSession, this.tableName);
 
+        int taskIndex = topologyContext.getThisTaskIndex();
+        int taskCount = topologyContext.getComponentTasks(topologyContext.getThisComponentId()).size();
+        this.shardRanges = createShardRanges(taskIndex, taskCount);
+        if (this.shardRanges.size() == 0) {
+            LOGGER.warn("spout task %d of %d has no shards of %s to read. Configure at least %d shards.", taskIndex, taskCount, this.tableName, taskCount);
+        } else {
+            LOGGER.info("spout task %d of %d reading %d shard ranges of %s", taskIndex, taskCount, this.shardRanges.size(), this.tableName);
+        }
+        this.lastAckFlushTime = System.currentTimeMillis();
+
         String namePrefix = metricsManager.getNamePrefix(this, this.queueName);
         registerMetrics(metricsManager, namePrefix);
     }
 
-    private Row getNextRows() {
+    private List<ShardRange> createShardRanges(int taskIndex, int taskCount) {
+        List<ShardRange> results = new ArrayList<ShardRange>();
+        if (taskIndex == 0) {
+            // rows queued before sharding was introduced
+            results.add(new ShardRange("", QueueItemRowKey.LEGACY_RANGE_END));
+        }
+        for (int shard = taskIndex; shard < this.shards; shard += taskCount) {
+            results.add(new ShardRange(QueueItemRowKey.getShardStart(shard), QueueItemRowKey.getShardEnd(shard)));
+        }
+        return results;
+    }
+
+    @Override
+    public void close() {
+        flushAcks();
+        super.close();
+    }
+
+    @Override
+    public void deactivate() {
+        flushAcks();
+        super.deactivate();
+    }
+
+    private QueueItem getNextQueueItem() {
         try {
-            if (rows != null && !rows.hasNext()) {
-                rows = null;
-            }
-            if (rows == null) {
-                this.modelSession.flush();
-                rows = this.modelSession.findAll(this.tableName, this.user.getModelUserContext()).iterator();
-            }
-            if (rows.hasNext()) {
-                return rows.next();
+            int exhaustedShardRanges = 0;
+            while (exhaustedShardRanges < this.shardRanges.size()) {
+                ShardRange shardRange = this.shardRanges.get(this.currentShardRange);
+                if (this.rows == null) {
+                    this.rows = this.modelSession.findByRowKeyRange(this.tableName, shardRange.getCursor(), shardRange.getEndKey(), this.user.getModelUserContext()).iterator();
+                    this.rowsFromCurrentShardRange = 0;
+                }
+                while (this.rowsFromCurrentShardRange < this.scanBatchSize && this.rows.hasNext()) {
+                    Row row = this.rows.next();
+                    String rowKeyString = row.getRowKey().toString();
+                    shardRange.advance(rowKeyString);
+                    if (this.workingSet.contains(rowKeyString)) {
+                        continue;
+                    }
+                    this.rowsFromCurrentShardRange++;
+                    return this.queueItemRepository.fromRow(row);
+                }
+                if (!this.rows.hasNext()) {
+                    shardRange.reset();
+                    exhaustedShardRanges++;
+                }
+                this.rows = null;
+                this.currentShardRange = (this.currentShardRange + 1) % this.shardRanges.size();
             }
             return null;
         } catch (Exception ex) {
@@ -102,40 +173,59 @@ public class BigtableWorkQueueSpout extends BaseRichSpout {
 
     @Override
     public void nextTuple() {
-        while (true) {
-            try {
-                Row row = getNextRows();
-                if (row != null) {
-                    String rowKeyString = row.getRowKey().toString();
-                    if (this.workingSet.containsKey(rowKeyString)) {
-                        break;
-                    }
-                    QueueItem queueItem = this.queueItemRepository.fromRow(row);
-                    this.workingSet.put(rowKeyString, true);
-                    String jsonString = queueItem.getJson().toString();
-                    LOGGER.debug("emit (%s): %s", this.tableName, rowKeyString);
-                    this.collector.emit(new Values(jsonString), rowKeyString);
-                    return;
-                }
-            } catch (Exception ex) {
-                LOGGER.error("Could not get next tuple (" + this.tableName + ")", ex);
-                this.collector.reportError(ex);
-                Utils.sleep(10000);
+        try {
+            if (System.currentTimeMillis() - this.lastAckFlushTime > this.ackFlushInterval) {
+                flushAcks();
             }
-            Utils.sleep(1000);
+
+            QueueItem queueItem = getNextQueueItem();
+            if (queueItem == null) {
+                Utils.sleep(1000);
+                return;
+            }
+            String rowKeyString = queueItem.getRowKey().toString();
+            this.workingSet.add(rowKeyString);
+            String jsonString = queueItem.getJson().toString();
+            LOGGER.debug("emit (%s): %s", this.tableName, rowKeyString);
+            this.collector.emit(new Values(jsonString), rowKeyString);
+        } catch (Exception ex) {
+            LOGGER.error("Could not get next tuple (" + this.tableName + ")", ex);
+            this.collector.reportError(ex);
+            Utils.sleep(10000);
         }
     }
 
     @Override
     public void ack(Object msgId) {
+        LOGGER.debug("ack (%s): %s", this.tableName, msgId.toString());
+        this.totalProcessedCounter.inc();
+        this.pendingDeletes.add(new QueueItemRowKey(msgId));
+        if (this.pendingDeletes.size() >= this.ackBatchSize) {
+            flushAcks();
+        }
+    }
+
+    /**
+     * Acked rows stay in the working set until their deletes are flushed so that a rescan of the shard
+     * does not emit them a second time.
+     */
+    private void flushAcks() {
+        this.lastAckFlushTime = System.currentTimeMillis();
+        if (this.pendingDeletes.size() == 0) {
+            return;
+        }
         try {
-            LOGGER.debug("ack (%s): %s", this.tableName, msgId.toString());
-            this.totalProcessedCounter.inc();
-            QueueItemRowKey rowKey = new QueueItemRowKey(msgId);
-            this.queueItemRepository.delete(rowKey);
-            this.workingSet.remove(rowKey.toString());
+            LOGGER.debug("deleting %d acked rows (%s)", this.pendingDeletes.size(), this.tableName);
+            for (QueueItemRowKey rowKey : this.pendingDeletes) {
+                this.modelSession.deleteRow(this.tableName, rowKey);
+            }
+            this.modelSession.flush();
+            for (QueueItemRowKey rowKey : this.pendingDeletes) {
+                this.workingSet.remove(rowKey.toString());
+            }
+            this.pendingDeletes.clear();
         } catch (Exception ex) {
-            LOGGER.error("Could not ack (" + this.tableName + "): " + msgId, ex);
+            LOGGER.error("Could not ack (" + this.tableName + "): " + this.pendingDeletes.size() + " rows", ex);
             this.collector.reportError(ex);
         }
     }
@@ -165,4 +255,32 @@ public class BigtableWorkQueueSpout extends BaseRichSpout {
     public void setUserRepository(UserRepository userProvider) {
         this.userRepository = userProvider;
     }
+
+    private static class ShardRange {
+        private final String startKey;
+        private final String endKey;
+        private String cursor;
+
+        public ShardRange(String startKey, String endKey) {
+            this.startKey = startKey;
+            this.endKey = endKey;
+            this.cursor = startKey;
+        }
+
+        public String getEndKey() {
+            return endKey;
+        }
+
+        public String getCursor() {
+            return cursor;
+        }
+
+        public void advance(String rowKey) {
+            this.cursor = QueueItemRowKey.getKeyAfter(rowKey);
+        }
+
+        public void reset() {
+            this.cursor = this.startKey;
+        }
+    }
 }
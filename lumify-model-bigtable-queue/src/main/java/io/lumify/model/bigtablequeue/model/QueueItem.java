@@ -18,8 +18,8 @@ public class QueueItem extends Row<QueueItemRowKey> {
         super(tableName);
     }
 
-    public QueueItem(String tableName, JSONObject json, String[] extra) {
-        super(tableName, new QueueItemRowKey(System.nanoTime()));
+    public QueueItem(String tableName, int shard, JSONObject json, String[] extra) {
+        super(tableName, QueueItemRowKey.create(shard));
 
         JSONObject jsonWithExtras = createJsonWithExtras(json, extra);
         ColumnFamily cf = new ColumnFamily(COLUMN_FAMILY_NAME);
@@ -1,17 +1,71 @@
 package io.lumify.model.bigtablequeue.model;
 
 import com.altamiracorp.bigtable.model.RowKey;
+import org.apache.commons.lang.StringUtils;
 
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Queue row keys are of the form <code>s[shard]_[time]</code> where both the shard and the time are fixed width hex
+ * so that rows within a shard sort in the order they were queued. Rows written before sharding was introduced are a
+ * bare hex time and sort before every sharded row (see {@link #LEGACY_RANGE_END}).
+ */
 public class QueueItemRowKey extends RowKey {
-    public QueueItemRowKey(long time) {
-        super(Long.toHexString(time));
+    public static final String SHARD_PREFIX = "s";
+    public static final char SHARD_SEP = '_';
+    public static final String LEGACY_RANGE_END = SHARD_PREFIX;
+    private static final char RANGE_END = '~';
+    private static final int SHARD_WIDTH = 4;
+    private static final int TIME_WIDTH = 16;
+    private static final AtomicLong lastTime = new AtomicLong();
+
+    public QueueItemRowKey(String rowKey) {
+        super(rowKey);
+    }
+
+    public QueueItemRowKey(int shard, long time) {
+        this(getShardStart(shard) + StringUtils.leftPad(Long.toHexString(time), TIME_WIDTH, '0'));
     }
 
     public QueueItemRowKey(RowKey rowKey) {
-        this(Long.parseLong(rowKey.toString(), 16));
+        this(rowKey.toString());
     }
 
     public QueueItemRowKey(Object msgId) {
-        this(Long.parseLong(msgId.toString(), 16));
+        this(msgId.toString());
+    }
+
+    public static QueueItemRowKey create(int shard) {
+        return new QueueItemRowKey(shard, nextTime());
+    }
+
+    /**
+     * Microsecond wall clock time which is strictly increasing within this JVM so rows pushed from the same
+     * process never collide and always sort in push order.
+     */
+    private static long nextTime() {
+        long now = System.currentTimeMillis() * 1000;
+        while (true) {
+            long last = lastTime.get();
+            long next = Math.max(now, last + 1);
+            if (lastTime.compareAndSet(last, next)) {
+                return next;
+            }
+        }
+    }
+
+    public static String getShardStart(int shard) {
+        return SHARD_PREFIX + StringUtils.leftPad(Integer.toHexString(shard), SHARD_WIDTH, '0') + SHARD_SEP;
+    }
+
+    public static String getShardEnd(int shard) {
+        return getShardStart(shard) + RANGE_END;
+    }
+
+    /**
+     * The smallest possible key that sorts after the given key.
+     */
+    public static String getKeyAfter(String rowKey) {
+        return rowKey + '\u0000';
     }
 }
@@ -15,6 +15,7 @@ import org.securegraph.Graph;
 
 import java.io.IOException;
 import java.util.HashSet;
+import java.util.List;
 
 public class RabbitMQWorkQueueRepository extends WorkQueueRepository {
     private static final LumifyLogger LOGGER = LumifyLoggerFactory.getLogger(RabbitMQWorkQueueRepository.class);
@@ -57,6 +58,18 @@ public class RabbitMQWorkQueueRepository extends WorkQueueRepository {
         }
     }
 
+    @Override
+    public void pushOnQueue(String queueName, FlushFlag flushFlag, List<JSONObject> jsons) {
+        try {
+            ensureQueue(queueName);
+            for (JSONObject json : jsons) {
+                channel.basicPublish("", queueName, null, json.toString().getBytes());
+            }
+        } catch (Exception ex) {
+            throw new LumifyException("Could not push on queue", ex);
+        }
+    }
+
     private void ensureQueue(String queueName) throws IOException {
         if (!declaredQueues.contains(queueName)) {
             channel.queueDeclare(queueName, true, false, false, null);
@@ -97,7 +110,7 @@ public class RabbitMQWorkQueueRepository extends WorkQueueRepository {
     }
 
     @Override
-    public void subscribeToBroadcastMessages(final BroadcastConsumer broadcastConsumer) {
+    protected void subscribeToBroadcastQueue(final BroadcastConsumer broadcastConsumer) {
         try {
             ensureBroadcastExchange();
 
@@ -3,7 +3,6 @@ package io.lumify.securegraph.model.ontology;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Iterables;
-import com.google.common.collect.Lists;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import io.lumify.core.exception.LumifyException;
@@ -54,6 +53,9 @@ public class SecureGraphOntologyRepository extends OntologyRepositoryBase {
     private Cache<String, List<Relationship>> relationshipLabelsCache = CacheBuilder.newBuilder()
             .expireAfterWrite(1, TimeUnit.HOURS)
             .build();
+    private Cache<String, ConceptHierarchy> conceptHierarchyCache = CacheBuilder.newBuilder()
+            .expireAfterWrite(1, TimeUnit.HOURS)
+            .build();
 
     @Inject
     public SecureGraphOntologyRepository(final Graph graph,
@@ -81,6 +83,7 @@ public class SecureGraphOntologyRepository extends OntologyRepositoryBase {
         this.allPropertiesCache.invalidateAll();
         this.conceptsCache.invalidateAll();
         this.relationshipLabelsCache.invalidateAll();
+        this.conceptHierarchyCache.invalidateAll();
     }
 
     @Override
@@ -273,26 +276,9 @@ public class SecureGraphOntologyRepository extends OntologyRepositoryBase {
         return getConceptByIRI(SecureGraphOntologyRepository.ENTITY_CONCEPT_IRI);
     }
 
-    private List<Concept> getChildConcepts(Concept concept) {
-        Vertex conceptVertex = ((SecureGraphConcept) concept).getVertex();
-        return toConcepts(conceptVertex.getVertices(Direction.IN, LabelName.IS_A.toString(), getAuthorizations()));
-    }
-
     @Override
     public Concept getParentConcept(final Concept concept) {
-        Vertex parentConceptVertex = getParentConceptVertex(((SecureGraphConcept) concept).getVertex());
-        if (parentConceptVertex == null) {
-            return null;
-        }
-        return new SecureGraphConcept(parentConceptVertex);
-    }
-
-    private List<Concept> toConcepts(Iterable<Vertex> vertices) {
-        ArrayList<Concept> concepts = new ArrayList<Concept>();
-        for (Vertex vertex : vertices) {
-            concepts.add(new SecureGraphConcept(vertex));
-        }
-        return concepts;
+        return getConceptHierarchy().getParentConcept(concept);
     }
 
     @Override
@@ -312,30 +298,35 @@ public class SecureGraphOntologyRepository extends OntologyRepositoryBase {
 
     @Override
     public List<Concept> getConceptAndChildrenByIRI(String conceptIRI) {
-        ArrayList<Concept> concepts = new ArrayList<Concept>();
-        Concept concept = getConceptByIRI(conceptIRI);
+        ConceptHierarchy hierarchy = getConceptHierarchy();
+        Concept concept = hierarchy.getConcept(conceptIRI);
         if (concept == null) {
             return null;
         }
+        List<Concept> concepts = new ArrayList<Concept>();
         concepts.add(concept);
-        List<Concept> children = getChildConcepts(concept);
-        concepts.addAll(children);
+        concepts.addAll(hierarchy.getConcepts(hierarchy.getChildIRIs(conceptIRI)));
         return concepts;
     }
 
     @Override
     public List<Concept> getAllLeafNodesByConcept(Concept concept) {
-        List<Concept> childConcepts = getChildConcepts(concept);
-        List<Concept> parent = Lists.newArrayList(concept);
-        if (childConcepts.size() > 0) {
-            List<Concept> childrenList = new ArrayList<Concept>();
-            for (Concept childConcept : childConcepts) {
-                List<Concept> child = getAllLeafNodesByConcept(childConcept);
-                childrenList.addAll(child);
-            }
-            parent.addAll(childrenList);
+        ConceptHierarchy hierarchy = getConceptHierarchy();
+        return hierarchy.getConcepts(hierarchy.getConceptAndDescendantIRIs(concept.getTitle()));
+    }
+
+    @Override
+    public ConceptHierarchy getConceptHierarchy() {
+        try {
+            return conceptHierarchyCache.get("", new TimingCallable<ConceptHierarchy>("getConceptHierarchy") {
+                @Override
+                public ConceptHierarchy callWithTime() throws Exception {
+                    return new ConceptHierarchy(toList(getConcepts(true)));
+                }
+            });
+        } catch (ExecutionException e) {
+            throw new LumifyException("could not get concept hierarchy", e);
         }
-        return parent;
     }
 
     @Override
@@ -357,6 +348,7 @@ public class SecureGraphOntologyRepository extends OntologyRepositoryBase {
         }
 
         graph.flush();
+        conceptHierarchyCache.invalidateAll();
         return concept;
     }
 
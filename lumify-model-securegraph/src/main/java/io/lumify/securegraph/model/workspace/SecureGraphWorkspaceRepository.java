@@ -1,7 +1,5 @@
 package io.lumify.securegraph.model.workspace;
 
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import io.lumify.core.exception.LumifyAccessDeniedException;
@@ -24,14 +22,14 @@ import io.lumify.securegraph.model.user.SecureGraphUserRepository;
 import org.securegraph.*;
 import org.securegraph.mutation.ElementMutation;
 import org.securegraph.util.ConvertingIterable;
-import org.securegraph.util.VerticesToEdgeIdsIterable;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.concurrent.TimeUnit;
+import java.util.Map;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 import static org.securegraph.util.IterableUtils.toList;
-import static org.securegraph.util.IterableUtils.toSet;
 
 @Singleton
 public class SecureGraphWorkspaceRepository extends WorkspaceRepository {
@@ -43,12 +41,17 @@ public class SecureGraphWorkspaceRepository extends WorkspaceRepository {
     private UserRepository userRepository;
     private AuthorizationRepository authorizationRepository;
     private WorkspaceDiff workspaceDiff;
-    private Cache<String, Boolean> usersWithReadAccessCache = CacheBuilder.newBuilder()
-            .expireAfterWrite(15, TimeUnit.SECONDS)
-            .build();
-    private Cache<String, Boolean> usersWithWriteAccessCache = CacheBuilder.newBuilder()
-            .expireAfterWrite(15, TimeUnit.SECONDS)
-            .build();
+    private final WorkspaceAccessIndex accessIndex = new WorkspaceAccessIndex() {
+        @Override
+        protected List<WorkspaceUser> loadUsers(String workspaceId, User user) {
+            return readUsersWithAccess(workspaceId, user);
+        }
+
+        @Override
+        protected Map<String, WorkspaceUser> loadWorkspaces(User user) {
+            return readWorkspacesOfUser(user);
+        }
+    };
 
     @Inject
     public SecureGraphWorkspaceRepository(
@@ -87,6 +90,7 @@ public class SecureGraphWorkspaceRepository extends WorkspaceRepository {
         Vertex workspaceVertex = getVertexFromWorkspace(workspace, authorizations);
         graph.removeVertex(workspaceVertex, authorizations);
         graph.flush();
+        accessIndex.removeWorkspace(workspace.getId());
 
         authorizationRepository.removeAuthorizationFromGraph(workspace.getId());
     }
@@ -142,13 +146,20 @@ public class SecureGraphWorkspaceRepository extends WorkspaceRepository {
         WorkspaceLumifyProperties.WORKSPACE_TO_USER_IS_CREATOR.setProperty(edgeBuilder, true, VISIBILITY.getVisibility());
         WorkspaceLumifyProperties.WORKSPACE_TO_USER_ACCESS.setProperty(edgeBuilder, WorkspaceAccess.WRITE.toString(), VISIBILITY.getVisibility());
         edgeBuilder.save();
+        accessIndex.setUser(workspaceVertex.getId().toString(), new WorkspaceUser(userVertex.getId().toString(), WorkspaceAccess.WRITE, true));
     }
 
     @Override
     public Iterable<Workspace> findAll(User user) {
         Authorizations authorizations = userRepository.getAuthorizations(user, VISIBILITY_STRING, UserRepository.VISIBILITY_STRING);
-        Iterable<Vertex> vertices = graph.getVertex(user.getUserId(), authorizations).getVertices(Direction.IN, workspaceToUserRelationshipId, authorizations);
-        return toWorkspaceIterable(vertices, user);
+        List<Object> workspaceIds = new ArrayList<Object>(accessIndex.getWorkspaceIds(user));
+        List<Workspace> workspaces = new ArrayList<Workspace>();
+        for (Vertex workspaceVertex : graph.getVertices(workspaceIds, authorizations)) {
+            if (workspaceVertex != null) {
+                workspaces.add(new SecureGraphWorkspace(workspaceVertex));
+            }
+        }
+        return workspaces;
     }
 
     @Override
@@ -164,25 +175,41 @@ public class SecureGraphWorkspaceRepository extends WorkspaceRepository {
 
     @Override
     public List<WorkspaceUser> findUsersWithAccess(final String workspaceId, final User user) {
+        return new ArrayList<WorkspaceUser>(accessIndex.getUsers(workspaceId, user).values());
+    }
+
+    private List<WorkspaceUser> readUsersWithAccess(final String workspaceId, final User user) {
         Authorizations authorizations = userRepository.getAuthorizations(user, VISIBILITY_STRING, workspaceId);
         Vertex workspaceVertex = getVertex(workspaceId, user);
         Iterable<Edge> userEdges = workspaceVertex.getEdges(Direction.BOTH, workspaceToUserRelationshipId, authorizations);
         return toList(new ConvertingIterable<Edge, WorkspaceUser>(userEdges) {
             @Override
             protected WorkspaceUser convert(Edge edge) {
-                String userId = edge.getOtherVertexId(workspaceId).toString();
+                return toWorkspaceUser(edge, edge.getOtherVertexId(workspaceId).toString());
+            }
+        });
+    }
 
-                String accessString = WorkspaceLumifyProperties.WORKSPACE_TO_USER_ACCESS.getPropertyValue(edge);
-                WorkspaceAccess workspaceAccess = WorkspaceAccess.NONE;
-                if (accessString != null && accessString.length() > 0) {
-                    workspaceAccess = WorkspaceAccess.valueOf(accessString);
-                }
+    private Map<String, WorkspaceUser> readWorkspacesOfUser(User user) {
+        Authorizations authorizations = userRepository.getAuthorizations(user, VISIBILITY_STRING, UserRepository.VISIBILITY_STRING);
+        Iterable<Edge> workspaceEdges = graph.getVertex(user.getUserId(), authorizations).getEdges(Direction.IN, workspaceToUserRelationshipId, authorizations);
+        Map<String, WorkspaceUser> result = new LinkedHashMap<String, WorkspaceUser>();
+        for (Edge edge : workspaceEdges) {
+            result.put(edge.getOtherVertexId(user.getUserId()).toString(), toWorkspaceUser(edge, user.getUserId()));
+        }
+        return result;
+    }
 
-                boolean isCreator = WorkspaceLumifyProperties.WORKSPACE_TO_USER_IS_CREATOR.getPropertyValue(edge, false);
+    private static WorkspaceUser toWorkspaceUser(Edge edge, String userId) {
+        String accessString = WorkspaceLumifyProperties.WORKSPACE_TO_USER_ACCESS.getPropertyValue(edge);
+        WorkspaceAccess workspaceAccess = WorkspaceAccess.NONE;
+        if (accessString != null && accessString.length() > 0) {
+            workspaceAccess = WorkspaceAccess.valueOf(accessString);
+        }
 
-                return new WorkspaceUser(userId, workspaceAccess, isCreator);
-            }
-        });
+        boolean isCreator = WorkspaceLumifyProperties.WORKSPACE_TO_USER_IS_CREATOR.getPropertyValue(edge, false);
+
+        return new WorkspaceUser(userId, workspaceAccess, isCreator);
     }
 
     @Override
@@ -208,13 +235,6 @@ public class SecureGraphWorkspaceRepository extends WorkspaceRepository {
         });
     }
 
-    private Iterable<Edge> findEdges(final Workspace workspace, List<WorkspaceEntity> workspaceEntities, User user) {
-        Authorizations authorizations = userRepository.getAuthorizations(user, VISIBILITY_STRING, workspace.getId());
-        Iterable<Vertex> vertices = WorkspaceEntity.toVertices(graph, workspaceEntities, authorizations);
-        Iterable<Object> edgeIds = toSet(new VerticesToEdgeIdsIterable(vertices, authorizations));
-        return graph.getEdges(edgeIds, authorizations);
-    }
-
     @Override
     public Workspace copyTo(Workspace workspace, User destinationUser, User user) {
         Workspace newWorkspace = super.copyTo(workspace, destinationUser, user);
@@ -300,6 +320,7 @@ public class SecureGraphWorkspaceRepository extends WorkspaceRepository {
             graph.removeEdge(edge, authorizations);
         }
         graph.flush();
+        accessIndex.removeUser(workspace.getId(), userId);
     }
 
     @Override
@@ -307,21 +328,7 @@ public class SecureGraphWorkspaceRepository extends WorkspaceRepository {
         if (user instanceof SystemUser) {
             return true;
         }
-
-        String cacheKey = workspaceId + user.getUserId();
-        Boolean hasWriteAccess = usersWithWriteAccessCache.getIfPresent(cacheKey);
-        if (hasWriteAccess != null && hasWriteAccess) {
-            return true;
-        }
-
-        List<WorkspaceUser> usersWithAccess = findUsersWithAccess(workspaceId, user);
-        for (WorkspaceUser userWithAccess : usersWithAccess) {
-            if (userWithAccess.getUserId().equals(user.getUserId()) && userWithAccess.getWorkspaceAccess() == WorkspaceAccess.WRITE) {
-                usersWithWriteAccessCache.put(cacheKey, true);
-                return true;
-            }
-        }
-        return false;
+        return accessIndex.getAccess(workspaceId, user) == WorkspaceAccess.WRITE;
     }
 
     @Override
@@ -329,21 +336,8 @@ public class SecureGraphWorkspaceRepository extends WorkspaceRepository {
         if (user instanceof SystemUser) {
             return true;
         }
-
-        String cacheKey = workspaceId + user.getUserId();
-        Boolean hasReadAccess = usersWithReadAccessCache.getIfPresent(cacheKey);
-        if (hasReadAccess != null && hasReadAccess) {
-            return true;
-        }
-
-        List<WorkspaceUser> usersWithAccess = findUsersWithAccess(workspaceId, user);
-        for (WorkspaceUser userWithAccess : usersWithAccess) {
-            if (userWithAccess.getUserId().equals(user.getUserId())
-                    && (userWithAccess.getWorkspaceAccess() == WorkspaceAccess.WRITE || userWithAccess.getWorkspaceAccess() == WorkspaceAccess.READ)) {
-                return true;
-            }
-        }
-        return false;
+        WorkspaceAccess workspaceAccess = accessIndex.getAccess(workspaceId, user);
+        return workspaceAccess == WorkspaceAccess.WRITE || workspaceAccess == WorkspaceAccess.READ;
     }
 
     @Override
@@ -380,6 +374,9 @@ public class SecureGraphWorkspaceRepository extends WorkspaceRepository {
         }
 
         graph.flush();
+        WorkspaceUser existingWorkspaceUser = accessIndex.getUsers(workspace.getId(), user).get(userId);
+        boolean isCreator = existingWorkspaceUser != null && existingWorkspaceUser.isCreator();
+        accessIndex.setUser(workspace.getId(), new WorkspaceUser(userId, workspaceAccess, isCreator));
     }
 
     @Override
@@ -389,17 +386,6 @@ public class SecureGraphWorkspaceRepository extends WorkspaceRepository {
         }
 
         List<WorkspaceEntity> workspaceEntities = findEntities(workspace, user);
-        List<Edge> workspaceEdges = toList(findEdges(workspace, workspaceEntities, user));
-
-        return workspaceDiff.diff(workspace, workspaceEntities, workspaceEdges, user);
-    }
-
-    private Iterable<Workspace> toWorkspaceIterable(Iterable<Vertex> vertices, final User user) {
-        return new ConvertingIterable<Vertex, Workspace>(vertices) {
-            @Override
-            protected Workspace convert(Vertex workspaceVertex) {
-                return new SecureGraphWorkspace(workspaceVertex);
-            }
-        };
+        return workspaceDiff.diff(workspace, workspaceEntities, user);
     }
 }
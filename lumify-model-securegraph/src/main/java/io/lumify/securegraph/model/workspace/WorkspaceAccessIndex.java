@@ -0,0 +1,137 @@
+package io.lumify.securegraph.model.workspace;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.lumify.core.model.workspace.WorkspaceAccess;
+import io.lumify.core.model.workspace.WorkspaceUser;
+import io.lumify.core.user.User;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The users of each workspace and the workspaces of each user. Each side is read from the workspace to user edges the
+ * first time a workspace or user is asked about and is then updated in place as users are added to and removed from
+ * workspaces by this process. Entries are read again after {@link #EXPIRE_SECONDS} to pick up changes made by other
+ * processes. The maps held are never changed, changes replace them. A map read while a user was added or removed is
+ * returned but not kept, since it may have been read before the change.
+ */
+abstract class WorkspaceAccessIndex {
+    public static final int EXPIRE_SECONDS = 60;
+    private final Cache<String, Map<String, WorkspaceUser>> usersByWorkspaceId = CacheBuilder.newBuilder()
+            .maximumSize(10000)
+            .expireAfterWrite(EXPIRE_SECONDS, TimeUnit.SECONDS)
+            .build();
+    private final Cache<String, Map<String, WorkspaceUser>> workspacesByUserId = CacheBuilder.newBuilder()
+            .maximumSize(10000)
+            .expireAfterWrite(EXPIRE_SECONDS, TimeUnit.SECONDS)
+            .build();
+    private long updates; /* a load which overlaps an update may have read the old edges and is not kept */
+
+    /**
+     * @param user the user whose authorizations are used if the workspace has to be read.
+     * @return the users of the workspace by user id.
+     */
+    public Map<String, WorkspaceUser> getUsers(String workspaceId, User user) {
+        Map<String, WorkspaceUser> users = usersByWorkspaceId.getIfPresent(workspaceId);
+        if (users == null) {
+            long startUpdates = getUpdates();
+            users = toMap(loadUsers(workspaceId, user));
+            synchronized (this) {
+                if (updates == startUpdates) {
+                    Map<String, WorkspaceUser> updatedUsers = usersByWorkspaceId.asMap().putIfAbsent(workspaceId, users);
+                    if (updatedUsers != null) {
+                        users = updatedUsers;
+                    }
+                }
+            }
+        }
+        return users;
+    }
+
+    public WorkspaceAccess getAccess(String workspaceId, User user) {
+        WorkspaceUser workspaceUser = getUsers(workspaceId, user).get(user.getUserId());
+        return workspaceUser == null ? WorkspaceAccess.NONE : workspaceUser.getWorkspaceAccess();
+    }
+
+    /**
+     * @return the ids of the workspaces the user has an edge to, whatever the access.
+     */
+    public Set<String> getWorkspaceIds(User user) {
+        Map<String, WorkspaceUser> workspaces = workspacesByUserId.getIfPresent(user.getUserId());
+        if (workspaces == null) {
+            long startUpdates = getUpdates();
+            workspaces = Collections.unmodifiableMap(new LinkedHashMap<String, WorkspaceUser>(loadWorkspaces(user)));
+            synchronized (this) {
+                if (updates == startUpdates) {
+                    Map<String, WorkspaceUser> updatedWorkspaces = workspacesByUserId.asMap().putIfAbsent(user.getUserId(), workspaces);
+                    if (updatedWorkspaces != null) {
+                        workspaces = updatedWorkspaces;
+                    }
+                }
+            }
+        }
+        return workspaces.keySet();
+    }
+
+    private synchronized long getUpdates() {
+        return updates;
+    }
+
+    public synchronized void setUser(String workspaceId, WorkspaceUser workspaceUser) {
+        updates++;
+        Map<String, WorkspaceUser> users = usersByWorkspaceId.getIfPresent(workspaceId);
+        if (users != null) {
+            Map<String, WorkspaceUser> newUsers = new LinkedHashMap<String, WorkspaceUser>(users);
+            newUsers.put(workspaceUser.getUserId(), workspaceUser);
+            usersByWorkspaceId.put(workspaceId, Collections.unmodifiableMap(newUsers));
+        }
+
+        Map<String, WorkspaceUser> workspaces = workspacesByUserId.getIfPresent(workspaceUser.getUserId());
+        if (workspaces != null) {
+            Map<String, WorkspaceUser> newWorkspaces = new LinkedHashMap<String, WorkspaceUser>(workspaces);
+            newWorkspaces.put(workspaceId, workspaceUser);
+            workspacesByUserId.put(workspaceUser.getUserId(), Collections.unmodifiableMap(newWorkspaces));
+        }
+    }
+
+    public synchronized void removeUser(String workspaceId, String userId) {
+        updates++;
+        Map<String, WorkspaceUser> users = usersByWorkspaceId.getIfPresent(workspaceId);
+        if (users != null && users.containsKey(userId)) {
+            Map<String, WorkspaceUser> newUsers = new LinkedHashMap<String, WorkspaceUser>(users);
+            newUsers.remove(userId);
+            usersByWorkspaceId.put(workspaceId, Collections.unmodifiableMap(newUsers));
+        }
+
+        Map<String, WorkspaceUser> workspaces = workspacesByUserId.getIfPresent(userId);
+        if (workspaces != null && workspaces.containsKey(workspaceId)) {
+            Map<String, WorkspaceUser> newWorkspaces = new LinkedHashMap<String, WorkspaceUser>(workspaces);
+            newWorkspaces.remove(workspaceId);
+            workspacesByUserId.put(userId, Collections.unmodifiableMap(newWorkspaces));
+        }
+    }
+
+    public synchronized void removeWorkspace(String workspaceId) {
+        updates++;
+        usersByWorkspaceId.invalidate(workspaceId);
+        for (String userId : new ArrayList<String>(workspacesByUserId.asMap().keySet())) {
+            removeUser(workspaceId, userId);
+        }
+    }
+
+    private static Map<String, WorkspaceUser> toMap(List<WorkspaceUser> workspaceUsers) {
+        Map<String, WorkspaceUser> result = new LinkedHashMap<String, WorkspaceUser>();
+        for (WorkspaceUser workspaceUser : workspaceUsers) {
+            result.put(workspaceUser.getUserId(), workspaceUser);
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    protected abstract List<WorkspaceUser> loadUsers(String workspaceId, User user);
+
+    /**
+     * @return the user's edge of each workspace by workspace id.
+     */
+    protected abstract Map<String, WorkspaceUser> loadWorkspaces(User user);
+}
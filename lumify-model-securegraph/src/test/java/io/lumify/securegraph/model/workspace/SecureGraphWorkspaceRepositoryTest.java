@@ -228,6 +228,32 @@ public class SecureGraphWorkspaceRepositoryTest {
         assertEquals(startingEdgeCount + 2, graph.getAllEdges().size()); // +2 = the edges between workspaces and users
     }
 
+    @Test
+    public void testAccessIndexIsUpdatedInPlace() {
+        String workspaceId = "testWorkspaceId";
+        idGenerator.push(workspaceId);
+        idGenerator.push(workspaceId + "_to_" + user1.getUserId());
+        Workspace workspace = workspaceRepository.add("workspace1", user1);
+
+        assertEquals(0, toList(workspaceRepository.findAll(user2)).size());
+        assertFalse(workspaceRepository.hasReadPermissions(workspace.getId(), user2));
+
+        idGenerator.push(workspaceId + "_to_" + user2.getUserId());
+        workspaceRepository.updateUserOnWorkspace(workspace, user2.getUserId(), WorkspaceAccess.READ, user1);
+        assertEquals(1, toList(workspaceRepository.findAll(user2)).size());
+        assertTrue(workspaceRepository.hasReadPermissions(workspace.getId(), user2));
+        assertFalse(workspaceRepository.hasWritePermissions(workspace.getId(), user2));
+        assertEquals(user1.getUserId(), workspaceRepository.getCreatorUserId(workspace, user2));
+
+        workspaceRepository.updateUserOnWorkspace(workspace, user2.getUserId(), WorkspaceAccess.WRITE, user1);
+        assertTrue(workspaceRepository.hasWritePermissions(workspace.getId(), user2));
+
+        workspaceRepository.deleteUserFromWorkspace(workspace, user2.getUserId(), user1);
+        assertEquals(0, toList(workspaceRepository.findAll(user2)).size());
+        assertFalse(workspaceRepository.hasReadPermissions(workspace.getId(), user2));
+        assertFalse(workspaceRepository.hasWritePermissions(workspace.getId(), user2));
+    }
+
     @Test
     public void testEntities() {
         int startingVertexCount = graph.getAllVertices().size();
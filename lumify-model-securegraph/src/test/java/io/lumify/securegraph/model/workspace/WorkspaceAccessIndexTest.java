@@ -0,0 +1,109 @@
+package io.lumify.securegraph.model.workspace;
+
+import io.lumify.core.model.workspace.WorkspaceAccess;
+import io.lumify.core.model.workspace.WorkspaceUser;
+import io.lumify.core.user.User;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class WorkspaceAccessIndexTest {
+    private static final String WORKSPACE_ID = "workspace1";
+    private static final String USER_ID = "user1";
+
+    private User user;
+    private List<WorkspaceUser> storedUsers;
+    private volatile CountDownLatch loadStarted;
+    private volatile CountDownLatch finishLoad;
+    private WorkspaceAccessIndex index;
+
+    @Before
+    public void setUp() {
+        user = mock(User.class);
+        when(user.getUserId()).thenReturn(USER_ID);
+        storedUsers = new ArrayList<WorkspaceUser>();
+        storedUsers.add(new WorkspaceUser(USER_ID, WorkspaceAccess.WRITE, true));
+        index = new WorkspaceAccessIndex() {
+            @Override
+            protected List<WorkspaceUser> loadUsers(String workspaceId, User user) {
+                List<WorkspaceUser> users = new ArrayList<WorkspaceUser>(storedUsers);
+                waitForUpdate();
+                return users;
+            }
+
+            @Override
+            protected Map<String, WorkspaceUser> loadWorkspaces(User user) {
+                Map<String, WorkspaceUser> workspaces = new HashMap<String, WorkspaceUser>();
+                for (WorkspaceUser workspaceUser : storedUsers) {
+                    workspaces.put(WORKSPACE_ID, workspaceUser);
+                }
+                waitForUpdate();
+                return workspaces;
+            }
+        };
+    }
+
+    @Test
+    public void testUsersLoadedDuringRemovalAreNotKept() throws Exception {
+        Thread reader = startLoad(new Runnable() {
+            @Override
+            public void run() {
+                index.getUsers(WORKSPACE_ID, user);
+            }
+        });
+        removeUserDuringLoad(reader);
+
+        assertFalse(index.getUsers(WORKSPACE_ID, user).containsKey(USER_ID));
+        assertEquals(WorkspaceAccess.NONE, index.getAccess(WORKSPACE_ID, user));
+    }
+
+    @Test
+    public void testWorkspacesLoadedDuringRemovalAreNotKept() throws Exception {
+        Thread reader = startLoad(new Runnable() {
+            @Override
+            public void run() {
+                index.getWorkspaceIds(user);
+            }
+        });
+        removeUserDuringLoad(reader);
+
+        assertFalse(index.getWorkspaceIds(user).contains(WORKSPACE_ID));
+    }
+
+    private Thread startLoad(Runnable load) throws InterruptedException {
+        loadStarted = new CountDownLatch(1);
+        finishLoad = new CountDownLatch(1);
+        Thread reader = new Thread(load);
+        reader.start();
+        assertTrue(loadStarted.await(10, TimeUnit.SECONDS));
+        return reader;
+    }
+
+    private void removeUserDuringLoad(Thread reader) throws InterruptedException {
+        storedUsers.clear();
+        index.removeUser(WORKSPACE_ID, USER_ID);
+        finishLoad.countDown();
+        reader.join(10000);
+        assertFalse(reader.isAlive());
+        loadStarted = null;
+    }
+
+    private void waitForUpdate() {
+        if (loadStarted == null) {
+            return;
+        }
+        loadStarted.countDown();
+        try {
+            assertTrue(finishLoad.await(10, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
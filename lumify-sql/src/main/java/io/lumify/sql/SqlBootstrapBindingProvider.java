@@ -3,6 +3,7 @@ package io.lumify.sql;
 import io.lumify.core.bootstrap.BootstrapBindingProvider;
 import io.lumify.core.config.Configuration;
 import io.lumify.core.exception.LumifyException;
+import io.lumify.sql.model.HibernateSessionManager;
 import com.google.inject.Binder;
 import com.google.inject.Provider;
 import com.google.inject.Scopes;
@@ -33,5 +34,6 @@ public class SqlBootstrapBindingProvider implements BootstrapBindingProvider {
                     }
                 })
                 .in(Scopes.SINGLETON);
+        binder.bind(HibernateSessionManager.class).in(Scopes.SINGLETON);
     }
 }
@@ -0,0 +1,87 @@
+package io.lumify.sql.model;
+
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import com.google.inject.Singleton;
+import com.google.inject.util.Providers;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+
+/**
+ * Hands out the Hibernate sessions of the SQL repositories. Between {@link #beginRequest()} and {@link #endRequest()}
+ * every call on the thread gets the same session, so the users and workspaces loaded while handling one request are
+ * read once. Outside of a request each call gets a session of its own which is closed by {@link #release(Session)}.
+ */
+@Singleton
+public class HibernateSessionManager {
+    private final Provider<SessionFactory> sessionFactoryProvider;
+    private final ThreadLocal<Session> requestSession = new ThreadLocal<Session>();
+    private final ThreadLocal<Boolean> inRequest = new ThreadLocal<Boolean>();
+
+    /**
+     * @param sessionFactoryProvider the session factory is built when the first session is needed, so requests can be
+     *                               marked without a hibernate configuration.
+     */
+    @Inject
+    public HibernateSessionManager(final Provider<SessionFactory> sessionFactoryProvider) {
+        this.sessionFactoryProvider = sessionFactoryProvider;
+    }
+
+    public HibernateSessionManager(final SessionFactory sessionFactory) {
+        this(Providers.of(sessionFactory));
+    }
+
+    public SessionFactory getSessionFactory() {
+        return sessionFactoryProvider.get();
+    }
+
+    public void beginRequest() {
+        inRequest.set(Boolean.TRUE);
+    }
+
+    /**
+     * Closes the session of the request, if one was opened.
+     */
+    public void endRequest() {
+        inRequest.remove();
+        Session session = requestSession.get();
+        requestSession.remove();
+        if (session != null && session.isOpen()) {
+            session.close();
+        }
+    }
+
+    public Session getSession() {
+        if (inRequest.get() == null) {
+            return getSessionFactory().openSession();
+        }
+        Session session = requestSession.get();
+        if (session == null || !session.isOpen()) {
+            session = getSessionFactory().openSession();
+            requestSession.set(session);
+        }
+        return session;
+    }
+
+    /**
+     * Closes the session unless it is the session of the current request.
+     */
+    public void release(Session session) {
+        if (session != requestSession.get() && session.isOpen()) {
+            session.close();
+        }
+    }
+
+    /**
+     * Closes the session after a failed transaction. The entities of a session whose transaction was rolled back may
+     * not match the database anymore, so a request gets a new session on its next call.
+     */
+    public void discard(Session session) {
+        if (session == requestSession.get()) {
+            requestSession.remove();
+        }
+        if (session.isOpen()) {
+            session.close();
+        }
+    }
+}
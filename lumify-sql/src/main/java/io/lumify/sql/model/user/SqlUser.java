@@ -8,6 +8,9 @@ import io.lumify.core.user.User;
 import io.lumify.sql.model.workspace.SqlWorkspace;
 import io.lumify.sql.model.workspace.SqlWorkspaceUser;
 import org.apache.commons.codec.binary.Base64;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import javax.persistence.*;
 import java.util.HashSet;
@@ -15,6 +18,8 @@ import java.util.Set;
 
 @Entity
 @Table(name = "user")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@BatchSize(size = 25)
 public class SqlUser implements User {
     @Transient
     private ModelUserContext modelUserContext;
@@ -47,6 +52,7 @@ public class SqlUser implements User {
     private SqlWorkspace currentWorkspace;
 
     @OneToMany(fetch = FetchType.LAZY, mappedBy = "sqlWorkspaceUserId.user", cascade = CascadeType.ALL)
+    @BatchSize(size = 25)
     private Set<SqlWorkspaceUser> sqlWorkspaceUsers = new HashSet<SqlWorkspaceUser>(0);
 
     public SqlUser() {
@@ -10,10 +10,10 @@ import io.lumify.core.user.Privilege;
 import io.lumify.core.user.User;
 import io.lumify.core.util.LumifyLogger;
 import io.lumify.core.util.LumifyLoggerFactory;
+import io.lumify.sql.model.HibernateSessionManager;
 import io.lumify.sql.model.workspace.SqlWorkspace;
 import org.hibernate.HibernateException;
 import org.hibernate.Session;
-import org.hibernate.SessionFactory;
 import org.hibernate.Transaction;
 import org.hibernate.criterion.Restrictions;
 import org.securegraph.util.ConvertingIterable;
@@ -28,26 +28,30 @@ import static com.google.common.base.Preconditions.checkNotNull;
 @Singleton
 public class SqlUserRepository extends UserRepository {
     private static final LumifyLogger LOGGER = LumifyLoggerFactory.getLogger(SqlUserRepository.class);
-    private final SessionFactory sessionFactory;
+    private final HibernateSessionManager sessionManager;
     private final AuthorizationRepository authorizationRepository;
     private final UserListenerUtil userListenerUtil;
 
     @Inject
     public SqlUserRepository(final Configuration configuration,
                              final AuthorizationRepository authorizationRepository,
-                             final SessionFactory sessionFactory,
+                             final HibernateSessionManager sessionManager,
                              final UserListenerUtil userListenerUtil) {
         super(configuration);
         this.authorizationRepository = authorizationRepository;
-        this.sessionFactory = sessionFactory;
+        this.sessionManager = sessionManager;
         this.userListenerUtil = userListenerUtil;
     }
 
     @Override
     public User findByUsername(String username) {
-        Session session = sessionFactory.openSession();
-        List users = session.createCriteria(SqlUser.class).add(Restrictions.eq("username", username)).list();
-        session.close();
+        Session session = sessionManager.getSession();
+        List users;
+        try {
+            users = session.createCriteria(SqlUser.class).add(Restrictions.eq("username", username)).list();
+        } finally {
+            sessionManager.release(session);
+        }
         if (users.size() == 0) {
             return null;
         } else if (users.size() > 1) {
@@ -59,9 +63,13 @@ public class SqlUserRepository extends UserRepository {
 
     @Override
     public Iterable<User> findAll() {
-        Session session = sessionFactory.openSession();
-        List users = session.createCriteria(SqlUser.class).list();
-        session.close();
+        Session session = sessionManager.getSession();
+        List users;
+        try {
+            users = session.createCriteria(SqlUser.class).list();
+        } finally {
+            sessionManager.release(session);
+        }
         return new ConvertingIterable<Object, User>(users) {
             @Override
             protected User convert(Object obj) {
@@ -72,25 +80,21 @@ public class SqlUserRepository extends UserRepository {
 
     @Override
     public User findById(String userId) {
-        Session session = sessionFactory.openSession();
-        List users = session.createCriteria(SqlUser.class).add(Restrictions.eq("id", Integer.parseInt(userId))).list();
-        session.close();
-        if (users.size() == 0) {
-            return null;
-        } else if (users.size() > 1) {
-            throw new LumifyException("more than one user was returned");
-        } else {
-            return (SqlUser) users.get(0);
+        Session session = sessionManager.getSession();
+        try {
+            return (SqlUser) session.get(SqlUser.class, Integer.parseInt(userId));
+        } finally {
+            sessionManager.release(session);
         }
     }
 
     @Override
     public User addUser(String username, String displayName, String password, String[] userAuthorizations) {
-        Session session = sessionFactory.openSession();
         if (findByUsername(username) != null) {
             throw new LumifyException("User already exists");
         }
 
+        Session session = sessionManager.getSession();
         Transaction transaction = null;
         SqlUser newUser = null;
         try {
@@ -113,9 +117,10 @@ public class SqlUserRepository extends UserRepository {
             if (transaction != null) {
                 transaction.rollback();
             }
+            sessionManager.discard(session);
             throw new RuntimeException(e);
         } finally {
-            session.close();
+            sessionManager.release(session);
         }
 
         userListenerUtil.fireNewUserAddedEvent(newUser);
@@ -126,11 +131,11 @@ public class SqlUserRepository extends UserRepository {
     @Override
     public void setPassword(User user, String password) {
         checkNotNull(password);
-        Session session = sessionFactory.openSession();
         if (user == null || user.getUserId() == null || findById(user.getUserId()) == null) {
             throw new LumifyException("User is not valid");
         }
 
+        Session session = sessionManager.getSession();
         Transaction transaction = null;
         try {
             transaction = session.beginTransaction();
@@ -139,15 +144,16 @@ public class SqlUserRepository extends UserRepository {
 
             ((SqlUser) user).setPasswordSalt(salt);
             ((SqlUser) user).setPasswordHash(passwordHash);
-            session.update(user);
+            session.merge(user);
             transaction.commit();
         } catch (HibernateException e) {
             if (transaction != null) {
                 transaction.rollback();
             }
+            sessionManager.discard(session);
             throw new RuntimeException(e);
         } finally {
-            session.close();
+            sessionManager.release(session);
         }
     }
 
@@ -170,7 +176,7 @@ public class SqlUserRepository extends UserRepository {
             throw new LumifyException("UserId cannot be null");
         }
 
-        Session session = sessionFactory.openSession();
+        Session session = sessionManager.getSession();
         Transaction transaction = null;
         SqlUser sqlUser = null;
         try {
@@ -179,20 +185,21 @@ public class SqlUserRepository extends UserRepository {
             if (sqlUser == null) {
                 throw new LumifyException("User does not exist");
             }
-            List workspaces = session.createCriteria(SqlWorkspace.class).add(Restrictions.eq("workspaceId", Integer.parseInt(workspaceId))).list();
-            if (workspaces.size() == 0) {
+            Workspace workspace = (Workspace) session.get(SqlWorkspace.class, Integer.parseInt(workspaceId));
+            if (workspace == null) {
                 throw new LumifyException("Could not find workspace with id: " + workspaceId);
             }
-            sqlUser.setCurrentWorkspace((Workspace) workspaces.get(0));
+            sqlUser.setCurrentWorkspace(workspace);
             session.merge(sqlUser);
             transaction.commit();
         } catch (HibernateException e) {
             if (transaction != null) {
                 transaction.rollback();
             }
+            sessionManager.discard(session);
             throw new RuntimeException(e);
         } finally {
-            session.close();
+            sessionManager.release(session);
         }
         return sqlUser;
     }
@@ -203,7 +210,7 @@ public class SqlUserRepository extends UserRepository {
             throw new LumifyException("UserId cannot be null");
         }
 
-        Session session = sessionFactory.openSession();
+        Session session = sessionManager.getSession();
         try {
             SqlUser sqlUser = (SqlUser) findById(userId);
             if (sqlUser == null) {
@@ -213,16 +220,16 @@ public class SqlUserRepository extends UserRepository {
         } catch (HibernateException e) {
             throw new RuntimeException(e);
         } finally {
-            session.close();
+            sessionManager.release(session);
         }
     }
 
     @Override
     public User setStatus(String userId, UserStatus status) {
-        Session session = sessionFactory.openSession();
         if (userId == null) {
             throw new LumifyException("UserId cannot be null");
         }
+        Session session = sessionManager.getSession();
 
         Transaction transaction = null;
         SqlUser sqlUser;
@@ -239,9 +246,10 @@ public class SqlUserRepository extends UserRepository {
             if (transaction != null) {
                 transaction.rollback();
             }
+            sessionManager.discard(session);
             throw new RuntimeException(e);
         } finally {
-            session.close();
+            sessionManager.release(session);
         }
         return sqlUser;
     }
@@ -266,7 +274,7 @@ public class SqlUserRepository extends UserRepository {
 
     @Override
     public void delete(User user) {
-        Session session = sessionFactory.openSession();
+        Session session = sessionManager.getSession();
 
         Transaction transaction = null;
         SqlUser sqlUser;
@@ -282,15 +290,16 @@ public class SqlUserRepository extends UserRepository {
             if (transaction != null) {
                 transaction.rollback();
             }
+            sessionManager.discard(session);
             throw new RuntimeException(e);
         } finally {
-            session.close();
+            sessionManager.release(session);
         }
     }
 
     @Override
     public void setPrivileges(User user, Set<Privilege> privileges) {
-        Session session = sessionFactory.openSession();
+        Session session = sessionManager.getSession();
 
         Transaction transaction = null;
         SqlUser sqlUser;
@@ -307,9 +316,10 @@ public class SqlUserRepository extends UserRepository {
             if (transaction != null) {
                 transaction.rollback();
             }
+            sessionManager.discard(session);
             throw new RuntimeException(e);
         } finally {
-            session.close();
+            sessionManager.release(session);
         }
     }
 }
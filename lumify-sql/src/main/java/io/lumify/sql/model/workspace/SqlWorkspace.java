@@ -2,6 +2,9 @@ package io.lumify.sql.model.workspace;
 
 import io.lumify.core.model.workspace.Workspace;
 import io.lumify.sql.model.user.SqlUser;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import javax.persistence.*;
 import java.util.HashSet;
@@ -9,6 +12,8 @@ import java.util.Set;
 
 @Entity
 @Table(name = "workspace")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@BatchSize(size = 25)
 public class SqlWorkspace implements Workspace {
     @Id
     @GeneratedValue(strategy = GenerationType.AUTO)
@@ -23,9 +28,13 @@ public class SqlWorkspace implements Workspace {
     private SqlUser creator;
 
     @OneToMany(fetch = FetchType.LAZY, cascade = CascadeType.ALL, mappedBy = "sqlWorkspaceUserId.workspace")
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+    @BatchSize(size = 25)
     public Set<SqlWorkspaceUser> sqlWorkspaceUser = new HashSet<SqlWorkspaceUser>(0);
 
     @OneToMany(fetch = FetchType.EAGER, cascade = CascadeType.ALL)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+    @BatchSize(size = 25)
     private Set<SqlWorkspaceVertex> sqlWorkspaceVertices = new HashSet<SqlWorkspaceVertex>(0);
 
     public String getId() {
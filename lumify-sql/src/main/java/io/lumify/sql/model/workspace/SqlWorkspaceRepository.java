@@ -9,10 +9,11 @@ import io.lumify.core.model.workspace.diff.DiffItem;
 import io.lumify.core.user.User;
 import io.lumify.core.util.LumifyLogger;
 import io.lumify.core.util.LumifyLoggerFactory;
+import io.lumify.sql.model.HibernateSessionManager;
 import io.lumify.sql.model.user.SqlUser;
+import org.hibernate.FetchMode;
 import org.hibernate.HibernateException;
 import org.hibernate.Session;
-import org.hibernate.SessionFactory;
 import org.hibernate.Transaction;
 import org.hibernate.criterion.Restrictions;
 import org.securegraph.util.ConvertingIterable;
@@ -27,11 +28,11 @@ import static org.securegraph.util.IterableUtils.toList;
 @Singleton
 public class SqlWorkspaceRepository extends WorkspaceRepository {
     private static final LumifyLogger LOGGER = LumifyLoggerFactory.getLogger(SqlWorkspaceRepository.class);
-    private final SessionFactory sessionFactory;
+    private final HibernateSessionManager sessionManager;
 
     @Inject
-    public SqlWorkspaceRepository(final SessionFactory sessionFactory) {
-        this.sessionFactory = sessionFactory;
+    public SqlWorkspaceRepository(final HibernateSessionManager sessionManager) {
+        this.sessionManager = sessionManager;
     }
 
     @Override
@@ -40,81 +41,89 @@ public class SqlWorkspaceRepository extends WorkspaceRepository {
             throw new LumifyAccessDeniedException("user " + user.getUserId() + " does not have write access to workspace " + workspace.getId(), user, workspace.getId());
         }
 
-        Session session = sessionFactory.openSession();
+        Session session = sessionManager.getSession();
         Transaction transaction = null;
         try {
             transaction = session.beginTransaction();
-            session.delete(workspace);
+            Object sqlWorkspace = session.get(SqlWorkspace.class, Integer.parseInt(workspace.getId()));
+            if (sqlWorkspace != null) {
+                session.delete(sqlWorkspace);
+            }
             transaction.commit();
         } catch (HibernateException e) {
             if (transaction != null) {
                 transaction.rollback();
             }
+            sessionManager.discard(session);
             throw new RuntimeException(e);
         } finally {
-            session.close();
+            sessionManager.release(session);
         }
     }
 
     @Override
     public Workspace findById(String workspaceId, User user) {
-        Session session = sessionFactory.openSession();
-        List workspaces = session.createCriteria(SqlWorkspace.class).add(Restrictions.eq("workspaceId", Integer.parseInt(workspaceId))).list();
-        session.close();
-        if (workspaces.size() == 0) {
+        SqlWorkspace workspace = getSqlWorkspace(workspaceId);
+        if (workspace == null) {
             return null;
-        } else if (workspaces.size() > 1) {
-            throw new LumifyException("more than one user was returned");
-        } else {
-            if (!hasReadPermissions(workspaceId, user)) {
-                throw new LumifyAccessDeniedException("user " + user.getUserId() + " does not have read access to workspace " + workspaceId, user, workspaceId);
-            }
-            return (SqlWorkspace) workspaces.get(0);
         }
+        if (!hasReadPermissions(workspaceId, user)) {
+            throw new LumifyAccessDeniedException("user " + user.getUserId() + " does not have read access to workspace " + workspaceId, user, workspaceId);
+        }
+        return workspace;
     }
 
     @Override
     public Workspace add(String title, User user) {
-        Session session = sessionFactory.openSession();
+        Session session = sessionManager.getSession();
 
         Transaction transaction = null;
         SqlWorkspace newWorkspace;
         try {
             transaction = session.beginTransaction();
+            SqlUser sqlUser = (SqlUser) session.get(SqlUser.class, ((SqlUser) user).getId());
+            if (sqlUser == null) {
+                throw new LumifyException("User does not exist");
+            }
             newWorkspace = new SqlWorkspace();
             newWorkspace.setDisplayTitle(title);
-            newWorkspace.setCreator((SqlUser) user);
+            newWorkspace.setCreator(sqlUser);
 
             SqlWorkspaceUser sqlWorkspaceUser = new SqlWorkspaceUser();
             sqlWorkspaceUser.setWorkspaceAccess(WorkspaceAccess.WRITE);
-            sqlWorkspaceUser.setUser((SqlUser) user);
+            sqlWorkspaceUser.setUser(sqlUser);
             sqlWorkspaceUser.setWorkspace(newWorkspace);
 
             LOGGER.debug("add %s to workspace table", title);
             newWorkspace.getSqlWorkspaceUser().add(sqlWorkspaceUser);
             session.save(newWorkspace);
             session.save(sqlWorkspaceUser);
-            session.update(user);
             transaction.commit();
         } catch (HibernateException e) {
             if (transaction != null) {
                 transaction.rollback();
             }
+            sessionManager.discard(session);
             throw new RuntimeException(e);
         } finally {
-            session.close();
+            sessionManager.release(session);
         }
         return newWorkspace;
     }
 
     @Override
     public Iterable<Workspace> findAll(User user) {
-        Session session = sessionFactory.openSession();
-        List workspaces = session.createCriteria(SqlWorkspaceUser.class)
-                .add(Restrictions.eq("sqlWorkspaceUserId.user.id", Integer.parseInt(user.getUserId())))
-                .add(Restrictions.in("workspaceAccess", new String[]{WorkspaceAccess.READ.toString(), WorkspaceAccess.WRITE.toString()}))
-                .list();
-        session.close();
+        Session session = sessionManager.getSession();
+        List workspaces;
+        try {
+            workspaces = session.createCriteria(SqlWorkspaceUser.class)
+                    .setFetchMode("sqlWorkspaceUserId.workspace", FetchMode.JOIN)
+                    .add(Restrictions.eq("sqlWorkspaceUserId.user.id", Integer.parseInt(user.getUserId())))
+                    .add(Restrictions.in("workspaceAccess", new String[]{WorkspaceAccess.READ.toString(), WorkspaceAccess.WRITE.toString()}))
+                    .list();
+        } finally {
+            sessionManager.release(session);
+        }
         return new ConvertingIterable<Object, Workspace>(workspaces) {
             @Override
             protected Workspace convert(Object obj) {
@@ -126,45 +135,54 @@ public class SqlWorkspaceRepository extends WorkspaceRepository {
 
     @Override
     public void setTitle(Workspace workspace, String title, User user) {
-        Session session = sessionFactory.openSession();
         if (!hasWritePermissions(workspace.getId(), user)) {
-            session.close();
             throw new LumifyAccessDeniedException("user " + user.getUserId() + " does not have write access to workspace " + workspace.getId(), user, workspace.getId());
         }
 
+        Session session = sessionManager.getSession();
         Transaction transaction = null;
         try {
             transaction = session.beginTransaction();
             ((SqlWorkspace) workspace).setDisplayTitle(title);
-            session.update(workspace);
+            session.merge(workspace);
             transaction.commit();
         } catch (HibernateException e) {
             if (transaction != null) {
                 transaction.rollback();
             }
+            sessionManager.discard(session);
             throw new RuntimeException(e);
         } finally {
-            session.close();
+            sessionManager.release(session);
         }
     }
 
     @Override
     public List<WorkspaceUser> findUsersWithAccess(String workspaceId, User user) {
-        Session session = sessionFactory.openSession();
+        Session session = sessionManager.getSession();
         List<WorkspaceUser> withAccess = new ArrayList<WorkspaceUser>();
+        WorkspaceAccess userAccess = WorkspaceAccess.NONE;
         try {
-            List<SqlWorkspaceUser> sqlWorkspaceUsers = getSqlWorkspaceUsers(workspaceId);
-
-            for (SqlWorkspaceUser sqlWorkspaceUser : sqlWorkspaceUsers) {
-                if (!sqlWorkspaceUser.getWorkspaceAccess().equals(WorkspaceAccess.NONE.toString())) {
-                    String userId = sqlWorkspaceUser.getUser().getUserId();
-                    Workspace workspace = findById(workspaceId, user);
-                    boolean isCreator = ((SqlWorkspace) workspace).getCreator().getUserId().equals(userId);
-                    withAccess.add(new WorkspaceUser(userId, WorkspaceAccess.valueOf(sqlWorkspaceUser.getWorkspaceAccess()), isCreator));
+            SqlWorkspace workspace = (SqlWorkspace) session.get(SqlWorkspace.class, Integer.parseInt(workspaceId));
+            if (workspace == null) {
+                return withAccess;
+            }
+            String creatorId = workspace.getCreator() == null ? null : workspace.getCreator().getUserId();
+            for (SqlWorkspaceUser sqlWorkspaceUser : workspace.getSqlWorkspaceUser()) {
+                String userId = sqlWorkspaceUser.getUser().getUserId();
+                WorkspaceAccess workspaceAccess = WorkspaceAccess.valueOf(sqlWorkspaceUser.getWorkspaceAccess());
+                if (userId.equals(user.getUserId())) {
+                    userAccess = workspaceAccess;
+                }
+                if (workspaceAccess != WorkspaceAccess.NONE) {
+                    withAccess.add(new WorkspaceUser(userId, workspaceAccess, userId.equals(creatorId)));
                 }
             }
         } finally {
-            session.close();
+            sessionManager.release(session);
+        }
+        if (userAccess == WorkspaceAccess.NONE) {
+            throw new LumifyAccessDeniedException("user " + user.getUserId() + " does not have read access to workspace " + workspaceId, user, workspaceId);
         }
         return withAccess;
     }
@@ -175,7 +193,7 @@ public class SqlWorkspaceRepository extends WorkspaceRepository {
             throw new LumifyAccessDeniedException("user " + user.getUserId() + " does not have read access to workspace " + workspace.getId(), user, workspace.getId());
         }
 
-        Session session = sessionFactory.openSession();
+        Session session = sessionManager.getSession();
         List<WorkspaceEntity> workspaceEntities = new ArrayList<WorkspaceEntity>();
         try {
             Set<SqlWorkspaceVertex> sqlWorkspaceVertices = ((SqlWorkspace) workspace).getSqlWorkspaceVertices();
@@ -192,14 +210,14 @@ public class SqlWorkspaceRepository extends WorkspaceRepository {
                 }
             });
         } finally {
-            session.close();
+            sessionManager.release(session);
         }
         return workspaceEntities;
     }
 
     @Override
     public void softDeleteEntityFromWorkspace(Workspace workspace, Object vertexId, User user) {
-        Session session = sessionFactory.openSession();
+        Session session = sessionManager.getSession();
         Transaction transaction = null;
         try {
             transaction = session.beginTransaction();
@@ -213,9 +231,10 @@ public class SqlWorkspaceRepository extends WorkspaceRepository {
             if (transaction != null) {
                 transaction.rollback();
             }
+            sessionManager.discard(session);
             throw new RuntimeException(e);
         } finally {
-            session.close();
+            sessionManager.release(session);
         }
     }
 
@@ -227,7 +246,7 @@ public class SqlWorkspaceRepository extends WorkspaceRepository {
             throw new LumifyAccessDeniedException("user " + user.getUserId() + " does not have write access to workspace " + workspace.getId(), user, workspace.getId());
         }
 
-        Session session = sessionFactory.openSession();
+        Session session = sessionManager.getSession();
         Transaction transaction = null;
         try {
             transaction = session.beginTransaction();
@@ -256,9 +275,10 @@ public class SqlWorkspaceRepository extends WorkspaceRepository {
             if (transaction != null) {
                 transaction.rollback();
             }
+            sessionManager.discard(session);
             throw new RuntimeException(e);
         } finally {
-            session.close();
+            sessionManager.release(session);
         }
     }
 
@@ -280,28 +300,25 @@ public class SqlWorkspaceRepository extends WorkspaceRepository {
             throw new LumifyAccessDeniedException("user " + user.getUserId() + " does not have write access to workspace " + workspace.getId(), user, workspace.getId());
         }
 
-        Session session = sessionFactory.openSession();
+        Session session = sessionManager.getSession();
         Transaction transaction = null;
         try {
-
             transaction = session.beginTransaction();
-            SqlWorkspace sqlWorkspace = (SqlWorkspace) workspace;
-            Set<SqlWorkspaceUser> sqlWorkspaceUsers = sqlWorkspace.getSqlWorkspaceUser();
-            for (SqlWorkspaceUser sqlWorkspaceUser : sqlWorkspaceUsers) {
+            SqlWorkspace sqlWorkspace = (SqlWorkspace) session.get(SqlWorkspace.class, Integer.parseInt(workspace.getId()));
+            for (SqlWorkspaceUser sqlWorkspaceUser : sqlWorkspace.getSqlWorkspaceUser()) {
                 if (sqlWorkspaceUser.getUser().getUserId().equals(userId)) {
                     sqlWorkspaceUser.setWorkspaceAccess(workspaceAccess);
                 }
             }
-            ((SqlWorkspace) workspace).setSqlWorkspaceUser(sqlWorkspaceUsers);
-            session.update(workspace);
             transaction.commit();
         } catch (HibernateException e) {
             if (transaction != null) {
                 transaction.rollback();
             }
+            sessionManager.discard(session);
             throw new RuntimeException(e);
         } finally {
-            session.close();
+            sessionManager.release(session);
         }
     }
 
@@ -312,49 +329,66 @@ public class SqlWorkspaceRepository extends WorkspaceRepository {
 
     @Override
     public boolean hasWritePermissions(String workspaceId, User user) {
-        List<SqlWorkspaceUser> sqlWorkspaceUsers = getSqlWorkspaceUsers(workspaceId);
-        for (SqlWorkspaceUser workspaceUser : sqlWorkspaceUsers) {
-            if (workspaceUser.getUser().getUserId().equals(user.getUserId()) && workspaceUser.getWorkspaceAccess().equals(WorkspaceAccess.WRITE.toString())) {
-                return true;
-            }
-        }
-        return false;
+        return getWorkspaceAccess(workspaceId, user) == WorkspaceAccess.WRITE;
     }
 
     @Override
     public boolean hasReadPermissions(String workspaceId, User user) {
-        if (hasWritePermissions(workspaceId, user)) {
-            return true;
-        }
-        List<SqlWorkspaceUser> sqlWorkspaceUsers = getSqlWorkspaceUsers(workspaceId);
-        for (SqlWorkspaceUser workspaceUser : sqlWorkspaceUsers) {
-            if (workspaceUser.getWorkspace().getId().equals(workspaceId) &&
-                    workspaceUser.getWorkspaceAccess().equals(WorkspaceAccess.READ.toString())) {
-                return true;
+        WorkspaceAccess workspaceAccess = getWorkspaceAccess(workspaceId, user);
+        return workspaceAccess == WorkspaceAccess.READ || workspaceAccess == WorkspaceAccess.WRITE;
+    }
+
+    /**
+     * Reads the access from the users of the workspace, which are kept in the second-level cache with the workspace.
+     */
+    protected WorkspaceAccess getWorkspaceAccess(String workspaceId, User user) {
+        Session session = sessionManager.getSession();
+        try {
+            SqlWorkspace sqlWorkspace = (SqlWorkspace) session.get(SqlWorkspace.class, Integer.parseInt(workspaceId));
+            if (sqlWorkspace == null) {
+                return WorkspaceAccess.NONE;
+            }
+            for (SqlWorkspaceUser sqlWorkspaceUser : sqlWorkspace.getSqlWorkspaceUser()) {
+                if (sqlWorkspaceUser.getUser().getUserId().equals(user.getUserId())) {
+                    return WorkspaceAccess.valueOf(sqlWorkspaceUser.getWorkspaceAccess());
+                }
             }
+            return WorkspaceAccess.NONE;
+        } finally {
+            sessionManager.release(session);
         }
-        return false;
     }
 
+    protected SqlWorkspace getSqlWorkspace(String workspaceId) {
+        Session session = sessionManager.getSession();
+        try {
+            return (SqlWorkspace) session.get(SqlWorkspace.class, Integer.parseInt(workspaceId));
+        } finally {
+            sessionManager.release(session);
+        }
+    }
 
     protected List<SqlWorkspaceUser> getSqlWorkspaceUsers(String workspaceId) {
-        Session session = sessionFactory.openSession();
+        Session session = sessionManager.getSession();
         List<SqlWorkspaceUser> sqlWorkspaceUsers;
         try {
-            sqlWorkspaceUsers = session.createCriteria(SqlWorkspaceUser.class).add(Restrictions.eq("sqlWorkspaceUserId.workspace.id", Integer.parseInt(workspaceId))).list();
+            sqlWorkspaceUsers = session.createCriteria(SqlWorkspaceUser.class)
+                    .setFetchMode("sqlWorkspaceUserId.user", FetchMode.JOIN)
+                    .add(Restrictions.eq("sqlWorkspaceUserId.workspace.id", Integer.parseInt(workspaceId)))
+                    .list();
         } finally {
-            session.close();
+            sessionManager.release(session);
         }
         return sqlWorkspaceUsers;
     }
 
     protected List<SqlWorkspaceVertex> getSqlWorkspaceVertices(SqlWorkspace sqlWorkspace) {
-        Session session = sessionFactory.openSession();
+        Session session = sessionManager.getSession();
         List<SqlWorkspaceVertex> sqlWorkspaceVertices;
         try {
             sqlWorkspaceVertices = session.createCriteria(SqlWorkspaceVertex.class).add(Restrictions.eq("workspace.id", Integer.parseInt(sqlWorkspace.getId()))).list();
         } finally {
-            session.close();
+            sessionManager.release(session);
         }
         return sqlWorkspaceVertices;
     }
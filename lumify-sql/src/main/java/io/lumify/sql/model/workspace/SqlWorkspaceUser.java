@@ -2,12 +2,15 @@ package io.lumify.sql.model.workspace;
 
 import io.lumify.core.model.workspace.WorkspaceAccess;
 import io.lumify.sql.model.user.SqlUser;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import javax.persistence.*;
 import java.io.Serializable;
 
 @Entity
 @Table(name = "workspace_user")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @AssociationOverrides({@AssociationOverride(name = "sqlWorkspaceUserId.user", joinColumns = @JoinColumn(name = "user_id")),
         @AssociationOverride(name = "sqlWorkspaceUserId.workspace", joinColumns = @JoinColumn(name = "workspace_id"))})
 public class SqlWorkspaceUser implements Serializable{
@@ -1,10 +1,14 @@
 package io.lumify.sql.model.workspace;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 import javax.persistence.*;
 import java.io.Serializable;
 
 @Entity
 @Table(name = "workspace_vertex")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 public class SqlWorkspaceVertex implements Serializable {
     public static final long serialVersionUID = 1L;
     @Id
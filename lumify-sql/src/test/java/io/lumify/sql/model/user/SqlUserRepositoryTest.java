@@ -7,11 +7,14 @@ import io.lumify.core.model.user.UserListenerUtil;
 import io.lumify.core.model.user.UserPasswordUtil;
 import io.lumify.core.model.user.UserStatus;
 import io.lumify.core.user.User;
+import io.lumify.sql.model.HibernateSessionManager;
 import io.lumify.sql.model.workspace.SqlWorkspace;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
 import org.hibernate.service.ServiceRegistry;
+import org.hibernate.stat.Statistics;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -43,7 +46,12 @@ public class SqlUserRepositoryTest {
         Map<?, ?> configMap = new HashMap<Object, Object>();
         Configuration lumifyConfiguration = new Configuration(configMap);
         UserListenerUtil userListenerUtil = new UserListenerUtil();
-        sqlUserRepository = new SqlUserRepository(lumifyConfiguration, authorizationRepository, sessionFactory, userListenerUtil);
+        sqlUserRepository = new SqlUserRepository(lumifyConfiguration, authorizationRepository, new HibernateSessionManager(sessionFactory), userListenerUtil);
+    }
+
+    @After
+    public void teardown() {
+        sessionFactory.close();
     }
 
     @Test
@@ -190,6 +198,25 @@ public class SqlUserRepositoryTest {
         assertEquals(UserStatus.ONLINE.name(), testUser.getUserStatus());
     }
 
+    @Test
+    public void testFindByIdUsesSecondLevelCache() throws Exception {
+        sqlUserRepository.addUser("123", "abc", null, new String[0]);
+        sqlUserRepository.findById("1");
+
+        Statistics statistics = sessionFactory.getStatistics();
+        statistics.clear();
+        SqlUser testUser = (SqlUser) sqlUserRepository.findById("1");
+        assertEquals("abc", testUser.getDisplayName());
+        assertEquals(0, statistics.getPrepareStatementCount());
+        assertEquals(1, statistics.getSecondLevelCacheHitCount());
+
+        sqlUserRepository.setStatus("1", UserStatus.ONLINE);
+        statistics.clear();
+        testUser = (SqlUser) sqlUserRepository.findById("1");
+        assertEquals(UserStatus.ONLINE.name(), testUser.getUserStatus());
+        assertEquals(0, statistics.getPrepareStatementCount());
+    }
+
     @Test(expected = LumifyException.class)
     public void testSetStatusWithNonExisitingUser() {
         sqlUserRepository.setStatus("1", UserStatus.OFFLINE);
@@ -9,11 +9,15 @@ import io.lumify.core.model.workspace.Workspace;
 import io.lumify.core.model.workspace.WorkspaceAccess;
 import io.lumify.core.model.workspace.WorkspaceEntity;
 import io.lumify.core.model.workspace.WorkspaceUser;
+import io.lumify.sql.model.HibernateSessionManager;
 import io.lumify.sql.model.user.SqlUser;
 import io.lumify.sql.model.user.SqlUserRepository;
+import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
 import org.hibernate.service.ServiceRegistry;
+import org.hibernate.stat.Statistics;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -35,6 +39,7 @@ public class SqlWorkspaceRepositoryTest {
     private static org.hibernate.cfg.Configuration configuration;
     private static SessionFactory sessionFactory;
     private SqlUserRepository sqlUserRepository;
+    private HibernateSessionManager sessionManager;
 
     private SqlUser testUser;
 
@@ -52,11 +57,17 @@ public class SqlWorkspaceRepositoryTest {
         sessionFactory = configuration.buildSessionFactory(serviceRegistryBuilder);
         Map<?, ?> configMap = new HashMap<Object, Object>();
         Configuration lumifyConfiguration = new Configuration(configMap);
-        sqlUserRepository = new SqlUserRepository(lumifyConfiguration, authorizationRepository, sessionFactory, userListenerUtil);
-        sqlWorkspaceRepository = new SqlWorkspaceRepository(sessionFactory);
+        sessionManager = new HibernateSessionManager(sessionFactory);
+        sqlUserRepository = new SqlUserRepository(lumifyConfiguration, authorizationRepository, sessionManager, userListenerUtil);
+        sqlWorkspaceRepository = new SqlWorkspaceRepository(sessionManager);
         testUser = (SqlUser) sqlUserRepository.addUser("123", "user 1", null, new String[0]);
     }
 
+    @After
+    public void tearDown() {
+        sessionFactory.close();
+    }
+
     @Test
     public void testDelete() throws Exception {
         SqlWorkspace workspace = (SqlWorkspace) sqlWorkspaceRepository.add("test workspace 1", testUser);
@@ -142,6 +153,52 @@ public class SqlWorkspaceRepositoryTest {
         sqlWorkspaceRepository.findUsersWithAccess(sqlWorkspace.getId(), sqlUser);
     }
 
+    @Test
+    public void testFindUsersWithAccessQueryCount() throws Exception {
+        SqlWorkspace sqlWorkspace = (SqlWorkspace) sqlWorkspaceRepository.add("test", testUser);
+        addUsersToWorkspace(sqlWorkspace, 10);
+
+        Statistics statistics = sessionFactory.getStatistics();
+        statistics.clear();
+        List<WorkspaceUser> workspaceUsers = sqlWorkspaceRepository.findUsersWithAccess(sqlWorkspace.getId(), testUser);
+        assertEquals(11, workspaceUsers.size());
+        assertTrue("statements: " + statistics.getPrepareStatementCount(), statistics.getPrepareStatementCount() <= 3);
+
+        statistics.clear();
+        workspaceUsers = sqlWorkspaceRepository.findUsersWithAccess(sqlWorkspace.getId(), testUser);
+        assertEquals(11, workspaceUsers.size());
+        assertEquals(0, statistics.getPrepareStatementCount());
+        assertTrue(statistics.getSecondLevelCacheHitCount() > 0);
+    }
+
+    @Test
+    public void testUpdateUserOnWorkspaceUpdatesCache() throws Exception {
+        SqlWorkspace sqlWorkspace = (SqlWorkspace) sqlWorkspaceRepository.add("test", testUser);
+        addUsersToWorkspace(sqlWorkspace, 1);
+        assertEquals(2, sqlWorkspaceRepository.findUsersWithAccess(sqlWorkspace.getId(), testUser).size());
+
+        sqlWorkspaceRepository.deleteUserFromWorkspace(sqlWorkspace, "2", testUser);
+        List<WorkspaceUser> workspaceUsers = sqlWorkspaceRepository.findUsersWithAccess(sqlWorkspace.getId(), testUser);
+        assertEquals(1, workspaceUsers.size());
+        assertEquals("1", workspaceUsers.get(0).getUserId());
+    }
+
+    @Test
+    public void testSessionIsReusedWithinRequest() throws Exception {
+        sqlWorkspaceRepository.add("test", testUser);
+        assertNotSame(sqlWorkspaceRepository.findById("1", testUser), sqlWorkspaceRepository.findById("1", testUser));
+
+        sessionManager.beginRequest();
+        try {
+            Workspace workspace = sqlWorkspaceRepository.findById("1", testUser);
+            assertSame(workspace, sqlWorkspaceRepository.findById("1", testUser));
+            assertEquals(1, sqlWorkspaceRepository.findUsersWithAccess(workspace.getId(), testUser).size());
+        } finally {
+            sessionManager.endRequest();
+        }
+        assertEquals(0, sessionFactory.getStatistics().getSessionOpenCount() - sessionFactory.getStatistics().getSessionCloseCount());
+    }
+
     @Test(expected = LumifyAccessDeniedException.class)
     public void testUpdateUserOnWorkspace() throws Exception {
         SqlWorkspace sqlWorkspace = (SqlWorkspace) sqlWorkspaceRepository.add("test", testUser);
@@ -244,4 +301,24 @@ public class SqlWorkspaceRepositoryTest {
         assertEquals("Copy of test", copySqlWorkspace.getDisplayTitle());
         assertTrue(copySqlWorkspace.getSqlWorkspaceVertices().size() == 1);
     }
+
+    private void addUsersToWorkspace(SqlWorkspace sqlWorkspace, int count) {
+        for (int i = 0; i < count; i++) {
+            sqlUserRepository.addUser("user" + i, "user " + i, null, new String[0]);
+        }
+
+        Session session = sessionFactory.openSession();
+        session.beginTransaction();
+        SqlWorkspace workspace = (SqlWorkspace) session.get(SqlWorkspace.class, Integer.parseInt(sqlWorkspace.getId()));
+        for (int i = 0; i < count; i++) {
+            SqlWorkspaceUser sqlWorkspaceUser = new SqlWorkspaceUser();
+            sqlWorkspaceUser.setWorkspaceAccess(WorkspaceAccess.READ);
+            sqlWorkspaceUser.setUser((SqlUser) session.get(SqlUser.class, i + 2));
+            sqlWorkspaceUser.setWorkspace(workspace);
+            workspace.getSqlWorkspaceUser().add(sqlWorkspaceUser);
+            session.save(sqlWorkspaceUser);
+        }
+        session.getTransaction().commit();
+        session.close();
+    }
 }
@@ -13,15 +13,18 @@ import io.lumify.core.bootstrap.InjectHelper;
 import io.lumify.core.bootstrap.LumifyBootstrap;
 import io.lumify.core.config.ConfigurationHelper;
 import io.lumify.core.exception.LumifyException;
+import io.lumify.core.ingest.LocalArtifactCache;
 import io.lumify.core.ingest.graphProperty.*;
 import io.lumify.core.metrics.JmxMetricsManager;
 import io.lumify.core.model.properties.RawLumifyProperties;
 import io.lumify.core.model.user.UserRepository;
 import io.lumify.core.user.User;
+import io.lumify.core.util.ByteBufferInputStream;
+import io.lumify.core.util.ClassUtil;
 import io.lumify.core.util.LumifyLogger;
 import io.lumify.core.util.LumifyLoggerFactory;
+import io.lumify.core.util.RingBufferTeeInputStream;
 import io.lumify.core.util.ServiceLoaderUtil;
-import io.lumify.core.util.TeeInputStream;
 import org.apache.commons.io.IOUtils;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FileSystem;
@@ -31,9 +34,14 @@ import org.securegraph.property.StreamingPropertyValue;
 
 import java.io.*;
 import java.net.URI;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import static org.securegraph.util.IterableUtils.toList;
 
@@ -41,6 +49,7 @@ public class GraphPropertyBolt extends BaseRichBolt {
     private static final LumifyLogger LOGGER = LumifyLoggerFactory.getLogger(GraphPropertyBolt.class);
 
     public static final String JSON_OUTPUT_FIELD = "json";
+    public static final String MEMORY_MAP_LOCAL_FILES_CONFIG = "graphProperty.localFile.memoryMap";
 
     private Graph graph;
     private OutputCollector collector;
@@ -54,6 +63,9 @@ public class GraphPropertyBolt extends BaseRichBolt {
     private Counter totalErrorCounter;
     private Timer processingTimeTimer;
     private List<GraphPropertyThreadedWrapper> workerWrappers;
+    private GraphPropertyWorkerExecutor workerExecutor;
+    private boolean memoryMapLocalFiles;
+    private LocalArtifactCache localArtifactCache;
 
     @Override
     public void prepare(final Map stormConf, TopologyContext context, OutputCollector collector) {
@@ -69,6 +81,15 @@ public class GraphPropertyBolt extends BaseRichBolt {
     private void prepareWorkers(Map stormConf) {
         FileSystem hdfsFileSystem = getFileSystem(stormConf);
 
+        String workerExecutorClassName = (String) stormConf.get(GraphPropertyWorkerExecutor.CONFIGURATION_PREFIX);
+        if (workerExecutorClassName == null) {
+            workerExecutorClassName = ThreadPoolGraphPropertyWorkerExecutor.class.getName();
+        }
+        this.workerExecutor = InjectHelper.getInstance(ClassUtil.<GraphPropertyWorkerExecutor>forName(workerExecutorClassName));
+
+        Object memoryMapLocalFiles = stormConf.get(MEMORY_MAP_LOCAL_FILES_CONFIG);
+        this.memoryMapLocalFiles = memoryMapLocalFiles == null || Boolean.parseBoolean(memoryMapLocalFiles.toString());
+
         List<TermMentionFilter> termMentionFilters = loadTermMentionFilters(stormConf, hdfsFileSystem);
 
         GraphPropertyWorkerPrepareData workerPrepareData = new GraphPropertyWorkerPrepareData(
@@ -91,10 +112,6 @@ public class GraphPropertyBolt extends BaseRichBolt {
             GraphPropertyThreadedWrapper wrapper = new GraphPropertyThreadedWrapper(worker);
             InjectHelper.inject(wrapper);
             workerWrappers.add(wrapper);
-            Thread thread = new Thread(wrapper);
-            String workerName = worker.getClass().getName();
-            thread.setName("graphPropertyWorker-" + workerName);
-            thread.start();
         }
     }
 
@@ -245,37 +262,112 @@ public class GraphPropertyBolt extends BaseRichBolt {
     }
 
     private void safeExecuteNonStreamingProperty(List<GraphPropertyThreadedWrapper> interestedWorkerWrappers, GraphPropertyWorkData workData) throws Exception {
-        for (GraphPropertyThreadedWrapper interestedWorkerWrapper : interestedWorkerWrappers) {
-            interestedWorkerWrapper.getWorker().execute(null, workData);
+        List<InputStream> ins = new ArrayList<InputStream>(interestedWorkerWrappers.size());
+        for (int i = 0; i < interestedWorkerWrappers.size(); i++) {
+            ins.add(null);
+        }
+        Exception error = waitForResults(this.workerExecutor.submit(interestedWorkerWrappers, ins, workData));
+        if (error != null) {
+            throw error;
         }
     }
 
     private void safeExecuteStreamingPropertyValue(List<GraphPropertyThreadedWrapper> interestedWorkerWrappers, GraphPropertyWorkData workData, StreamingPropertyValue streamingPropertyValue) throws Exception {
+        if (isLocalFileRequired(interestedWorkerWrappers)) {
+            String cacheKey = LocalArtifactCache.getCacheKey(workData.getElement(), workData.getProperty());
+            if (cacheKey != null) {
+                File localFile = this.localArtifactCache.acquire(cacheKey);
+                if (localFile == null) {
+                    localFile = this.localArtifactCache.acquire(cacheKey, streamingPropertyValue.getInputStream());
+                } else {
+                    LOGGER.debug("using cached local file %s", localFile.getAbsolutePath());
+                }
+                try {
+                    workData.setLocalFile(localFile);
+                    safeExecuteLocalFile(interestedWorkerWrappers, workData, localFile);
+                } finally {
+                    this.localArtifactCache.release(cacheKey);
+                }
+                return;
+            }
+
+            File tempFile = copyToTempFile(streamingPropertyValue.getInputStream(), workData);
+            try {
+                safeExecuteLocalFile(interestedWorkerWrappers, workData, tempFile);
+            } finally {
+                if (!tempFile.delete()) {
+                    LOGGER.warn("Could not delete temp file %s", tempFile.getAbsolutePath());
+                }
+            }
+            return;
+        }
+
         String[] workerNames = graphPropertyThreadedWrapperToNames(interestedWorkerWrappers);
-        InputStream in = streamingPropertyValue.getInputStream();
-        File tempFile = null;
+        RingBufferTeeInputStream teeInputStream = new RingBufferTeeInputStream(streamingPropertyValue.getInputStream(), workerNames);
+        List<Future<GraphPropertyThreadedWrapper.WorkResult>> results = this.workerExecutor.submit(interestedWorkerWrappers, Arrays.<InputStream>asList(teeInputStream.getTees()), workData);
+        teeInputStream.loopUntilTeesAreClosed();
+        waitForResults(results);
+    }
+
+    /**
+     * The local file has already been written so every worker reads it independently instead of through a tee.
+     */
+    private void safeExecuteLocalFile(List<GraphPropertyThreadedWrapper> interestedWorkerWrappers, GraphPropertyWorkData workData, File localFile) throws Exception {
+        List<InputStream> ins = openLocalFileInputStreams(localFile, interestedWorkerWrappers.size());
         try {
-            boolean requiresLocalFile = isLocalFileRequired(interestedWorkerWrappers);
-            if (requiresLocalFile) {
-                tempFile = copyToTempFile(in, workData);
-                in = new FileInputStream(tempFile);
+            waitForResults(this.workerExecutor.submit(interestedWorkerWrappers, ins, workData));
+        } finally {
+            for (InputStream in : ins) {
+                IOUtils.closeQuietly(in);
             }
+        }
+    }
 
-            TeeInputStream teeInputStream = new TeeInputStream(in, workerNames);
-            for (int i = 0; i < interestedWorkerWrappers.size(); i++) {
-                interestedWorkerWrappers.get(i).enqueueWork(teeInputStream.getTees()[i], workData);
+    /**
+     * Maps the file once and hands each worker its own read-only view of the mapping. Files too large to map in one
+     * buffer, or all files when mapping is disabled, are opened once per worker so each has its own channel position.
+     */
+    private List<InputStream> openLocalFileInputStreams(File localFile, int count) throws IOException {
+        List<InputStream> ins = new ArrayList<InputStream>(count);
+        long length = localFile.length();
+        if (this.memoryMapLocalFiles && length > 0 && length <= Integer.MAX_VALUE) {
+            MappedByteBuffer mappedFile;
+            FileInputStream fileIn = new FileInputStream(localFile);
+            try {
+                mappedFile = fileIn.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, length);
+            } finally {
+                fileIn.close();
             }
-            teeInputStream.loopUntilTeesAreClosed();
-            for (GraphPropertyThreadedWrapper interestedWorkerWrapper : interestedWorkerWrappers) {
-                interestedWorkerWrapper.dequeueResult();
+            for (int i = 0; i < count; i++) {
+                ins.add(new ByteBufferInputStream(mappedFile.duplicate()));
             }
-        } finally {
-            if (tempFile != null) {
-                if (!tempFile.delete()) {
-                    LOGGER.warn("Could not delete temp file %s", tempFile.getAbsolutePath());
+        } else {
+            try {
+                for (int i = 0; i < count; i++) {
+                    ins.add(new FileInputStream(localFile));
+                }
+            } catch (IOException ex) {
+                for (InputStream in : ins) {
+                    IOUtils.closeQuietly(in);
                 }
+                throw ex;
             }
         }
+        return ins;
+    }
+
+    /**
+     * @return the first worker error or null if all workers succeeded
+     */
+    private Exception waitForResults(List<Future<GraphPropertyThreadedWrapper.WorkResult>> results) throws InterruptedException, ExecutionException {
+        Exception error = null;
+        for (Future<GraphPropertyThreadedWrapper.WorkResult> result : results) {
+            GraphPropertyThreadedWrapper.WorkResult workResult = result.get();
+            if (error == null) {
+                error = workResult.getError();
+            }
+        }
+        return error;
     }
 
     private File copyToTempFile(InputStream in, GraphPropertyWorkData workData) throws IOException {
@@ -283,7 +375,7 @@ public class GraphPropertyBolt extends BaseRichBolt {
         if (fileExt == null) {
             fileExt = "data";
         }
-        File tempFile = File.createTempFile("graphPropertyBolt", fileExt);
+        File tempFile = this.localArtifactCache.createTempFile("graphPropertyBolt", "." + fileExt);
         workData.setLocalFile(tempFile);
         OutputStream tempFileOut = new FileOutputStream(tempFile);
         try {
@@ -350,4 +442,9 @@ public class GraphPropertyBolt extends BaseRichBolt {
     public void setGraph(Graph graph) {
         this.graph = graph;
     }
+
+    @Inject
+    public void setLocalArtifactCache(LocalArtifactCache localArtifactCache) {
+        this.localArtifactCache = localArtifactCache;
+    }
 }
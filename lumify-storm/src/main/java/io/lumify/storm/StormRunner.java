@@ -27,8 +27,9 @@ public class StormRunner extends StormRunnerBase {
 
     private void createGraphPropertyTopology(TopologyBuilder builder, int parallelismHint) {
         String name = "graphProperty";
-        builder.setSpout(name + "-spout", createWorkQueueRepositorySpout(WorkQueueRepository.GRAPH_PROPERTY_QUEUE_NAME), 1)
-                .setMaxTaskParallelism(1);
+        int spoutParallelismHint = getSpoutParallelismHint();
+        builder.setSpout(name + "-spout", createWorkQueueRepositorySpout(WorkQueueRepository.GRAPH_PROPERTY_QUEUE_NAME), spoutParallelismHint)
+                .setMaxTaskParallelism(spoutParallelismHint);
         builder.setBolt(name + "-bolt", new GraphPropertyBolt(), parallelismHint)
                 .shuffleGrouping(name + "-spout");
     }
@@ -18,7 +18,9 @@ public abstract class StormRunnerBase extends CommandLineBase {
     private static final String CMD_OPT_TASKS_PER_BOLT = "tasksperbolt";
     private static final String CMD_OPT_NUM_WORKERS = "workers";
     private static final String CMD_OPT_PARALLELISM_HINT = "parallelismhint";
+    private static final String CMD_OPT_SPOUT_PARALLELISM_HINT = "spoutparallelismhint";
     private boolean local;
+    private int spoutParallelismHint = 1;
 
     public StormRunnerBase() {
         initFramework = true;
@@ -62,6 +64,15 @@ public abstract class StormRunnerBase extends CommandLineBase {
                         .create("ph")
         );
 
+        opts.addOption(
+                OptionBuilder
+                        .withLongOpt(CMD_OPT_SPOUT_PARALLELISM_HINT)
+                        .withDescription("Spout parallelism hint")
+                        .hasArg()
+                        .withArgName("count")
+                        .create("sph")
+        );
+
         return opts;
     }
 
@@ -73,6 +84,9 @@ public abstract class StormRunnerBase extends CommandLineBase {
         if (cmd.hasOption(CMD_OPT_PARALLELISM_HINT)) {
             parallelismHint = Integer.parseInt(cmd.getOptionValue(CMD_OPT_PARALLELISM_HINT));
         }
+        if (cmd.hasOption(CMD_OPT_SPOUT_PARALLELISM_HINT)) {
+            spoutParallelismHint = Integer.parseInt(cmd.getOptionValue(CMD_OPT_SPOUT_PARALLELISM_HINT));
+        }
 
         Config conf = createConfig(cmd);
 
@@ -126,6 +140,10 @@ public abstract class StormRunnerBase extends CommandLineBase {
 
     protected abstract String getTopologyName();
 
+    protected int getSpoutParallelismHint() {
+        return spoutParallelismHint;
+    }
+
     protected abstract StormTopology createTopology(int parallelismHint);
 
     protected IRichSpout createWorkQueueRepositorySpout(String queueName) {
@@ -1,16 +1,18 @@
 package io.lumify.storm.video;
 
+import io.lumify.core.ingest.LocalArtifactCache;
 import io.lumify.core.ingest.graphProperty.GraphPropertyWorkData;
 import io.lumify.core.ingest.graphProperty.GraphPropertyWorker;
 import io.lumify.core.model.properties.MediaLumifyProperties;
 import io.lumify.core.model.properties.RawLumifyProperties;
+import io.lumify.core.model.workQueue.BroadcastMode;
+import io.lumify.core.model.workQueue.GraphPropertyQueueBatch;
 import io.lumify.core.util.ProcessRunner;
 import org.securegraph.Element;
 import org.securegraph.Property;
 import org.securegraph.Vertex;
 import org.securegraph.mutation.ExistingElementMutation;
 import org.securegraph.property.StreamingPropertyValue;
-import com.google.common.io.Files;
 import com.google.inject.Inject;
 import org.apache.commons.io.FileUtils;
 
@@ -26,12 +28,13 @@ import java.util.regex.Pattern;
 
 public class VideoFrameExtractGraphPropertyWorker extends GraphPropertyWorker {
     private ProcessRunner processRunner;
+    private LocalArtifactCache localArtifactCache;
     private double framesPerSecondToExtract = 0.1; // TODO make this configurable
 
     @Override
     public void execute(InputStream in, GraphPropertyWorkData data) throws Exception {
         Pattern fileNamePattern = Pattern.compile("image-([0-9]+)\\.png");
-        File tempDir = Files.createTempDir();
+        File tempDir = localArtifactCache.createTempDir();
         try {
             extractFrames(data.getLocalFile(), tempDir, framesPerSecondToExtract);
 
@@ -66,9 +69,11 @@ public class VideoFrameExtractGraphPropertyWorker extends GraphPropertyWorker {
 
             getGraph().flush();
 
+            GraphPropertyQueueBatch queueBatch = getWorkQueueRepository().createGraphPropertyQueueBatch(BroadcastMode.MERGED);
             for (String propertyKey : propertyKeys) {
-                getWorkQueueRepository().pushGraphPropertyQueue(data.getElement(), propertyKey, MediaLumifyProperties.VIDEO_FRAME.getKey());
+                queueBatch.push(data.getElement(), propertyKey, MediaLumifyProperties.VIDEO_FRAME.getKey());
             }
+            queueBatch.flush();
         } finally {
             FileUtils.deleteDirectory(tempDir);
         }
@@ -109,4 +114,9 @@ public class VideoFrameExtractGraphPropertyWorker extends GraphPropertyWorker {
     public void setProcessRunner(ProcessRunner processRunner) {
         this.processRunner = processRunner;
     }
+
+    @Inject
+    public void setLocalArtifactCache(LocalArtifactCache localArtifactCache) {
+        this.localArtifactCache = localArtifactCache;
+    }
 }
@@ -1,5 +1,6 @@
 package io.lumify.storm.video;
 
+import io.lumify.core.ingest.LocalArtifactCache;
 import io.lumify.core.ingest.graphProperty.GraphPropertyWorkData;
 import io.lumify.core.ingest.graphProperty.GraphPropertyWorker;
 import io.lumify.core.model.properties.MediaLumifyProperties;
@@ -21,11 +22,12 @@ import java.util.Map;
 public class VideoMp4EncodingWorker extends GraphPropertyWorker {
     private static final String PROPERTY_KEY = VideoMp4EncodingWorker.class.getName();
     private ProcessRunner processRunner;
+    private LocalArtifactCache localArtifactCache;
 
     @Override
     public void execute(InputStream in, GraphPropertyWorkData data) throws Exception {
-        File mp4File = File.createTempFile("encode_mp4_", ".mp4");
-        File mp4ReloactedFile = File.createTempFile("relocated_mp4_", ".mp4");
+        File mp4File = localArtifactCache.createTempFile("encode_mp4_", ".mp4");
+        File mp4ReloactedFile = localArtifactCache.createTempFile("relocated_mp4_", ".mp4");
         try {
             processRunner.execute(
                     "ffmpeg",
@@ -108,4 +110,9 @@ public class VideoMp4EncodingWorker extends GraphPropertyWorker {
     public void setProcessRunner(ProcessRunner ffmpeg) {
         this.processRunner = ffmpeg;
     }
+
+    @Inject
+    public void setLocalArtifactCache(LocalArtifactCache localArtifactCache) {
+        this.localArtifactCache = localArtifactCache;
+    }
 }
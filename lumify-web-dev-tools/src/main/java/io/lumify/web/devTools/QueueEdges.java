@@ -4,6 +4,8 @@ import com.altamiracorp.miniweb.HandlerChain;
 import com.google.inject.Inject;
 import io.lumify.core.config.Configuration;
 import io.lumify.core.model.user.UserRepository;
+import io.lumify.core.model.workQueue.BroadcastMode;
+import io.lumify.core.model.workQueue.GraphPropertyQueueBatch;
 import io.lumify.core.model.workQueue.WorkQueueRepository;
 import io.lumify.core.model.workspace.WorkspaceRepository;
 import io.lumify.core.user.User;
@@ -37,9 +39,11 @@ public class QueueEdges extends BaseRequestHandler {
         Authorizations authorizations = getAuthorizations(request, user);
 
         Iterable<Edge> edges = graph.getEdges(authorizations);
+        GraphPropertyQueueBatch queueBatch = workQueueRepository.createGraphPropertyQueueBatch(BroadcastMode.NONE);
         for (Edge edge : edges) {
-            workQueueRepository.pushElement(edge);
+            queueBatch.pushElement(edge);
         }
+        queueBatch.flush();
         workQueueRepository.flush();
 
         respondWithHtml(response, "OK");
@@ -31,6 +31,7 @@ public class UserAddAuthorization extends BaseRequestHandler {
         }
 
         getUserRepository().addAuthorization(user, auth);
+        invalidateUserAuthorizationContext(user.getUserId());
 
         respondWithJson(response, getUserRepository().toJsonWithAuths(user));
     }
@@ -31,6 +31,7 @@ public class UserRemoveAuthorization extends BaseRequestHandler {
         }
 
         getUserRepository().removeAuthorization(user, auth);
+        invalidateUserAuthorizationContext(user.getUserId());
 
         respondWithJson(response, getUserRepository().toJsonWithAuths(user));
     }
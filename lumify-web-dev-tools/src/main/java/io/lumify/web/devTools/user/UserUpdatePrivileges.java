@@ -45,6 +45,7 @@ public class UserUpdatePrivileges extends BaseRequestHandler {
         LOGGER.info("Setting user %s privileges to %s", user.getUserId(), Privilege.toString(privileges));
         getUserRepository().setPrivileges(user, privileges);
         this.graph.flush();
+        invalidateUserAuthorizationContext(user.getUserId());
 
         JSONObject json = new JSONObject();
         respondWithJson(response, json);
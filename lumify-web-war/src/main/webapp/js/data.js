@@ -211,6 +211,18 @@ define([
 
                     // TODO: create edgesUpdated events
                     if (message.data && message.data.vertex && !message.data.vertex.sourceVertexId) {
+                        if (message.data.partial) {
+                            updated = self.vertex(message.data.vertex.id);
+                            if (!updated) {
+                                break;
+                            }
+                            message.data.vertex.properties = _.reject(updated.properties, function(p) {
+                                return _.some(message.data.properties, function(change) {
+                                    return change.propertyName === p.name &&
+                                        (_.isUndefined(change.propertyKey) || change.propertyKey === p.key);
+                                });
+                            }).concat(message.data.vertex.properties);
+                        }
                         updated = self.updateCacheWithVertex(message.data.vertex, { returnNullIfNotChanged: true });
                         if (updated) {
                             self.trigger('verticesUpdated', { vertices: [updated] });
@@ -231,6 +243,12 @@ define([
                     self.trigger('edgesDeleted', { edgeId: message.data.edgeId});
                     break;
 
+                case 'workspaceChangesProgress':
+                    if (message.data && message.data.workspaceId === self.workspaceId) {
+                        self.trigger('workspaceChangesProgress', message.data);
+                    }
+                    break;
+
                 case 'detectedObjectChange':
                     updated = self.updateCacheWithVertex(message.data.artifactVertex, { returnNullIfNotChanged: true });
                     if (updated) {
@@ -480,8 +498,33 @@ define([
 
             this.relationshipsUnload();
 
-            this.workspaceService.getRelationships(this.workspaceId, this.newlyAddedIds)
-                .done(function(relationships) {
+            if (this.relationshipsWorkspaceId !== this.workspaceId) {
+                this.relationshipsWorkspaceId = this.workspaceId;
+                this.relationshipsVersion = null;
+                this.relationshipsById = {};
+            }
+
+            var workspaceId = this.workspaceId;
+            this.workspaceService.getRelationships(workspaceId, this.newlyAddedIds, this.relationshipsVersion)
+                .done(function(response) {
+                    if (self.relationshipsWorkspaceId !== workspaceId) {
+                        return;
+                    }
+
+                    // only the changes since relationshipsVersion are sent unless full is set
+                    if (response.full) {
+                        self.relationshipsById = {};
+                    } else {
+                        response.removed.forEach(function(edgeId) {
+                            delete self.relationshipsById[edgeId];
+                        });
+                    }
+                    response.relationships.forEach(function(relationship) {
+                        self.relationshipsById[relationship.id] = relationship;
+                    });
+                    self.relationshipsVersion = response.version;
+
+                    var relationships = _.values(self.relationshipsById);
                     self.relationshipsMarkReady(relationships);
                     self.trigger('relationshipsLoaded', { relationships: relationships });
                 });
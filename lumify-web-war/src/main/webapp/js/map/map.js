@@ -550,6 +550,9 @@ define([
                         function(data) {
                             self.endRegionSelection();
                             self.trigger(document, 'addVertices', data);
+                            if (data.complete === false) {
+                                self.displayTruncatedSearch(data);
+                            }
                         }
                     );
 
@@ -558,6 +561,14 @@ define([
             }
         };
 
+        this.displayTruncatedSearch = function(data) {
+            this.trigger('displayInformation', {
+                message: 'Showing the first ' + F.number.pretty(data.vertices.length) + ' locations. ' +
+                    'Select a smaller region to see the rest.',
+                dismissDuration: 5000
+            });
+        };
+
         this.initializeMap = function() {
             var self = this;
 
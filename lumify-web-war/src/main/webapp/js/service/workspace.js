@@ -38,11 +38,14 @@ function(ServiceBase) {
         });
     };
 
-    WorkspaceService.prototype.getRelationships = function(workspaceId, additionalIds) {
+    WorkspaceService.prototype.getRelationships = function(workspaceId, additionalIds, version) {
         var data = {};
         if (additionalIds && additionalIds.length) {
             data.ids = additionalIds;
         }
+        if (!_.isUndefined(version)) {
+            data.version = version || '';
+        }
         data.workspaceId = workspaceId;
 
         return this._ajaxGet({
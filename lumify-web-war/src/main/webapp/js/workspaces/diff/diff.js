@@ -36,6 +36,8 @@ define([
         this.after('initialize', function() {
             var self = this;
 
+            this.on(document, 'workspaceChangesProgress', this.onWorkspaceChangesProgress);
+
             $.when(
                 ontologyService.properties(),
                 ontologyService.relationships()
@@ -363,11 +365,12 @@ define([
                     console.error('Unknown diff type', diff);
                 }).toArray();
 
+            var job = this.changesJob = { buttons: bothButtons, finished: {} };
             workspaceService[type](diffsToSend)
-                .always(function() {
-                    bothButtons.hide().removeAttr('disabled').removeClass('loading');
-                })
                 .fail(function(xhr, status, errorText) {
+                    self.changesJob = null;
+                    bothButtons.hide().removeAttr('disabled').removeClass('loading');
+
                     var error = $('<div>')
                         .addClass('alert alert-error')
                         .html(
@@ -381,23 +384,53 @@ define([
                     _.delay(error.remove.bind(error), 5000)
                 })
                 .done(function(response) {
-                    var failures = response.failures,
-                        success = response.success;
-
-                    self.$node.find('.header .alert').remove();
-
-                    if (failures && failures.length) {
-                        var error = $('<div>')
-                            .addClass('alert alert-error')
-                            .html(
-                                '<button type="button" class="close" data-dismiss="alert">&times;</button>' +
-                                '<ul><li>' + _.pluck(failures, 'error_msg').join('</li><li>') + '</li></ul>'
-                            )
-                            .appendTo(header);
+                    // changes are applied in the background and reported by workspaceChangesProgress
+                    job.id = response.jobId;
+                    if (job.finished[job.id]) {
+                        self.finishChangesJob(job.finished[job.id]);
                     }
                 });
         };
 
+        this.onWorkspaceChangesProgress = function(event, data) {
+            var job = this.changesJob;
+            if (!job) return;
+
+            if (!job.id) {
+                // the job can finish before its id is received
+                if (data.done) job.finished[data.jobId] = data;
+                return;
+            }
+            if (data.jobId !== job.id) return;
+
+            // count down the changes left on the button being applied
+            this.$node.find('.publish-all.loading,.undo-all.loading')
+                .attr('data-count', F.number.pretty(Math.max(0, data.total - data.processed)));
+
+            if (data.done) {
+                this.finishChangesJob(data);
+            }
+        };
+
+        this.finishChangesJob = function(data) {
+            var failures = data.failures,
+                header = this.$node.find('.header');
+
+            this.changesJob.buttons.hide().removeAttr('disabled').removeClass('loading');
+            this.changesJob = null;
+            header.find('.alert').remove();
+
+            if (failures && failures.length) {
+                $('<div>')
+                    .addClass('alert alert-error')
+                    .html(
+                        '<button type="button" class="close" data-dismiss="alert">&times;</button>' +
+                        '<ul><li>' + _.pluck(failures, 'error_msg').join('</li><li>') + '</li></ul>'
+                    )
+                    .appendTo(header);
+            }
+        };
+
         this.updateDraggables = function() {
             this.$node.find('.vertex-label h1')
                 .draggable({
@@ -0,0 +1,113 @@
+package io.lumify.web;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import io.lumify.core.config.Configuration;
+import io.lumify.core.model.user.UserRepository;
+import io.lumify.core.model.workspace.WorkspaceRepository;
+import io.lumify.core.user.User;
+import org.securegraph.Authorizations;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the user, the workspaces the user may read and the authorizations of each workspace of the users making
+ * requests for <code>authorizationContextCache.ttlSeconds</code>, so the many requests of one page load don't read the
+ * user and the users of the workspace from the graph again each time. Only granted read access is kept. Routes which
+ * change the users of a workspace or the authorizations of a user invalidate the affected entries.
+ */
+@Singleton
+public class AuthorizationContextCache {
+    public static final String TTL_SECONDS = "authorizationContextCache.ttlSeconds";
+    public static final int DEFAULT_TTL_SECONDS = 30;
+    private static final String NO_WORKSPACE = "";
+    private final UserRepository userRepository;
+    private final WorkspaceRepository workspaceRepository;
+    private final Cache<String, AuthorizationContext> contexts;
+
+    @Inject
+    public AuthorizationContextCache(
+            final UserRepository userRepository,
+            final WorkspaceRepository workspaceRepository,
+            final Configuration configuration) {
+        this.userRepository = userRepository;
+        this.workspaceRepository = workspaceRepository;
+        this.contexts = CacheBuilder.newBuilder()
+                .maximumSize(10000)
+                .expireAfterWrite(configuration.getInt(TTL_SECONDS, DEFAULT_TTL_SECONDS), TimeUnit.SECONDS)
+                .build();
+    }
+
+    public User getUser(String userId) {
+        if (userId == null) {
+            return new ProxyUser(null, userRepository);
+        }
+        return getContext(userId).user;
+    }
+
+    public boolean hasReadPermissions(String workspaceId, User user) {
+        AuthorizationContext context = getContext(user.getUserId());
+        if (context.readableWorkspaceIds.containsKey(workspaceId)) {
+            return true;
+        }
+        if (!workspaceRepository.hasReadPermissions(workspaceId, user)) {
+            return false;
+        }
+        context.readableWorkspaceIds.put(workspaceId, Boolean.TRUE);
+        return true;
+    }
+
+    /**
+     * @param workspaceId the workspace, or null for the authorizations of the user alone.
+     */
+    public Authorizations getAuthorizations(User user, String workspaceId) {
+        AuthorizationContext context = getContext(user.getUserId());
+        String key = workspaceId == null ? NO_WORKSPACE : workspaceId;
+        Authorizations authorizations = context.authorizationsByWorkspaceId.get(key);
+        if (authorizations == null) {
+            authorizations = workspaceId == null ? userRepository.getAuthorizations(user) : userRepository.getAuthorizations(user, workspaceId);
+            context.authorizationsByWorkspaceId.put(key, authorizations);
+        }
+        return authorizations;
+    }
+
+    public void invalidateUser(String userId) {
+        contexts.invalidate(userId);
+    }
+
+    /**
+     * Forgets the access to and authorizations of the workspace of every user, e.g. after it was shared or deleted.
+     */
+    public void invalidateWorkspace(String workspaceId) {
+        for (AuthorizationContext context : contexts.asMap().values()) {
+            context.readableWorkspaceIds.remove(workspaceId);
+            context.authorizationsByWorkspaceId.remove(workspaceId);
+        }
+    }
+
+    private AuthorizationContext getContext(String userId) {
+        AuthorizationContext context = contexts.getIfPresent(userId);
+        if (context == null) {
+            context = new AuthorizationContext(new ProxyUser(userId, userRepository));
+            AuthorizationContext existing = contexts.asMap().putIfAbsent(userId, context);
+            if (existing != null) {
+                context = existing;
+            }
+        }
+        return context;
+    }
+
+    private static class AuthorizationContext {
+        private final User user;
+        private final ConcurrentMap<String, Boolean> readableWorkspaceIds = new ConcurrentHashMap<String, Boolean>();
+        private final ConcurrentMap<String, Authorizations> authorizationsByWorkspaceId = new ConcurrentHashMap<String, Authorizations>();
+
+        public AuthorizationContext(User user) {
+            this.user = user;
+        }
+    }
+}
@@ -4,6 +4,7 @@ import com.altamiracorp.miniweb.Handler;
 import com.altamiracorp.miniweb.HandlerChain;
 import com.altamiracorp.miniweb.utils.UrlUtils;
 import com.google.common.base.Preconditions;
+import com.google.inject.Inject;
 import io.lumify.core.config.Configuration;
 import io.lumify.core.exception.LumifyAccessDeniedException;
 import io.lumify.core.exception.LumifyException;
@@ -14,6 +15,7 @@ import io.lumify.core.user.User;
 import org.apache.commons.io.IOUtils;
 import org.json.JSONArray;
 import org.json.JSONObject;
+import org.json.JSONWriter;
 import org.securegraph.Authorizations;
 
 import javax.servlet.http.HttpServletRequest;
@@ -35,6 +37,7 @@ public abstract class BaseRequestHandler implements Handler {
     private final UserRepository userRepository;
     private final WorkspaceRepository workspaceRepository;
     private final Configuration configuration;
+    private AuthorizationContextCache authorizationContextCache;
 
     protected BaseRequestHandler(UserRepository userRepository, WorkspaceRepository workspaceRepository, Configuration configuration) {
         this.userRepository = userRepository;
@@ -201,6 +204,13 @@ public abstract class BaseRequestHandler implements Handler {
 
     protected Authorizations getAuthorizations(final HttpServletRequest request, final User user) {
         String workspaceId = getWorkspaceIdOrDefault(request);
+        if (authorizationContextCache != null && user.getUserId() != null && user.getUserId().equals(AuthenticationProvider.getUserId(request))) {
+            if (workspaceId != null && !authorizationContextCache.hasReadPermissions(workspaceId, user)) {
+                throw new LumifyAccessDeniedException("You do not have access to workspace: " + workspaceId, user, workspaceId);
+            }
+            return authorizationContextCache.getAuthorizations(user, workspaceId);
+        }
+
         if (workspaceId != null) {
             if (!this.workspaceRepository.hasReadPermissions(workspaceId, user)) {
                 throw new LumifyAccessDeniedException("You do not have access to workspace: " + workspaceId, user, workspaceId);
@@ -211,6 +221,24 @@ public abstract class BaseRequestHandler implements Handler {
         return getUserRepository().getAuthorizations(user);
     }
 
+    /**
+     * Call after changing the authorizations or privileges of a user.
+     */
+    protected void invalidateUserAuthorizationContext(String userId) {
+        if (authorizationContextCache != null) {
+            authorizationContextCache.invalidateUser(userId);
+        }
+    }
+
+    /**
+     * Call after changing which users have access to a workspace.
+     */
+    protected void invalidateWorkspaceAuthorizationContext(String workspaceId) {
+        if (authorizationContextCache != null) {
+            authorizationContextCache.invalidateWorkspace(workspaceId);
+        }
+    }
+
     protected Set<Privilege> getPrivileges(User user) {
         return getUserRepository().getPrivileges(user);
     }
@@ -299,6 +327,21 @@ public abstract class BaseRequestHandler implements Handler {
         configureResponse(ResponseTypes.JSON_ARRAY, response, jsonArray);
     }
 
+    /**
+     * Configures the response for JSON data and returns a writer which writes straight to it, so large results can
+     * be sent as they are read instead of being built in memory first.
+     *
+     * @param response The response instance to modify
+     * @return A writer for the JSON data of the response
+     */
+    protected JSONWriter respondWithJsonWriter(final HttpServletResponse response) throws IOException {
+        Preconditions.checkNotNull(response, "The provided response was invalid");
+
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+        return new JSONWriter(response.getWriter());
+    }
+
     protected void respondWithPlaintext(final HttpServletResponse response, final String plaintext) {
         configureResponse(ResponseTypes.PLAINTEXT, response, plaintext);
     }
@@ -308,6 +351,9 @@ public abstract class BaseRequestHandler implements Handler {
     }
 
     protected User getUser(HttpServletRequest request) {
+        if (authorizationContextCache != null) {
+            return authorizationContextCache.getUser(AuthenticationProvider.getUserId(request));
+        }
         return new ProxyUser(AuthenticationProvider.getUserId(request), this.userRepository);
     }
 
@@ -371,4 +417,9 @@ public abstract class BaseRequestHandler implements Handler {
     public WorkspaceRepository getWorkspaceRepository() {
         return workspaceRepository;
     }
+
+    @Inject
+    public void setAuthorizationContextCache(AuthorizationContextCache authorizationContextCache) {
+        this.authorizationContextCache = authorizationContextCache;
+    }
 }
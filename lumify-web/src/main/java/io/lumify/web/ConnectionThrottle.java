@@ -0,0 +1,209 @@
+package io.lumify.web;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.*;
+
+/**
+ * Limits how many element update messages are written to one connection each second. Messages over the limit wait
+ * in a backlog where a newer message about the same element replaces the older one, or is merged into it when both
+ * carry only changed properties, so a client which can't keep up gets the latest state of each element instead of
+ * every step. Other messages are never held back.
+ */
+class ConnectionThrottle {
+    private static final long WINDOW_MILLIS = 1000;
+    private final int maxMessagesPerSecond;
+    private final int maxBacklog;
+    private final LinkedHashMap<String, JSONObject> backlog = new LinkedHashMap<String, JSONObject>();
+    private final Map<Message, String> releasedKeysByMessage = new IdentityHashMap<Message, String>();
+    private long windowStart;
+    private int sentInWindow;
+    private int dropped;
+
+    public ConnectionThrottle(int maxMessagesPerSecond, int maxBacklog) {
+        this.maxMessagesPerSecond = maxMessagesPerSecond;
+        this.maxBacklog = maxBacklog;
+    }
+
+    /**
+     * @return true if the message should be written now, false if it was added to the backlog.
+     */
+    public synchronized boolean offer(Message message, long now) {
+        if (releasedKeysByMessage.remove(message) != null) {
+            sentInWindow++;
+            return true;
+        }
+        String key = message.coalesceKey;
+        if (key == null) {
+            return true;
+        }
+
+        startWindow(now);
+        if (backlog.isEmpty() && sentInWindow < maxMessagesPerSecond && !releasedKeysByMessage.containsValue(key)) {
+            sentInWindow++;
+            return true;
+        }
+
+        JSONObject existing = backlog.remove(key);
+        backlog.put(key, existing == null ? message.json : merge(existing, message.json));
+        if (backlog.size() > maxBacklog) {
+            Iterator<String> it = backlog.keySet().iterator();
+            it.next();
+            it.remove();
+            dropped++;
+        }
+        return false;
+    }
+
+    /**
+     * Takes as many messages from the backlog as the current second allows. They are let through when they come
+     * back to {@link #offer(Message, long)}.
+     */
+    public synchronized List<Message> release(long now) {
+        startWindow(now);
+        List<Message> messages = new ArrayList<Message>();
+        Iterator<Map.Entry<String, JSONObject>> it = backlog.entrySet().iterator();
+        while (it.hasNext() && sentInWindow + releasedKeysByMessage.size() < maxMessagesPerSecond) {
+            Map.Entry<String, JSONObject> entry = it.next();
+            Message message = new Message(entry.getValue().toString(), entry.getValue(), entry.getKey());
+            releasedKeysByMessage.put(message, entry.getKey());
+            messages.add(message);
+            it.remove();
+        }
+        return messages;
+    }
+
+    /**
+     * @return the number of messages dropped because the backlog was full since the last call.
+     */
+    public synchronized int takeDroppedCount() {
+        int result = dropped;
+        dropped = 0;
+        return result;
+    }
+
+    private void startWindow(long now) {
+        if (now - windowStart >= WINDOW_MILLIS) {
+            windowStart = now;
+            sentInWindow = 0;
+        }
+    }
+
+    static String getCoalesceKey(JSONObject json) {
+        String type = json.optString("type");
+        JSONObject data = json.optJSONObject("data");
+        if (data == null) {
+            return null;
+        }
+        Object id = null;
+        if ("propertiesChange".equals(type)) {
+            JSONObject elementJson = getElementJson(data);
+            id = elementJson == null ? null : elementJson.opt("id");
+        } else if ("textUpdated".equals(type)) {
+            id = data.opt("graphVertexId");
+        } else if ("detectedObjectChange".equals(type)) {
+            JSONObject artifactVertexJson = data.optJSONObject("artifactVertex");
+            id = artifactVertexJson == null ? null : artifactVertexJson.opt("id");
+        }
+        return id == null ? null : type + ":" + id;
+    }
+
+    /**
+     * Merges a property change into an earlier one about the same element. The properties named in the newer
+     * change replace those of the earlier one. A newer change of the whole element replaces the earlier one.
+     * Neither message is modified, since the same message is offered to every connection.
+     */
+    static JSONObject merge(JSONObject existing, JSONObject json) {
+        JSONObject data = json.optJSONObject("data");
+        JSONObject existingData = existing.optJSONObject("data");
+        if (!"propertiesChange".equals(json.optString("type")) || !data.optBoolean("partial") || existingData == null) {
+            return json;
+        }
+        JSONObject elementJson = getElementJson(data);
+        JSONObject existingElementJson = getElementJson(existingData);
+        JSONArray changes = data.optJSONArray("properties");
+        if (elementJson == null || existingElementJson == null || changes == null) {
+            return json;
+        }
+
+        JSONArray mergedProperties = new JSONArray();
+        JSONArray existingProperties = existingElementJson.optJSONArray("properties");
+        for (int i = 0; existingProperties != null && i < existingProperties.length(); i++) {
+            JSONObject property = existingProperties.getJSONObject(i);
+            if (!isChanged(property, changes)) {
+                mergedProperties.put(property);
+            }
+        }
+        JSONArray properties = elementJson.optJSONArray("properties");
+        for (int i = 0; properties != null && i < properties.length(); i++) {
+            mergedProperties.put(properties.get(i));
+        }
+        JSONObject mergedElementJson = copy(elementJson);
+        mergedElementJson.put("properties", mergedProperties);
+
+        JSONArray mergedChanges = new JSONArray();
+        JSONArray existingChanges = existingData.optJSONArray("properties");
+        for (int i = 0; existingChanges != null && i < existingChanges.length(); i++) {
+            mergedChanges.put(existingChanges.get(i));
+        }
+        for (int i = 0; i < changes.length(); i++) {
+            mergedChanges.put(changes.get(i));
+        }
+        JSONObject mergedData = copy(data);
+        mergedData.put(data.has("edge") ? "edge" : "vertex", mergedElementJson);
+        mergedData.put("properties", mergedChanges);
+        if (!existingData.optBoolean("partial")) {
+            mergedData.remove("partial");
+        }
+        JSONObject merged = copy(json);
+        merged.put("data", mergedData);
+        return merged;
+    }
+
+    private static JSONObject copy(JSONObject json) {
+        String[] names = JSONObject.getNames(json);
+        return names == null ? new JSONObject() : new JSONObject(json, names);
+    }
+
+    private static boolean isChanged(JSONObject property, JSONArray changes) {
+        for (int i = 0; i < changes.length(); i++) {
+            JSONObject change = changes.getJSONObject(i);
+            String propertyKey = change.optString("propertyKey", null);
+            if (property.optString("name").equals(change.optString("propertyName"))
+                    && (propertyKey == null || propertyKey.equals(property.optString("key")))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static JSONObject getElementJson(JSONObject data) {
+        return data.has("edge") ? data.optJSONObject("edge") : data.optJSONObject("vertex");
+    }
+
+    /**
+     * A message as broadcast to every connection, with its coalesce key worked out once when it is routed.
+     */
+    static class Message {
+        private final String text;
+        private final JSONObject json;
+        private final String coalesceKey;
+
+        private Message(String text, JSONObject json, String coalesceKey) {
+            this.text = text;
+            this.json = json;
+            this.coalesceKey = coalesceKey;
+        }
+
+        public static Message create(JSONObject json) {
+            String coalesceKey = getCoalesceKey(json);
+            return new Message(json.toString(), coalesceKey == null ? null : json, coalesceKey);
+        }
+
+        @Override
+        public String toString() {
+            return text;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package io.lumify.web;
+
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import io.lumify.sql.model.HibernateSessionManager;
+
+import javax.servlet.*;
+import java.io.IOException;
+
+/**
+ * Lets the SQL repositories use one Hibernate session for each request, which is closed when the request ends.
+ */
+public class HibernateSessionFilter implements Filter {
+    private HibernateSessionManager sessionManager;
+
+    @Override
+    public void init(FilterConfig filterConfig) throws ServletException {
+        Injector injector = (Injector) filterConfig.getServletContext().getAttribute(Injector.class.getName());
+        if (injector != null && injector.getExistingBinding(Key.get(HibernateSessionManager.class)) != null) {
+            sessionManager = injector.getInstance(HibernateSessionManager.class);
+        }
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException, ServletException {
+        if (sessionManager == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        sessionManager.beginRequest();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            sessionManager.endRequest();
+        }
+    }
+
+    @Override
+    public void destroy() {
+    }
+}
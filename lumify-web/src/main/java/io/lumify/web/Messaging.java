@@ -2,6 +2,7 @@ package io.lumify.web;
 
 import com.google.inject.Inject;
 import com.google.inject.Injector;
+import io.lumify.core.config.Configuration;
 import io.lumify.core.model.user.UserRepository;
 import io.lumify.core.model.user.UserStatus;
 import io.lumify.core.model.workQueue.WorkQueueRepository;
@@ -16,24 +17,44 @@ import org.atmosphere.client.TrackMessageSizeInterceptor;
 import org.atmosphere.config.service.AtmosphereHandlerService;
 import org.atmosphere.cpr.*;
 import org.atmosphere.interceptor.AtmosphereResourceLifecycleInterceptor;
-import org.atmosphere.interceptor.BroadcastOnPostAtmosphereInterceptor;
 import org.atmosphere.interceptor.HeartbeatInterceptor;
+import org.json.JSONArray;
 import org.json.JSONObject;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
+/**
+ * Messages without <code>permissions</code> go to every connected resource. Messages with
+ * <code>permissions.users</code> go only to the broadcaster of each of those users, skipping users whose current
+ * workspace is not in <code>permissions.workspaces</code> when both are given, and messages with only
+ * <code>permissions.workspaces</code> go only to the broadcaster of each of those workspaces. Each message is parsed
+ * once. The current workspace of each connected user is kept here and updated when a user switches workspace, here
+ * or on another server. Element update messages to each connection are limited by a {@link ConnectionThrottle}.
+ */
 @AtmosphereHandlerService(
         path = "/messaging",
         broadcasterCache = UUIDBroadcasterCache.class,
         interceptors = {
                 AtmosphereResourceLifecycleInterceptor.class,
-                BroadcastOnPostAtmosphereInterceptor.class,
                 TrackMessageSizeInterceptor.class,
                 HeartbeatInterceptor.class
         })
 public class Messaging implements AtmosphereHandler { //extends AbstractReflectorAtmosphereHandler {
     private static final LumifyLogger LOGGER = LumifyLoggerFactory.getLogger(Messaging.class);
+    private static final String USER_BROADCASTER_PREFIX = "/messaging/user/";
+    private static final String WORKSPACE_BROADCASTER_PREFIX = "/messaging/workspace/";
+    public static final String MAX_MESSAGES_PER_SECOND = "messaging.maxMessagesPerSecond";
+    public static final int DEFAULT_MAX_MESSAGES_PER_SECOND = 20;
+    public static final String MAX_BACKLOG = "messaging.maxBacklog";
+    public static final int DEFAULT_MAX_BACKLOG = 1000;
+    private static final long RELEASE_INTERVAL_MILLIS = 250;
 
     private UserRepository userRepository;
 
@@ -43,6 +64,13 @@ public class Messaging implements AtmosphereHandler { //extends AbstractReflecto
     private WorkspaceRepository workspaceRepository;
     private WorkQueueRepository workQueueRepository;
     private boolean subscribedToBroadcast = false;
+    private BroadcasterFactory broadcasterFactory;
+    private final ConcurrentMap<String, String> currentWorkspaceIdsByUserId = new ConcurrentHashMap<String, String>();
+    private final ConcurrentMap<String, ConnectionThrottle> throttlesByUuid = new ConcurrentHashMap<String, ConnectionThrottle>();
+    private final ConcurrentMap<String, AtmosphereResource> resourcesByUuid = new ConcurrentHashMap<String, AtmosphereResource>();
+    private Configuration configuration;
+    private AuthorizationContextCache authorizationContextCache;
+    private Timer releaseTimer;
 
     @Override
     public void onRequest(AtmosphereResource resource) throws IOException {
@@ -61,8 +89,12 @@ public class Messaging implements AtmosphereHandler { //extends AbstractReflecto
         if (req.getMethod().equalsIgnoreCase("GET")) {
             onOpen(resource);
             resource.suspend();
-        } else if (req.getMethod().equalsIgnoreCase("POST")) {
-            resource.getBroadcaster().broadcast(req.getReader().readLine().trim());
+        } else if (req.getMethod().equalsIgnoreCase("POST") && !StringUtils.isBlank(requestData)) {
+            try {
+                route(new JSONObject(requestData.trim()));
+            } catch (Exception ex) {
+                LOGGER.error("Could not route async message: " + requestData, ex);
+            }
         }
     }
 
@@ -75,19 +107,181 @@ public class Messaging implements AtmosphereHandler { //extends AbstractReflecto
             this.workQueueRepository.subscribeToBroadcastMessages(new WorkQueueRepository.BroadcastConsumer() {
                 @Override
                 public void broadcastReceived(JSONObject json) {
-                    if (broadcaster != null) {
-                        broadcaster.broadcast(json.toString());
+                    if ("userWorkspaceChange".equals(json.optString("type"))) {
+                        JSONObject dataJson = json.optJSONObject("data");
+                        if (dataJson != null) {
+                            setCurrentWorkspaceId(dataJson.optString("id"), dataJson.optString("workspaceId"));
+                        }
                     }
+                    route(json);
                 }
             });
             subscribedToBroadcast = true;
         }
+        synchronized (this) {
+            if (releaseTimer == null) {
+                releaseTimer = new Timer("messaging-throttle", true);
+                releaseTimer.schedule(new TimerTask() {
+                    @Override
+                    public void run() {
+                        releaseThrottledMessages();
+                    }
+                }, RELEASE_INTERVAL_MILLIS, RELEASE_INTERVAL_MILLIS);
+            }
+        }
         broadcaster = resource.getBroadcaster();
+        broadcasterFactory = resource.getAtmosphereConfig().framework().getBroadcasterFactory();
+    }
+
+    private void route(JSONObject json) {
+        JSONObject permissionsJson = json.optJSONObject("permissions");
+        JSONArray users = permissionsJson == null ? null : permissionsJson.optJSONArray("users");
+        JSONArray workspaces = permissionsJson == null ? null : permissionsJson.optJSONArray("workspaces");
+        ConnectionThrottle.Message message = ConnectionThrottle.Message.create(json);
+
+        if (users != null) {
+            for (int i = 0; i < users.length(); i++) {
+                String userId = users.getString(i);
+                if (workspaces != null && !contains(workspaces, currentWorkspaceIdsByUserId.get(userId))) {
+                    continue;
+                }
+                broadcast(USER_BROADCASTER_PREFIX + userId, message);
+            }
+        } else if (workspaces != null) {
+            for (int i = 0; i < workspaces.length(); i++) {
+                broadcast(WORKSPACE_BROADCASTER_PREFIX + workspaces.getString(i), message);
+            }
+        } else if (broadcaster != null) {
+            broadcaster.broadcast(message);
+        }
+    }
+
+    private void broadcast(String broadcasterId, ConnectionThrottle.Message message) {
+        Broadcaster topicBroadcaster = broadcasterFactory == null ? null : broadcasterFactory.lookup(broadcasterId, false);
+        if (topicBroadcaster != null) {
+            topicBroadcaster.broadcast(message);
+        }
+    }
+
+    private static boolean contains(JSONArray values, String value) {
+        for (int i = 0; i < values.length(); i++) {
+            if (values.getString(i).equals(value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void subscribe(AtmosphereResource resource, String userId) {
+        String workspaceId = currentWorkspaceIdsByUserId.get(userId);
+        if (workspaceId == null) {
+            workspaceId = userRepository.getCurrentWorkspaceId(userId);
+            if (workspaceId != null) {
+                currentWorkspaceIdsByUserId.putIfAbsent(userId, workspaceId);
+                workspaceId = currentWorkspaceIdsByUserId.get(userId);
+            }
+        }
+        broadcasterFactory.lookup(USER_BROADCASTER_PREFIX + userId, true).addAtmosphereResource(resource);
+        if (workspaceId != null) {
+            broadcasterFactory.lookup(WORKSPACE_BROADCASTER_PREFIX + workspaceId, true).addAtmosphereResource(resource);
+        }
+    }
+
+    /**
+     * @return true if the message may be written to the resource now.
+     */
+    private boolean throttle(AtmosphereResource resource, ConnectionThrottle.Message message) {
+        String uuid = resource.uuid();
+        ConnectionThrottle throttle = throttlesByUuid.get(uuid);
+        if (throttle == null) {
+            throttle = new ConnectionThrottle(
+                    configuration.getInt(MAX_MESSAGES_PER_SECOND, DEFAULT_MAX_MESSAGES_PER_SECOND),
+                    configuration.getInt(MAX_BACKLOG, DEFAULT_MAX_BACKLOG));
+            ConnectionThrottle existing = throttlesByUuid.putIfAbsent(uuid, throttle);
+            if (existing != null) {
+                throttle = existing;
+            }
+        }
+        resourcesByUuid.put(uuid, resource);
+        return throttle.offer(message, System.currentTimeMillis());
+    }
+
+    private void releaseThrottledMessages() {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<String, ConnectionThrottle> entry : throttlesByUuid.entrySet()) {
+            AtmosphereResource resource = resourcesByUuid.get(entry.getKey());
+            if (resource == null) {
+                continue;
+            }
+            try {
+                for (ConnectionThrottle.Message message : entry.getValue().release(now)) {
+                    resource.getBroadcaster().broadcast(message, resource);
+                }
+                int dropped = entry.getValue().takeDroppedCount();
+                if (dropped > 0) {
+                    LOGGER.warn("Dropped %d messages to slow connection %s", dropped, entry.getKey());
+                }
+            } catch (Exception ex) {
+                LOGGER.error("Could not release throttled messages to " + entry.getKey(), ex);
+            }
+        }
+    }
+
+    private void unsubscribe(AtmosphereResource resource) {
+        throttlesByUuid.remove(resource.uuid());
+        resourcesByUuid.remove(resource.uuid());
+        String userId = AuthenticationProvider.getUserId(resource.getRequest().getSession());
+        if (userId == null || broadcasterFactory == null) {
+            return;
+        }
+        removeFromBroadcaster(USER_BROADCASTER_PREFIX + userId, resource);
+        String workspaceId = currentWorkspaceIdsByUserId.get(userId);
+        if (workspaceId != null) {
+            removeFromBroadcaster(WORKSPACE_BROADCASTER_PREFIX + workspaceId, resource);
+        }
+    }
+
+    private void removeFromBroadcaster(String broadcasterId, AtmosphereResource resource) {
+        Broadcaster topicBroadcaster = broadcasterFactory.lookup(broadcasterId, false);
+        if (topicBroadcaster != null) {
+            topicBroadcaster.removeAtmosphereResource(resource);
+        }
+    }
+
+    /**
+     * Moves the resources of the user from the broadcaster of the previous workspace to that of the new one.
+     */
+    private void setCurrentWorkspaceId(String userId, String workspaceId) {
+        if (StringUtils.isBlank(userId) || StringUtils.isBlank(workspaceId)) {
+            return;
+        }
+        String previousWorkspaceId = currentWorkspaceIdsByUserId.put(userId, workspaceId);
+        if (workspaceId.equals(previousWorkspaceId) || broadcasterFactory == null) {
+            return;
+        }
+        Broadcaster userBroadcaster = broadcasterFactory.lookup(USER_BROADCASTER_PREFIX + userId, false);
+        if (userBroadcaster == null) {
+            return;
+        }
+        List<AtmosphereResource> resources = new ArrayList<AtmosphereResource>(userBroadcaster.getAtmosphereResources());
+        Broadcaster workspaceBroadcaster = broadcasterFactory.lookup(WORKSPACE_BROADCASTER_PREFIX + workspaceId, true);
+        for (AtmosphereResource resource : resources) {
+            if (previousWorkspaceId != null) {
+                removeFromBroadcaster(WORKSPACE_BROADCASTER_PREFIX + previousWorkspaceId, resource);
+            }
+            workspaceBroadcaster.addAtmosphereResource(resource);
+        }
     }
 
     @Override
     public void destroy() {
         LOGGER.debug("destroy");
+        synchronized (this) {
+            if (releaseTimer != null) {
+                releaseTimer.cancel();
+                releaseTimer = null;
+            }
+        }
     }
 
     @Override
@@ -96,15 +290,15 @@ public class Messaging implements AtmosphereHandler { //extends AbstractReflecto
         AtmosphereResponse response = ((AtmosphereResourceImpl) event.getResource()).getResponse(false);
 
         if (event.getMessage() != null && List.class.isAssignableFrom(event.getMessage().getClass())) {
-            List<String> messages = List.class.cast(event.getMessage());
-            for (String t : messages) {
+            List<Object> messages = List.class.cast(event.getMessage());
+            for (Object t : messages) {
                 onMessage(event, response, t);
             }
 
         } else if (event.isClosedByApplication() || event.isClosedByClient() || event.isCancelled()) {
             onDisconnect(event, response);
         } else if (event.isSuspended()) {
-            onMessage(event, response, (String) event.getMessage());
+            onMessage(event, response, event.getMessage());
         } else if (event.isResuming()) {
             onResume(event, response);
         } else if (event.isResumedOnTimeout()) {
@@ -113,6 +307,10 @@ public class Messaging implements AtmosphereHandler { //extends AbstractReflecto
     }
 
     public void onOpen(AtmosphereResource resource) throws IOException {
+        String authUserId = AuthenticationProvider.getUserId(resource.getRequest().getSession());
+        if (authUserId != null) {
+            subscribe(resource, authUserId);
+        }
         setStatus(resource, UserStatus.ONLINE);
     }
 
@@ -125,22 +323,22 @@ public class Messaging implements AtmosphereHandler { //extends AbstractReflecto
     }
 
     public void onDisconnect(AtmosphereResourceEvent event, AtmosphereResponse response) throws IOException {
+        unsubscribe(event.getResource());
         setStatus(event.getResource(), UserStatus.OFFLINE);
     }
 
     public void onClose(AtmosphereResourceEvent event, AtmosphereResponse response) {
+        unsubscribe(event.getResource());
         setStatus(event.getResource(), UserStatus.OFFLINE);
     }
 
-    public void onMessage(AtmosphereResourceEvent event, AtmosphereResponse response, String message) throws IOException {
-        try {
-            if (!StringUtils.isBlank(message)) {
-                processRequestData(event.getResource(), message);
-            }
-        } catch (Exception ex) {
-            LOGGER.error("Could not handle async message: " + message, ex);
+    public void onMessage(AtmosphereResourceEvent event, AtmosphereResponse response, Object message) throws IOException {
+        if (message == null) {
+            return;
+        }
+        if (!(message instanceof ConnectionThrottle.Message) || throttle(event.getResource(), (ConnectionThrottle.Message) message)) {
+            response.write(message.toString());
         }
-        response.write(message);
     }
 
     private void processRequestData(AtmosphereResource resource, String message) {
@@ -170,14 +368,19 @@ public class Messaging implements AtmosphereHandler { //extends AbstractReflecto
     }
 
     private void switchWorkspace(String authUserId, String workspaceId) {
+        if (workspaceId.equals(currentWorkspaceIdsByUserId.get(authUserId))) {
+            return;
+        }
         if (!workspaceId.equals(userRepository.getCurrentWorkspaceId(authUserId))) {
             User authUser = userRepository.findById(authUserId);
             Workspace workspace = workspaceRepository.findById(workspaceId, authUser);
             userRepository.setCurrentWorkspace(authUserId, workspace.getId());
             workQueueRepository.pushUserWorkspaceChange(authUser, workspace.getId());
+            authorizationContextCache.invalidateUser(authUserId);
 
             LOGGER.debug("User %s switched current workspace to %s", authUserId, workspaceId);
         }
+        setCurrentWorkspaceId(authUserId, workspaceId);
     }
 
     private void setStatus(AtmosphereResource resource, UserStatus status) {
@@ -211,6 +414,16 @@ public class Messaging implements AtmosphereHandler { //extends AbstractReflecto
         this.workspaceRepository = workspaceRepository;
     }
 
+    @Inject
+    public void setAuthorizationContextCache(AuthorizationContextCache authorizationContextCache) {
+        this.authorizationContextCache = authorizationContextCache;
+    }
+
+    @Inject
+    public void setConfiguration(Configuration configuration) {
+        this.configuration = configuration;
+    }
+
     @Inject
     public void setWorkQueueRepository(WorkQueueRepository workQueueRepository) {
         this.workQueueRepository = workQueueRepository;
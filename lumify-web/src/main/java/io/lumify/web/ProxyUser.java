@@ -8,7 +8,7 @@ import io.lumify.core.user.User;
 public class ProxyUser implements User {
     private final String userId;
     private final UserRepository userRepository;
-    private User proxiedUser;
+    private volatile User proxiedUser;
 
     public ProxyUser(String userId, UserRepository userRepository) {
         this.userId = userId;
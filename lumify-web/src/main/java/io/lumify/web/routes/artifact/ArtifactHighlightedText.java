@@ -18,17 +18,22 @@ import org.securegraph.Graph;
 import org.securegraph.Vertex;
 import org.securegraph.property.StreamingPropertyValue;
 import com.google.inject.Inject;
-import org.apache.commons.io.IOUtils;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import java.io.IOException;
+import java.io.*;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.securegraph.util.IterableUtils.toList;
 
 public class ArtifactHighlightedText extends BaseRequestHandler {
     private final Graph graph;
     private final TermMentionRepository termMentionRepository;
     private final EntityHighlighter entityHighlighter;
     private final UserRepository userRepository;
+    private final HighlightedTextCache highlightedTextCache;
 
     @Inject
     public ArtifactHighlightedText(
@@ -36,6 +41,7 @@ public class ArtifactHighlightedText extends BaseRequestHandler {
             final UserRepository userRepository,
             final TermMentionRepository termMentionRepository,
             final EntityHighlighter entityHighlighter,
+            final HighlightedTextCache highlightedTextCache,
             final WorkspaceRepository workspaceRepository,
             final Configuration configuration) {
         super(userRepository, workspaceRepository, configuration);
@@ -43,6 +49,7 @@ public class ArtifactHighlightedText extends BaseRequestHandler {
         this.termMentionRepository = termMentionRepository;
         this.entityHighlighter = entityHighlighter;
         this.userRepository = userRepository;
+        this.highlightedTextCache = highlightedTextCache;
     }
 
     @Override
@@ -59,33 +66,52 @@ public class ArtifactHighlightedText extends BaseRequestHandler {
             return;
         }
 
-        String highlightedText;
-        String text = getText(artifactVertex);
-        if (text == null) {
-            highlightedText = "";
-        } else {
-            Iterable<TermMentionModel> termMentions = termMentionRepository.findByGraphVertexId(artifactVertex.getId().toString(), modelUserContext);
-            highlightedText = entityHighlighter.getHighlightedText(text, termMentions);
-        }
-
         response.setContentType("text/html");
         response.setCharacterEncoding("UTF-8");
 
-        IOUtils.write(highlightedText, response.getOutputStream(), "UTF-8");
-    }
-
-    private String getText(Vertex artifactVertex) throws IOException {
-        StringBuilder result = new StringBuilder();
-        Iterable<StreamingPropertyValue> textPropertyValues = RawLumifyProperties.TEXT.getPropertyValues(artifactVertex);
-        for (StreamingPropertyValue textPropertyValue : textPropertyValues) {
-            result.append(IOUtils.toString(textPropertyValue.getInputStream(), "UTF-8"));
+        String cacheKey = highlightedTextCache.getKey(artifactVertex.getId().toString(), workspaceId, authorizations);
+        byte[] cachedHighlightedText = highlightedTextCache.get(cacheKey);
+        if (cachedHighlightedText != null) {
+            response.getOutputStream().write(cachedHighlightedText);
+            return;
         }
 
-        Iterable<VideoTranscript> videoTranscripts = MediaLumifyProperties.VIDEO_TRANSCRIPT.getPropertyValues(artifactVertex);
-        for (VideoTranscript videoTranscript : videoTranscripts) {
-            result.append(videoTranscript.toString());
+        List<TermMentionModel> termMentions = toList(termMentionRepository.findByGraphVertexId(artifactVertex.getId().toString(), modelUserContext));
+
+        Reader text = new InputStreamReader(getText(artifactVertex), "UTF-8");
+        try {
+            OutputStream cachingOut = highlightedTextCache.createCachingOutputStream(artifactVertex.getId().toString(), cacheKey, response.getOutputStream());
+            Writer out = new BufferedWriter(new OutputStreamWriter(cachingOut, "UTF-8"));
+            entityHighlighter.writeHighlightedText(text, termMentions, out);
+            out.close();
+        } finally {
+            text.close();
         }
+    }
+
+    /**
+     * The text properties followed by the video transcripts, each opened only when the previous one has been read.
+     */
+    private InputStream getText(final Vertex artifactVertex) {
+        final Iterator<StreamingPropertyValue> textPropertyValues = RawLumifyProperties.TEXT.getPropertyValues(artifactVertex).iterator();
+        final Iterator<VideoTranscript> videoTranscripts = MediaLumifyProperties.VIDEO_TRANSCRIPT.getPropertyValues(artifactVertex).iterator();
+        return new SequenceInputStream(new Enumeration<InputStream>() {
+            @Override
+            public boolean hasMoreElements() {
+                return textPropertyValues.hasNext() || videoTranscripts.hasNext();
+            }
 
-        return result.toString();
+            @Override
+            public InputStream nextElement() {
+                if (textPropertyValues.hasNext()) {
+                    return textPropertyValues.next().getInputStream();
+                }
+                try {
+                    return new ByteArrayInputStream(videoTranscripts.next().toString().getBytes("UTF-8"));
+                } catch (UnsupportedEncodingException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
     }
 }
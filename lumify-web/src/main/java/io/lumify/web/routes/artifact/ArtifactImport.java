@@ -1,10 +1,11 @@
 package io.lumify.web.routes.artifact;
 
 import com.altamiracorp.miniweb.HandlerChain;
-import com.google.common.io.Files;
 import com.google.inject.Inject;
 import io.lumify.core.config.Configuration;
 import io.lumify.core.ingest.FileImport;
+import io.lumify.core.ingest.LocalArtifactCache;
+import io.lumify.core.model.properties.RawLumifyProperties;
 import io.lumify.core.model.user.UserRepository;
 import io.lumify.core.model.workspace.Workspace;
 import io.lumify.core.model.workspace.WorkspaceRepository;
@@ -40,17 +41,20 @@ public class ArtifactImport extends BaseRequestHandler {
     private final Graph graph;
 
     private final FileImport fileImport;
+    private final LocalArtifactCache localArtifactCache;
 
     @Inject
     public ArtifactImport(
             final Graph graph,
             final FileImport fileImport,
+            final LocalArtifactCache localArtifactCache,
             final UserRepository userRepository,
             final WorkspaceRepository workspaceRepository,
             final Configuration configuration) {
         super(userRepository, workspaceRepository, configuration);
         this.graph = graph;
         this.fileImport = fileImport;
+        this.localArtifactCache = localArtifactCache;
     }
 
     @Override
@@ -64,7 +68,7 @@ public class ArtifactImport extends BaseRequestHandler {
         User user = getUser(request);
         Authorizations authorizations = getAuthorizations(request, user);
         String workspaceId = getActiveWorkspaceId(request);
-        File tempDir = Files.createTempDir();
+        File tempDir = localArtifactCache.createTempDir();
         try {
             List<FileAndVisibility> files = getFileAndVisibilities(request, response, chain, tempDir, authorizations, user);
             if (files == null) {
@@ -97,11 +101,25 @@ public class ArtifactImport extends BaseRequestHandler {
         List<Vertex> vertices = new ArrayList<Vertex>();
         for (FileAndVisibility file : files) {
             LOGGER.debug("Processing file: %s", file.getFile().getAbsolutePath());
-            vertices.add(fileImport.importFile(file.getFile(), true, file.getVisibilitySource(), workspace, user, authorizations));
+            Vertex vertex = fileImport.importFile(file.getFile(), true, file.getVisibilitySource(), workspace, user, authorizations);
+            vertices.add(vertex);
+            addToLocalArtifactCache(vertex, file.getFile());
         }
         return vertices;
     }
 
+    private void addToLocalArtifactCache(Vertex vertex, File file) {
+        String cacheKey = LocalArtifactCache.getCacheKey(vertex, vertex.getProperty(RawLumifyProperties.RAW.getKey()));
+        if (cacheKey == null) {
+            return;
+        }
+        try {
+            localArtifactCache.add(cacheKey, file);
+        } catch (Exception ex) {
+            LOGGER.warn("Could not add %s to the local artifact cache", file.getAbsolutePath(), ex);
+        }
+    }
+
     private List<FileAndVisibility> getFileAndVisibilities(HttpServletRequest request, HttpServletResponse response, HandlerChain chain, File tempDir, Authorizations authorizations, User user) throws Exception {
         List<String> invalidVisibilities = new ArrayList<String>();
         List<FileAndVisibility> files = new ArrayList<FileAndVisibility>();
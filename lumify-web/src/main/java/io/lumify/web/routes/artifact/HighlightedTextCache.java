@@ -0,0 +1,172 @@
+package io.lumify.web.routes.artifact;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import io.lumify.core.config.Configuration;
+import io.lumify.core.model.workQueue.WorkQueueRepository;
+import io.lumify.core.util.GraphUtil;
+import io.lumify.core.util.LumifyLogger;
+import io.lumify.core.util.LumifyLoggerFactory;
+import org.securegraph.Authorizations;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.*;
+
+/**
+ * Rendered highlighted text keyed by artifact, workspace, authorizations and a version stamp of the artifact. The
+ * stamp is bumped and the entries of the artifact are dropped through {@link #invalidate(String)}, which is called
+ * where term mentions are saved or deleted and when the work queue reports a change of the artifact, including a
+ * <code>textUpdated</code> broadcast. The least recently used entries are evicted once the cache holds more than
+ * <code>highlightedTextCache.maxMegabytes</code>.
+ */
+@Singleton
+public class HighlightedTextCache {
+    private static final LumifyLogger LOGGER = LumifyLoggerFactory.getLogger(HighlightedTextCache.class);
+    public static final String MAX_MEGABYTES = "highlightedTextCache.maxMegabytes";
+    public static final int DEFAULT_MAX_MEGABYTES = 64;
+    private static final char KEY_SEP = '\u001f';
+    private static final int MAX_STAMPS = 100000;
+    private final long maxBytes;
+    private final long maxEntryBytes;
+    private final LinkedHashMap<String, byte[]> entries = new LinkedHashMap<String, byte[]>(16, 0.75f, true);
+    private final Map<String, Set<String>> keysByVertexId = new HashMap<String, Set<String>>();
+    /* a forgotten stamp reads as 0 again, which is safe since invalidate drops the entries of the older stamps */
+    private final LinkedHashMap<String, Long> stampsByVertexId = new LinkedHashMap<String, Long>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+            return size() > MAX_STAMPS;
+        }
+    };
+    private long totalBytes;
+    private long invalidations; /* output rendered while an invalidation happened is not cached */
+
+    @Inject
+    public HighlightedTextCache(Configuration configuration, WorkQueueRepository workQueueRepository) {
+        this.maxBytes = configuration.getInt(MAX_MEGABYTES, DEFAULT_MAX_MEGABYTES) * 1024L * 1024L;
+        this.maxEntryBytes = this.maxBytes / 4;
+        workQueueRepository.addElementChangeListener(new WorkQueueRepository.ElementChangeListener() {
+            @Override
+            public void vertexChanged(Object vertexId) {
+                invalidate(vertexId.toString());
+            }
+        });
+    }
+
+    /**
+     * The key names the version stamp of the artifact, so it is known without reading the text or term mentions.
+     */
+    public synchronized String getKey(String vertexId, String workspaceId, Authorizations authorizations) {
+        Long stamp = stampsByVertexId.get(vertexId);
+        return vertexId + KEY_SEP + workspaceId + KEY_SEP + GraphUtil.getAuthorizationsKey(authorizations)
+                + KEY_SEP + (stamp == null ? 0 : stamp);
+    }
+
+    public synchronized byte[] get(String key) {
+        return entries.get(key);
+    }
+
+    /**
+     * @return a stream which writes to out and, if the output fits in one entry, caches it when closed.
+     */
+    public OutputStream createCachingOutputStream(final String vertexId, final String key, final OutputStream out) {
+        final long startInvalidations;
+        synchronized (this) {
+            startInvalidations = this.invalidations;
+        }
+        return new OutputStream() {
+            private ByteArrayOutputStream capture = new ByteArrayOutputStream();
+
+            @Override
+            public void write(int b) throws IOException {
+                out.write(b);
+                if (capture != null) {
+                    capture.write(b);
+                    checkCaptureSize();
+                }
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+                if (capture != null) {
+                    capture.write(b, off, len);
+                    checkCaptureSize();
+                }
+            }
+
+            private void checkCaptureSize() {
+                if (capture.size() > maxEntryBytes) {
+                    capture = null;
+                }
+            }
+
+            @Override
+            public void flush() throws IOException {
+                out.flush();
+            }
+
+            @Override
+            public void close() throws IOException {
+                if (capture != null) {
+                    put(vertexId, key, capture.toByteArray(), startInvalidations);
+                    capture = null;
+                }
+                out.close();
+            }
+        };
+    }
+
+    private synchronized void put(String vertexId, String key, byte[] value, long startInvalidations) {
+        if (this.invalidations != startInvalidations) {
+            return;
+        }
+        byte[] oldValue = entries.put(key, value);
+        if (oldValue != null) {
+            totalBytes -= oldValue.length;
+        }
+        totalBytes += value.length;
+        Set<String> keys = keysByVertexId.get(vertexId);
+        if (keys == null) {
+            keys = new HashSet<String>();
+            keysByVertexId.put(vertexId, keys);
+        }
+        keys.add(key);
+
+        Iterator<Map.Entry<String, byte[]>> it = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && it.hasNext()) {
+            Map.Entry<String, byte[]> entry = it.next();
+            totalBytes -= entry.getValue().length;
+            it.remove();
+            removeVertexKey(entry.getKey());
+        }
+    }
+
+    private void removeVertexKey(String key) {
+        String vertexId = key.substring(0, key.indexOf(KEY_SEP));
+        Set<String> keys = keysByVertexId.get(vertexId);
+        if (keys != null) {
+            keys.remove(key);
+            if (keys.size() == 0) {
+                keysByVertexId.remove(vertexId);
+            }
+        }
+    }
+
+    public synchronized void invalidate(String vertexId) {
+        invalidations++;
+        stampsByVertexId.put(vertexId, invalidations);
+        Set<String> keys = keysByVertexId.remove(vertexId);
+        if (keys == null) {
+            return;
+        }
+        LOGGER.debug("invalidating %d highlighted text entries for %s", keys.size(), vertexId);
+        for (String key : keys) {
+            byte[] value = entries.remove(key);
+            if (value != null) {
+                totalBytes -= value.length;
+            }
+        }
+    }
+}
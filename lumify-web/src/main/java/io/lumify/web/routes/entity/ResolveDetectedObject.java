@@ -23,6 +23,7 @@ import io.lumify.core.util.GraphUtil;
 import io.lumify.core.util.LumifyLogger;
 import io.lumify.core.util.LumifyLoggerFactory;
 import io.lumify.web.BaseRequestHandler;
+import io.lumify.web.routes.workspace.WorkspaceEdgeIndex;
 import org.json.JSONObject;
 import org.securegraph.*;
 import org.securegraph.mutation.ElementMutation;
@@ -44,6 +45,7 @@ public class ResolveDetectedObject extends BaseRequestHandler {
     private final WorkQueueRepository workQueueRepository;
     private final VisibilityTranslator visibilityTranslator;
     private final WorkspaceRepository workspaceRepository;
+    private final WorkspaceEdgeIndex workspaceEdgeIndex;
 
     @Inject
     public ResolveDetectedObject(
@@ -55,7 +57,8 @@ public class ResolveDetectedObject extends BaseRequestHandler {
             final DetectedObjectRepository detectedObjectRepository,
             final WorkQueueRepository workQueueRepository,
             final VisibilityTranslator visibilityTranslator,
-            final WorkspaceRepository workspaceRepository) {
+            final WorkspaceRepository workspaceRepository,
+            final WorkspaceEdgeIndex workspaceEdgeIndex) {
         super(userRepository, workspaceRepository, configuration);
         this.graph = graphRepository;
         this.auditRepository = auditRepository;
@@ -64,6 +67,7 @@ public class ResolveDetectedObject extends BaseRequestHandler {
         this.workQueueRepository = workQueueRepository;
         this.visibilityTranslator = visibilityTranslator;
         this.workspaceRepository = workspaceRepository;
+        this.workspaceEdgeIndex = workspaceEdgeIndex;
     }
 
     @Override
@@ -142,6 +146,7 @@ public class ResolveDetectedObject extends BaseRequestHandler {
         resolvedVertexMutation.save();
 
         graph.flush();
+        workspaceEdgeIndex.markEdgeChanged(edge.getId());
 
         workQueueRepository.pushElement(edge);
 
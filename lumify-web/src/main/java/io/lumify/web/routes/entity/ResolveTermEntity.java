@@ -24,6 +24,8 @@ import io.lumify.core.util.GraphUtil;
 import io.lumify.core.util.LumifyLogger;
 import io.lumify.core.util.LumifyLoggerFactory;
 import io.lumify.web.BaseRequestHandler;
+import io.lumify.web.routes.artifact.HighlightedTextCache;
+import io.lumify.web.routes.workspace.WorkspaceEdgeIndex;
 import org.json.JSONObject;
 import org.securegraph.Authorizations;
 import org.securegraph.Edge;
@@ -49,6 +51,8 @@ public class ResolveTermEntity extends BaseRequestHandler {
     private final TermMentionRepository termMentionRepository;
     private final WorkspaceRepository workspaceRepository;
     private final WorkQueueRepository workQueueRepository;
+    private final HighlightedTextCache highlightedTextCache;
+    private final WorkspaceEdgeIndex workspaceEdgeIndex;
 
     @Inject
     public ResolveTermEntity(
@@ -60,7 +64,9 @@ public class ResolveTermEntity extends BaseRequestHandler {
             final Configuration configuration,
             final TermMentionRepository termMentionRepository,
             final WorkspaceRepository workspaceRepository,
-            final WorkQueueRepository workQueueRepository) {
+            final WorkQueueRepository workQueueRepository,
+            final HighlightedTextCache highlightedTextCache,
+            final WorkspaceEdgeIndex workspaceEdgeIndex) {
         super(userRepository, workspaceRepository, configuration);
         this.graph = graphRepository;
         this.auditRepository = auditRepository;
@@ -69,6 +75,8 @@ public class ResolveTermEntity extends BaseRequestHandler {
         this.termMentionRepository = termMentionRepository;
         this.workspaceRepository = workspaceRepository;
         this.workQueueRepository = workQueueRepository;
+        this.highlightedTextCache = highlightedTextCache;
+        this.workspaceEdgeIndex = workspaceEdgeIndex;
     }
 
     @Override
@@ -156,6 +164,8 @@ public class ResolveTermEntity extends BaseRequestHandler {
         vertexMutation.save();
 
         this.graph.flush();
+        workspaceEdgeIndex.markEdgeChanged(edge.getId());
+        highlightedTextCache.invalidate(artifactId);
         workQueueRepository.pushTextUpdated(artifactId);
 
         workQueueRepository.pushElement(edge);
@@ -1,34 +1,57 @@
 package io.lumify.web.routes.graph;
 
 import io.lumify.core.config.Configuration;
+import io.lumify.core.model.ontology.OntologyRepository;
 import io.lumify.core.model.user.UserRepository;
 import io.lumify.core.model.workspace.WorkspaceRepository;
 import io.lumify.core.user.User;
 import io.lumify.core.util.JsonSerializer;
+import io.lumify.core.util.PathFinder;
 import io.lumify.web.BaseRequestHandler;
 import com.altamiracorp.miniweb.HandlerChain;
-import org.securegraph.Authorizations;
-import org.securegraph.Graph;
-import org.securegraph.Path;
-import org.securegraph.Vertex;
+import org.securegraph.*;
 import com.google.inject.Inject;
-import org.json.JSONArray;
 import org.json.JSONObject;
+import org.json.JSONWriter;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.util.*;
 
+import static io.lumify.core.model.ontology.OntologyLumifyProperties.CONCEPT_TYPE;
+
+/**
+ * Finds paths between two vertices. The search is bounded by <code>graphFindPath.maxPaths</code>,
+ * <code>graphFindPath.maxNeighbors</code> and <code>graphFindPath.timeLimitMillis</code>, and
+ * <code>complete</code> is false in the response if one of them stopped it. The optional <code>edgeLabels[]</code>
+ * and <code>conceptTypes[]</code> parameters limit which edges and intermediate vertices are followed.
+ */
 public class GraphFindPath extends BaseRequestHandler {
+    public static final String MAX_PATHS = "graphFindPath.maxPaths";
+    public static final String MAX_NEIGHBORS = "graphFindPath.maxNeighbors";
+    public static final String TIME_LIMIT_MILLIS = "graphFindPath.timeLimitMillis";
+    public static final int DEFAULT_MAX_PATHS = 100;
+    public static final int DEFAULT_MAX_NEIGHBORS = 100000;
+    public static final int DEFAULT_TIME_LIMIT_MILLIS = 10000;
     private final Graph graph;
+    private final OntologyRepository ontologyRepository;
+    private final int maxPaths;
+    private final int maxNeighbors;
+    private final int timeLimitMillis;
 
     @Inject
     public GraphFindPath(
             final Graph graph,
             final UserRepository userRepository,
             final WorkspaceRepository workspaceRepository,
-            final Configuration configuration) {
+            final Configuration configuration,
+            final OntologyRepository ontologyRepository) {
         super(userRepository, workspaceRepository, configuration);
         this.graph = graph;
+        this.ontologyRepository = ontologyRepository;
+        this.maxPaths = configuration.getInt(MAX_PATHS, DEFAULT_MAX_PATHS);
+        this.maxNeighbors = configuration.getInt(MAX_NEIGHBORS, DEFAULT_MAX_NEIGHBORS);
+        this.timeLimitMillis = configuration.getInt(TIME_LIMIT_MILLIS, DEFAULT_TIME_LIMIT_MILLIS);
     }
 
     @Override
@@ -40,6 +63,9 @@ public class GraphFindPath extends BaseRequestHandler {
         final String sourceGraphVertexId = getRequiredParameter(request, "sourceGraphVertexId");
         final String destGraphVertexId = getRequiredParameter(request, "destGraphVertexId");
         final int hops = Integer.parseInt(getRequiredParameter(request, "hops"));
+        final int requestMaxPaths = (int) Math.min(getOptionalParameterLong(request, "maxPaths", maxPaths), maxPaths);
+        final String[] edgeLabels = getOptionalParameterAsStringArray(request, "edgeLabels[]");
+        final String[] conceptTypes = getOptionalParameterAsStringArray(request, "conceptTypes[]");
 
         Vertex sourceVertex = graph.getVertex(sourceGraphVertexId, authorizations);
         if (sourceVertex == null) {
@@ -53,18 +79,126 @@ public class GraphFindPath extends BaseRequestHandler {
             return;
         }
 
-        JSONObject resultsJson = new JSONObject();
-        JSONArray pathResults = new JSONArray();
+        GraphPathFinder pathFinder = new GraphPathFinder(requestMaxPaths, authorizations, toSet(edgeLabels), getConceptTypesWithDescendants(conceptTypes));
+        PathFinder.Result result = pathFinder.findPaths(sourceVertex.getId(), destVertex.getId(), hops);
 
-        Iterable<Path> paths = graph.findPaths(sourceVertex, destVertex, hops, authorizations);
-        for (Path path : paths) {
-            JSONArray verticesJson = JsonSerializer.toJson(graph.getVerticesInOrder(path, authorizations), workspaceId);
-            pathResults.put(verticesJson);
+        Set<Object> pathVertexIds = new LinkedHashSet<Object>();
+        for (List<Object> path : result.getPaths()) {
+            pathVertexIds.addAll(path);
+        }
+        Map<Object, JSONObject> vertexJsonById = new HashMap<Object, JSONObject>();
+        for (Vertex vertex : graph.getVertices(pathVertexIds, authorizations)) {
+            vertexJsonById.put(vertex.getId(), JsonSerializer.toJson(vertex, workspaceId));
         }
 
-        resultsJson.put("paths", pathResults);
+        JSONWriter out = respondWithJsonWriter(response);
+        out.object().key("paths").array();
+        for (List<Object> path : result.getPaths()) {
+            out.array();
+            for (Object vertexId : path) {
+                JSONObject vertexJson = vertexJsonById.get(vertexId);
+                if (vertexJson != null) {
+                    out.value(vertexJson);
+                }
+            }
+            out.endArray();
+        }
+        out.endArray();
+        out.key("complete").value(result.isComplete());
+        out.endObject();
+    }
 
-        respondWithJson(response, resultsJson);
+    private Set<String> getConceptTypesWithDescendants(String[] conceptTypes) {
+        if (conceptTypes == null) {
+            return null;
+        }
+        Set<String> results = new HashSet<String>();
+        for (String conceptType : conceptTypes) {
+            results.add(conceptType);
+            results.addAll(ontologyRepository.getConceptHierarchy().getConceptAndDescendantIRIs(conceptType));
+        }
+        return results;
+    }
+
+    private static Set<String> toSet(String[] values) {
+        return values == null ? null : new HashSet<String>(Arrays.asList(values));
     }
-}
 
+    private class GraphPathFinder extends PathFinder {
+        private final Authorizations authorizations;
+        private final Set<String> edgeLabels;
+        private final Set<String> conceptTypes;
+        private final Map<Object, Boolean> conceptTypeMatches = new HashMap<Object, Boolean>();
+
+        public GraphPathFinder(int maxPaths, Authorizations authorizations, Set<String> edgeLabels, Set<String> conceptTypes) {
+            super(maxPaths, maxNeighbors, timeLimitMillis);
+            this.authorizations = authorizations;
+            this.edgeLabels = edgeLabels;
+            this.conceptTypes = conceptTypes;
+        }
+
+        @Override
+        protected Map<Object, Collection<Object>> getNeighborIds(Collection<Object> vertexIds, Object sourceVertexId, Object destVertexId, Budget budget) {
+            Map<Object, Collection<Object>> results = new HashMap<Object, Collection<Object>>();
+            for (Vertex vertex : graph.getVertices(vertexIds, authorizations)) {
+                List<Object> neighborIds = new ArrayList<Object>();
+                results.put(vertex.getId(), neighborIds);
+                if (edgeLabels == null) {
+                    // only the edge index is read, no edges are loaded
+                    for (Object neighborId : vertex.getVertexIds(Direction.BOTH, authorizations)) {
+                        if (!budget.read()) {
+                            break;
+                        }
+                        neighborIds.add(neighborId);
+                    }
+                } else {
+                    for (Edge edge : vertex.getEdges(Direction.BOTH, authorizations)) {
+                        if (!budget.read()) {
+                            break;
+                        }
+                        if (!edgeLabels.contains(edge.getLabel())) {
+                            continue;
+                        }
+                        Object inVertexId = edge.getVertexId(Direction.IN);
+                        neighborIds.add(vertex.getId().equals(inVertexId) ? edge.getVertexId(Direction.OUT) : inVertexId);
+                    }
+                }
+                if (budget.isExhausted()) {
+                    break;
+                }
+            }
+            if (conceptTypes != null) {
+                removeVerticesNotOfConceptTypes(results, sourceVertexId, destVertexId);
+            }
+            return results;
+        }
+
+        private void removeVerticesNotOfConceptTypes(Map<Object, Collection<Object>> neighborIdsByVertexId, Object sourceVertexId, Object destVertexId) {
+            Set<Object> unknownVertexIds = new HashSet<Object>();
+            for (Collection<Object> neighborIds : neighborIdsByVertexId.values()) {
+                for (Object neighborId : neighborIds) {
+                    if (!conceptTypeMatches.containsKey(neighborId)) {
+                        unknownVertexIds.add(neighborId);
+                    }
+                }
+            }
+            if (unknownVertexIds.size() > 0) {
+                for (Vertex vertex : graph.getVertices(unknownVertexIds, authorizations)) {
+                    conceptTypeMatches.put(vertex.getId(), conceptTypes.contains(CONCEPT_TYPE.getPropertyValue(vertex)));
+                }
+            }
+            for (Collection<Object> neighborIds : neighborIdsByVertexId.values()) {
+                Iterator<Object> it = neighborIds.iterator();
+                while (it.hasNext()) {
+                    Object neighborId = it.next();
+                    if (neighborId.equals(sourceVertexId) || neighborId.equals(destVertexId)) {
+                        continue;
+                    }
+                    if (!Boolean.TRUE.equals(conceptTypeMatches.get(neighborId))) {
+                        it.remove();
+                    }
+                }
+            }
+        }
+    }
+}
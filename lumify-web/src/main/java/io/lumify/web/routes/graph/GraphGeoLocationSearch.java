@@ -4,6 +4,7 @@ import io.lumify.core.config.Configuration;
 import io.lumify.core.model.user.UserRepository;
 import io.lumify.core.model.workspace.WorkspaceRepository;
 import io.lumify.core.user.User;
+import io.lumify.core.util.GeoClusters;
 import io.lumify.core.util.JsonSerializer;
 import io.lumify.web.BaseRequestHandler;
 import com.altamiracorp.miniweb.HandlerChain;
@@ -12,18 +13,30 @@ import org.securegraph.Graph;
 import org.securegraph.Vertex;
 import org.securegraph.query.GeoCompare;
 import org.securegraph.type.GeoCircle;
+import org.securegraph.type.GeoPoint;
 import com.google.inject.Inject;
-import org.json.JSONArray;
-import org.json.JSONObject;
+import org.json.JSONWriter;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import java.util.Iterator;
 
 import static io.lumify.core.model.properties.EntityLumifyProperties.GEO_LOCATION;
 
+/**
+ * Finds the vertices within a circle using the geo index of the search index. At most <code>limit</code> vertices
+ * (capped by <code>graphGeoLocationSearch.maxResults</code>) are returned and <code>complete</code> is false if
+ * there were more. When <code>zoom</code> is given the matches, up to
+ * <code>graphGeoLocationSearch.maxClusteredVertices</code> of them, are also returned as <code>clusters</code> of
+ * geohash cells sized for that map zoom level with their count and centroid.
+ */
 public class GraphGeoLocationSearch extends BaseRequestHandler {
+    public static final String MAX_RESULTS = "graphGeoLocationSearch.maxResults";
+    public static final String MAX_CLUSTERED_VERTICES = "graphGeoLocationSearch.maxClusteredVertices";
+    public static final int DEFAULT_MAX_RESULTS = 500;
+    public static final int DEFAULT_MAX_CLUSTERED_VERTICES = 10000;
     private final Graph graph;
+    private final int maxResults;
+    private final int maxClusteredVertices;
 
     @Inject
     public GraphGeoLocationSearch(
@@ -33,6 +46,8 @@ public class GraphGeoLocationSearch extends BaseRequestHandler {
             final Configuration configuration) {
         super(userRepository, workspaceRepository, configuration);
         this.graph = graph;
+        this.maxResults = configuration.getInt(MAX_RESULTS, DEFAULT_MAX_RESULTS);
+        this.maxClusteredVertices = configuration.getInt(MAX_CLUSTERED_VERTICES, DEFAULT_MAX_CLUSTERED_VERTICES);
     }
 
     @Override
@@ -40,24 +55,58 @@ public class GraphGeoLocationSearch extends BaseRequestHandler {
         final double latitude = getRequiredParameterAsDouble(request, "lat");
         final double longitude = getRequiredParameterAsDouble(request, "lon");
         final double radius = getRequiredParameterAsDouble(request, "radius");
+        final int limit = (int) Math.min(getOptionalParameterLong(request, "limit", maxResults), maxResults);
+        final String zoom = getOptionalParameter(request, "zoom");
 
         User user = getUser(request);
         Authorizations authorizations = getAuthorizations(request, user);
         String workspaceId = getActiveWorkspaceId(request);
 
-        Iterator<Vertex> vertexIterator = graph.query(authorizations).
+        GeoClusters geoClusters = zoom == null ? null : new GeoClusters(Integer.parseInt(zoom));
+        // one vertex more than is used tells whether there were more matches
+        int maxCount = geoClusters == null ? limit : Math.max(limit, maxClusteredVertices);
+
+        Iterable<Vertex> vertices = graph.query(authorizations).
                 has(GEO_LOCATION.getKey(), GeoCompare.WITHIN, new GeoCircle(latitude, longitude, radius)).
-                vertices().
-                iterator();
+                limit(maxCount + 1).
+                vertices();
 
-        JSONObject results = new JSONObject();
-        JSONArray vertices = new JSONArray();
-        while (vertexIterator.hasNext()) {
-            vertices.put(JsonSerializer.toJson(vertexIterator.next(), workspaceId));
+        JSONWriter out = respondWithJsonWriter(response);
+        out.object().key("vertices").array();
+        int count = 0;
+        for (Vertex vertex : vertices) {
+            if (count == maxCount) {
+                count++;
+                break;
+            }
+            if (count < limit) {
+                out.value(JsonSerializer.toJson(vertex, workspaceId));
+            }
+            if (geoClusters != null) {
+                GeoPoint geoPoint = GEO_LOCATION.getPropertyValue(vertex);
+                if (geoPoint != null) {
+                    geoClusters.add(geoPoint.getLatitude(), geoPoint.getLongitude());
+                }
+            }
+            count++;
         }
+        out.endArray();
+        out.key("complete").value(count <= limit);
 
-        results.put("vertices", vertices);
-
-        respondWithJson(response, results);
+        if (geoClusters != null) {
+            out.key("clustersComplete").value(count <= maxCount);
+            out.key("geoHashPrecision").value(geoClusters.getPrecision());
+            out.key("clusters").array();
+            for (GeoClusters.Cluster cluster : geoClusters.getClusters()) {
+                out.object();
+                out.key("geoHash").value(cluster.getGeoHash());
+                out.key("count").value(cluster.getCount());
+                out.key("latitude").value(cluster.getLatitude());
+                out.key("longitude").value(cluster.getLongitude());
+                out.endObject();
+            }
+            out.endArray();
+        }
+        out.endObject();
     }
 }
@@ -7,6 +7,8 @@ import io.lumify.core.model.user.UserRepository;
 import io.lumify.core.model.workspace.WorkspaceRepository;
 import io.lumify.core.user.User;
 import io.lumify.core.util.JsonSerializer;
+import io.lumify.core.util.VertexNeighborhood;
+import io.lumify.core.util.VertexSummaryCache;
 import io.lumify.web.BaseRequestHandler;
 import com.altamiracorp.miniweb.HandlerChain;
 import org.securegraph.Authorizations;
@@ -14,20 +16,23 @@ import org.securegraph.Direction;
 import org.securegraph.Graph;
 import org.securegraph.Vertex;
 import com.google.inject.Inject;
-import org.json.JSONArray;
-import org.json.JSONObject;
+import org.json.JSONWriter;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
-import static io.lumify.core.model.ontology.OntologyLumifyProperties.CONCEPT_TYPE;
+import static org.securegraph.util.IterableUtils.toList;
 
 public class GraphRelatedVertices extends BaseRequestHandler {
     private final Graph graph;
     private final OntologyRepository ontologyRepository;
+    private final VertexSummaryCache vertexSummaryCache;
 
     @Inject
     public GraphRelatedVertices(
@@ -35,10 +40,12 @@ public class GraphRelatedVertices extends BaseRequestHandler {
             final Graph graph,
             final UserRepository userRepository,
             final WorkspaceRepository workspaceRepository,
-            final Configuration configuration) {
+            final Configuration configuration,
+            final VertexSummaryCache vertexSummaryCache) {
         super(userRepository, workspaceRepository, configuration);
         this.ontologyRepository = ontologyRepository;
         this.graph = graph;
+        this.vertexSummaryCache = vertexSummaryCache;
     }
 
     @Override
@@ -63,31 +70,36 @@ public class GraphRelatedVertices extends BaseRequestHandler {
             }
         }
 
-        Iterable<Vertex> vertices = graph.getVertex(graphVertexId, authorizations)
-                .getVertices(Direction.BOTH, authorizations);
+        Vertex sourceVertex = graph.getVertex(graphVertexId, authorizations);
+        if (sourceVertex == null) {
+            respondWithNotFound(response);
+            return;
+        }
+        List<Object> relatedVertexIds = new ArrayList<Object>(new LinkedHashSet<Object>(toList(sourceVertex.getVertexIds(Direction.BOTH, authorizations))));
 
-        JSONObject json = new JSONObject();
-        JSONArray verticesJson = new JSONArray();
-        long count = 0;
-        for (Vertex vertex : vertices) {
-            if (limitConceptIds.size() == 0 || !isLimited(limitConceptIds, vertex)) {
-                if (count < maxVerticesToReturn) {
-                    verticesJson.put(JsonSerializer.toJson(vertex, workspaceId));
-                }
-                count++;
+        // count and filter the visible related vertices by their summaries, then load only the ones returned
+        List<Object> matchingVertexIds = new ArrayList<Object>();
+        for (Map.Entry<Object, String> conceptType : vertexSummaryCache.getConceptTypes(relatedVertexIds, authorizations).entrySet()) {
+            if (limitConceptIds.size() == 0 || limitConceptIds.contains(conceptType.getValue())) {
+                matchingVertexIds.add(conceptType.getKey());
             }
         }
-        json.put("count", count);
-        json.put("vertices", verticesJson);
+        List<Object> pageVertexIds = matchingVertexIds.subList(0, (int) Math.min(maxVerticesToReturn, matchingVertexIds.size()));
+        Map<Object, Vertex> vertices = VertexNeighborhood.getVertices(graph, pageVertexIds, authorizations);
 
-        respondWithJson(response, json);
+        JSONWriter out = respondWithJsonWriter(response);
+        out.object().key("vertices").array();
+        for (Object vertexId : pageVertexIds) {
+            Vertex vertex = vertices.get(vertexId);
+            if (vertex != null) {
+                out.value(JsonSerializer.toJson(vertex, workspaceId));
+            }
+        }
+        out.endArray();
+        out.key("count").value(matchingVertexIds.size());
+        out.endObject();
 
         chain.next(request, response);
     }
-
-    private boolean isLimited(Set<String> limitConceptIds, Vertex vertex) {
-        String conceptId = CONCEPT_TYPE.getPropertyValue(vertex);
-        return !limitConceptIds.contains(conceptId);
-    }
 }
 
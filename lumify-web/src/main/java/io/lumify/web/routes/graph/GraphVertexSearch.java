@@ -4,7 +4,6 @@ import com.altamiracorp.bigtable.model.user.ModelUserContext;
 import io.lumify.core.config.Configuration;
 import io.lumify.core.exception.LumifyException;
 import io.lumify.core.model.detectedObjects.DetectedObjectRepository;
-import io.lumify.core.model.ontology.Concept;
 import io.lumify.core.model.ontology.OntologyRepository;
 import io.lumify.core.model.ontology.PropertyType;
 import io.lumify.core.model.user.UserRepository;
@@ -28,6 +27,7 @@ import com.google.inject.Inject;
 import org.apache.commons.lang.StringUtils;
 import org.json.JSONArray;
 import org.json.JSONObject;
+import org.json.JSONWriter;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -37,10 +37,14 @@ import java.util.List;
 
 import static io.lumify.core.model.ontology.OntologyLumifyProperties.CONCEPT_TYPE;
 
+/**
+ * Returns one page of vertices matching a search. Only the hits up to the end of the requested page are read, and
+ * <code>nextOffset</code> is returned when there are more. Concept type counts need every hit so they are only
+ * computed when <code>includeCounts</code> is true, which defaults to the first page.
+ */
 public class GraphVertexSearch extends BaseRequestHandler {
-    //TODO should we limit to 10000??
     private static final SimpleDateFormat DATE_FORMAT = new SimpleDateFormat("yyyy-MM-dd");
-    private final int MAX_RESULT_COUNT = 10000;
+    private static final int MAX_RESULT_COUNT = 10000;
 
     private static final LumifyLogger LOGGER = LumifyLoggerFactory.getLogger(GraphVertexSearch.class);
     private final Graph graph;
@@ -72,6 +76,8 @@ public class GraphVertexSearch extends BaseRequestHandler {
         final String conceptType = getOptionalParameter(request, "conceptType");
         final String getLeafNodes = getOptionalParameter(request, "leafNodes");
         final String relatedToVertexId = getOptionalParameter(request, "relatedToVertexId");
+        final String includeCountsParameter = getOptionalParameter(request, "includeCounts");
+        final boolean includeCounts = includeCountsParameter == null ? offset == 0 : Boolean.parseBoolean(includeCountsParameter);
         if (relatedToVertexId == null) {
             query = getRequiredParameter(request, "q");
         } else {
@@ -89,8 +95,6 @@ public class GraphVertexSearch extends BaseRequestHandler {
 
         ontologyRepository.resolvePropertyIds(filterJson);
 
-        graph.flush();
-
         LOGGER.debug("search %s\n%s", query, filterJson.toString(2));
 
         Query graphQuery;
@@ -110,57 +114,56 @@ public class GraphVertexSearch extends BaseRequestHandler {
         }
 
         if (conceptType != null) {
-            Concept concept = ontologyRepository.getConceptByIRI(conceptType);
             if (getLeafNodes == null || !getLeafNodes.equals("false")) {
-                List<Concept> leafNodeList = ontologyRepository.getAllLeafNodesByConcept(concept);
-                if (leafNodeList.size() > 0) {
-                    String[] conceptIds = new String[leafNodeList.size()];
-                    int count = 0;
-                    for (Concept c : leafNodeList) {
-                        conceptIds[count] = c.getTitle();
-                        count++;
-                    }
-                    graphQuery.has(CONCEPT_TYPE.getKey(), Compare.IN, conceptIds);
+                List<String> conceptIRIs = ontologyRepository.getConceptHierarchy().getConceptAndDescendantIRIs(conceptType);
+                if (conceptIRIs.size() > 0) {
+                    graphQuery.has(CONCEPT_TYPE.getKey(), Compare.IN, conceptIRIs.toArray(new String[conceptIRIs.size()]));
+                } else {
+                    graphQuery.has(CONCEPT_TYPE.getKey(), conceptType);
                 }
             } else {
                 graphQuery.has(CONCEPT_TYPE.getKey(), conceptType);
             }
         }
 
-        graphQuery.limit(MAX_RESULT_COUNT);
+        long pageEnd = offset + size;
+        // read one hit past the page to know if there is a next page
+        graphQuery.limit(includeCounts ? MAX_RESULT_COUNT : (int) Math.min(pageEnd + 1, MAX_RESULT_COUNT));
         Iterable<Vertex> searchResults = graphQuery.vertices();
 
-        JSONArray vertices = new JSONArray();
+        JSONWriter out = respondWithJsonWriter(response);
+        out.object().key("vertices").array();
         JSONObject counts = new JSONObject();
         int verticesCount = 0;
-        int count = 0;
         for (Vertex vertex : searchResults) {
-            if (verticesCount >= offset && verticesCount <= offset + size) {
-                vertices.put(JsonSerializer.toJson(vertex, workspaceId));
-                vertices.getJSONObject(count).put("detectedObjects", detectedObjectRepository.toJSON(vertex, modelUserContext, authorizations, workspaceId));
-                count++;
-            }
-            String type = CONCEPT_TYPE.getPropertyValue(vertex);
-            if (type == null) {
-                type = "Unknown";
+            if (verticesCount >= offset && verticesCount < pageEnd) {
+                JSONObject vertexJson = JsonSerializer.toJson(vertex, workspaceId);
+                vertexJson.put("detectedObjects", detectedObjectRepository.toJSON(vertex, modelUserContext, authorizations, workspaceId));
+                out.value(vertexJson);
             }
-            if (counts.keySet().contains(type)) {
-                counts.put(type, (counts.getInt(type) + 1));
-            } else {
-                counts.put(type, 1);
+            if (includeCounts) {
+                String type = CONCEPT_TYPE.getPropertyValue(vertex);
+                if (type == null) {
+                    type = "Unknown";
+                }
+                counts.put(type, counts.optInt(type, 0) + 1);
             }
             verticesCount++;
-            // TODO this used create hierarchical results
+            if (!includeCounts && verticesCount > pageEnd) {
+                break;
+            }
         }
-
-        JSONObject results = new JSONObject();
-        results.put("vertices", vertices);
-        results.put("verticesCount", counts);
+        out.endArray();
+        if (includeCounts) {
+            out.key("verticesCount").value(counts);
+        }
+        if (verticesCount > pageEnd) {
+            out.key("nextOffset").value(pageEnd);
+        }
+        out.endObject();
 
         long endTime = System.nanoTime();
-        LOGGER.info("Search for \"%s\" found %d vertices in %dms", query, verticesCount, (endTime - startTime) / 1000 / 1000);
-
-        respondWithJson(response, results);
+        LOGGER.info("Search for \"%s\" (offset %d, size %d) read %d vertices in %dms", query, offset, size, verticesCount, (endTime - startTime) / 1000 / 1000);
     }
 
     private void updateQueryWithFilter(Query graphQuery, JSONObject obj) throws ParseException {
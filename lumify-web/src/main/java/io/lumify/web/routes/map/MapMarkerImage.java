@@ -3,6 +3,7 @@ package io.lumify.web.routes.map;
 import io.lumify.core.config.Configuration;
 import io.lumify.core.model.artifactThumbnails.ArtifactThumbnailRepository;
 import io.lumify.core.model.ontology.Concept;
+import io.lumify.core.model.ontology.ConceptHierarchy;
 import io.lumify.core.model.ontology.OntologyRepository;
 import io.lumify.core.model.user.UserRepository;
 import io.lumify.core.model.workspace.WorkspaceRepository;
@@ -60,17 +61,15 @@ public class MapMarkerImage extends BaseRequestHandler {
         if (imageData == null) {
             LOGGER.info("map marker cache miss %s (scale: %d, heading: %d)", typeStr, scale, heading);
 
-            Concept concept = ontologyRepository.getConceptByIRI(typeStr);
-            if (concept == null) {
-                concept = ontologyRepository.getConceptByIRI(typeStr);
-            }
+            ConceptHierarchy conceptHierarchy = ontologyRepository.getConceptHierarchy();
+            Concept concept = conceptHierarchy.getConcept(typeStr);
 
             boolean isMapGlyphIcon = false;
-            InputStream glyphIcon = getMapGlyphIcon(concept, user);
+            InputStream glyphIcon = getMapGlyphIcon(conceptHierarchy, concept, user);
             if (glyphIcon != null) {
                 isMapGlyphIcon = true;
             } else {
-                glyphIcon = getGlyphIcon(concept, user);
+                glyphIcon = getGlyphIcon(conceptHierarchy, concept, user);
                 if (glyphIcon == null) {
                     respondWithNotFound(response);
                     return;
@@ -159,17 +158,17 @@ public class MapMarkerImage extends BaseRequestHandler {
         return imageData.toByteArray();
     }
 
-    private InputStream getMapGlyphIcon(Concept concept, User user) {
+    private InputStream getMapGlyphIcon(ConceptHierarchy conceptHierarchy, Concept concept, User user) {
         InputStream mapGlyphIcon = null;
-        for (Concept con = concept; mapGlyphIcon == null && con != null; con = ontologyRepository.getParentConcept(con)) {
+        for (Concept con = concept; mapGlyphIcon == null && con != null; con = conceptHierarchy.getParentConcept(con)) {
             mapGlyphIcon = con.getMapGlyphIcon();
         }
         return mapGlyphIcon;
     }
 
-    private InputStream getGlyphIcon(Concept concept, User user) {
+    private InputStream getGlyphIcon(ConceptHierarchy conceptHierarchy, Concept concept, User user) {
         InputStream glyphIcon = null;
-        for (Concept con = concept; glyphIcon == null && con != null; con = ontologyRepository.getParentConcept(con)) {
+        for (Concept con = concept; glyphIcon == null && con != null; con = conceptHierarchy.getParentConcept(con)) {
             glyphIcon = con.hasGlyphIconResource() ? con.getGlyphIcon() : null;
         }
         return glyphIcon;
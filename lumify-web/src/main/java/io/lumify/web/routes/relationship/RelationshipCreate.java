@@ -16,6 +16,7 @@ import io.lumify.core.util.JsonSerializer;
 import io.lumify.core.util.LumifyLogger;
 import io.lumify.core.util.LumifyLoggerFactory;
 import io.lumify.web.BaseRequestHandler;
+import io.lumify.web.routes.workspace.WorkspaceEdgeIndex;
 import org.securegraph.*;
 
 import javax.servlet.http.HttpServletRequest;
@@ -28,6 +29,7 @@ public class RelationshipCreate extends BaseRequestHandler {
     private final AuditRepository auditRepository;
     private final VisibilityTranslator visibilityTranslator;
     private final WorkQueueRepository workQueueRepository;
+    private final WorkspaceEdgeIndex workspaceEdgeIndex;
 
     @Inject
     public RelationshipCreate(
@@ -38,12 +40,14 @@ public class RelationshipCreate extends BaseRequestHandler {
             final WorkspaceRepository workspaceRepository,
             final WorkQueueRepository workQueueRepository,
             final UserRepository userRepository,
-            final Configuration configuration) {
+            final Configuration configuration,
+            final WorkspaceEdgeIndex workspaceEdgeIndex) {
         super(userRepository, workspaceRepository, configuration);
         this.graph = graph;
         this.auditRepository = auditRepository;
         this.visibilityTranslator = visibilityTranslator;
         this.workQueueRepository = workQueueRepository;
+        this.workspaceEdgeIndex = workspaceEdgeIndex;
     }
 
     @Override
@@ -76,6 +80,7 @@ public class RelationshipCreate extends BaseRequestHandler {
                 user, edge.getVisibility());
 
         graph.flush();
+        workspaceEdgeIndex.markEdgeChanged(edge.getId());
 
         if (LOGGER.isInfoEnabled()) {
             LOGGER.info("Statement created:\n" + JsonSerializer.toJson(edge, workspaceId).toString(2));
@@ -27,6 +27,10 @@ public class Logout extends BaseRequestHandler {
 
     @Override
     public void handle(HttpServletRequest request, HttpServletResponse response, HandlerChain chain) throws Exception {
+        String userId = AuthenticationProvider.getUserId(request);
+        if (userId != null) {
+            invalidateUserAuthorizationContext(userId);
+        }
         this.authenticationProvider.setUserId(request, null);
         JSONObject json = new JSONObject();
         json.put("status", "ok");
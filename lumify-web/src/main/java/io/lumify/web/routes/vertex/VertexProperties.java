@@ -49,7 +49,7 @@ public class VertexProperties extends BaseRequestHandler {
             respondWithNotFound(response);
             return;
         }
-        JSONObject json = JsonSerializer.toJson(vertex, workspaceId);
+        JSONObject json = JsonSerializer.toJsonVertex(vertex, workspaceId, true);
 
         json.put("detectedObjects", detectedObjectRepository.toJSON(vertex, modelUserContext, authorizations, workspaceId));
 
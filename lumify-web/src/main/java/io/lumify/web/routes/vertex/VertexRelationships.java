@@ -5,27 +5,42 @@ import io.lumify.core.model.user.UserRepository;
 import io.lumify.core.model.workspace.WorkspaceRepository;
 import io.lumify.core.user.User;
 import io.lumify.core.util.JsonSerializer;
+import io.lumify.core.util.VertexNeighborhood;
+import io.lumify.core.util.VertexNeighborhoodCache;
+import io.lumify.core.util.VertexSummaryCache;
 import io.lumify.web.BaseRequestHandler;
 import com.altamiracorp.miniweb.HandlerChain;
 import org.securegraph.*;
 import com.google.inject.Inject;
-import org.json.JSONArray;
 import org.json.JSONObject;
+import org.json.JSONWriter;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class VertexRelationships extends BaseRequestHandler {
+    private static final String RAW_HAS_ENTITY_LABEL = "http://lumify.io/dev#rawHasEntity";
     private final Graph graph;
+    private final VertexSummaryCache vertexSummaryCache;
+    private final VertexNeighborhoodCache vertexNeighborhoodCache;
 
     @Inject
     public VertexRelationships(
             final Graph graph,
             final UserRepository userRepository,
             final WorkspaceRepository workspaceRepository,
-            final Configuration configuration) {
+            final Configuration configuration,
+            final VertexSummaryCache vertexSummaryCache,
+            final VertexNeighborhoodCache vertexNeighborhoodCache) {
         super(userRepository, workspaceRepository, configuration);
         this.graph = graph;
+        this.vertexSummaryCache = vertexSummaryCache;
+        this.vertexNeighborhoodCache = vertexNeighborhoodCache;
     }
 
     @Override
@@ -44,36 +59,50 @@ public class VertexRelationships extends BaseRequestHandler {
             return;
         }
 
-        Iterable<Edge> edges = vertex.getEdges(Direction.BOTH, authorizations);
-
-        JSONObject json = new JSONObject();
-        JSONArray relationshipsJson = new JSONArray();
-        long referencesAdded = 0, skipped = 0, totalReferences = 0;
-        for (Edge edge : edges) {
-            Vertex otherVertex = edge.getOtherVertex(vertex.getId(), authorizations);
-            if (otherVertex == null) { // user doesn't have access to other side of edge
+        // page over the edge summaries first so only the edges and other vertices of the page are loaded
+        VertexNeighborhood neighborhood = vertexNeighborhoodCache.getNeighborhood(vertex, authorizations);
+        Set<Object> visibleOtherVertexIds = vertexSummaryCache.getConceptTypes(neighborhood.getDistinctOtherVertexIds(), authorizations).keySet();
+        List<Object> pageEdgeIds = new ArrayList<Object>();
+        List<Object> pageOtherVertexIds = new ArrayList<Object>();
+        long totalReferences = 0;
+        for (VertexNeighborhood.EdgeSummary edgeSummary : neighborhood.getEdgeSummaries()) {
+            if (!visibleOtherVertexIds.contains(edgeSummary.getOtherVertexId())) { // user doesn't have access to other side of edge
                 continue;
             }
-
-            if (edge.getLabel().equals("http://lumify.io/dev#rawHasEntity")) {
+            if (edgeSummary.getLabel().equals(RAW_HAS_ENTITY_LABEL)) {
                 totalReferences++;
-                if (referencesAdded >= size) continue;
-                if (skipped < offset) {
-                    skipped++;
+                if (totalReferences <= offset || totalReferences > offset + size) {
                     continue;
                 }
-
-                referencesAdded++;
             }
+            pageEdgeIds.add(edgeSummary.getEdgeId());
+            pageOtherVertexIds.add(edgeSummary.getOtherVertexId());
+        }
+        Map<Object, Edge> pageEdges = new HashMap<Object, Edge>();
+        for (Edge edge : graph.getEdges(pageEdgeIds, authorizations)) {
+            if (edge != null) {
+                pageEdges.put(edge.getId(), edge);
+            }
+        }
+        Map<Object, Vertex> otherVertices = VertexNeighborhood.getVertices(graph, pageOtherVertexIds, authorizations);
 
+        JSONWriter out = respondWithJsonWriter(response);
+        out.object();
+        out.key("totalReferences").value(totalReferences);
+        out.key("edgeLabelCounts").value(new JSONObject(neighborhood.getEdgeLabelCounts(visibleOtherVertexIds)));
+        out.key("relationships").array();
+        for (int i = 0; i < pageEdgeIds.size(); i++) {
+            Edge edge = pageEdges.get(pageEdgeIds.get(i));
+            Vertex otherVertex = otherVertices.get(pageOtherVertexIds.get(i));
+            if (edge == null || otherVertex == null) { // deleted or hidden since the summaries were read
+                continue;
+            }
             JSONObject relationshipJson = new JSONObject();
             relationshipJson.put("relationship", JsonSerializer.toJson(edge, workspaceId));
             relationshipJson.put("vertex", JsonSerializer.toJson(otherVertex, workspaceId));
-            relationshipsJson.put(relationshipJson);
+            out.value(relationshipJson);
         }
-        json.put("totalReferences", totalReferences);
-        json.put("relationships", relationshipsJson);
-
-        respondWithJson(response, json);
+        out.endArray();
+        out.endObject();
     }
 }
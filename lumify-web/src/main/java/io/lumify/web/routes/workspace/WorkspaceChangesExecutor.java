@@ -0,0 +1,83 @@
+package io.lumify.web.routes.workspace;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import io.lumify.core.config.Configuration;
+import io.lumify.core.model.workQueue.WorkQueueRepository;
+import io.lumify.core.util.LumifyLogger;
+import io.lumify.core.util.LumifyLoggerFactory;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Runs the publish and undo jobs of workspaces off the request thread, at most
+ * <code>workspaceChanges.threads</code> at once. The progress of a job and its failed changes are sent as
+ * <code>workspaceChangesProgress</code> messages carrying the id returned by {@link #submit}.
+ */
+@Singleton
+public class WorkspaceChangesExecutor {
+    private static final LumifyLogger LOGGER = LumifyLoggerFactory.getLogger(WorkspaceChangesExecutor.class);
+    public static final String THREADS = "workspaceChanges.threads";
+    public static final int DEFAULT_THREADS = 2;
+    private final WorkQueueRepository workQueueRepository;
+    private final ExecutorService executorService;
+
+    @Inject
+    public WorkspaceChangesExecutor(WorkQueueRepository workQueueRepository, Configuration configuration) {
+        this.workQueueRepository = workQueueRepository;
+        int threads = configuration.getInt(THREADS, DEFAULT_THREADS);
+        checkArgument(threads > 0, THREADS + " must be greater than 0");
+        this.executorService = Executors.newFixedThreadPool(threads, new JobThreadFactory());
+    }
+
+    /**
+     * @param total the number of changes the job applies.
+     * @return the id of the job.
+     */
+    public String submit(String workspaceId, String action, int total, final Job job) {
+        String jobId = UUID.randomUUID().toString();
+        final WorkspaceChangesProgress progress = new WorkspaceChangesProgress(workQueueRepository, jobId, workspaceId, action, total);
+        executorService.execute(new Runnable() {
+            @Override
+            public void run() {
+                JSONArray failures;
+                try {
+                    failures = job.run(progress);
+                } catch (Exception ex) {
+                    LOGGER.error("Could not apply workspace changes", ex);
+                    failures = new JSONArray();
+                    failures.put(new JSONObject().put("error_msg", ex.getMessage()));
+                }
+                progress.done(failures);
+            }
+        });
+        return jobId;
+    }
+
+    interface Job {
+        /**
+         * @return the changes which could not be applied, each with an <code>error_msg</code>.
+         */
+        JSONArray run(WorkspaceChangesProgress progress) throws Exception;
+    }
+
+    private static class JobThreadFactory implements ThreadFactory {
+        private final AtomicInteger threadNumber = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable);
+            thread.setName("workspaceChanges-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
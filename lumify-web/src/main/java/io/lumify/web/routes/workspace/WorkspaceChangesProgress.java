@@ -0,0 +1,41 @@
+package io.lumify.web.routes.workspace;
+
+import io.lumify.core.model.workQueue.WorkQueueRepository;
+import org.json.JSONArray;
+
+/**
+ * Broadcasts how many of the changes of a publish or undo job have been applied, at most once a second, and the
+ * changes which failed once the job is done.
+ */
+class WorkspaceChangesProgress {
+    private static final long BROADCAST_INTERVAL_MILLIS = 1000;
+    private final WorkQueueRepository workQueueRepository;
+    private final String jobId;
+    private final String workspaceId;
+    private final String action;
+    private final int total;
+    private int processed;
+    private long lastBroadcastTime;
+
+    public WorkspaceChangesProgress(WorkQueueRepository workQueueRepository, String jobId, String workspaceId, String action, int total) {
+        this.workQueueRepository = workQueueRepository;
+        this.jobId = jobId;
+        this.workspaceId = workspaceId;
+        this.action = action;
+        this.total = total;
+        this.lastBroadcastTime = System.currentTimeMillis();
+    }
+
+    public void increment() {
+        processed++;
+        long now = System.currentTimeMillis();
+        if (now - lastBroadcastTime >= BROADCAST_INTERVAL_MILLIS) {
+            lastBroadcastTime = now;
+            workQueueRepository.pushWorkspaceChangesProgress(jobId, workspaceId, action, processed, total, null);
+        }
+    }
+
+    public void done(JSONArray failures) {
+        workQueueRepository.pushWorkspaceChangesProgress(jobId, workspaceId, action, total, total, failures);
+    }
+}
@@ -42,6 +42,7 @@ public class WorkspaceDelete extends BaseRequestHandler {
                 return;
             }
             workspaceRepository.delete(workspace, user);
+            invalidateWorkspaceAuthorizationContext(workspace.getId());
 
             JSONObject resultJson = new JSONObject();
             resultJson.put("success", true);
@@ -0,0 +1,366 @@
+package io.lumify.web.routes.workspace;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import io.lumify.core.config.Configuration;
+import io.lumify.core.model.workQueue.WorkQueueRepository;
+import io.lumify.core.util.GraphUtil;
+import io.lumify.core.util.LumifyLogger;
+import io.lumify.core.util.LumifyLoggerFactory;
+import io.lumify.core.util.VertexNeighborhood;
+import org.apache.commons.codec.binary.Hex;
+import org.json.JSONObject;
+import org.securegraph.*;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import static org.securegraph.util.IterableUtils.toList;
+
+/**
+ * The edges between the vertices of each workspace, kept per workspace and authorizations so workspace relationships
+ * can be sent as the changes since the version a client last received. The index holds the edges of every vertex
+ * requested since it was last read, each request gets the relationships between its own vertices, and only the edges
+ * of vertices which are not indexed yet are read. Edges which are created or deleted are read again on the next request,
+ * and all edges are read again every <code>workspaceEdgeIndex.rebuildSeconds</code> to pick up any other changes.
+ */
+@Singleton
+public class WorkspaceEdgeIndex {
+    private static final LumifyLogger LOGGER = LumifyLoggerFactory.getLogger(WorkspaceEdgeIndex.class);
+    public static final String REBUILD_SECONDS = "workspaceEdgeIndex.rebuildSeconds";
+    public static final int DEFAULT_REBUILD_SECONDS = 60;
+    private static final int MAX_CHANGES = 50;
+    private static final int MAX_CHANGED_EDGE_IDS = 1000;
+    private static final int MAX_RECENT_VERTEX_ID_SETS = 10;
+    private static final char KEY_SEP = '\u001f';
+    private static final String VERSION_SEP = ":";
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final Graph graph;
+    private final long rebuildMillis;
+    private final Cache<String, Entry> entries = CacheBuilder.newBuilder()
+            .maximumSize(1000)
+            .expireAfterAccess(1, TimeUnit.HOURS)
+            .build();
+
+    @Inject
+    public WorkspaceEdgeIndex(Graph graph, WorkQueueRepository workQueueRepository, Configuration configuration) {
+        this.graph = graph;
+        this.rebuildMillis = configuration.getInt(REBUILD_SECONDS, DEFAULT_REBUILD_SECONDS) * 1000L;
+        workQueueRepository.addElementChangeListener(new WorkQueueRepository.ElementChangeListener() {
+            @Override
+            public void edgeChanged(Object edgeId, Object outVertexId, Object inVertexId) {
+                markEdgeChanged(edgeId);
+            }
+        });
+    }
+
+    /**
+     * @param vertexIds     the vertices on the workspace.
+     * @param clientVersion the version the client last received or null to get all relationships.
+     */
+    public Changes getChanges(String workspaceId, Authorizations authorizations, Set<Object> vertexIds, String clientVersion) {
+        Entry entry = getEntry(workspaceId, authorizations);
+        synchronized (entry) {
+            entry.update(vertexIds, authorizations);
+            return entry.getChanges(clientVersion, vertexIds);
+        }
+    }
+
+    private Entry getEntry(String workspaceId, Authorizations authorizations) {
+        String key = workspaceId + KEY_SEP + GraphUtil.getAuthorizationsKey(authorizations);
+        synchronized (entries) {
+            Entry entry = entries.getIfPresent(key);
+            if (entry == null) {
+                entry = new Entry(workspaceId);
+                entries.put(key, entry);
+            }
+            return entry;
+        }
+    }
+
+    /**
+     * Marks an edge as created, changed or deleted so it is read again by every workspace on the next request.
+     */
+    public void markEdgeChanged(Object edgeId) {
+        for (Entry entry : entries.asMap().values()) {
+            entry.markEdgeChanged(edgeId);
+        }
+    }
+
+    private static JSONObject toRelationshipJson(Edge edge, String workspaceId) {
+        JSONObject rel = new JSONObject();
+        rel.put("from", edge.getVertexId(Direction.OUT));
+        rel.put("to", edge.getVertexId(Direction.IN));
+        rel.put("relationshipType", edge.getLabel());
+        rel.put("id", edge.getId());
+        rel.put("diffType", GraphUtil.getSandboxStatus(edge, workspaceId).toString());
+        return rel;
+    }
+
+    private class Entry {
+        private final String workspaceId;
+        private Set<Object> vertexIds = new HashSet<Object>();
+        private Map<Object, JSONObject> relationshipsByEdgeId = new HashMap<Object, JSONObject>();
+        private final LinkedList<Change> changes = new LinkedList<Change>();
+        private final Set<Object> changedEdgeIds = new HashSet<Object>();
+        private final LinkedHashMap<String, Set<Object>> recentVertexIds = new LinkedHashMap<String, Set<Object>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Set<Object>> eldest) {
+                return size() > MAX_RECENT_VERTEX_ID_SETS;
+            }
+        };
+        private long version;
+        private long readTime;
+
+        public Entry(String workspaceId) {
+            this.workspaceId = workspaceId;
+        }
+
+        public void markEdgeChanged(Object edgeId) {
+            synchronized (changedEdgeIds) {
+                changedEdgeIds.add(edgeId);
+            }
+        }
+
+        /**
+         * Adds the edges of the requested vertices which are not indexed yet. Vertices which are no longer requested
+         * stay in the index until it is read again, so requests for a subset of the vertices are answered from it.
+         */
+        public void update(Set<Object> requestVertexIds, Authorizations authorizations) {
+            List<Object> edgeIdsToRead;
+            synchronized (changedEdgeIds) {
+                edgeIdsToRead = new ArrayList<Object>(changedEdgeIds);
+                changedEdgeIds.clear();
+            }
+
+            Set<Object> newVertexIds;
+            Map<Object, JSONObject> newRelationships;
+            long now = System.currentTimeMillis();
+            if (now - readTime > rebuildMillis || edgeIdsToRead.size() > MAX_CHANGED_EDGE_IDS) {
+                newVertexIds = new HashSet<Object>(requestVertexIds);
+                newRelationships = readAllRelationships(newVertexIds, authorizations);
+                readTime = now;
+            } else if (edgeIdsToRead.size() == 0 && vertexIds.containsAll(requestVertexIds)) {
+                return;
+            } else {
+                newVertexIds = new HashSet<Object>(vertexIds);
+                newVertexIds.addAll(requestVertexIds);
+                newRelationships = new HashMap<Object, JSONObject>(relationshipsByEdgeId);
+                addRelationshipsOfAddedVertices(newRelationships, newVertexIds, authorizations);
+                readChangedEdges(newRelationships, newVertexIds, edgeIdsToRead, authorizations);
+            }
+
+            Set<Object> updatedEdgeIds = new HashSet<Object>();
+            for (Map.Entry<Object, JSONObject> relationship : newRelationships.entrySet()) {
+                JSONObject oldRelationship = relationshipsByEdgeId.get(relationship.getKey());
+                if (oldRelationship == null || !oldRelationship.toString().equals(relationship.getValue().toString())) {
+                    updatedEdgeIds.add(relationship.getKey());
+                }
+            }
+            Set<Object> removedEdgeIds = new HashSet<Object>(relationshipsByEdgeId.keySet());
+            removedEdgeIds.removeAll(newRelationships.keySet());
+
+            this.vertexIds = newVertexIds;
+            this.relationshipsByEdgeId = newRelationships;
+            if (updatedEdgeIds.size() > 0 || removedEdgeIds.size() > 0) {
+                version++;
+                changes.add(new Change(version, updatedEdgeIds, removedEdgeIds));
+                if (changes.size() > MAX_CHANGES) {
+                    changes.removeFirst();
+                }
+            }
+        }
+
+        private Map<Object, JSONObject> readAllRelationships(Set<Object> newVertexIds, Authorizations authorizations) {
+            Map<Object, JSONObject> results = new HashMap<Object, JSONObject>();
+            List<Object> ids = new ArrayList<Object>(newVertexIds);
+            for (Edge edge : graph.getEdges(graph.findRelatedEdges(ids, authorizations), authorizations)) {
+                results.put(edge.getId(), toRelationshipJson(edge, workspaceId));
+            }
+            return results;
+        }
+
+        private void addRelationshipsOfAddedVertices(Map<Object, JSONObject> relationships, Set<Object> newVertexIds, Authorizations authorizations) {
+            List<Object> addedVertexIds = new ArrayList<Object>();
+            for (Object vertexId : newVertexIds) {
+                if (!vertexIds.contains(vertexId)) {
+                    addedVertexIds.add(vertexId);
+                }
+            }
+            if (addedVertexIds.size() == 0) {
+                return;
+            }
+            LOGGER.debug("reading edges of %d vertices added to workspace %s", addedVertexIds.size(), workspaceId);
+            for (Vertex vertex : VertexNeighborhood.getVertices(graph, addedVertexIds, authorizations).values()) {
+                for (Edge edge : vertex.getEdges(Direction.BOTH, authorizations)) {
+                    if (newVertexIds.contains(edge.getVertexId(Direction.OUT)) && newVertexIds.contains(edge.getVertexId(Direction.IN))) {
+                        relationships.put(edge.getId(), toRelationshipJson(edge, workspaceId));
+                    }
+                }
+            }
+        }
+
+        private void readChangedEdges(Map<Object, JSONObject> relationships, Set<Object> newVertexIds, List<Object> edgeIds, Authorizations authorizations) {
+            if (edgeIds.size() == 0) {
+                return;
+            }
+            for (Object edgeId : edgeIds) {
+                relationships.remove(edgeId);
+            }
+            for (Edge edge : toList(graph.getEdges(edgeIds, authorizations))) {
+                if (newVertexIds.contains(edge.getVertexId(Direction.OUT)) && newVertexIds.contains(edge.getVertexId(Direction.IN))) {
+                    relationships.put(edge.getId(), toRelationshipJson(edge, workspaceId));
+                }
+            }
+        }
+
+        /**
+         * The relationships between the requested vertices. The version sent to the client names the requested
+         * vertices too, so when a later request asks for other vertices the relationships which came into or went out
+         * of view are sent as changes, as long as the earlier vertices are still remembered.
+         */
+        public Changes getChanges(String clientVersion, Set<Object> requestVertexIds) {
+            String vertexIdsHash = hashVertexIds(requestVertexIds);
+            recentVertexIds.put(vertexIdsHash, new HashSet<Object>(requestVertexIds));
+            String currentVersion = epoch + VERSION_SEP + vertexIdsHash + VERSION_SEP + version;
+
+            ClientVersion client = parseVersion(clientVersion);
+            Set<Object> clientVertexIds = client == null ? null : recentVertexIds.get(client.vertexIdsHash);
+            if (client == null || clientVertexIds == null || client.version > version
+                    || (client.version < version && changes.getFirst().version > client.version + 1)) {
+                List<JSONObject> relationships = new ArrayList<JSONObject>();
+                for (JSONObject relationship : relationshipsByEdgeId.values()) {
+                    if (isBetween(relationship, requestVertexIds)) {
+                        relationships.add(relationship);
+                    }
+                }
+                return new Changes(currentVersion, true, relationships, new ArrayList<Object>());
+            }
+
+            Set<Object> updatedEdgeIds = new HashSet<Object>();
+            Set<Object> removedEdgeIds = new HashSet<Object>();
+            for (Change change : changes) {
+                if (change.version > client.version) {
+                    updatedEdgeIds.addAll(change.updatedEdgeIds);
+                    removedEdgeIds.addAll(change.removedEdgeIds);
+                }
+            }
+            List<JSONObject> updatedRelationships = new ArrayList<JSONObject>();
+            List<Object> removed = new ArrayList<Object>();
+            for (Map.Entry<Object, JSONObject> relationship : relationshipsByEdgeId.entrySet()) {
+                boolean inView = isBetween(relationship.getValue(), requestVertexIds);
+                boolean wasInView = isBetween(relationship.getValue(), clientVertexIds);
+                if (inView && (!wasInView || updatedEdgeIds.contains(relationship.getKey()))) {
+                    updatedRelationships.add(relationship.getValue());
+                } else if (!inView && wasInView) {
+                    removed.add(relationship.getKey());
+                }
+            }
+            for (Object edgeId : removedEdgeIds) {
+                if (!relationshipsByEdgeId.containsKey(edgeId)) {
+                    removed.add(edgeId);
+                }
+            }
+            return new Changes(currentVersion, false, updatedRelationships, removed);
+        }
+
+        private boolean isBetween(JSONObject relationship, Set<Object> vertexIds) {
+            return vertexIds.contains(relationship.get("from")) && vertexIds.contains(relationship.get("to"));
+        }
+
+        private ClientVersion parseVersion(String clientVersion) {
+            if (clientVersion == null || !clientVersion.startsWith(epoch + VERSION_SEP)) {
+                return null;
+            }
+            String[] parts = clientVersion.substring(epoch.length() + VERSION_SEP.length()).split(VERSION_SEP);
+            if (parts.length != 2) {
+                return null;
+            }
+            try {
+                return new ClientVersion(parts[0], Long.parseLong(parts[1]));
+            } catch (NumberFormatException ex) {
+                return null;
+            }
+        }
+    }
+
+    private static String hashVertexIds(Set<Object> vertexIds) {
+        List<String> ids = new ArrayList<String>();
+        for (Object vertexId : vertexIds) {
+            ids.add(vertexId.toString());
+        }
+        Collections.sort(ids);
+        try {
+            MessageDigest digest = MessageDigest.getInstance("MD5");
+            for (String id : ids) {
+                digest.update(id.getBytes("UTF-8"));
+                digest.update((byte) KEY_SEP);
+            }
+            return Hex.encodeHexString(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static class ClientVersion {
+        private final String vertexIdsHash;
+        private final long version;
+
+        public ClientVersion(String vertexIdsHash, long version) {
+            this.vertexIdsHash = vertexIdsHash;
+            this.version = version;
+        }
+    }
+
+    private static class Change {
+        private final long version;
+        private final Set<Object> updatedEdgeIds;
+        private final Set<Object> removedEdgeIds;
+
+        public Change(long version, Set<Object> updatedEdgeIds, Set<Object> removedEdgeIds) {
+            this.version = version;
+            this.updatedEdgeIds = updatedEdgeIds;
+            this.removedEdgeIds = removedEdgeIds;
+        }
+    }
+
+    public static class Changes {
+        private final String version;
+        private final boolean full;
+        private final List<JSONObject> relationships;
+        private final List<Object> removedEdgeIds;
+
+        public Changes(String version, boolean full, List<JSONObject> relationships, List<Object> removedEdgeIds) {
+            this.version = version;
+            this.full = full;
+            this.relationships = relationships;
+            this.removedEdgeIds = removedEdgeIds;
+        }
+
+        public String getVersion() {
+            return version;
+        }
+
+        /**
+         * @return true if {@link #getRelationships()} holds all relationships rather than the ones added or changed.
+         */
+        public boolean isFull() {
+            return full;
+        }
+
+        public List<JSONObject> getRelationships() {
+            return relationships;
+        }
+
+        public List<Object> getRemovedEdgeIds() {
+            return removedEdgeIds;
+        }
+    }
+}
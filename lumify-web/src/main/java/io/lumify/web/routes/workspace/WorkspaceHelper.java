@@ -19,6 +19,7 @@ import io.lumify.core.user.User;
 import io.lumify.core.util.JsonSerializer;
 import io.lumify.core.util.LumifyLogger;
 import io.lumify.core.util.LumifyLoggerFactory;
+import io.lumify.web.routes.artifact.HighlightedTextCache;
 import org.json.JSONArray;
 import org.json.JSONObject;
 import org.securegraph.*;
@@ -37,6 +38,8 @@ public class WorkspaceHelper {
     private final DetectedObjectRepository detectedObjectRepository;
     private final WorkQueueRepository workQueueRepository;
     private final Graph graph;
+    private final HighlightedTextCache highlightedTextCache;
+    private final WorkspaceEdgeIndex workspaceEdgeIndex;
 
     @Inject
     public WorkspaceHelper(final TermMentionRepository termMentionRepository,
@@ -44,13 +47,17 @@ public class WorkspaceHelper {
                            final UserRepository userRepository,
                            final DetectedObjectRepository detectedObjectRepository,
                            final WorkQueueRepository workQueueRepository,
-                           final Graph graph) {
+                           final Graph graph,
+                           final HighlightedTextCache highlightedTextCache,
+                           final WorkspaceEdgeIndex workspaceEdgeIndex) {
         this.termMentionRepository = termMentionRepository;
         this.auditRepository = auditRepository;
         this.userRepository = userRepository;
         this.detectedObjectRepository = detectedObjectRepository;
         this.workQueueRepository = workQueueRepository;
         this.graph = graph;
+        this.highlightedTextCache = highlightedTextCache;
+        this.workspaceEdgeIndex = workspaceEdgeIndex;
     }
 
     public JSONObject unresolveTerm(Vertex vertex, String edgeId, TermMentionModel termMention, LumifyVisibility visibility,
@@ -76,12 +83,14 @@ public class WorkspaceHelper {
                 if (edgeId != null) {
                     Edge edge = graph.getEdge(edgeId, authorizations);
                     graph.removeEdge(edgeId, authorizations);
+                    workspaceEdgeIndex.markEdgeChanged(edgeId);
                     workQueueRepository.pushEdgeDeletion(edge);
                     auditRepository.auditRelationship(AuditAction.DELETE, artifactVertex, vertex, edge, "", "", user, visibility.getVisibility());
                 }
             }
 
             termMentionRepository.delete(termMention.getRowKey());
+            highlightedTextCache.invalidate(artifactVertex.getId().toString());
             workQueueRepository.pushTextUpdated(artifactVertex.getId().toString());
 
             graph.flush();
@@ -116,6 +125,7 @@ public class WorkspaceHelper {
             auditRepository.auditRelationship(AuditAction.DELETE, artifactVertex, vertex, edge, "", "", user, visibility.getVisibility());
             this.workQueueRepository.pushEdgeDeletion(edge);
             graph.flush();
+            workspaceEdgeIndex.markEdgeChanged(edgeId);
         }
 
         Authorizations systemAuthorization = userRepository.getAuthorizations(user, WorkspaceRepository.VISIBILITY_STRING, workspaceId);
@@ -167,6 +177,7 @@ public class WorkspaceHelper {
                 }
             } else if (termMentionModel.getMetadata().getEdgeId().equals(edge.getId())) {
                 termMentionRepository.delete(termMentionModel.getRowKey());
+                highlightedTextCache.invalidate(termMentionModel.getRowKey().getGraphVertexId());
             }
         }
 
@@ -176,6 +187,7 @@ public class WorkspaceHelper {
         auditRepository.auditRelationship(AuditAction.DELETE, sourceVertex, destVertex, edge, "", "", user, new LumifyVisibility().getVisibility());
 
         graph.flush();
+        workspaceEdgeIndex.markEdgeChanged(edge.getId());
 
         JSONObject resultJson = new JSONObject();
         resultJson.put("success", true);
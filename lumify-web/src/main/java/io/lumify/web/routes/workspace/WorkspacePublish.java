@@ -28,6 +28,7 @@ import io.lumify.core.security.VisibilityTranslator;
 import io.lumify.core.user.User;
 import io.lumify.core.util.*;
 import io.lumify.web.BaseRequestHandler;
+import io.lumify.web.routes.artifact.HighlightedTextCache;
 import org.json.JSONArray;
 import org.json.JSONObject;
 import org.securegraph.*;
@@ -36,8 +37,7 @@ import org.securegraph.mutation.ExistingElementMutation;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.*;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
@@ -49,8 +49,12 @@ public class WorkspacePublish extends BaseRequestHandler {
     private final UserRepository userRepository;
     private final OntologyRepository ontologyRepository;
     private final WorkQueueRepository workQueueRepository;
+    private final io.lumify.core.model.workspace.diff.WorkspaceDiff workspaceDiff;
     private final Graph graph;
     private final VisibilityTranslator visibilityTranslator;
+    private final HighlightedTextCache highlightedTextCache;
+    private final WorkspaceEdgeIndex workspaceEdgeIndex;
+    private final WorkspaceChangesExecutor workspaceChangesExecutor;
 
     @Inject
     public WorkspacePublish(
@@ -63,7 +67,11 @@ public class WorkspacePublish extends BaseRequestHandler {
             final VisibilityTranslator visibilityTranslator,
             final OntologyRepository ontologyRepository,
             final WorkspaceRepository workspaceRepository,
-            final WorkQueueRepository workQueueRepository) {
+            final WorkQueueRepository workQueueRepository,
+            final io.lumify.core.model.workspace.diff.WorkspaceDiff workspaceDiff,
+            final HighlightedTextCache highlightedTextCache,
+            final WorkspaceEdgeIndex workspaceEdgeIndex,
+            final WorkspaceChangesExecutor workspaceChangesExecutor) {
         super(userRepository, workspaceRepository, configuration);
         this.detectedObjectRepository = detectedObjectRepository;
         this.termMentionRepository = termMentionRepository;
@@ -73,40 +81,71 @@ public class WorkspacePublish extends BaseRequestHandler {
         this.userRepository = userRepository;
         this.ontologyRepository = ontologyRepository;
         this.workQueueRepository = workQueueRepository;
+        this.workspaceDiff = workspaceDiff;
+        this.highlightedTextCache = highlightedTextCache;
+        this.workspaceEdgeIndex = workspaceEdgeIndex;
+        this.workspaceChangesExecutor = workspaceChangesExecutor;
     }
 
+    /**
+     * Publishes on a {@link WorkspaceChangesExecutor} and responds with the id of the job right away.
+     */
     @Override
     public void handle(HttpServletRequest request, HttpServletResponse response, HandlerChain chain) throws Exception {
         final JSONArray publishData = new JSONArray(getRequiredParameter(request, "publishData"));
-        User user = getUser(request);
-        Authorizations authorizations = getAuthorizations(request, user);
-        String workspaceId = getActiveWorkspaceId(request);
+        final User user = getUser(request);
+        final Authorizations authorizations = getAuthorizations(request, user);
+        final String workspaceId = getActiveWorkspaceId(request);
 
         LOGGER.debug("publishing\n%s", publishData.toString(2));
-        JSONArray failures = new JSONArray();
-        publishVertices(publishData, failures, workspaceId, user, authorizations);
-        publishEdges(publishData, failures, workspaceId, user, authorizations);
-        publishProperties(publishData, failures, workspaceId, user, authorizations);
+        String jobId = workspaceChangesExecutor.submit(workspaceId, "publish", publishData.length(), new WorkspaceChangesExecutor.Job() {
+            @Override
+            public JSONArray run(WorkspaceChangesProgress progress) {
+                return publish(publishData, progress, workspaceId, user, authorizations);
+            }
+        });
 
         JSONObject resultJson = new JSONObject();
-        resultJson.put("failures", failures);
-        resultJson.put("success", failures.length() == 0);
-        LOGGER.debug("publishing results\n%s", resultJson.toString(2));
+        resultJson.put("jobId", jobId);
         respondWithJson(response, resultJson);
     }
 
-    private void publishVertices(JSONArray publishData, JSONArray failures, String workspaceId, User user, Authorizations authorizations) {
+    private JSONArray publish(JSONArray publishData, WorkspaceChangesProgress progress, String workspaceId, User user, Authorizations authorizations) {
+        JSONArray failures = new JSONArray();
+        List<JSONObject> vertexData = new ArrayList<JSONObject>();
+        List<JSONObject> edgeData = new ArrayList<JSONObject>();
+        List<JSONObject> propertyData = new ArrayList<JSONObject>();
         for (int i = 0; i < publishData.length(); i++) {
             JSONObject data = publishData.getJSONObject(i);
+            String type = data.optString("type");
+            if (type.equals("vertex")) {
+                vertexData.add(data);
+            } else if (type.equals("relationship")) {
+                edgeData.add(data);
+            } else if (type.equals("property")) {
+                propertyData.add(data);
+            }
+        }
+
+        try {
+            publishVertices(vertexData, failures, progress, workspaceId, user, authorizations);
+            publishEdges(edgeData, failures, progress, workspaceId, user, authorizations);
+            publishProperties(propertyData, failures, progress, workspaceId, user, authorizations);
+        } finally {
+            workspaceDiff.invalidate(workspaceId);
+        }
+        LOGGER.debug("publishing failures\n%s", failures.toString(2));
+        return failures;
+    }
+
+    private void publishVertices(List<JSONObject> vertexData, JSONArray failures, WorkspaceChangesProgress progress, String workspaceId, User user, Authorizations authorizations) {
+        Map<Object, Vertex> vertices = getVertices(vertexData, authorizations, "vertexId");
+        for (JSONObject data : vertexData) {
             try {
-                String type = (String) data.get("type");
                 String action = data.getString("action");
-                if (!type.equals("vertex")) {
-                    continue;
-                }
                 String vertexId = data.getString("vertexId");
                 checkNotNull(vertexId);
-                Vertex vertex = graph.getVertex(vertexId, authorizations);
+                Vertex vertex = vertices.get(vertexId);
                 checkNotNull(vertex);
                 if (data.getString("status").equals(SandboxStatus.PUBLIC.toString())) {
                     String msg;
@@ -125,23 +164,23 @@ public class WorkspacePublish extends BaseRequestHandler {
                 LOGGER.error("Error publishing %s", data.toString(2), ex);
                 data.put("error_msg", ex.getMessage());
                 failures.put(data);
+            } finally {
+                progress.increment();
             }
         }
-        graph.flush();
+        flush();
     }
 
-    private void publishEdges(JSONArray publishData, JSONArray failures, String workspaceId, User user, Authorizations authorizations) {
-        for (int i = 0; i < publishData.length(); i++) {
-            JSONObject data = publishData.getJSONObject(i);
+    private void publishEdges(List<JSONObject> edgeData, JSONArray failures, WorkspaceChangesProgress progress, String workspaceId, User user, Authorizations authorizations) {
+        // read after the vertices are published so their sandbox status is current
+        Map<Object, Vertex> vertices = getVertices(edgeData, authorizations, "sourceId", "destId");
+        Map<Object, Edge> edges = getEdges(edgeData, authorizations);
+        for (JSONObject data : edgeData) {
             try {
-                String type = (String) data.get("type");
                 String action = data.getString("action");
-                if (!type.equals("relationship")) {
-                    continue;
-                }
-                Edge edge = graph.getEdge(data.getString("edgeId"), authorizations);
-                Vertex sourceVertex = graph.getVertex(data.getString("sourceId"), authorizations);
-                Vertex destVertex = graph.getVertex(data.getString("destId"), authorizations);
+                Edge edge = edges.get(data.getString("edgeId"));
+                Vertex sourceVertex = vertices.get(data.getString("sourceId"));
+                Vertex destVertex = vertices.get(data.getString("destId"));
                 if (data.getString("status").equals(SandboxStatus.PUBLIC.toString())) {
                     String error_msg;
                     if (action.equals("delete")) {
@@ -168,22 +207,20 @@ public class WorkspacePublish extends BaseRequestHandler {
                 LOGGER.error("Error publishing %s", data.toString(2), ex);
                 data.put("error_msg", ex.getMessage());
                 failures.put(data);
+            } finally {
+                progress.increment();
             }
         }
-        graph.flush();
+        flush();
     }
 
-    private void publishProperties(JSONArray publishData, JSONArray failures, String workspaceId, User user, Authorizations authorizations) {
-        for (int i = 0; i < publishData.length(); i++) {
-            JSONObject data = publishData.getJSONObject(i);
+    private void publishProperties(List<JSONObject> propertyData, JSONArray failures, WorkspaceChangesProgress progress, String workspaceId, User user, Authorizations authorizations) {
+        Map<Object, Vertex> vertices = getVertices(propertyData, authorizations, "vertexId");
+        for (JSONObject data : propertyData) {
             try {
-                String type = (String) data.get("type");
                 String action = data.getString("action");
-                if (!type.equals("property")) {
-                    continue;
-                }
                 checkNotNull(data.getString("vertexId"));
-                Vertex vertex = graph.getVertex(data.getString("vertexId"), authorizations);
+                Vertex vertex = vertices.get(data.getString("vertexId"));
                 checkNotNull(vertex);
                 if (data.getString("status").equals(SandboxStatus.PUBLIC.toString())) {
                     String error_msg;
@@ -211,9 +248,44 @@ public class WorkspacePublish extends BaseRequestHandler {
                 LOGGER.error("Error publishing %s", data.toString(2), ex);
                 data.put("error_msg", ex.getMessage());
                 failures.put(data);
+            } finally {
+                progress.increment();
             }
         }
+        flush();
+    }
+
+    private void flush() {
         graph.flush();
+        auditRepository.flush();
+        termMentionRepository.flush();
+        detectedObjectRepository.flush();
+    }
+
+    private Map<Object, Vertex> getVertices(List<JSONObject> items, Authorizations authorizations, String... idKeys) {
+        Set<Object> vertexIds = new LinkedHashSet<Object>();
+        for (JSONObject data : items) {
+            for (String idKey : idKeys) {
+                if (data.has(idKey)) {
+                    vertexIds.add(data.getString(idKey));
+                }
+            }
+        }
+        return VertexNeighborhood.getVertices(graph, new ArrayList<Object>(vertexIds), authorizations);
+    }
+
+    private Map<Object, Edge> getEdges(List<JSONObject> edgeData, Authorizations authorizations) {
+        Set<Object> edgeIds = new LinkedHashSet<Object>();
+        for (JSONObject data : edgeData) {
+            if (data.has("edgeId")) {
+                edgeIds.add(data.getString("edgeId"));
+            }
+        }
+        Map<Object, Edge> edges = new HashMap<Object, Edge>();
+        for (Edge edge : graph.getEdges(edgeIds, authorizations)) {
+            edges.put(edge.getId(), edge);
+        }
+        return edges;
     }
 
     private void publishVertex(Vertex vertex, String action, Authorizations authorizations, String workspaceId, User user) throws IOException {
@@ -249,11 +321,11 @@ public class WorkspacePublish extends BaseRequestHandler {
         LumifyVisibilityProperties.VISIBILITY_JSON_PROPERTY.setProperty(vertexElementMutation, visibilityJson, metadata, lumifyVisibility.getVisibility());
         vertexElementMutation.save();
 
-        auditRepository.auditVertex(AuditAction.PUBLISH, vertex.getId(), "", "", user, FlushFlag.FLUSH, lumifyVisibility.getVisibility());
+        auditRepository.auditVertex(AuditAction.PUBLISH, vertex.getId(), "", "", user, FlushFlag.DEFAULT, lumifyVisibility.getVisibility());
 
         ModelUserContext systemModelUser = userRepository.getModelUserContext(authorizations, LumifyVisibility.SUPER_USER_VISIBILITY_STRING);
         for (Audit row : auditRepository.findByRowStartsWith(vertex.getId().toString(), systemModelUser)) {
-            auditRepository.updateColumnVisibility(row, originalVertexVisibility, lumifyVisibility.getVisibility().getVisibilityString(), FlushFlag.FLUSH);
+            auditRepository.updateColumnVisibility(row, originalVertexVisibility, lumifyVisibility.getVisibility().getVisibilityString(), FlushFlag.DEFAULT);
         }
     }
 
@@ -304,6 +376,7 @@ public class WorkspacePublish extends BaseRequestHandler {
     private void publishEdge(Edge edge, Vertex sourceVertex, Vertex destVertex, String action, String workspaceId, User user, Authorizations authorizations) {
         if (action.equals("delete")) {
             graph.removeEdge(edge, authorizations);
+            workspaceEdgeIndex.markEdgeChanged(edge.getId());
             return;
         }
 
@@ -335,12 +408,13 @@ public class WorkspacePublish extends BaseRequestHandler {
         LumifyVisibilityProperties.VISIBILITY_JSON_PROPERTY.setMetadata(metadata, visibilityJson);
         LumifyVisibilityProperties.VISIBILITY_JSON_PROPERTY.setProperty(edgeExistingElementMutation, visibilityJson, metadata, lumifyVisibility.getVisibility());
         edge = edgeExistingElementMutation.save();
+        workspaceEdgeIndex.markEdgeChanged(edge.getId());
 
         auditRepository.auditRelationship(AuditAction.PUBLISH, sourceVertex, destVertex, edge, "", "", user, edge.getVisibility());
 
         ModelUserContext systemUser = userRepository.getModelUserContext(authorizations, LumifyVisibility.SUPER_USER_VISIBILITY_STRING);
         for (Audit row : auditRepository.findByRowStartsWith(edge.getId().toString(), systemUser)) {
-            auditRepository.updateColumnVisibility(row, originalEdgeVisibility, lumifyVisibility.getVisibility().getVisibilityString(), FlushFlag.FLUSH);
+            auditRepository.updateColumnVisibility(row, originalEdgeVisibility, lumifyVisibility.getVisibility().getVisibilityString(), FlushFlag.DEFAULT);
         }
 
         for (Property rowKeyProperty : destVertex.getProperties(LumifyProperties.ROW_KEY.getKey())) {
@@ -350,7 +424,7 @@ public class WorkspacePublish extends BaseRequestHandler {
                 if (detectedObjectModel == null) {
                     LOGGER.warn("No term mention or detected objects found for vertex, %s", sourceVertex.getId());
                 } else {
-                    detectedObjectRepository.updateColumnVisibility(detectedObjectModel, originalEdgeVisibility.getVisibilityString(), lumifyVisibility.getVisibility().getVisibilityString(), FlushFlag.FLUSH);
+                    detectedObjectRepository.updateColumnVisibility(detectedObjectModel, originalEdgeVisibility.getVisibilityString(), lumifyVisibility.getVisibility().getVisibilityString(), FlushFlag.DEFAULT);
 
                     Vertex artifactVertex = graph.getVertex(detectedObjectModel.getRowKey().getArtifactId(), authorizations);
                     JSONObject artifactVertexWithDetectedObjects = JsonSerializer.toJsonVertex(artifactVertex, workspaceId);
@@ -359,7 +433,8 @@ public class WorkspacePublish extends BaseRequestHandler {
                     this.workQueueRepository.pushDetectedObjectChange(artifactVertexWithDetectedObjects);
                 }
             } else {
-                termMentionRepository.updateColumnVisibility(termMentionModel, originalEdgeVisibility.getVisibilityString(), lumifyVisibility.getVisibility().getVisibilityString(), FlushFlag.FLUSH);
+                termMentionRepository.updateColumnVisibility(termMentionModel, originalEdgeVisibility.getVisibilityString(), lumifyVisibility.getVisibility().getVisibilityString(), FlushFlag.DEFAULT);
+                highlightedTextCache.invalidate(termMentionModel.getRowKey().getGraphVertexId());
             }
         }
     }
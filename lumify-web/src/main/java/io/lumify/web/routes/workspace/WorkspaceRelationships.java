@@ -6,41 +6,44 @@ import io.lumify.core.model.workspace.Workspace;
 import io.lumify.core.model.workspace.WorkspaceEntity;
 import io.lumify.core.model.workspace.WorkspaceRepository;
 import io.lumify.core.user.User;
-import io.lumify.core.util.GraphUtil;
 import io.lumify.core.util.LumifyLogger;
 import io.lumify.core.util.LumifyLoggerFactory;
 import io.lumify.web.BaseRequestHandler;
 import com.altamiracorp.miniweb.HandlerChain;
 import org.securegraph.Authorizations;
-import org.securegraph.Direction;
-import org.securegraph.Edge;
-import org.securegraph.Graph;
-import org.securegraph.util.ConvertingIterable;
 import com.google.inject.Inject;
 import org.json.JSONArray;
 import org.json.JSONObject;
+import org.json.JSONWriter;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
-import static io.lumify.core.util.CollectionUtil.toList;
-
+/**
+ * Returns the relationships between the vertices of the workspace and the optional <code>ids[]</code>. Without a
+ * <code>version</code> parameter all relationships are returned as an array. With one (empty the first time) the
+ * response holds the current <code>version</code> and either all <code>relationships</code> when <code>full</code>
+ * is true, or the <code>relationships</code> added or changed and the <code>removed</code> edge ids since the given
+ * version.
+ */
 public class WorkspaceRelationships extends BaseRequestHandler {
     private static final LumifyLogger LOGGER = LumifyLoggerFactory.getLogger(WorkspaceRelationships.class);
-    private final Graph graph;
     private final WorkspaceRepository workspaceRepository;
+    private final WorkspaceEdgeIndex workspaceEdgeIndex;
 
     @Inject
     public WorkspaceRelationships(
-            final Graph graph,
             final UserRepository userRepository,
             final Configuration configuration,
-            final WorkspaceRepository workspaceRepository) {
+            final WorkspaceRepository workspaceRepository,
+            final WorkspaceEdgeIndex workspaceEdgeIndex) {
         super(userRepository, workspaceRepository, configuration);
-        this.graph = graph;
         this.workspaceRepository = workspaceRepository;
+        this.workspaceEdgeIndex = workspaceEdgeIndex;
     }
 
     @Override
@@ -49,6 +52,7 @@ public class WorkspaceRelationships extends BaseRequestHandler {
         if (additionalIds == null) {
             additionalIds = new String[0];
         }
+        String clientVersion = getOptionalParameter(request, "version");
 
         User user = getUser(request);
         Authorizations authorizations = getAuthorizations(request, user);
@@ -56,31 +60,40 @@ public class WorkspaceRelationships extends BaseRequestHandler {
 
         long startTime = System.nanoTime();
 
-        JSONArray resultsJson = new JSONArray();
         Workspace workspace = workspaceRepository.findById(workspaceId, user);
         List<WorkspaceEntity> workspaceEntities = workspaceRepository.findEntities(workspace, user);
-        List<Object> allIds = toList(new ConvertingIterable<WorkspaceEntity, Object>(workspaceEntities) {
-            @Override
-            protected Object convert(WorkspaceEntity workspaceEntity) {
-                return workspaceEntity.getEntityVertexId();
-            }
-        });
+        Set<Object> allIds = new LinkedHashSet<Object>();
+        for (WorkspaceEntity workspaceEntity : workspaceEntities) {
+            allIds.add(workspaceEntity.getEntityVertexId());
+        }
         Collections.addAll(allIds, additionalIds);
 
-        List<Edge> edges = toList(graph.getEdges(graph.findRelatedEdges(allIds, authorizations), authorizations));
-        for (Edge edge : edges) {
-            JSONObject rel = new JSONObject();
-            rel.put("from", edge.getVertexId(Direction.OUT));
-            rel.put("to", edge.getVertexId(Direction.IN));
-            rel.put("relationshipType", edge.getLabel());
-            rel.put("id", edge.getId());
-            rel.put("diffType", GraphUtil.getSandboxStatus(edge, workspaceId).toString());
-            resultsJson.put(rel);
-        }
+        WorkspaceEdgeIndex.Changes changes = workspaceEdgeIndex.getChanges(workspaceId, authorizations, allIds, clientVersion);
 
         long endTime = System.nanoTime();
-        LOGGER.debug("Retrieved %d in %dms", edges.size(), (endTime - startTime) / 1000 / 1000);
+        LOGGER.debug("Retrieved %d (full: %b) in %dms", changes.getRelationships().size(), changes.isFull(), (endTime - startTime) / 1000 / 1000);
 
-        respondWithJson(response, resultsJson);
+        if (request.getParameter("version") == null) {
+            respondWithJson(response, new JSONArray(changes.getRelationships()));
+            return;
+        }
+
+        JSONWriter out = respondWithJsonWriter(response);
+        out.object();
+        out.key("version").value(changes.getVersion());
+        out.key("full").value(changes.isFull());
+        out.key("relationships").array();
+        for (JSONObject relationship : changes.getRelationships()) {
+            out.value(relationship);
+        }
+        out.endArray();
+        if (!changes.isFull()) {
+            out.key("removed").array();
+            for (Object edgeId : changes.getRemovedEdgeIds()) {
+                out.value(edgeId);
+            }
+            out.endArray();
+        }
+        out.endObject();
     }
 }
@@ -20,6 +20,7 @@ import io.lumify.core.user.User;
 import io.lumify.core.util.GraphUtil;
 import io.lumify.core.util.LumifyLogger;
 import io.lumify.core.util.LumifyLoggerFactory;
+import io.lumify.core.util.VertexNeighborhood;
 import io.lumify.web.BaseRequestHandler;
 import com.altamiracorp.miniweb.HandlerChain;
 import org.securegraph.*;
@@ -29,6 +30,7 @@ import org.json.JSONObject;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.util.*;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
@@ -40,7 +42,9 @@ public class WorkspaceUndo extends BaseRequestHandler {
     private final VisibilityTranslator visibilityTranslator;
     private final UserRepository userRepository;
     private final WorkQueueRepository workQueueRepository;
+    private final io.lumify.core.model.workspace.diff.WorkspaceDiff workspaceDiff;
     private final WorkspaceHelper workspaceHelper;
+    private final WorkspaceChangesExecutor workspaceChangesExecutor;
 
     @Inject
     public WorkspaceUndo(
@@ -52,7 +56,9 @@ public class WorkspaceUndo extends BaseRequestHandler {
             final UserRepository userRepository,
             final WorkspaceHelper workspaceHelper,
             final WorkspaceRepository workspaceRepository,
-            final WorkQueueRepository workQueueRepository) {
+            final WorkQueueRepository workQueueRepository,
+            final io.lumify.core.model.workspace.diff.WorkspaceDiff workspaceDiff,
+            final WorkspaceChangesExecutor workspaceChangesExecutor) {
         super(userRepository, workspaceRepository, configuration);
         this.termMentionRepository = termMentionRepository;
         this.detectedObjectRepository = detectedObjectRepository;
@@ -61,77 +67,136 @@ public class WorkspaceUndo extends BaseRequestHandler {
         this.workspaceHelper = workspaceHelper;
         this.userRepository = userRepository;
         this.workQueueRepository = workQueueRepository;
+        this.workspaceDiff = workspaceDiff;
+        this.workspaceChangesExecutor = workspaceChangesExecutor;
     }
 
+    /**
+     * Undoes on a {@link WorkspaceChangesExecutor} and responds with the id of the job right away.
+     */
     @Override
     public void handle(HttpServletRequest request, HttpServletResponse response, HandlerChain chain) throws Exception {
         final JSONArray undoData = new JSONArray(getRequiredParameter(request, "undoData"));
-        User user = getUser(request);
-        Authorizations authorizations = getAuthorizations(request, user);
-        String workspaceId = getActiveWorkspaceId(request);
+        final User user = getUser(request);
+        final Authorizations authorizations = getAuthorizations(request, user);
+        final String workspaceId = getActiveWorkspaceId(request);
 
+        String jobId = workspaceChangesExecutor.submit(workspaceId, "undo", undoData.length(), new WorkspaceChangesExecutor.Job() {
+            @Override
+            public JSONArray run(WorkspaceChangesProgress progress) {
+                return undo(undoData, progress, workspaceId, user, authorizations);
+            }
+        });
+
+        JSONObject resultJson = new JSONObject();
+        resultJson.put("jobId", jobId);
+        respondWithJson(response, resultJson);
+    }
+
+    private JSONArray undo(JSONArray undoData, WorkspaceChangesProgress progress, String workspaceId, User user, Authorizations authorizations) {
         JSONArray failures = new JSONArray();
-        JSONArray successArray = new JSONArray();
+
+        Map<Object, Vertex> vertices = getVertices(undoData, authorizations);
+        Map<Object, Edge> edges = getEdges(undoData, authorizations);
+        Set<Object> removedVertexIds = new HashSet<Object>();
 
         for (int i = 0; i < undoData.length(); i++) {
             JSONObject data = undoData.getJSONObject(i);
-            String type = data.getString("type");
-            if (type.equals("vertex")) {
-                checkNotNull(data.getString("vertexId"));
-                Vertex vertex = graph.getVertex(data.getString("vertexId"), authorizations);
-                checkNotNull(vertex);
-                if (data.getString("status").equals(SandboxStatus.PUBLIC.toString())) {
-                    String msg = "Cannot undo a public vertex";
-                    LOGGER.warn(msg);
-                    data.put("error_msg", msg);
-                    failures.put(data);
-                    continue;
-                }
-                JSONObject responseResult = new JSONObject();
-                responseResult.put("vertex", undoVertex(vertex, workspaceId, authorizations, user));
-                successArray.put(responseResult);
-            } else if (type.equals("relationship")) {
-                Vertex sourceVertex = graph.getVertex(data.getString("sourceId"), authorizations);
-                Vertex destVertex = graph.getVertex(data.getString("destId"), authorizations);
-                if (sourceVertex == null || destVertex == null) {
-                    continue;
-                }
-                Edge edge = graph.getEdge(data.getString("edgeId"), authorizations);
-                checkNotNull(edge);
-                if (data.getString("status").equals(SandboxStatus.PUBLIC.toString())) {
-                    String error_msg = "Cannot undo a public edge";
-                    LOGGER.warn(error_msg);
-                    data.put("error_msg", error_msg);
-                    failures.put(data);
-                    continue;
-                }
-                JSONObject responseResult = new JSONObject();
-                responseResult.put("edges", workspaceHelper.deleteEdge(edge, sourceVertex, destVertex, user, authorizations));
-                successArray.put(responseResult);
-            } else if (type.equals("property")) {
-                checkNotNull(data.getString("vertexId"));
-                Vertex vertex = graph.getVertex(data.getString("vertexId"), authorizations);
-                if (vertex == null) {
-                    continue;
-                }
-                if (data.getString("status").equals(SandboxStatus.PUBLIC.toString())) {
-                    String error_msg = "Cannot undo a public property";
-                    LOGGER.warn(error_msg);
-                    data.put("error_msg", error_msg);
-                    failures.put(data);
-                    continue;
+            try {
+                undoItem(data, vertices, edges, removedVertexIds, failures, workspaceId, user, authorizations);
+            } catch (Exception ex) {
+                LOGGER.error("Error undoing %s", data.toString(2), ex);
+                data.put("error_msg", ex.getMessage());
+                failures.put(data);
+            } finally {
+                progress.increment();
+            }
+        }
+        return failures;
+    }
+
+    private void undoItem(JSONObject data, Map<Object, Vertex> vertices, Map<Object, Edge> edges, Set<Object> removedVertexIds, JSONArray failures, String workspaceId, User user, Authorizations authorizations) {
+        String type = data.getString("type");
+        if (type.equals("vertex")) {
+            checkNotNull(data.getString("vertexId"));
+            Vertex vertex = getVertex(vertices, removedVertexIds, data.getString("vertexId"));
+            checkNotNull(vertex);
+            if (data.getString("status").equals(SandboxStatus.PUBLIC.toString())) {
+                String msg = "Cannot undo a public vertex";
+                LOGGER.warn(msg);
+                data.put("error_msg", msg);
+                failures.put(data);
+                return;
+            }
+            undoVertex(vertex, workspaceId, authorizations, user);
+            removedVertexIds.add(vertex.getId());
+        } else if (type.equals("relationship")) {
+            Vertex sourceVertex = getVertex(vertices, removedVertexIds, data.getString("sourceId"));
+            Vertex destVertex = getVertex(vertices, removedVertexIds, data.getString("destId"));
+            if (sourceVertex == null || destVertex == null) {
+                return;
+            }
+            Edge edge = edges.get(data.getString("edgeId"));
+            checkNotNull(edge);
+            if (data.getString("status").equals(SandboxStatus.PUBLIC.toString())) {
+                String error_msg = "Cannot undo a public edge";
+                LOGGER.warn(error_msg);
+                data.put("error_msg", error_msg);
+                failures.put(data);
+                return;
+            }
+            workspaceHelper.deleteEdge(edge, sourceVertex, destVertex, user, authorizations);
+        } else if (type.equals("property")) {
+            checkNotNull(data.getString("vertexId"));
+            Vertex vertex = getVertex(vertices, removedVertexIds, data.getString("vertexId"));
+            if (vertex == null) {
+                return;
+            }
+            if (data.getString("status").equals(SandboxStatus.PUBLIC.toString())) {
+                String error_msg = "Cannot undo a public property";
+                LOGGER.warn(error_msg);
+                data.put("error_msg", error_msg);
+                failures.put(data);
+                return;
+            }
+            Property property = vertex.getProperty(data.getString("key"), data.getString("name"));
+            workspaceHelper.deleteProperty(vertex, property, workspaceId, user);
+        }
+    }
+
+    private Map<Object, Vertex> getVertices(JSONArray undoData, Authorizations authorizations) {
+        Set<Object> vertexIds = new LinkedHashSet<Object>();
+        for (int i = 0; i < undoData.length(); i++) {
+            JSONObject data = undoData.getJSONObject(i);
+            for (String idKey : new String[]{"vertexId", "sourceId", "destId"}) {
+                if (data.has(idKey)) {
+                    vertexIds.add(data.getString(idKey));
                 }
-                Property property = vertex.getProperty(data.getString("key"), data.getString("name"));
-                JSONObject responseResult = new JSONObject();
-                responseResult.put("property", workspaceHelper.deleteProperty(vertex, property, workspaceId, user));
-                successArray.put(responseResult);
             }
         }
+        return VertexNeighborhood.getVertices(graph, new ArrayList<Object>(vertexIds), authorizations);
+    }
+
+    private Map<Object, Edge> getEdges(JSONArray undoData, Authorizations authorizations) {
+        Set<Object> edgeIds = new LinkedHashSet<Object>();
+        for (int i = 0; i < undoData.length(); i++) {
+            JSONObject data = undoData.getJSONObject(i);
+            if (data.has("edgeId")) {
+                edgeIds.add(data.getString("edgeId"));
+            }
+        }
+        Map<Object, Edge> edges = new HashMap<Object, Edge>();
+        for (Edge edge : graph.getEdges(edgeIds, authorizations)) {
+            edges.put(edge.getId(), edge);
+        }
+        return edges;
+    }
 
-        JSONObject resultJson = new JSONObject();
-        resultJson.put("success", successArray);
-        resultJson.put("failures", failures);
-        respondWithJson(response, resultJson);
+    private static Vertex getVertex(Map<Object, Vertex> vertices, Set<Object> removedVertexIds, String vertexId) {
+        if (removedVertexIds.contains(vertexId)) {
+            return null;
+        }
+        return vertices.get(vertexId);
     }
 
     private JSONArray undoVertex(Vertex vertex, String workspaceId, Authorizations authorizations, User user) {
@@ -170,6 +235,7 @@ public class WorkspaceUndo extends BaseRequestHandler {
 
         graph.removeVertex(vertex, authorizations);
         graph.flush();
+        workspaceDiff.invalidate(workspaceId);
         return unresolved;
     }
 }
@@ -61,6 +61,10 @@ public class WorkspaceUpdate extends BaseRequestHandler {
         JSONArray userDeletes = dataJson.getJSONArray("userDeletes");
         deleteUsers(workspace, userDeletes, authUser);
 
+        if (userUpdates.length() > 0 || userDeletes.length() > 0) {
+            invalidateWorkspaceAuthorizationContext(workspace.getId());
+        }
+
         JSONObject resultJson = new JSONObject();
         resultJson.put("result", "OK");
         respondWithJson(response, resultJson);
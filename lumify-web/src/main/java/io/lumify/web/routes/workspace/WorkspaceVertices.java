@@ -16,7 +16,6 @@ import org.securegraph.Graph;
 import org.securegraph.Vertex;
 import org.securegraph.util.LookAheadIterable;
 import com.google.inject.Inject;
-import org.json.JSONArray;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -49,8 +48,7 @@ public class WorkspaceVertices extends BaseRequestHandler {
         final List<WorkspaceEntity> workspaceEntities = workspaceRepository.findEntities(workspace, user);
         Iterable<Object> vertexIds = getVisibleWorkspaceEntityIds(workspaceEntities);
         Iterable<Vertex> graphVertices = graph.getVertices(vertexIds, authorizations);
-        JSONArray results = JsonSerializer.toJson(graphVertices, workspaceId);
-        respondWithJson(response, results);
+        JsonSerializer.writeJson(respondWithJsonWriter(response), graphVertices, workspaceId);
     }
 
     private LookAheadIterable<WorkspaceEntity, Object> getVisibleWorkspaceEntityIds(final List<WorkspaceEntity> workspaceEntities) {
@@ -0,0 +1,98 @@
+package io.lumify.web;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ConnectionThrottleTest {
+    @Test
+    public void testOtherMessagesAreNotThrottled() {
+        ConnectionThrottle throttle = new ConnectionThrottle(1, 10);
+        ConnectionThrottle.Message message = ConnectionThrottle.Message.create(new JSONObject().put("type", "chatMessage"));
+        assertTrue(throttle.offer(message, 0));
+        assertTrue(throttle.offer(message, 0));
+    }
+
+    @Test
+    public void testBacklogKeepsLatestPerElement() {
+        ConnectionThrottle throttle = new ConnectionThrottle(1, 10);
+        assertTrue(throttle.offer(textUpdated("v1"), 0));
+        assertFalse(throttle.offer(textUpdated("v2"), 10));
+        assertFalse(throttle.offer(textUpdated("v2"), 20));
+        assertTrue(throttle.release(500).isEmpty());
+
+        List<ConnectionThrottle.Message> released = throttle.release(1000);
+        assertEquals(1, released.size());
+        assertTrue(throttle.offer(released.get(0), 1010));
+        assertTrue(throttle.release(2000).isEmpty());
+    }
+
+    @Test
+    public void testBacklogDropsOldest() {
+        ConnectionThrottle throttle = new ConnectionThrottle(1, 1);
+        assertTrue(throttle.offer(textUpdated("v1"), 0));
+        assertFalse(throttle.offer(textUpdated("v2"), 0));
+        assertFalse(throttle.offer(textUpdated("v3"), 0));
+        assertEquals(1, throttle.takeDroppedCount());
+
+        List<ConnectionThrottle.Message> released = throttle.release(1000);
+        assertEquals(1, released.size());
+        assertEquals("v3", new JSONObject(released.get(0).toString()).getJSONObject("data").getString("graphVertexId"));
+    }
+
+    @Test
+    public void testMergePartialPropertyChanges() {
+        JSONObject existing = propertiesChange(property("k1", "title", "a"), property("k1", "source", "x"));
+        JSONObject json = propertiesChange(property("k1", "title", "b"));
+        String originalJson = json.toString();
+
+        JSONObject merged = ConnectionThrottle.merge(existing, json);
+        assertEquals(originalJson, json.toString());
+        JSONArray properties = merged.getJSONObject("data").getJSONObject("vertex").getJSONArray("properties");
+        assertEquals(2, properties.length());
+        assertEquals("source", properties.getJSONObject(0).getString("name"));
+        assertEquals("b", properties.getJSONObject(1).getString("value"));
+        assertEquals(3, merged.getJSONObject("data").getJSONArray("properties").length());
+        assertTrue(merged.getJSONObject("data").getBoolean("partial"));
+    }
+
+    private static ConnectionThrottle.Message textUpdated(String vertexId) {
+        JSONObject json = new JSONObject();
+        json.put("type", "textUpdated");
+        json.put("data", new JSONObject().put("graphVertexId", vertexId));
+        return ConnectionThrottle.Message.create(json);
+    }
+
+    private static JSONObject propertiesChange(JSONObject... properties) {
+        JSONObject vertexJson = new JSONObject();
+        vertexJson.put("id", "v1");
+        JSONArray propertiesJson = new JSONArray();
+        JSONArray changesJson = new JSONArray();
+        for (JSONObject property : properties) {
+            propertiesJson.put(property);
+            changesJson.put(new JSONObject()
+                    .put("graphVertexId", "v1")
+                    .put("propertyKey", property.getString("key"))
+                    .put("propertyName", property.getString("name")));
+        }
+        vertexJson.put("properties", propertiesJson);
+
+        JSONObject dataJson = new JSONObject();
+        dataJson.put("vertex", vertexJson);
+        dataJson.put("properties", changesJson);
+        dataJson.put("partial", true);
+
+        JSONObject json = new JSONObject();
+        json.put("type", "propertiesChange");
+        json.put("data", dataJson);
+        return json;
+    }
+
+    private static JSONObject property(String key, String name, String value) {
+        return new JSONObject().put("key", key).put("name", name).put("value", value);
+    }
+}
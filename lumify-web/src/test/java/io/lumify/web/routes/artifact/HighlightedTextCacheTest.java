@@ -0,0 +1,85 @@
+package io.lumify.web.routes.artifact;
+
+import io.lumify.core.config.Configuration;
+import io.lumify.core.model.workQueue.WorkQueueRepository;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.securegraph.Authorizations;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class HighlightedTextCacheTest {
+    private static final String VERTEX_ID = "v1";
+    private static final String WORKSPACE_ID = "w1";
+
+    @Mock
+    private WorkQueueRepository workQueueRepository;
+
+    @Mock
+    private Authorizations authorizations;
+
+    private HighlightedTextCache cache;
+
+    @Before
+    public void setUp() {
+        when(authorizations.getAuthorizations()).thenReturn(new String[]{"a"});
+        cache = new HighlightedTextCache(new Configuration(new HashMap<String, String>()), workQueueRepository);
+    }
+
+    @Test
+    public void testUnchangedArtifactHits() throws Exception {
+        put(cache.getKey(VERTEX_ID, WORKSPACE_ID, authorizations), "highlighted");
+
+        byte[] cached = cache.get(cache.getKey(VERTEX_ID, WORKSPACE_ID, authorizations));
+        assertNotNull(cached);
+        assertEquals("highlighted", new String(cached, "UTF-8"));
+    }
+
+    @Test
+    public void testInvalidatedArtifactMisses() throws Exception {
+        String key = cache.getKey(VERTEX_ID, WORKSPACE_ID, authorizations);
+        put(key, "highlighted");
+
+        cache.invalidate(VERTEX_ID);
+        assertFalse(key.equals(cache.getKey(VERTEX_ID, WORKSPACE_ID, authorizations)));
+        assertNull(cache.get(key));
+        assertNull(cache.get(cache.getKey(VERTEX_ID, WORKSPACE_ID, authorizations)));
+    }
+
+    @Test
+    public void testChangedArtifactMisses() throws Exception {
+        ArgumentCaptor<WorkQueueRepository.ElementChangeListener> listener = ArgumentCaptor.forClass(WorkQueueRepository.ElementChangeListener.class);
+        verify(workQueueRepository).addElementChangeListener(listener.capture());
+        put(cache.getKey(VERTEX_ID, WORKSPACE_ID, authorizations), "highlighted");
+
+        listener.getValue().vertexChanged(VERTEX_ID);
+        assertNull(cache.get(cache.getKey(VERTEX_ID, WORKSPACE_ID, authorizations)));
+    }
+
+    @Test
+    public void testTextRenderedDuringInvalidationIsNotCached() throws Exception {
+        String key = cache.getKey(VERTEX_ID, WORKSPACE_ID, authorizations);
+        OutputStream out = cache.createCachingOutputStream(VERTEX_ID, key, new ByteArrayOutputStream());
+        out.write("highlighted".getBytes("UTF-8"));
+        cache.invalidate(VERTEX_ID);
+        out.close();
+
+        assertNull(cache.get(key));
+    }
+
+    private void put(String key, String highlightedText) throws Exception {
+        OutputStream out = cache.createCachingOutputStream(VERTEX_ID, key, new ByteArrayOutputStream());
+        out.write(highlightedText.getBytes("UTF-8"));
+        out.close();
+    }
+}
@@ -0,0 +1,156 @@
+package io.lumify.web.routes.workspace;
+
+import io.lumify.core.config.Configuration;
+import io.lumify.core.model.workQueue.WorkQueueRepository;
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.securegraph.Authorizations;
+import org.securegraph.Edge;
+import org.securegraph.Vertex;
+import org.securegraph.Visibility;
+import org.securegraph.id.QueueIdGenerator;
+import org.securegraph.inmemory.InMemoryAuthorizations;
+import org.securegraph.inmemory.InMemoryGraph;
+import org.securegraph.inmemory.InMemoryGraphConfiguration;
+import org.securegraph.search.DefaultSearchIndex;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.verify;
+
+@RunWith(MockitoJUnitRunner.class)
+public class WorkspaceEdgeIndexTest {
+    private static final String WORKSPACE_ID = "workspace1";
+    private static final String LABEL = "label";
+
+    @Mock
+    private WorkQueueRepository workQueueRepository;
+
+    private InMemoryGraph graph;
+    private Authorizations authorizations;
+    private Visibility visibility;
+    private Vertex v1;
+    private Vertex v2;
+    private Vertex v3;
+    private WorkspaceEdgeIndex index;
+    private WorkQueueRepository.ElementChangeListener listener;
+
+    @Before
+    public void setUp() {
+        InMemoryGraphConfiguration config = new InMemoryGraphConfiguration(new HashMap());
+        graph = new InMemoryGraph(config, new QueueIdGenerator(), new DefaultSearchIndex(config.getConfig()));
+        authorizations = new InMemoryAuthorizations();
+        visibility = new Visibility("");
+        v1 = graph.addVertex("v1", visibility, authorizations);
+        v2 = graph.addVertex("v2", visibility, authorizations);
+        v3 = graph.addVertex("v3", visibility, authorizations);
+        graph.addEdge("e1", v1, v2, LABEL, visibility, authorizations);
+        graph.addEdge("e2", v2, v3, LABEL, visibility, authorizations);
+
+        index = new WorkspaceEdgeIndex(graph, workQueueRepository, new Configuration(new HashMap<String, String>()));
+        ArgumentCaptor<WorkQueueRepository.ElementChangeListener> listenerCaptor = ArgumentCaptor.forClass(WorkQueueRepository.ElementChangeListener.class);
+        verify(workQueueRepository).addElementChangeListener(listenerCaptor.capture());
+        listener = listenerCaptor.getValue();
+    }
+
+    @Test
+    public void testUnknownOldOrGappedVersionGetsAllRelationships() {
+        WorkspaceEdgeIndex.Changes changes = getChanges(null, "v1", "v2", "v3");
+        assertTrue(changes.isFull());
+        assertEquals(ids("e1", "e2"), getEdgeIds(changes));
+        String firstVersion = changes.getVersion();
+
+        assertTrue(getChanges("unknown", "v1", "v2", "v3").isFull());
+        String newerVersion = firstVersion.substring(0, firstVersion.lastIndexOf(':') + 1) + "99";
+        assertTrue(getChanges(newerVersion, "v1", "v2", "v3").isFull());
+
+        String version = firstVersion;
+        for (int i = 0; i < 60; i++) {
+            Edge edge = graph.addEdge("new" + i, v1, v3, LABEL, visibility, authorizations);
+            listener.edgeChanged(edge.getId(), v1.getId(), v3.getId());
+            changes = getChanges(version, "v1", "v2", "v3");
+            assertFalse(changes.isFull());
+            assertEquals(ids("new" + i), getEdgeIds(changes));
+            version = changes.getVersion();
+        }
+
+        changes = getChanges(firstVersion, "v1", "v2", "v3");
+        assertTrue(changes.isFull());
+        assertEquals(62, changes.getRelationships().size());
+    }
+
+    @Test
+    public void testVerticesAddedToOrRemovedFromView() {
+        WorkspaceEdgeIndex.Changes changes = getChanges(null, "v1", "v2");
+        assertEquals(ids("e1"), getEdgeIds(changes));
+
+        changes = getChanges(changes.getVersion(), "v1", "v2", "v3");
+        assertFalse(changes.isFull());
+        assertEquals(ids("e2"), getEdgeIds(changes));
+        assertEquals(0, changes.getRemovedEdgeIds().size());
+
+        changes = getChanges(changes.getVersion(), "v1", "v2");
+        assertFalse(changes.isFull());
+        assertEquals(0, changes.getRelationships().size());
+        assertEquals(ids("e2"), new HashSet<Object>(changes.getRemovedEdgeIds()));
+    }
+
+    @Test
+    public void testCreatedOrDeletedEdgeMarkedChanged() {
+        WorkspaceEdgeIndex.Changes changes = getChanges(null, "v1", "v2", "v3");
+
+        Edge edge = graph.addEdge("e3", v1, v3, LABEL, visibility, authorizations);
+        listener.edgeChanged(edge.getId(), v1.getId(), v3.getId());
+        changes = getChanges(changes.getVersion(), "v1", "v2", "v3");
+        assertFalse(changes.isFull());
+        assertEquals(ids("e3"), getEdgeIds(changes));
+        assertEquals(0, changes.getRemovedEdgeIds().size());
+
+        graph.removeEdge(edge, authorizations);
+        listener.edgeChanged(edge.getId(), v1.getId(), v3.getId());
+        changes = getChanges(changes.getVersion(), "v1", "v2", "v3");
+        assertFalse(changes.isFull());
+        assertEquals(0, changes.getRelationships().size());
+        assertEquals(ids("e3"), new HashSet<Object>(changes.getRemovedEdgeIds()));
+    }
+
+    @Test
+    public void testFullRebuildShrinksIndex() {
+        WorkspaceEdgeIndex.Changes changes = getChanges(null, "v1", "v2", "v3");
+        assertEquals(ids("e1", "e2"), getEdgeIds(changes));
+
+        // more changed edges than are read one by one forces a full read of the requested vertices
+        for (int i = 0; i < 1001; i++) {
+            listener.edgeChanged("unknown" + i, "unknownOut", "unknownIn");
+        }
+        changes = getChanges(changes.getVersion(), "v1", "v2");
+        assertFalse(changes.isFull());
+        assertEquals(0, changes.getRelationships().size());
+        assertEquals(ids("e2"), new HashSet<Object>(changes.getRemovedEdgeIds()));
+
+        changes = getChanges(null, "v1", "v2", "v3");
+        assertEquals(ids("e1", "e2"), getEdgeIds(changes));
+    }
+
+    private WorkspaceEdgeIndex.Changes getChanges(String clientVersion, Object... vertexIds) {
+        return index.getChanges(WORKSPACE_ID, authorizations, ids(vertexIds), clientVersion);
+    }
+
+    private static Set<Object> ids(Object... ids) {
+        return new HashSet<Object>(Arrays.asList(ids));
+    }
+
+    private static Set<Object> getEdgeIds(WorkspaceEdgeIndex.Changes changes) {
+        Set<Object> edgeIds = new HashSet<Object>();
+        for (JSONObject relationship : changes.getRelationships()) {
+            edgeIds.add(relationship.get("id"));
+        }
+        return edgeIds;
+    }
+}